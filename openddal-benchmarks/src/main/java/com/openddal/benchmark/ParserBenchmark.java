@@ -0,0 +1,84 @@
+/*
+ * Copyright 2014-2016 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.openddal.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.openddal.command.Command;
+import com.openddal.command.Parser;
+import com.openddal.engine.Session;
+
+/**
+ * Parses and prepares a statement, without the query cache of the session.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+
+    @Param({ "point", "range", "join", "group", "insert" })
+    private String statement;
+
+    private Session session;
+    private String sql;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        session = ShardedDatabase.openSession();
+        if ("point".equals(statement)) {
+            sql = "SELECT id, name, amount FROM bench_hash WHERE id = ?";
+        } else if ("range".equals(statement)) {
+            sql = "SELECT id, name, amount FROM bench_hash WHERE id BETWEEN ? AND ? AND status IN (1, 2, 3) "
+                    + "ORDER BY amount DESC LIMIT 10";
+        } else if ("join".equals(statement)) {
+            sql = "SELECT h.id, h.name, i.product, i.quantity FROM bench_hash h "
+                    + "JOIN bench_hash_item i ON h.id = i.id WHERE h.id = ? AND i.quantity > 1";
+        } else if ("group".equals(statement)) {
+            sql = "SELECT status, COUNT(*), SUM(amount), MAX(created) FROM bench_hash "
+                    + "WHERE created >= '2016-01-10' GROUP BY status HAVING COUNT(*) > 10";
+        } else {
+            sql = "INSERT INTO bench_hash(id, name, amount, status, created) VALUES (?, ?, ?, ?, ?)";
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        ShardedDatabase.close(session);
+    }
+
+    @Benchmark
+    public Command prepareCommand() {
+        return new Parser(session).prepareCommand(sql);
+    }
+
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2014-2016 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.openddal.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.openddal.command.Command;
+import com.openddal.engine.Session;
+import com.openddal.result.ResultInterface;
+
+/**
+ * Executes queries over all shards and reads the rows: the merge of the
+ * shard results by the MergedCursor, the sorting, grouping and distinct of
+ * Select. The H2 shards run in process, so the time of the shards is
+ * included, compare the results with the point query.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryBenchmark {
+
+    @Param({ "point", "merge", "sort", "group", "distinct" })
+    private String query;
+
+    private Session session;
+    private String sql;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        session = ShardedDatabase.openSession();
+        if ("point".equals(query)) {
+            sql = "SELECT id, name, amount FROM bench_hash WHERE id = 4711";
+        } else if ("merge".equals(query)) {
+            sql = "SELECT id, name, amount FROM bench_hash WHERE status = 1";
+        } else if ("sort".equals(query)) {
+            sql = "SELECT id, name, amount FROM bench_hash WHERE status < 5 ORDER BY amount DESC, id LIMIT 100";
+        } else if ("group".equals(query)) {
+            sql = "SELECT status, COUNT(*), SUM(amount), MAX(created) FROM bench_hash GROUP BY status";
+        } else {
+            sql = "SELECT DISTINCT product FROM bench_hash_item";
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        ShardedDatabase.close(session);
+    }
+
+    @Benchmark
+    public void executeQuery(Blackhole bh) {
+        Command command = session.prepareLocal(sql);
+        ResultInterface result = command.executeQuery(0, false);
+        try {
+            while (result.next()) {
+                bh.consume(result.currentRow());
+            }
+        } finally {
+            result.close();
+        }
+    }
+
+}
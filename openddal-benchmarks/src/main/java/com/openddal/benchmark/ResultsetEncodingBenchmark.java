@@ -0,0 +1,100 @@
+/*
+ * Copyright 2014-2016 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.openddal.benchmark;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.openddal.server.mysql.ResultsetWriter;
+import com.openddal.server.mysql.proto.Flags;
+import com.openddal.server.mysql.proto.ResultsetRow;
+import com.openddal.value.Value;
+import com.openddal.value.ValueDate;
+import com.openddal.value.ValueDecimal;
+import com.openddal.value.ValueInt;
+import com.openddal.value.ValueLong;
+import com.openddal.value.ValueString;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+
+/**
+ * Encodes result set rows to MySQL packets: the text and binary protocol
+ * rows of the ResultsetWriter, and the row packets of the Resultset classes
+ * the writer replaced for the query results.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResultsetEncodingBenchmark {
+
+    private static final int[] TYPES = { Flags.MYSQL_TYPE_LONGLONG, Flags.MYSQL_TYPE_VAR_STRING,
+            Flags.MYSQL_TYPE_NEWDECIMAL, Flags.MYSQL_TYPE_LONG, Flags.MYSQL_TYPE_DATE };
+
+    private Value[] row;
+    private ByteBuf buf;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        row = new Value[] { ValueLong.get(4711), ValueString.get("name4711"),
+                ValueDecimal.get(new BigDecimal("711.25")), ValueInt.get(1), ValueDate.parse("2016-01-08") };
+        buf = PooledByteBufAllocator.DEFAULT.buffer(1024);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        buf.release();
+    }
+
+    @Benchmark
+    public long textRow() {
+        buf.clear();
+        return ResultsetWriter.writeRow(buf, row, row.length, 1);
+    }
+
+    @Benchmark
+    public long binaryRow() {
+        buf.clear();
+        return ResultsetWriter.writeBinaryRow(buf, row, TYPES, 1);
+    }
+
+    @Benchmark
+    public byte[] resultsetRow() {
+        ResultsetRow packet = new ResultsetRow();
+        packet.sequenceId = 1;
+        for (Value v : row) {
+            packet.addData(v.getString());
+        }
+        return packet.toPacket();
+    }
+
+}
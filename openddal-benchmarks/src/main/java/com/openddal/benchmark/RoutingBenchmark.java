@@ -0,0 +1,138 @@
+/*
+ * Copyright 2014-2016 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.openddal.benchmark;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.openddal.dbobject.table.Column;
+import com.openddal.dbobject.table.TableMate;
+import com.openddal.engine.Session;
+import com.openddal.result.Row;
+import com.openddal.route.RoutingHandler;
+import com.openddal.route.rule.ObjectNode;
+import com.openddal.route.rule.RoutingResult;
+import com.openddal.util.New;
+import com.openddal.value.Value;
+import com.openddal.value.ValueLong;
+
+/**
+ * Routes rows and ranges of the rule column with each partitioner. The
+ * routeSingle benchmark is the allocation free path of the batched inserts
+ * and the X=? lookups, route is the general path it replaces. Run with
+ * -prof gc to compare the allocation rates.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RoutingBenchmark {
+
+    private static final int ROW_COUNT = 1024;
+
+    @Param({ "hash", "range", "rolling" })
+    private String partitioner;
+
+    private Session session;
+    private TableMate table;
+    private RoutingHandler routingHandler;
+    private Row[] rows;
+    private Row[] rangeEnds;
+    private Map<Column, Set<Value>> inColumns;
+    private Map<Column, Set<Value>> noInColumns;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        session = ShardedDatabase.openSession();
+        table = ShardedDatabase.getTable(session, "bench_" + partitioner);
+        routingHandler = session.getDatabase().getRoutingHandler();
+        // the ranges of the range and rolling partitioners cover all nodes
+        long max = "range".equals(partitioner) ? 1024 : "rolling".equals(partitioner) ? 800000 : Long.MAX_VALUE;
+        Random random = new Random(1);
+        rows = new Row[ROW_COUNT];
+        rangeEnds = new Row[ROW_COUNT];
+        for (int i = 0; i < ROW_COUNT; i++) {
+            long id = (random.nextLong() & Long.MAX_VALUE) % (max - 100);
+            rows[i] = row(id);
+            rangeEnds[i] = row(id + 99);
+        }
+        Column ruleColumn = table.getRuleColumns()[0];
+        Set<Value> values = New.hashSet();
+        for (int i = 0; i < 10; i++) {
+            values.add(ValueLong.get((random.nextLong() & Long.MAX_VALUE) % max));
+        }
+        inColumns = New.hashMap();
+        inColumns.put(ruleColumn, values);
+        noInColumns = Collections.emptyMap();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        ShardedDatabase.close(session);
+    }
+
+    private Row row(long id) {
+        Row row = table.getTemplateRow();
+        row.setValue(table.getRuleColumns()[0].getColumnId(), ValueLong.get(id));
+        return row;
+    }
+
+    private int nextIndex() {
+        return next++ & (ROW_COUNT - 1);
+    }
+
+    @Benchmark
+    public ObjectNode routeSingle() {
+        return routingHandler.doRouteSingle(table, rows[nextIndex()]);
+    }
+
+    @Benchmark
+    public RoutingResult route() {
+        return routingHandler.doRoute(table, rows[nextIndex()]);
+    }
+
+    @Benchmark
+    public RoutingResult routeRange() {
+        int i = nextIndex();
+        return routingHandler.doRoute(table, rows[i], rangeEnds[i], noInColumns);
+    }
+
+    @Benchmark
+    public RoutingResult routeInList() {
+        return routingHandler.doRoute(table, null, null, inColumns);
+    }
+
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2014-2016 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.openddal.benchmark;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+
+import com.openddal.dbobject.table.TableMate;
+import com.openddal.engine.Session;
+import com.openddal.engine.SessionFactory;
+import com.openddal.engine.SessionFactoryBuilder;
+import com.openddal.util.StatementBuilder;
+
+/**
+ * The database the benchmarks run against: four in-process H2 shards and the
+ * tables of benchmark.xml, each split in two tables per shard. The engine is
+ * created once per JVM, JMH forks a JVM per benchmark.
+ *
+ * @author jorgie.li
+ */
+public final class ShardedDatabase {
+
+    /**
+     * The rows of bench_hash, bench_hash_item has three items per row.
+     */
+    public static final int ROWS = 10000;
+
+    private static final int SHARDS = 4;
+    private static final String[] SUFFIXES = { "_01", "_02" };
+    private static final int INSERT_BATCH = 500;
+
+    private static SessionFactory factory;
+
+    private ShardedDatabase() {
+        // utility class
+    }
+
+    /**
+     * Create the shards and the engine if needed, and open a session.
+     *
+     * @return the session
+     */
+    public static synchronized Session openSession() throws SQLException {
+        if (factory == null) {
+            createShards();
+            factory = SessionFactoryBuilder.newBuilder().fromXml("benchmark.xml").build();
+            Session session = (Session) factory.createSession(new Properties());
+            try {
+                insertRows(session);
+            } finally {
+                session.close();
+            }
+        }
+        return (Session) factory.createSession(new Properties());
+    }
+
+    /**
+     * Close the session and the engine, the executor threads of the engine
+     * would keep the forked benchmark VM alive.
+     *
+     * @param session the session
+     */
+    public static synchronized void close(Session session) {
+        session.close();
+        if (factory != null) {
+            session.getDatabase().close();
+            factory = null;
+        }
+    }
+
+    /**
+     * @param session the session
+     * @param name the logical table name
+     * @return the table
+     */
+    public static TableMate getTable(Session session, String name) {
+        return (TableMate) session.getDatabase().getSchema(session.getCurrentSchemaName())
+                .getTableOrView(session, name.toUpperCase());
+    }
+
+    private static void createShards() throws SQLException {
+        for (int i = 0; i < SHARDS; i++) {
+            Connection conn = DriverManager.getConnection("jdbc:h2:mem:shard" + i + ";MODE=MySQL;DB_CLOSE_DELAY=-1",
+                    "sa", "");
+            try {
+                Statement stat = conn.createStatement();
+                for (String suffix : SUFFIXES) {
+                    for (String table : new String[] { "bench_hash", "bench_range", "bench_rolling" }) {
+                        stat.execute("DROP TABLE IF EXISTS " + table + suffix);
+                        stat.execute("CREATE TABLE " + table + suffix + "(id BIGINT PRIMARY KEY, name VARCHAR(64), "
+                                + "amount DECIMAL(12, 2), status INT, created DATE)");
+                    }
+                    stat.execute("DROP TABLE IF EXISTS bench_hash_item" + suffix);
+                    stat.execute("CREATE TABLE bench_hash_item" + suffix + "(id BIGINT, item_id INT, "
+                            + "product VARCHAR(64), quantity INT, PRIMARY KEY(id, item_id))");
+                }
+                stat.close();
+            } finally {
+                conn.close();
+            }
+        }
+    }
+
+    private static void insertRows(Session session) {
+        for (int start = 1; start <= ROWS; start += INSERT_BATCH) {
+            StatementBuilder rows = new StatementBuilder("INSERT INTO bench_hash VALUES ");
+            StatementBuilder items = new StatementBuilder("INSERT INTO bench_hash_item VALUES ");
+            for (int id = start; id < start + INSERT_BATCH && id <= ROWS; id++) {
+                rows.appendExceptFirst(", ");
+                rows.append('(').append(id).append(", 'name").append(id).append("', ").append(id % 1000)
+                        .append(".25, ").append(id % 10).append(", '2016-01-").append(id % 28 + 1).append("')");
+                for (int item = 0; item < 3; item++) {
+                    items.appendExceptFirst(", ");
+                    items.append('(').append(id).append(", ").append(item).append(", 'product")
+                            .append(id % 100).append("', ").append(item + 1).append(')');
+                }
+            }
+            session.prepareLocal(rows.toString()).executeUpdate();
+            session.prepareLocal(items.toString()).executeUpdate();
+        }
+    }
+
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2014-2016 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.openddal.benchmark;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.openddal.command.dml.Select;
+import com.openddal.command.expression.Parameter;
+import com.openddal.config.ShardedTableRule;
+import com.openddal.dbobject.table.TableFilter;
+import com.openddal.engine.Session;
+import com.openddal.repo.JdbcRepository;
+import com.openddal.repo.SQLTranslated;
+import com.openddal.repo.mysql.MySQLTranslator;
+import com.openddal.route.rule.ObjectNode;
+import com.openddal.util.New;
+import com.openddal.value.ValueLong;
+
+/**
+ * Translates a prepared query to the SQL of one shard table with the
+ * MySQLTranslator.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TranslatorBenchmark {
+
+    @Param({ "point", "sort", "group", "join" })
+    private String query;
+
+    private Session session;
+    private MySQLTranslator translator;
+    private Select select;
+    private ObjectNode node;
+    private Map<ObjectNode, Map<TableFilter, ObjectNode>> consistencyTableNodes;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        session = ShardedDatabase.openSession();
+        translator = (MySQLTranslator) ((JdbcRepository) session.getDatabase().getRepository()).getSQLTranslator();
+        String sql;
+        if ("point".equals(query)) {
+            sql = "SELECT id, name, amount FROM bench_hash WHERE id = ?";
+        } else if ("sort".equals(query)) {
+            sql = "SELECT id, name, amount FROM bench_hash WHERE status IN (1, 2, 3) AND amount > ? "
+                    + "ORDER BY amount DESC, id LIMIT 100";
+        } else if ("group".equals(query)) {
+            sql = "SELECT status, COUNT(*), SUM(amount), MAX(created) FROM bench_hash WHERE id > ? GROUP BY status";
+        } else {
+            sql = "SELECT h.id, h.name, i.product, i.quantity FROM bench_hash h "
+                    + "JOIN bench_hash_item i ON h.id = i.id WHERE h.id = ? AND i.quantity > 1";
+        }
+        select = (Select) session.prepare(sql);
+        for (Parameter p : select.getParameters()) {
+            p.setValue(ValueLong.get(4711));
+        }
+        node = objectNode("bench_hash");
+        Map<TableFilter, ObjectNode> nodeMapping = New.hashMap();
+        TableFilter filter = select.getTopTableFilter();
+        // as while the DirectLookupCursor creates the workers, the columns
+        // are translated to SQL and not to the values of the current row
+        for (TableFilter f = filter; f != null; f = f.getJoin()) {
+            f.setEvaluatable(f, false);
+        }
+        nodeMapping.put(filter, node);
+        if (filter.getJoin() != null) {
+            nodeMapping.put(filter.getJoin(), objectNode("bench_hash_item"));
+        }
+        consistencyTableNodes = New.hashMap();
+        consistencyTableNodes.put(node, nodeMapping);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        ShardedDatabase.close(session);
+    }
+
+    private ObjectNode objectNode(String table) {
+        ShardedTableRule rule = (ShardedTableRule) ShardedDatabase.getTable(session, table).getTableRule();
+        return rule.getObjectNodes()[0];
+    }
+
+    @Benchmark
+    public SQLTranslated translate() {
+        return translator.translate(select, node, consistencyTableNodes);
+    }
+
+}
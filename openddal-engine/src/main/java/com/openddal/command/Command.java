@@ -21,11 +21,14 @@ import java.util.ArrayList;
 import com.openddal.command.expression.ParameterInterface;
 import com.openddal.engine.Constants;
 import com.openddal.engine.Database;
+import com.openddal.engine.QueryStatisticsData;
 import com.openddal.engine.Session;
 import com.openddal.message.DbException;
 import com.openddal.message.ErrorCode;
 import com.openddal.message.Trace;
 import com.openddal.result.ResultInterface;
+import com.openddal.result.ResultTarget;
+import com.openddal.route.rule.PartitionHints;
 
 /**
  * Represents a SQL statement. This object is only used on the server side.
@@ -41,10 +44,16 @@ public abstract class Command implements CommandInterface {
      */
     private final Trace trace;
     private final String sql;
+    private final PartitionHints partitionHints;
+    private String digest;
     /**
      * The last start time.
      */
     protected long startTime;
+    /**
+     * The last start time in nanoseconds, for the query statistics.
+     */
+    protected long startTimeNanos;
     /**
      * If this query was canceled.
      */
@@ -54,6 +63,7 @@ public abstract class Command implements CommandInterface {
     Command(Parser parser, String sql) {
         this.session = parser.getSession();
         this.sql = sql;
+        this.partitionHints = PartitionHints.parse(sql);
         trace = session.getDatabase().getTrace(Trace.COMMAND);
     }
 
@@ -117,6 +127,24 @@ public abstract class Command implements CommandInterface {
         throw DbException.get(ErrorCode.METHOD_ONLY_ALLOWED_FOR_QUERY);
     }
 
+    /**
+     * Execute a query statement and write the rows to the target. The rows
+     * are passed on as they are read if the query needs no buffering.
+     *
+     * @param maxrows the maximum number of rows returned
+     * @param target the target of the rows
+     */
+    public void query(int maxrows, ResultTarget target) {
+        ResultInterface result = query(maxrows);
+        try {
+            while (result.next()) {
+                target.addRow(result.currentRow());
+            }
+        } finally {
+            result.close();
+        }
+    }
+
     @Override
     public final ResultInterface getMetaData() {
         return queryMeta();
@@ -126,8 +154,9 @@ public abstract class Command implements CommandInterface {
      * Start the stopwatch.
      */
     void start() {
-        if (trace.isInfoEnabled()) {
+        if (trace.isInfoEnabled() || session.getDatabase().getQueryStatistics()) {
             startTime = System.currentTimeMillis();
+            startTimeNanos = System.nanoTime();
         }
     }
 
@@ -164,6 +193,18 @@ public abstract class Command implements CommandInterface {
      */
     @Override
     public ResultInterface executeQuery(int maxrows, boolean scrollable) {
+        return executeQuery(maxrows, null);
+    }
+
+    /**
+     * Execute a query and write the rows to the target.
+     * This method prepares everything and calls {@link #query(int, ResultTarget)} finally.
+     *
+     * @param maxrows the maximum number of rows to return
+     * @param target the target of the rows, or null to return the result
+     * @return the result set, or null if the rows are written to the target
+     */
+    public ResultInterface executeQuery(int maxrows, ResultTarget target) {
         startTime = 0;
         Database database = session.getDatabase();
         Object sync = session;
@@ -172,7 +213,11 @@ public abstract class Command implements CommandInterface {
             try {
                 while (true) {
                     try {
-                        return query(maxrows);
+                        if (target == null) {
+                            return query(maxrows);
+                        }
+                        query(maxrows, target);
+                        return null;
                     } catch (DbException e) {
                         throw e;
                     } catch (OutOfMemoryError e) {
@@ -238,6 +283,28 @@ public abstract class Command implements CommandInterface {
         canReuse = true;
     }
 
+    /**
+     * Get the partition hints of the statement.
+     *
+     * @return the hints, or null if the statement has no ddal hint
+     */
+    public PartitionHints getPartitionHints() {
+        return partitionHints;
+    }
+
+    /**
+     * Get the digest of the statement, the SQL with the literals replaced.
+     *
+     * @return the digest
+     */
+    public String getDigest() {
+        String d = digest;
+        if (d == null) {
+            digest = d = QueryStatisticsData.getDigest(sql);
+        }
+        return d;
+    }
+
     @Override
     public void cancel() {
         this.cancel = true;
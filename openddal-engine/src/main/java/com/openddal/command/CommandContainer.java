@@ -16,8 +16,11 @@
 package com.openddal.command;
 
 import com.openddal.command.expression.Parameter;
+import com.openddal.command.dml.Query;
 import com.openddal.command.expression.ParameterInterface;
+import com.openddal.result.LocalResult;
 import com.openddal.result.ResultInterface;
+import com.openddal.result.ResultTarget;
 import com.openddal.value.Value;
 import com.openddal.value.ValueNull;
 
@@ -81,7 +84,7 @@ class CommandContainer extends Command {
         session.setLastScopeIdentity(ValueNull.INSTANCE);
         prepared.checkParameters();
         int updateCount = prepared.update();
-        prepared.trace(startTime, updateCount);
+        prepared.trace(startTime, startTimeNanos, updateCount);
         return updateCount;
     }
 
@@ -91,10 +94,29 @@ class CommandContainer extends Command {
         start();
         prepared.checkParameters();
         ResultInterface result = prepared.query(maxrows);
-        prepared.trace(startTime, result.getRowCount());
+        prepared.trace(startTime, startTimeNanos, result.getRowCount());
         return result;
     }
 
+    @Override
+    public void query(int maxrows, ResultTarget target) {
+        if (!(prepared instanceof Query)) {
+            super.query(maxrows, target);
+            return;
+        }
+        recompileIfRequired();
+        start();
+        prepared.checkParameters();
+        LocalResult result = ((Query) prepared).query(maxrows, target);
+        if (result != null) {
+            // a cached or buffered result
+            while (result.next()) {
+                target.addRow(result.currentRow());
+            }
+        }
+        prepared.trace(startTime, startTimeNanos, target.getRowCount());
+    }
+
     @Override
     public boolean isReadOnly() {
         if (!readOnlyKnown) {
@@ -111,6 +111,7 @@ import com.openddal.dbobject.table.TableView;
 import com.openddal.engine.Constants;
 import com.openddal.engine.Database;
 import com.openddal.engine.DbSettings;
+import com.openddal.engine.FlightRecorderEvents;
 import com.openddal.engine.Session;
 import com.openddal.engine.SysProperties;
 import com.openddal.message.DbException;
@@ -408,6 +409,7 @@ public class Parser {
      * @return the command object
      */
     public Command prepareCommand(String sql) {
+        Object event = FlightRecorderEvents.begin(FlightRecorderEvents.PARSE);
         try {
             Prepared p = parse(sql);
             boolean hasMore = isToken(";");
@@ -428,6 +430,9 @@ public class Parser {
                     c = list;
                 }
             }
+            if (event != null) {
+                FlightRecorderEvents.commit(event, session.getId(), c.getDigest(), null, 0);
+            }
             return c;
         } catch (DbException e) {
             throw e.addSQL(originalSQL);
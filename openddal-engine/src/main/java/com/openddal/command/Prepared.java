@@ -19,6 +19,7 @@ import java.util.ArrayList;
 
 import com.openddal.command.expression.Expression;
 import com.openddal.command.expression.Parameter;
+import com.openddal.engine.QueryStatisticsData;
 import com.openddal.engine.Session;
 import com.openddal.executor.Executor;
 import com.openddal.executor.ExecutorFactory;
@@ -43,6 +44,7 @@ public abstract class Prepared {
      * The SQL string.
      */
     protected String sqlStatement;
+    private String digest;
 
     /**
      * Whether to create a new object (for indexes).
@@ -248,6 +250,7 @@ public abstract class Prepared {
      */
     public void setSQL(String sql) {
         this.sqlStatement = sql;
+        this.digest = null;
     }
 
     /**
@@ -345,18 +348,21 @@ public abstract class Prepared {
      * enabled.
      *
      * @param startTime when the statement was started
+     * @param startTimeNanos when the statement was started, in nanoseconds
      * @param rowCount  the query or update row count
      */
-    void trace(long startTime, int rowCount) {
+    void trace(long startTime, long startTimeNanos, int rowCount) {
         if (session.getTrace().isInfoEnabled() && startTime > 0) {
             long deltaTime = System.currentTimeMillis() - startTime;
             String params = Trace.formatParams(parameters);
             session.getTrace().infoSQL(sqlStatement, params, rowCount, deltaTime);
         }
-        if (session.getDatabase().getQueryStatistics()) {
-            long deltaTime = System.currentTimeMillis() - startTime;
-            session.getDatabase().getQueryStatisticsData().
-                    update(toString(), deltaTime, rowCount);
+        QueryStatisticsData statistics = session.getDatabase().getQueryStatisticsData();
+        if (statistics != null && startTime > 0) {
+            if (digest == null) {
+                digest = QueryStatisticsData.getDigest(toString());
+            }
+            statistics.update(digest, System.nanoTime() - startTimeNanos, rowCount);
         }
     }
 
@@ -0,0 +1,291 @@
+/*
+ * Copyright 2014-2016 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.openddal.command;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+
+import com.openddal.command.expression.ParameterInterface;
+import com.openddal.util.New;
+import com.openddal.value.Value;
+import com.openddal.value.ValueDecimal;
+import com.openddal.value.ValueInt;
+import com.openddal.value.ValueLong;
+import com.openddal.value.ValueString;
+
+/**
+ * A data manipulation statement with its literals replaced by parameters, so
+ * the statements which only differ in the literal values share one parsed
+ * command.
+ * <p>
+ * Only the literals which are operands of a comparison, of a BETWEEN or LIKE
+ * condition, or elements of an IN or VALUES list after the first WHERE, SET,
+ * VALUES, ON or HAVING keyword outside of parentheses are replaced, a
+ * parameter there means the same as the literal. Statements with parameters,
+ * comments (which may hold partition hints), escape characters or special
+ * literals are not parameterized.
+ *
+ * @author jorgie.li
+ */
+public final class SqlTemplate {
+
+    private static final String[] STATEMENTS = { "SELECT", "INSERT", "UPDATE", "DELETE", "REPLACE", "MERGE" };
+    private static final String[] CLAUSES = { "WHERE", "SET", "VALUES", "ON", "HAVING" };
+    private static final String[] OPERATORS = { "=", "<>", "!=", "<", ">", "<=", ">=", "LIKE", "BETWEEN" };
+
+    private final String sql;
+    private final Value[] literals;
+
+    private SqlTemplate(String sql, Value[] literals) {
+        this.sql = sql;
+        this.literals = literals;
+    }
+
+    /**
+     * Replace the literals of the statement by parameters.
+     *
+     * @param sql the statement
+     * @return the template, or null if the statement is not parameterized
+     */
+    public static SqlTemplate parse(String sql) {
+        int len = sql.length();
+        int i = 0;
+        while (i < len && Character.isWhitespace(sql.charAt(i))) {
+            i++;
+        }
+        int start = i;
+        while (i < len && Character.isLetter(sql.charAt(i))) {
+            i++;
+        }
+        if (!contains(STATEMENTS, sql.substring(start, i).toUpperCase())) {
+            return null;
+        }
+        StringBuilder buff = new StringBuilder(len);
+        ArrayList<Value> literals = New.arrayList();
+        // the list contexts of the open parentheses
+        ArrayList<Boolean> lists = New.arrayList();
+        boolean closedValuesRow = false;
+        boolean parameterize = false;
+        boolean betweenPending = false;
+        String previous = "";
+        int copied = 0;
+        while (i < len) {
+            char c = sql.charAt(i);
+            char next = i + 1 < len ? sql.charAt(i + 1) : 0;
+            if (Character.isWhitespace(c)) {
+                i++;
+                continue;
+            }
+            if (c == '?' || c == '#' || c == '\\' || c == '-' && next == '-' || c == '/' && next == '*') {
+                return null;
+            }
+            boolean list = !lists.isEmpty() && lists.get(lists.size() - 1);
+            boolean literalPosition = parameterize && (contains(OPERATORS, previous)
+                    || betweenPending && "AND".equals(previous)
+                    || list && ("(".equals(previous) || ",".equals(previous)));
+            if (c == '\'') {
+                int end = i + 1;
+                StringBuilder s = new StringBuilder();
+                while (true) {
+                    if (end >= len) {
+                        return null;
+                    }
+                    char x = sql.charAt(end++);
+                    if (x == '\\') {
+                        return null;
+                    } else if (x == '\'') {
+                        if (end < len && sql.charAt(end) == '\'') {
+                            end++;
+                        } else {
+                            break;
+                        }
+                    }
+                    s.append(x);
+                }
+                if (literalPosition) {
+                    buff.append(sql, copied, i).append('?');
+                    copied = end;
+                    literals.add(ValueString.get(s.toString()));
+                }
+                betweenPending = "BETWEEN".equals(previous);
+                previous = "'";
+                i = end;
+                continue;
+            }
+            if (Character.isDigit(c) || c == '.' && Character.isDigit(next)
+                    || c == '-' && literalPosition && (Character.isDigit(next) || next == '.')) {
+                int end = readNumber(sql, c == '-' ? i + 1 : i);
+                if (end < len && isIdentifierPart(sql.charAt(end))) {
+                    // a hexadecimal literal or an identifier
+                    return null;
+                }
+                if (literalPosition) {
+                    Value v = toNumber(sql.substring(i, end));
+                    if (v == null) {
+                        return null;
+                    }
+                    buff.append(sql, copied, i).append('?');
+                    copied = end;
+                    literals.add(v);
+                }
+                betweenPending = "BETWEEN".equals(previous);
+                previous = "0";
+                i = end;
+                continue;
+            }
+            if (c == '"' || c == '`') {
+                int end = sql.indexOf(c, i + 1);
+                if (end < 0) {
+                    return null;
+                }
+                previous = "\"";
+                i = end + 1;
+                continue;
+            }
+            if (isIdentifierPart(c)) {
+                int end = i;
+                while (end < len && isIdentifierPart(sql.charAt(end))) {
+                    end++;
+                }
+                String word = sql.substring(i, end).toUpperCase();
+                if (end < len && sql.charAt(end) == '\'') {
+                    // a prefixed literal such as X'FF' or N'text'
+                    return null;
+                }
+                if (contains(CLAUSES, word) && lists.isEmpty()) {
+                    parameterize = true;
+                } else if (list && "SELECT".equals(word)) {
+                    lists.set(lists.size() - 1, false);
+                }
+                if (!"AND".equals(word)) {
+                    betweenPending = false;
+                }
+                previous = word;
+                i = end;
+                continue;
+            }
+            if (c == '(') {
+                lists.add("IN".equals(previous) || "VALUES".equals(previous)
+                        || closedValuesRow && ",".equals(previous));
+                previous = "(";
+                i++;
+                continue;
+            }
+            boolean closing = c == ')';
+            if (closing && !lists.isEmpty()) {
+                closedValuesRow = lists.remove(lists.size() - 1) && lists.isEmpty();
+            } else if (c != ',') {
+                closedValuesRow = false;
+            }
+            int end = i + 1;
+            if (c == '<' || c == '>' || c == '!' || c == '=') {
+                while (end < len && "<>=".indexOf(sql.charAt(end)) >= 0) {
+                    end++;
+                }
+            }
+            previous = closing ? ")" : sql.substring(i, end);
+            betweenPending = false;
+            i = end;
+        }
+        if (literals.isEmpty()) {
+            return null;
+        }
+        buff.append(sql, copied, len);
+        return new SqlTemplate(buff.toString(), literals.toArray(new Value[literals.size()]));
+    }
+
+    private static int readNumber(String sql, int i) {
+        int len = sql.length();
+        while (i < len && (Character.isDigit(sql.charAt(i)) || sql.charAt(i) == '.')) {
+            i++;
+        }
+        if (i < len && (sql.charAt(i) == 'e' || sql.charAt(i) == 'E')) {
+            int j = i + 1;
+            if (j < len && (sql.charAt(j) == '+' || sql.charAt(j) == '-')) {
+                j++;
+            }
+            if (j < len && Character.isDigit(sql.charAt(j))) {
+                i = j;
+                while (i < len && Character.isDigit(sql.charAt(i))) {
+                    i++;
+                }
+            }
+        }
+        return i;
+    }
+
+    private static Value toNumber(String s) {
+        try {
+            if (s.indexOf('.') < 0 && s.indexOf('e') < 0 && s.indexOf('E') < 0) {
+                long x = Long.parseLong(s);
+                if (x >= Integer.MIN_VALUE && x <= Integer.MAX_VALUE) {
+                    return ValueInt.get((int) x);
+                }
+                return ValueLong.get(x);
+            }
+            return ValueDecimal.get(new BigDecimal(s));
+        } catch (NumberFormatException e) {
+            // out of the long range or malformed, keep the statement as is
+            return null;
+        }
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+    }
+
+    private static boolean contains(String[] array, String s) {
+        for (String x : array) {
+            if (x.equals(s)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the statement with parameters in place of the literals
+     */
+    public String getSQL() {
+        return sql;
+    }
+
+    /**
+     * @return the replaced literals in the order of the parameters
+     */
+    public Value[] getLiterals() {
+        return literals;
+    }
+
+    /**
+     * Set the literals as the parameter values of the command parsed from
+     * the template.
+     *
+     * @param command the command
+     * @return false if the parameters of the command do not match
+     */
+    public boolean bind(Command command) {
+        ArrayList<? extends ParameterInterface> params = command.getParameters();
+        if (params.size() != literals.length) {
+            return false;
+        }
+        for (int i = 0; i < literals.length; i++) {
+            params.get(i).setValue(literals[i], true);
+        }
+        return true;
+    }
+
+}
@@ -22,6 +22,7 @@ import com.openddal.command.expression.ExpressionColumn;
 import com.openddal.dbobject.table.Column;
 import com.openddal.engine.Database;
 import com.openddal.engine.Session;
+import com.openddal.executor.ExecutionProfile;
 import com.openddal.result.LocalResult;
 import com.openddal.result.ResultInterface;
 import com.openddal.value.Value;
@@ -29,7 +30,8 @@ import com.openddal.value.ValueString;
 
 /**
  * This class represents the statement
- * EXPLAIN
+ * EXPLAIN, EXPLAIN ANALYZE executes the statement and appends the runtime
+ * statistics of the operators and the shard workers to the plan.
  */
 public class Explain extends Prepared {
 
@@ -69,12 +71,22 @@ public class Explain extends Prepared {
         if (maxrows >= 0) {
             String plan;
             if (executeCommand) {
-                if (command.isQuery()) {
-                    command.query(maxrows);
-                } else {
-                    command.update();
+                ExecutionProfile profile = new ExecutionProfile();
+                session.setExecutionProfile(profile);
+                long start = System.nanoTime();
+                int rows;
+                try {
+                    if (command.isQuery()) {
+                        rows = command.query(maxrows).getRowCount();
+                    } else {
+                        rows = command.update();
+                    }
+                } finally {
+                    session.setExecutionProfile(null);
                 }
+                profile.addOperator("TOTAL", System.nanoTime() - start, rows, -1);
                 plan = command.explainPlan();
+                plan = plan == null ? profile.getReport() : plan + "\n" + profile.getReport();
             } else {
                 plan = command.explainPlan();
             }
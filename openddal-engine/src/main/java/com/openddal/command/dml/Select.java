@@ -21,8 +21,10 @@ import com.openddal.dbobject.table.ColumnResolver;
 import com.openddal.dbobject.table.Table;
 import com.openddal.dbobject.table.TableFilter;
 import com.openddal.engine.Database;
+import com.openddal.engine.FlightRecorderEvents;
 import com.openddal.engine.Session;
 import com.openddal.engine.SysProperties;
+import com.openddal.executor.ExecutionProfile;
 import com.openddal.executor.cursor.DirectLookupCursor;
 import com.openddal.message.DbException;
 import com.openddal.message.ErrorCode;
@@ -463,6 +465,9 @@ public class Select extends Query {
         }
         topTableFilter.lock(session, exclusive, exclusive);
         ResultTarget to = result != null ? result : target;
+        ExecutionProfile profile = session.getExecutionProfile();
+        long start = profile == null ? 0 : System.nanoTime();
+        Object event = FlightRecorderEvents.begin(FlightRecorderEvents.MERGE);
         if (limitRows != 0) {
             if (isDirectLookupQuery) {
                 if (isGroupQuery) {
@@ -476,8 +481,26 @@ public class Select extends Query {
                 queryFlat(columnCount, to, limitRows);
             }
         }
+        if (profile != null || event != null) {
+            String name = isDirectLookupQuery ? "DIRECT_LOOKUP" : topTableFilter.getJoin() != null ? "JOIN" : "SCAN";
+            name = isGroupQuery ? name + " GROUP" : name;
+            int rowCount = result == null ? -1 : result.getRowCount();
+            if (profile != null) {
+                profile.addOperator(name, System.nanoTime() - start, rowCount, -1);
+                start = System.nanoTime();
+            }
+            FlightRecorderEvents.commit(event, session, name, rowCount);
+        }
         if (result != null) {
+            event = FlightRecorderEvents.begin(FlightRecorderEvents.MERGE);
             result.done();
+            if (profile != null || event != null) {
+                String name = sort != null ? "SORT" : distinct ? "DISTINCT" : "RESULT";
+                if (profile != null) {
+                    profile.addOperator(name, System.nanoTime() - start, result.getRowCount(), result.getMemory());
+                }
+                FlightRecorderEvents.commit(event, session, name, result.getRowCount());
+            }
             if (target != null) {
                 while (result.next()) {
                     target.addRow(result.currentRow());
@@ -42,6 +42,7 @@ import com.openddal.engine.Mode;
 import com.openddal.engine.Session;
 import com.openddal.message.DbException;
 import com.openddal.message.ErrorCode;
+import com.openddal.repo.BucketMigrator;
 import com.openddal.result.Csv;
 import com.openddal.util.DateTimeUtils;
 import com.openddal.util.JdbcUtils;
@@ -112,7 +113,8 @@ public class Function extends Expression implements FunctionCall {
             ARRAY_LENGTH = 217, LINK_SCHEMA = 218, GREATEST = 219, LEAST = 220,
             CANCEL_SESSION = 221, SET = 222, TABLE = 223, TABLE_DISTINCT = 224,
             FILE_READ = 225, TRANSACTION_ID = 226, TRUNCATE_VALUE = 227,
-            NVL2 = 228, DECODE = 229, ARRAY_CONTAINS = 230;
+            NVL2 = 228, DECODE = 229, ARRAY_CONTAINS = 230,
+            MOVE_BUCKETS = 232, BUCKET_MIGRATION = 233;
 
     /**
      * Used in MySQL-style INSERT ... ON DUPLICATE KEY UPDATE ... VALUES
@@ -442,6 +444,10 @@ public class Function extends Expression implements FunctionCall {
         addFunctionWithNull("DECODE", DECODE,
                 VAR_ARGS, Value.NULL);
         addFunction("H2VERSION", H2VERSION, 0, Value.STRING);
+        addFunctionNotDeterministic("MOVE_BUCKETS", MOVE_BUCKETS,
+                4, Value.STRING);
+        addFunctionNotDeterministic("BUCKET_MIGRATION", BUCKET_MIGRATION,
+                1, Value.STRING);
 
         // TableFunction
         addFunctionWithNull("TABLE", TABLE,
@@ -1471,6 +1477,10 @@ public class Function extends Expression implements FunctionCall {
                 result = ValueBoolean.get(cancelStatement(session, v0.getInt()));
                 break;
             }
+            case BUCKET_MIGRATION: {
+                result = ValueString.get(BucketMigrator.status(session, v0.getString()));
+                break;
+            }
             case TRANSACTION_ID: {
                 result = session.getTransactionId();
                 break;
@@ -1711,6 +1721,10 @@ public class Function extends Expression implements FunctionCall {
                 result = ValueString.get(Constants.getVersion(),
                         database.getMode().treatEmptyStringsAsNull);
                 break;
+            case MOVE_BUCKETS:
+                result = ValueString.get(BucketMigrator.start(session, v0.getString(),
+                        v1.getInt(), v2.getInt(), v3.getString()));
+                break;
             case DATE_ADD:
                 result = ValueTimestamp.get(dateadd(
                         v0.getString(), v1.getInt(), v2.getTimestamp()));
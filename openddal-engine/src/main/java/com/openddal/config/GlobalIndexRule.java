@@ -0,0 +1,59 @@
+/*
+ * Copyright 2014-2016 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.openddal.config;
+
+import java.io.Serializable;
+
+/**
+ * A global secondary index of a sharded table. The index is kept in a
+ * separate sharded table, partitioned by the index column, which maps each
+ * index value to the rule columns of the indexed table. The index table must
+ * have the index column and the rule columns of the indexed table with the
+ * same names.
+ * <p>
+ * The entries are written by INSERT, UPDATE and DELETE only, REPLACE and MERGE
+ * are rejected on an indexed table. The rows already in the table when the
+ * index is configured are not indexed: the index must be configured before
+ * any row is loaded, or its table filled by hand with one entry per row, as a
+ * lookup by the index column only reads the nodes of the entries found.
+ *
+ * @author jorgie.li
+ */
+public class GlobalIndexRule implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+    private final String column;
+    private final String indexTable;
+
+    public GlobalIndexRule(String column, String indexTable) {
+        this.column = column;
+        this.indexTable = indexTable;
+    }
+
+    public String getColumn() {
+        return column;
+    }
+
+    public String getIndexTable() {
+        return indexTable;
+    }
+
+    @Override
+    public String toString() {
+        return "GlobalIndexRule [column=" + column + ", indexTable=" + indexTable + "]";
+    }
+
+}
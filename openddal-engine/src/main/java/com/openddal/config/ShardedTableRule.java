@@ -1,11 +1,13 @@
 package com.openddal.config;
 
 import java.io.Serializable;
+import java.util.List;
 import java.util.Random;
 
 import com.openddal.route.algorithm.MultColumnPartitioner;
 import com.openddal.route.algorithm.Partitioner;
 import com.openddal.route.rule.ObjectNode;
+import com.openddal.util.New;
 import com.openddal.util.StringUtils;
 
 /**
@@ -25,6 +27,7 @@ public class ShardedTableRule extends TableRule implements Serializable {
     private String[] ruleColumns;
     private Object partitioner; 
     private TableRuleGroup ownerGroup;
+    private List<GlobalIndexRule> globalIndexes = New.arrayList();
 
 
     public ShardedTableRule(String name) {
@@ -142,4 +145,17 @@ public class ShardedTableRule extends TableRule implements Serializable {
     public void setOwnerGroup(TableRuleGroup ownerGroup) {
         this.ownerGroup = ownerGroup;
     }
+
+    public List<GlobalIndexRule> getGlobalIndexes() {
+        return globalIndexes;
+    }
+
+    public void addGlobalIndex(GlobalIndexRule globalIndex) {
+        for (GlobalIndexRule item : globalIndexes) {
+            if (item.getColumn().equalsIgnoreCase(globalIndex.getColumn())) {
+                throw new IllegalArgumentException("Duplicate global index on column " + globalIndex.getColumn());
+            }
+        }
+        this.globalIndexes.add(globalIndex);
+    }
 }
@@ -36,6 +36,7 @@ import org.w3c.dom.NodeList;
 import com.openddal.config.Configuration;
 import com.openddal.config.DataSourceException;
 import com.openddal.config.DefaultDataSourceProvider;
+import com.openddal.config.GlobalIndexRule;
 import com.openddal.config.GlobalTableRule;
 import com.openddal.config.SequenceRule;
 import com.openddal.config.Shard;
@@ -248,6 +249,7 @@ public class XmlConfigParser {
         for (XNode tableNode : xNodes) {
             parseTableConfig(tableNode);
         }
+        checkGlobalIndexes();
         
         xNodes = xNode.evalNodes("sequence");
         for (XNode tableNode : xNodes) {
@@ -345,12 +347,57 @@ public class XmlConfigParser {
             }
         }
         parseNodes(shardTable, tableNode.evalNodes("nodes/node"));
+        parseGlobalIndexes(shardTable, tableNode.evalNodes("globalIndex"));
         // alter object node init.
         setMetaNodeIndex(shardTable, metaNodeIndex);
         return shardTable;
 
     }
 
+    private void parseGlobalIndexes(ShardedTableRule table, List<XNode> list) {
+        for (XNode xNode : list) {
+            String column = xNode.getStringAttribute("column");
+            String indexTable = xNode.getStringAttribute("table");
+            column = column == null ? null : column.replaceAll("\\s", "");
+            indexTable = indexTable == null ? null : indexTable.replaceAll("\\s", "");
+            if (StringUtils.isNullOrEmpty(column) || StringUtils.isNullOrEmpty(indexTable)) {
+                throw new ParsingException("The column and table attribute of " + table.getName()
+                        + "'s globalIndex element is required.");
+            }
+            try {
+                table.addGlobalIndex(new GlobalIndexRule(column, indexTable));
+            } catch (IllegalArgumentException e) {
+                throw new ParsingException(e.getMessage() + " defined in " + table.getName());
+            }
+        }
+    }
+
+    private void checkGlobalIndexes() {
+        for (TableRule rule : configuration.tableRules) {
+            if (rule.getType() != TableRule.SHARDED_NODE_TABLE) {
+                continue;
+            }
+            for (GlobalIndexRule index : ((ShardedTableRule) rule).getGlobalIndexes()) {
+                TableRule indexTable = null;
+                for (TableRule item : configuration.tableRules) {
+                    if (item.getName().equalsIgnoreCase(index.getIndexTable())) {
+                        indexTable = item;
+                        break;
+                    }
+                }
+                if (indexTable == null || indexTable.getType() != TableRule.SHARDED_NODE_TABLE) {
+                    throw new ParsingException("The index table " + index.getIndexTable() + " of " + rule.getName()
+                            + " must be a sharding table.");
+                }
+                String[] ruleColumns = ((ShardedTableRule) indexTable).getRuleColumns();
+                if (ruleColumns.length != 1 || !ruleColumns[0].equalsIgnoreCase(index.getColumn())) {
+                    throw new ParsingException("The index table " + index.getIndexTable()
+                            + " must be sharded by the index column " + index.getColumn());
+                }
+            }
+        }
+    }
+
     private GlobalTableRule parseGlobalTableRule(XNode tableNode) {
         String tableName = tableNode.getStringAttribute("name");
         GlobalTableRule globalTableRule = new GlobalTableRule(tableName, null);
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2014-2016 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.openddal.dbobject.index;
+
+import com.openddal.dbobject.table.Column;
+import com.openddal.dbobject.table.TableMate;
+import com.openddal.result.Row;
+import com.openddal.result.SearchRow;
+import com.openddal.value.Value;
+import com.openddal.value.ValueNull;
+
+/**
+ * A global secondary index bound to the table metadata. Each row of the index
+ * table maps the index value of a row of the indexed table to its rule
+ * columns, so that a lookup by the index column can be routed to one node.
+ *
+ * @author jorgie.li
+ */
+public final class GlobalIndex {
+
+    private final TableMate table;
+    private final TableMate indexTable;
+    private final Column column;
+    private final Column[] keyColumns;
+    private final Column[] indexColumns;
+
+    /**
+     * @param table the indexed table
+     * @param column the indexed column
+     * @param indexTable the table which holds the index entries
+     */
+    public GlobalIndex(TableMate table, Column column, TableMate indexTable) {
+        this.table = table;
+        this.column = column;
+        this.indexTable = indexTable;
+        this.keyColumns = table.getRuleColumns();
+        this.indexColumns = new Column[keyColumns.length + 1];
+        indexColumns[0] = indexTable.getColumn(column.getName());
+        for (int i = 0; i < keyColumns.length; i++) {
+            indexColumns[i + 1] = indexTable.getColumn(keyColumns[i].getName());
+        }
+    }
+
+    public TableMate getTable() {
+        return table;
+    }
+
+    public TableMate getIndexTable() {
+        return indexTable;
+    }
+
+    /**
+     * @return the indexed column of the table
+     */
+    public Column getColumn() {
+        return column;
+    }
+
+    /**
+     * @return the indexed column and the rule columns of the table
+     */
+    public Column[] getColumns() {
+        Column[] columns = new Column[keyColumns.length + 1];
+        columns[0] = column;
+        System.arraycopy(keyColumns, 0, columns, 1, keyColumns.length);
+        return columns;
+    }
+
+    /**
+     * @return the index column and the key columns of the index table
+     */
+    public Column[] getIndexColumns() {
+        return indexColumns;
+    }
+
+    /**
+     * Create the index entry of a row of the indexed table.
+     *
+     * @param row the row of the indexed table
+     * @return the row of the index table, or null if the index value is null
+     */
+    public Row createIndexRow(SearchRow row) {
+        Value v = row.getValue(column.getColumnId());
+        if (v == null || v == ValueNull.INSTANCE) {
+            return null;
+        }
+        Row indexRow = indexTable.getTemplateRow();
+        indexRow.setValue(indexColumns[0].getColumnId(), indexColumns[0].convert(v));
+        for (int i = 0; i < keyColumns.length; i++) {
+            Column c = indexColumns[i + 1];
+            indexRow.setValue(c.getColumnId(), c.convert(row.getValue(keyColumns[i].getColumnId())));
+        }
+        return indexRow;
+    }
+
+    /**
+     * Create the index entry of the index value and the rule column values.
+     *
+     * @param values the values in the order of {@link #getColumns()}
+     * @return the row of the index table, or null if the index value is null
+     */
+    public Row createIndexRow(Value[] values) {
+        if (values[0] == null || values[0] == ValueNull.INSTANCE) {
+            return null;
+        }
+        Row indexRow = indexTable.getTemplateRow();
+        for (int i = 0; i < indexColumns.length; i++) {
+            Column c = indexColumns[i];
+            indexRow.setValue(c.getColumnId(), c.convert(values[i]));
+        }
+        return indexRow;
+    }
+
+    /**
+     * Create a row of the indexed table with the rule column values set.
+     *
+     * @param values the rule column values in the order of the rule columns
+     * @return the row to route the indexed table
+     */
+    public Row createKeyRow(Value[] values) {
+        Row row = table.getTemplateRow();
+        for (int i = 0; i < keyColumns.length; i++) {
+            Column c = keyColumns[i];
+            row.setValue(c.getColumnId(), c.convert(values[i]));
+        }
+        return row;
+    }
+
+    /**
+     * Create a row of the index table with only the index value set.
+     *
+     * @param value the index value
+     * @return the row to route the index table
+     */
+    public Row createLookupRow(Value value) {
+        Row row = indexTable.getTemplateRow();
+        row.setValue(indexColumns[0].getColumnId(), indexColumns[0].convert(value));
+        return row;
+    }
+
+    @Override
+    public String toString() {
+        return table.getName() + "(" + column.getName() + ") -> " + indexTable.getName();
+    }
+
+}
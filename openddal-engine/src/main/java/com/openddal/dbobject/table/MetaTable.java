@@ -28,6 +28,8 @@ import com.openddal.engine.Database;
 import com.openddal.engine.QueryStatisticsData;
 import com.openddal.engine.Session;
 import com.openddal.message.DbException;
+import com.openddal.repo.JdbcRepository;
+import com.openddal.repo.ShardStatistics;
 import com.openddal.result.Csv;
 import com.openddal.result.Row;
 import com.openddal.result.SearchRow;
@@ -86,7 +88,8 @@ public class MetaTable extends Table {
     private static final int LOCKS = 26;
     private static final int SESSION_STATE = 27;
     private static final int QUERY_STATISTICS = 28;
-    private static final int META_TABLE_TYPE_COUNT = QUERY_STATISTICS + 1;
+    private static final int SHARD_STATISTICS = 29;
+    private static final int META_TABLE_TYPE_COUNT = SHARD_STATISTICS + 1;
 
     private final int type;
     private final int indexColumn;
@@ -492,17 +495,42 @@ public class MetaTable extends Table {
             setObjectName("QUERY_STATISTICS");
             cols = createColumns(
                     "SQL_STATEMENT",
-                    "EXECUTION_COUNT INT",
+                    "EXECUTION_COUNT LONG",
                     "MIN_EXECUTION_TIME LONG",
                     "MAX_EXECUTION_TIME LONG",
                     "CUMULATIVE_EXECUTION_TIME LONG",
                     "AVERAGE_EXECUTION_TIME DOUBLE",
                     "STD_DEV_EXECUTION_TIME DOUBLE",
-                    "MIN_ROW_COUNT INT",
-                    "MAX_ROW_COUNT INT",
+                    "MIN_ROW_COUNT LONG",
+                    "MAX_ROW_COUNT LONG",
                     "CUMULATIVE_ROW_COUNT LONG",
                     "AVERAGE_ROW_COUNT DOUBLE",
-                    "STD_DEV_ROW_COUNT DOUBLE"
+                    "STD_DEV_ROW_COUNT DOUBLE",
+                    "P50_EXECUTION_TIME DOUBLE",
+                    "P95_EXECUTION_TIME DOUBLE",
+                    "P99_EXECUTION_TIME DOUBLE",
+                    "P999_EXECUTION_TIME DOUBLE"
+            );
+            break;
+        }
+        case SHARD_STATISTICS: {
+            setObjectName("SHARD_STATISTICS");
+            cols = createColumns(
+                    "SHARD_NAME",
+                    "QUERY_COUNT LONG",
+                    "UPDATE_COUNT LONG",
+                    "ERROR_COUNT LONG",
+                    "BORROW_ERROR_COUNT LONG",
+                    "ROW_COUNT LONG",
+                    "BYTE_COUNT LONG",
+                    "P50_BORROW_WAIT DOUBLE",
+                    "P99_BORROW_WAIT DOUBLE",
+                    "P50_EXECUTION_TIME DOUBLE",
+                    "P99_EXECUTION_TIME DOUBLE",
+                    "P50_FIRST_ROW_TIME DOUBLE",
+                    "P99_FIRST_ROW_TIME DOUBLE",
+                    "P50_FETCH_TIME DOUBLE",
+                    "P99_FETCH_TIME DOUBLE"
             );
             break;
         }
@@ -1147,27 +1175,75 @@ public class MetaTable extends Table {
                             // SQL_STATEMENT
                             entry.sqlStatement,
                             // EXECUTION_COUNT
-                            "" + entry.count,
+                            "" + entry.getCount(),
                             // MIN_EXECUTION_TIME
-                            "" + entry.executionTimeMin,
+                            "" + entry.getExecutionTimeMin(),
                             // MAX_EXECUTION_TIME
-                            "" + entry.executionTimeMax,
+                            "" + entry.getExecutionTimeMax(),
                             // CUMULATIVE_EXECUTION_TIME
-                            "" + entry.executionTimeCumulative,
+                            "" + entry.getExecutionTimeCumulative(),
                             // AVERAGE_EXECUTION_TIME
-                            "" + entry.executionTimeMean,
+                            "" + entry.getExecutionTimeMean(),
                             // STD_DEV_EXECUTION_TIME
                             "" + entry.getExecutionTimeStandardDeviation(),
                             // MIN_ROW_COUNT
-                            "" + entry.rowCountMin,
+                            "" + entry.getRowCountMin(),
                             // MAX_ROW_COUNT
-                            "" + entry.rowCountMax,
+                            "" + entry.getRowCountMax(),
                             // CUMULATIVE_ROW_COUNT
-                            "" + entry.rowCountCumulative,
+                            "" + entry.getRowCountCumulative(),
                             // AVERAGE_ROW_COUNT
-                            "" + entry.rowCountMean,
+                            "" + entry.getRowCountMean(),
                             // STD_DEV_ROW_COUNT
-                            "" + entry.getRowCountStandardDeviation()
+                            "" + entry.getRowCountStandardDeviation(),
+                            // P50_EXECUTION_TIME
+                            "" + entry.getExecutionTimePercentile(0.5),
+                            // P95_EXECUTION_TIME
+                            "" + entry.getExecutionTimePercentile(0.95),
+                            // P99_EXECUTION_TIME
+                            "" + entry.getExecutionTimePercentile(0.99),
+                            // P999_EXECUTION_TIME
+                            "" + entry.getExecutionTimePercentile(0.999)
+                    );
+                }
+            }
+            break;
+        }
+        case SHARD_STATISTICS: {
+            if (database.getRepository() instanceof JdbcRepository) {
+                JdbcRepository repository = (JdbcRepository) database.getRepository();
+                for (ShardStatistics.ShardEntry entry : repository.getShardStatistics().getShards()) {
+                    add(rows,
+                            // SHARD_NAME
+                            entry.getShardName(),
+                            // QUERY_COUNT
+                            "" + entry.getQueryCount(),
+                            // UPDATE_COUNT
+                            "" + entry.getUpdateCount(),
+                            // ERROR_COUNT
+                            "" + entry.getErrorCount(),
+                            // BORROW_ERROR_COUNT
+                            "" + entry.getBorrowErrorCount(),
+                            // ROW_COUNT
+                            "" + entry.getRowCount(),
+                            // BYTE_COUNT
+                            "" + entry.getByteCount(),
+                            // P50_BORROW_WAIT
+                            "" + entry.getBorrowWait(0.5),
+                            // P99_BORROW_WAIT
+                            "" + entry.getBorrowWait(0.99),
+                            // P50_EXECUTION_TIME
+                            "" + entry.getExecuteTime(0.5),
+                            // P99_EXECUTION_TIME
+                            "" + entry.getExecuteTime(0.99),
+                            // P50_FIRST_ROW_TIME
+                            "" + entry.getFirstRowTime(0.5),
+                            // P99_FIRST_ROW_TIME
+                            "" + entry.getFirstRowTime(0.99),
+                            // P50_FETCH_TIME
+                            "" + entry.getFetchTime(0.5),
+                            // P99_FETCH_TIME
+                            "" + entry.getFetchTime(0.99)
                     );
                 }
             }
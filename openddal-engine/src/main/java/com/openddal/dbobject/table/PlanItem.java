@@ -57,7 +57,7 @@ public class PlanItem {
     }
     
     enum ScanningStrategy {
-        USE_SHARDINGKEY(10), USE_UNIQUEKEY(8), USE_INDEXKEY(6), FULL_TABLE_SCAN(0);
+        USE_SHARDINGKEY(10), USE_GLOBALINDEX(9), USE_UNIQUEKEY(8), USE_INDEXKEY(6), FULL_TABLE_SCAN(0);
         public final int priority;
         ScanningStrategy(int priority) {
             this.priority = priority;
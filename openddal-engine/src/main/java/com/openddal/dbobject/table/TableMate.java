@@ -26,13 +26,16 @@ import java.sql.Statement;
 import java.sql.Types;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 
 import javax.sql.DataSource;
 
+import com.openddal.config.GlobalIndexRule;
 import com.openddal.config.ShardedTableRule;
 import com.openddal.config.TableRule;
+import com.openddal.dbobject.index.GlobalIndex;
 import com.openddal.dbobject.index.Index;
 import com.openddal.dbobject.index.IndexCondition;
 import com.openddal.dbobject.index.IndexType;
@@ -42,7 +45,10 @@ import com.openddal.engine.Constants;
 import com.openddal.engine.Session;
 import com.openddal.message.DbException;
 import com.openddal.message.ErrorCode;
+import com.openddal.repo.BucketMapStore;
+import com.openddal.repo.BucketMigrator;
 import com.openddal.repo.JdbcRepository;
+import com.openddal.route.algorithm.HashBucketPartitioner;
 import com.openddal.route.rule.ObjectNode;
 import com.openddal.util.JdbcUtils;
 import com.openddal.util.MathUtils;
@@ -63,6 +69,8 @@ public class TableMate extends Table {
     private final TableRule tableRule;
     private final ArrayList<Index> indexes = New.arrayList();
     private Column[] ruleColumns;
+    private Column[] globalIndexColumns;
+    private volatile GlobalIndexes globalIndexes;
 
     private DbException initException;
     private boolean storesLowerCase;
@@ -83,6 +91,48 @@ public class TableMate extends Table {
         return ruleColumns;
     }
 
+    /**
+     * @return the columns which have a global secondary index
+     */
+    public Column[] getGlobalIndexColumns() {
+        check();
+        return globalIndexColumns;
+    }
+
+    /**
+     * Get the global secondary indexes of the table. They are built once and
+     * again only after the metadata of a table changed.
+     *
+     * @return the global indexes, empty if the table has none
+     */
+    public List<GlobalIndex> getGlobalIndexes() {
+        check();
+        long metaId = database.getModificationMetaId();
+        GlobalIndexes current = globalIndexes;
+        if (current == null || current.metaId != metaId) {
+            current = new GlobalIndexes(metaId, createGlobalIndexes());
+            globalIndexes = current;
+        }
+        return current.indexes;
+    }
+
+    private List<GlobalIndex> createGlobalIndexes() {
+        if (globalIndexColumns == null || globalIndexColumns.length == 0) {
+            return Collections.emptyList();
+        }
+        List<GlobalIndexRule> rules = ((ShardedTableRule) tableRule).getGlobalIndexes();
+        List<GlobalIndex> list = New.arrayList(globalIndexColumns.length);
+        for (int i = 0; i < globalIndexColumns.length; i++) {
+            String indexTableName = database.identifier(rules.get(i).getIndexTable());
+            Table indexTable = getSchema().findTableOrView(null, indexTableName);
+            if (!(indexTable instanceof TableMate)) {
+                throw DbException.get(ErrorCode.TABLE_OR_VIEW_NOT_FOUND_1, indexTableName);
+            }
+            list.add(new GlobalIndex(this, globalIndexColumns[i], (TableMate) indexTable));
+        }
+        return Collections.unmodifiableList(list);
+    }
+
     public TableRule getTableRule() {
         return tableRule;
     }
@@ -105,6 +155,7 @@ public class TableMate extends Table {
         setColumns(cols);
         indexes.clear();
         initException = DbException.get(ErrorCode.TABLE_OR_VIEW_NOT_FOUND_1, this.getSQL());
+        database.getNextModificationMetaId();
     }
 
     @Override
@@ -176,6 +227,19 @@ public class TableMate extends Table {
                 }
             }
         }
+        columns = getGlobalIndexColumns();
+        if (columns != null && masks != null
+                && item.getScanningStrategy() != ScanningStrategy.USE_SHARDINGKEY) {
+            for (Column column : columns) {
+                int mask = masks[column.getColumnId()];
+                if ((mask & IndexCondition.EQUALITY) == IndexCondition.EQUALITY) {
+                    // one index probe and one single node query
+                    item.cost = Constants.COST_ROW_OFFSET * 2;
+                    item.scanningStrategyFor(ScanningStrategy.USE_GLOBALINDEX);
+                    break;
+                }
+            }
+        }
         double rowsCost = item.cost;
         ArrayList<Index> indexes = getIndexes();
         if (indexes != null && masks != null) {
@@ -222,10 +286,14 @@ public class TableMate extends Table {
         try {
             trace.debug("Try to load {0} metadata from table {1}.{2}", getName(), shardName, tableName);
             readMataData(session, node);
+            setRuleColumns();
+            loadBucketMap();
             trace.debug("Load the {0} metadata success.", getName());
             initException = null;
         } catch (DbException e) {
-            if(e.getErrorCode() == ErrorCode.COLUMN_NOT_FOUND_1) {
+            if(e.getErrorCode() == ErrorCode.COLUMN_NOT_FOUND_1
+                    || e.getErrorCode() == ErrorCode.SHARDING_COLUMN_NOT_FOUND
+                    || e.getErrorCode() == ErrorCode.INVALID_ENGINE_CONFIG_1) {
                 throw e;
             }
             trace.debug("Fail to load {0} metadata from table {1}.{2}. error: {3}", getName(), shardName, tableName,
@@ -234,8 +302,27 @@ public class TableMate extends Table {
             Column[] cols = {};
             setColumns(cols);
         }
-        if (isInited()) {
-            setRuleColumns();
+        database.getNextModificationMetaId();
+    }
+
+    /**
+     * Route the buckets moved by the bucket migrations to their new nodes,
+     * and purge the moved rows the source node still holds if the proxy
+     * stopped before their purge was committed. The routing table of a running
+     * migration is kept.
+     */
+    private void loadBucketMap() {
+        if (tableRule.getType() != TableRule.SHARDED_NODE_TABLE) {
+            return;
+        }
+        Object partitioner = ((ShardedTableRule) tableRule).getPartitioner();
+        if (partitioner instanceof HashBucketPartitioner
+                && ((HashBucketPartitioner) partitioner).getMigration() == null) {
+            JdbcRepository repo = (JdbcRepository) database.getRepository();
+            int[] pendingPurge = BucketMapStore.load(repo, this, (HashBucketPartitioner) partitioner);
+            if (pendingPurge != null) {
+                BucketMigrator.resumePurge(repo, this, (HashBucketPartitioner) partitioner, pendingPurge);
+            }
         }
     }
 
@@ -536,6 +623,15 @@ public class TableMate extends Table {
                 }
                 ruleColumns[i] = getColumn(colName);
             }
+            List<GlobalIndexRule> indexRules = shardedTableRule.getGlobalIndexes();
+            globalIndexColumns = new Column[indexRules.size()];
+            for (int i = 0; i < globalIndexColumns.length; i++) {
+                String colName = database.identifier(indexRules.get(i).getColumn());
+                if (!doesColumnExist(colName)) {
+                    throw DbException.get(ErrorCode.COLUMN_NOT_FOUND_1, colName);
+                }
+                globalIndexColumns[i] = getColumn(colName);
+            }
         }
     }
 
@@ -566,4 +662,19 @@ public class TableMate extends Table {
             }
         }
     }
+
+    /**
+     * The global indexes built for a version of the metadata.
+     */
+    private static final class GlobalIndexes {
+
+        final long metaId;
+        final List<GlobalIndex> indexes;
+
+        GlobalIndexes(long metaId, List<GlobalIndex> indexes) {
+            this.metaId = metaId;
+            this.indexes = indexes;
+        }
+    }
+
 }
@@ -23,7 +23,7 @@ import java.util.Map;
 import java.util.Properties;
 import java.util.ServiceLoader;
 import java.util.Set;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 
 import com.openddal.config.Configuration;
@@ -50,6 +50,7 @@ import com.openddal.util.BitField;
 import com.openddal.util.ExtendableThreadPoolExecutor;
 import com.openddal.util.ExtendableThreadPoolExecutor.TaskQueue;
 import com.openddal.util.New;
+import com.openddal.util.SmallLRUCache;
 import com.openddal.util.StringUtils;
 import com.openddal.util.Threads;
 import com.openddal.value.CaseInsensitiveMap;
@@ -84,10 +85,13 @@ public class Database {
     private int queryStatisticsMaxEntries = Constants.QUERY_STATISTICS_MAX_ENTRIES;
     private QueryStatisticsData queryStatisticsData;
     private RoutingHandler routingHandler;
-    private final ThreadPoolExecutor queryExecutor;
+    private final ExecutorService queryExecutor;
     private final Repository repository;
     private final ExecutorFactory executorFactory;
     private final Configuration configuration;
+    private final Map<String, Boolean> rejectedTemplates = Collections
+            .synchronizedMap(SmallLRUCache.<String, Boolean> newInstance(1024));
+    private volatile long modificationMetaId;
 
     public Database(Configuration configuration) {
         this.configuration = configuration;
@@ -95,6 +99,7 @@ public class Database {
         this.dbSettings = getDbSettings(configuration.settings);
 
         this.mode = Mode.getInstance(dbSettings.sqlMode);
+        this.queryStatistics = dbSettings.queryStatistics;
         this.traceSystem = new TraceSystem();
         this.trace = traceSystem.getTrace(Trace.DATABASE);
 
@@ -104,7 +109,14 @@ public class Database {
         openDatabase();
     }
 
-    private ExtendableThreadPoolExecutor createQueryExecutor() {
+    private ExecutorService createQueryExecutor() {
+        if (SysProperties.VIRTUAL_THREADS) {
+            ExecutorService executor = Threads.newVirtualThreadExecutor("ddal-query-executor");
+            if (executor != null) {
+                return executor;
+            }
+            trace.info("virtual threads are not supported by this JVM, using the thread pool");
+        }
         TaskQueue queue = new TaskQueue(SysProperties.THREAD_QUEUE_SIZE);
         int poolCoreSize = SysProperties.THREAD_POOL_SIZE_CORE;
         int poolMaxSize = SysProperties.THREAD_POOL_SIZE_MAX;
@@ -261,6 +273,7 @@ public class Database {
      * @param obj the object to add
      */
     public synchronized void addSchemaObject(SchemaObject obj) {
+        getNextModificationMetaId();
         obj.getSchema().add(obj);
         // trace.debug("addSchemaObject: {0}", obj.getCreateSQL());
     }
@@ -271,6 +284,7 @@ public class Database {
      * @param obj the object to add
      */
     public synchronized void addDatabaseObject(DbObject obj) {
+        getNextModificationMetaId();
         HashMap<String, DbObject> map = getMap(obj.getType());
         String name = obj.getName();
         if (SysProperties.CHECK && map.get(name) != null) {
@@ -490,6 +504,7 @@ public class Database {
      * @param newName the new name
      */
     public synchronized void renameSchemaObject(Session session, SchemaObject obj, String newName) {
+        getNextModificationMetaId();
         obj.getSchema().rename(obj, newName);
     }
 
@@ -512,6 +527,7 @@ public class Database {
             }
         }
         obj.checkRename();
+        getNextModificationMetaId();
         map.remove(obj.getName());
         obj.rename(newName);
         map.put(newName, obj);
@@ -545,6 +561,7 @@ public class Database {
         if (SysProperties.CHECK && !map.containsKey(objName)) {
             DbException.throwInternalError("not found: " + objName);
         }
+        getNextModificationMetaId();
         map.remove(objName);
     }
 
@@ -563,9 +580,50 @@ public class Database {
                 return;
             }
         }
+        getNextModificationMetaId();
         obj.getSchema().remove(obj);
     }
 
+    /**
+     * The id changes with each modification of the metadata, the cached
+     * commands parsed before are stale.
+     *
+     * @return the modification id
+     */
+    public long getModificationMetaId() {
+        return modificationMetaId;
+    }
+
+    /**
+     * Mark the metadata as modified.
+     *
+     * @return the new modification id
+     */
+    public synchronized long getNextModificationMetaId() {
+        rejectedTemplates.clear();
+        return ++modificationMetaId;
+    }
+
+    /**
+     * Check if a statement template failed to parse, or did not match the
+     * replaced literals.
+     *
+     * @param template the template
+     * @return true if the statement must be parsed as it is
+     */
+    public boolean isRejectedTemplate(String template) {
+        return rejectedTemplates.containsKey(template);
+    }
+
+    /**
+     * Remember a template which can not be used for the replaced literals.
+     *
+     * @param template the template
+     */
+    public void rejectTemplate(String template) {
+        rejectedTemplates.put(template, Boolean.TRUE);
+    }
+
     public TraceSystem getTraceSystem() {
         return traceSystem;
     }
@@ -710,7 +768,7 @@ public class Database {
         return repository;
     }
 
-    public ThreadPoolExecutor getQueryExecutor() {
+    public ExecutorService getQueryExecutor() {
         return queryExecutor;
     }
 
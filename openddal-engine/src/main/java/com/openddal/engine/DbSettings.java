@@ -92,6 +92,17 @@ public class DbSettings extends SettingsBase {
      * The maximum time in milliseconds used to compact a database when closing.
      */
     public final int maxCompactTime = get("MAX_COMPACT_TIME", 200);
+    /**
+     * Database setting <code>MULTIPLEXING</code> (default: false).<br />
+     * If set, the plain queries of a transaction at the isolation level READ
+     * COMMITTED or lower borrow a shard connection for the statement only,
+     * until the transaction writes to that shard, so that idle transactions
+     * pin fewer shard connections. The session variables set by the client,
+     * such as time_zone, are then set on each shard connection the session
+     * borrows, and reset before it is returned to the pool; they are ignored
+     * otherwise.
+     */
+    public final boolean multiplexing = get("MULTIPLEXING", false);
     /**
      * Database setting <code>NESTED_JOINS</code> (default: true).<br />
      * Whether nested joins should be supported.
@@ -171,11 +182,31 @@ public class DbSettings extends SettingsBase {
      * and prepared statement.
      */
     public final int queryCacheSize = get("QUERY_CACHE_SIZE", 8); 
+    /**
+     * Database setting <code>PARAMETERIZE_LITERALS</code> (default: true).<br />
+     * The literals of SELECT, INSERT, UPDATE, DELETE, REPLACE and MERGE
+     * statements are replaced by parameters before the query cache is looked
+     * up, so statements which only differ in the literal values are parsed
+     * once per session.
+     */
+    public final boolean parameterizeLiterals = get("PARAMETERIZE_LITERALS", true);
+    /**
+     * Database setting <code>QUERY_STATISTICS</code> (default: false).<br />
+     * Collect the execution statistics of the statements by digest, see the
+     * INFORMATION_SCHEMA.QUERY_STATISTICS table.
+     */
+    public final boolean queryStatistics = get("QUERY_STATISTICS", false);
     /**
      * Database setting <code>ROWID</code> (default: true).<br />
      * If set, each table has a pseudo-column _ROWID_.
      */
     public final boolean rowId = get("ROWID", true);
+    /**
+     * Database setting <code>SHARD_STATISTICS</code> (default: true).<br />
+     * Collect the execution statistics of each shard, see the
+     * INFORMATION_SCHEMA.SHARD_STATISTICS table.
+     */
+    public final boolean shardStatistics = get("SHARD_STATISTICS", true);
     /**
      * Database setting <code>SQL_MODE</code> (default: REGULAR).<br />
      */
@@ -214,6 +245,12 @@ public class DbSettings extends SettingsBase {
      * Use union select for query multi-table in same shard.
      */
     public final boolean optimizeMerging = get("OPTIMIZE_MERGING", true);
+    /**
+     * Database setting <code>STREAMING_FETCH</code> (default: true).<br />
+     * Let the driver stream the rows of the shard queries in auto commit mode
+     * instead of reading the whole result into memory.
+     */
+    public final boolean streamingFetch = get("STREAMING_FETCH", true);
     
 
 
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2014-2016 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.openddal.engine;
+
+import com.openddal.command.Command;
+
+/**
+ * Emits the Java Flight Recorder events of the statement lifecycle: parse,
+ * route, shard statement, merge, commit and protocol write, each with the
+ * session id and the digest of the statement.
+ * <p>
+ * The events are only created while a recording is running, otherwise
+ * {@link #begin(int)} returns null and the commit is a no-op. The event
+ * classes need Java 11, they are built by the profile jfr (mvn -P jfr
+ * package) into openddal-jfr, which is loaded if it is on the class path and
+ * the JVM has the Flight Recorder.
+ * <p>
+ * Usage:
+ * <pre>
+ * Object event = FlightRecorderEvents.begin(FlightRecorderEvents.ROUTE);
+ * ...
+ * FlightRecorderEvents.commit(event, session, tableName, nodeCount);
+ * </pre>
+ */
+public final class FlightRecorderEvents {
+
+    public static final int PARSE = 0;
+    public static final int ROUTE = 1;
+    public static final int SHARD_QUERY = 2;
+    public static final int SHARD_UPDATE = 3;
+    public static final int MERGE = 4;
+    public static final int COMMIT = 5;
+    public static final int PROTOCOL_WRITE = 6;
+
+    private static final String RECORDER_CLASS = "com.openddal.jfr.JfrEvents";
+
+    private static final Recorder RECORDER = init();
+
+    private FlightRecorderEvents() {
+        // utility class
+    }
+
+    private static Recorder init() {
+        if (!SysProperties.FLIGHT_RECORDER_EVENTS) {
+            return null;
+        }
+        try {
+            Class.forName("jdk.jfr.FlightRecorder");
+            Recorder recorder = (Recorder) Class.forName(RECORDER_CLASS).newInstance();
+            return recorder.register() ? recorder : null;
+        } catch (Throwable e) {
+            // no openddal-jfr, or a JVM without the Flight Recorder
+            return null;
+        }
+    }
+
+    /**
+     * Check if a recording is running.
+     *
+     * @return true if the events are recorded
+     */
+    public static boolean isRecording() {
+        return RECORDER != null && RECORDER.isRecording();
+    }
+
+    /**
+     * Begin the timing of an event.
+     *
+     * @param type the event type
+     * @return the event, or null if no recording is running
+     */
+    public static Object begin(int type) {
+        if (RECORDER == null || !RECORDER.isRecording()) {
+            return null;
+        }
+        return RECORDER.begin(type);
+    }
+
+    /**
+     * End the timing of an event of the current statement of the session and
+     * record it.
+     *
+     * @param event the event returned by begin, may be null
+     * @param session the session
+     * @param detail the table, shard, operator or protocol
+     * @param count the node, row or shard count
+     */
+    public static void commit(Object event, Session session, String detail, long count) {
+        if (event != null) {
+            Command command = session.getLastCommand();
+            String digest = command == null ? null : command.getDigest();
+            RECORDER.commit(event, session.getId(), digest, detail, count);
+        }
+    }
+
+    /**
+     * End the timing of an event and record it.
+     *
+     * @param event the event returned by begin, may be null
+     * @param sessionId the session id
+     * @param digest the statement digest
+     * @param detail the table, shard, operator or protocol
+     * @param count the node, row or shard count
+     */
+    public static void commit(Object event, int sessionId, String digest, String detail, long count) {
+        if (event != null) {
+            RECORDER.commit(event, sessionId, digest, detail, count);
+        }
+    }
+
+    /**
+     * Creates and records the events, implemented with the jdk.jfr API.
+     */
+    public interface Recorder {
+
+        /**
+         * Start to follow the state of the Flight Recorder.
+         *
+         * @return false if the Flight Recorder is not available
+         */
+        boolean register();
+
+        /**
+         * @return true if a recording is running
+         */
+        boolean isRecording();
+
+        /**
+         * Begin the timing of an event.
+         *
+         * @param type the event type
+         * @return the event, or null if the event type is disabled
+         */
+        Object begin(int type);
+
+        /**
+         * End the timing of an event and record it.
+         *
+         * @param event the event returned by begin
+         * @param sessionId the session id
+         * @param digest the statement digest
+         * @param detail the table, shard, operator or protocol
+         * @param count the node, row or shard count
+         */
+        void commit(Object event, int sessionId, String digest, String detail, long count);
+    }
+
+}
@@ -8,14 +8,20 @@ package com.openddal.engine;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
-import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+import com.openddal.util.Histogram;
 
 /**
- * Maintains query statistics.
+ * Maintains query statistics, keyed by the statement digest: the statement
+ * with its literals replaced by ? and its lists of parameters collapsed, so
+ * the statements which only differ in the values share one entry. The
+ * entries are updated without locking.
  */
 public class QueryStatisticsData {
 
@@ -27,172 +33,323 @@ public class QueryStatisticsData {
         }
     };
 
-    private final HashMap<String, QueryEntry> map =
-            new HashMap<String, QueryEntry>();
+    private static final Comparator<QueryEntry> EXECUTION_TIME_COMPARATOR =
+            new Comparator<QueryEntry>() {
+        @Override
+        public int compare(QueryEntry o1, QueryEntry o2) {
+            return (int) Math.signum(o2.executionTimeCumulative.get() - o1.executionTimeCumulative.get());
+        }
+    };
+
+    private static final Pattern PARAMETER_LIST = Pattern.compile("\\(\\?(, ?\\?)+\\)");
+    private static final Pattern ROW_LIST = Pattern.compile("\\(\\.\\.\\.\\)(, ?\\(\\.\\.\\.\\))+");
+
+    private final ConcurrentHashMap<String, QueryEntry> map =
+            new ConcurrentHashMap<String, QueryEntry>();
+    private final AtomicBoolean evicting = new AtomicBoolean();
 
-    private int maxQueryEntries;
+    private volatile int maxQueryEntries;
 
     public QueryStatisticsData(int maxQueryEntries) {
         this.maxQueryEntries = maxQueryEntries;
     }
 
-    public synchronized void setMaxQueryEntries(int maxQueryEntries) {
+    public void setMaxQueryEntries(int maxQueryEntries) {
         this.maxQueryEntries = maxQueryEntries;
     }
 
-    public synchronized List<QueryEntry> getQueries() {
-        // return a copy of the map so we don't have to
-        // worry about external synchronization
-        ArrayList<QueryEntry> list = new ArrayList<QueryEntry>();
-        list.addAll(map.values());
-        // only return the newest 100 entries
-        Collections.sort(list, QUERY_ENTRY_COMPARATOR);
+    /**
+     * Get the entries with the highest cumulative execution time first.
+     *
+     * @return a copy of the entries
+     */
+    public List<QueryEntry> getQueries() {
+        ArrayList<QueryEntry> list = new ArrayList<QueryEntry>(map.values());
+        Collections.sort(list, EXECUTION_TIME_COMPARATOR);
         return list.subList(0, Math.min(list.size(), maxQueryEntries));
     }
 
     /**
      * Update query statistics.
      *
-     * @param sqlStatement the statement being executed
-     * @param executionTime the time in milliseconds the query/update took to
-     *            execute
+     * @param digest the digest of the statement being executed
+     * @param executionTimeNanos the time in nanoseconds the query/update took
+     *            to execute
      * @param rowCount the query or update row count
      */
-    public synchronized void update(String sqlStatement, long executionTime,
-            int rowCount) {
-        QueryEntry entry = map.get(sqlStatement);
+    public void update(String digest, long executionTimeNanos, int rowCount) {
+        QueryEntry entry = map.get(digest);
         if (entry == null) {
-            entry = new QueryEntry();
-            entry.sqlStatement = sqlStatement;
-            map.put(sqlStatement, entry);
+            QueryEntry e = new QueryEntry(digest);
+            entry = map.putIfAbsent(digest, e);
+            if (entry == null) {
+                entry = e;
+            }
         }
-        entry.update(executionTime, rowCount);
+        entry.update(TimeUnit.NANOSECONDS.toMicros(executionTimeNanos), rowCount);
 
         // Age-out the oldest entries if the map gets too big.
         // Test against 1.5 x max-size so we don't do this too often
-        if (map.size() > maxQueryEntries * 1.5f) {
-            // Sort the entries by age
-            ArrayList<QueryEntry> list = new ArrayList<QueryEntry>();
-            list.addAll(map.values());
-            Collections.sort(list, QUERY_ENTRY_COMPARATOR);
-            // Create a set of the oldest 1/3 of the entries
-            HashSet<QueryEntry> oldestSet =
-                    new HashSet<QueryEntry>(list.subList(0, list.size() / 3));
-            // Loop over the map using the set and remove
-            // the oldest 1/3 of the entries.
-            for (Iterator<Entry<String, QueryEntry>> it =
-                    map.entrySet().iterator(); it.hasNext();) {
-                Entry<String, QueryEntry> mapEntry = it.next();
-                if (oldestSet.contains(mapEntry.getValue())) {
-                    it.remove();
+        if (map.size() > maxQueryEntries * 1.5f && evicting.compareAndSet(false, true)) {
+            try {
+                ArrayList<QueryEntry> list = new ArrayList<QueryEntry>(map.values());
+                Collections.sort(list, QUERY_ENTRY_COMPARATOR);
+                // remove the oldest 1/3 of the entries
+                for (QueryEntry e : list.subList(0, list.size() / 3)) {
+                    map.remove(e.sqlStatement, e);
                 }
+            } finally {
+                evicting.set(false);
             }
         }
     }
 
     /**
-     * The collected statistics for one query.
+     * Get the digest of a statement: the string and numeric literals are
+     * replaced by ?, the comments are removed, the white space is collapsed
+     * and the lists of parameters or rows are shortened to (...).
+     *
+     * @param sql the statement
+     * @return the digest
      */
-    public static final class QueryEntry {
+    public static String getDigest(String sql) {
+        int len = sql.length();
+        StringBuilder buff = new StringBuilder(len);
+        boolean space = false;
+        for (int i = 0; i < len; i++) {
+            char c = sql.charAt(i);
+            char next = i + 1 < len ? sql.charAt(i + 1) : 0;
+            int end = i;
+            if (Character.isWhitespace(c)) {
+                space = buff.length() > 0;
+                continue;
+            } else if (c == '/' && next == '*') {
+                end = sql.indexOf("*/", i + 2);
+                i = end < 0 ? len : end + 1;
+                space = buff.length() > 0;
+                continue;
+            } else if (c == '#' || c == '-' && next == '-') {
+                end = sql.indexOf('\n', i);
+                i = end < 0 ? len : end;
+                space = buff.length() > 0;
+                continue;
+            }
+            if (space) {
+                buff.append(' ');
+                space = false;
+            }
+            if (c == '\'' || c == '"') {
+                for (end = i + 1; end < len; end++) {
+                    char x = sql.charAt(end);
+                    if (x == '\\') {
+                        end++;
+                    } else if (x == c) {
+                        if (end + 1 < len && sql.charAt(end + 1) == c) {
+                            end++;
+                        } else {
+                            break;
+                        }
+                    }
+                }
+                buff.append('?');
+                i = end;
+            } else if ((Character.isDigit(c) || c == '.' && Character.isDigit(next))
+                    && !isIdentifierEnd(buff)) {
+                for (end = i + 1; end < len; end++) {
+                    char x = sql.charAt(end);
+                    if (!Character.isLetterOrDigit(x) && x != '.'
+                            && !((x == '+' || x == '-') && isExponent(sql.charAt(end - 1)))) {
+                        break;
+                    }
+                }
+                buff.append('?');
+                i = end - 1;
+            } else if (c == '`') {
+                end = sql.indexOf('`', i + 1);
+                end = end < 0 ? len - 1 : end;
+                buff.append(sql, i, end + 1);
+                i = end;
+            } else {
+                buff.append(c);
+            }
+        }
+        String digest = PARAMETER_LIST.matcher(buff).replaceAll("(...)");
+        return ROW_LIST.matcher(digest).replaceAll("(...)");
+    }
 
-        /**
-         * The SQL statement.
-         */
-        public String sqlStatement;
+    private static boolean isIdentifierEnd(StringBuilder buff) {
+        if (buff.length() == 0) {
+            return false;
+        }
+        char c = buff.charAt(buff.length() - 1);
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+    }
+
+    private static boolean isExponent(char c) {
+        return c == 'e' || c == 'E';
+    }
+
+    /**
+     * The collected statistics for one statement digest.
+     */
+    public static final class QueryEntry {
 
         /**
-         * The number of times the statement was executed.
+         * The statement digest.
          */
-        public int count;
+        public final String sqlStatement;
 
         /**
          * The last time the statistics for this entry were updated,
          * in milliseconds since 1970.
          */
-        public long lastUpdateTime;
+        public volatile long lastUpdateTime;
+
+        // the times in microseconds
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong executionTimeMin = new AtomicLong(Long.MAX_VALUE);
+        private final AtomicLong executionTimeMax = new AtomicLong();
+        private final AtomicLong executionTimeCumulative = new AtomicLong();
+        private final AtomicLong executionTimeSquares = new AtomicLong();
+        private final AtomicLong rowCountMin = new AtomicLong(Long.MAX_VALUE);
+        private final AtomicLong rowCountMax = new AtomicLong();
+        private final AtomicLong rowCountCumulative = new AtomicLong();
+        private final AtomicLong rowCountSquares = new AtomicLong();
+        private final Histogram histogram = new Histogram();
+
+        QueryEntry(String sqlStatement) {
+            this.sqlStatement = sqlStatement;
+        }
 
         /**
-         * The minimum execution time, in milliseconds.
+         * Update the statistics entry.
+         *
+         * @param micros the execution time in microseconds
+         * @param rows the number of rows
          */
-        public long executionTimeMin;
+        void update(long micros, int rows) {
+            count.incrementAndGet();
+            min(executionTimeMin, micros);
+            max(executionTimeMax, micros);
+            executionTimeCumulative.addAndGet(micros);
+            add(executionTimeSquares, (double) micros * micros);
+            min(rowCountMin, rows);
+            max(rowCountMax, rows);
+            rowCountCumulative.addAndGet(rows);
+            add(rowCountSquares, (double) rows * rows);
+            histogram.record(micros);
+            lastUpdateTime = System.currentTimeMillis();
+        }
 
-        /**
-         * The maximum execution time, in milliseconds.
-         */
-        public long executionTimeMax;
+        public long getCount() {
+            return count.get();
+        }
 
         /**
-         * The total execution time.
+         * @return the minimum execution time, in milliseconds
          */
-        public long executionTimeCumulative;
+        public long getExecutionTimeMin() {
+            long min = executionTimeMin.get();
+            return min == Long.MAX_VALUE ? 0 : min / 1000;
+        }
 
         /**
-         * The minimum number of rows.
+         * @return the maximum execution time, in milliseconds
          */
-        public int rowCountMin;
+        public long getExecutionTimeMax() {
+            return executionTimeMax.get() / 1000;
+        }
 
         /**
-         * The maximum number of rows.
+         * @return the total execution time, in milliseconds
          */
-        public int rowCountMax;
+        public long getExecutionTimeCumulative() {
+            return executionTimeCumulative.get() / 1000;
+        }
 
         /**
-         * The total number of rows.
+         * @return the mean execution time, in milliseconds
          */
-        public long rowCountCumulative;
+        public double getExecutionTimeMean() {
+            return mean(executionTimeCumulative.get()) / 1000;
+        }
 
-        /**
-         * The mean execution time.
-         */
-        public double executionTimeMean;
+        public double getExecutionTimeStandardDeviation() {
+            return standardDeviation(executionTimeCumulative.get(), executionTimeSquares) / 1000;
+        }
 
-        /**
-         * The mean number of rows.
-         */
-        public double rowCountMean;
+        public long getRowCountMin() {
+            long min = rowCountMin.get();
+            return min == Long.MAX_VALUE ? 0 : min;
+        }
 
-        // Using Welford's method, see also
-        // http://en.wikipedia.org/wiki/Algorithms_for_calculating_variance
-        // http://www.johndcook.com/standard_deviation.html
+        public long getRowCountMax() {
+            return rowCountMax.get();
+        }
 
-        private double executionTimeM2;
-        private double rowCountM2;
+        public long getRowCountCumulative() {
+            return rowCountCumulative.get();
+        }
+
+        public double getRowCountMean() {
+            return mean(rowCountCumulative.get());
+        }
+
+        public double getRowCountStandardDeviation() {
+            return standardDeviation(rowCountCumulative.get(), rowCountSquares);
+        }
 
         /**
-         * Update the statistics entry.
+         * Get the execution time below which the given fraction of the
+         * executions completed, at the precision of the histogram bucket.
          *
-         * @param time the execution time
-         * @param rows the number of rows
+         * @param fraction the fraction, for example 0.99
+         * @return the execution time, in milliseconds
          */
-        void update(long time, int rows) {
-            count++;
-            executionTimeMin = Math.min(time, executionTimeMin);
-            executionTimeMax = Math.max(time, executionTimeMax);
-            rowCountMin = Math.min(rows, rowCountMin);
-            rowCountMax = Math.max(rows, rowCountMax);
-
-            double delta = rows - rowCountMean;
-            rowCountMean += delta / count;
-            rowCountM2 += delta * (rows - rowCountMean);
-
-            delta = time - executionTimeMean;
-            executionTimeMean += delta / count;
-            executionTimeM2 += delta * (time - executionTimeMean);
-
-            executionTimeCumulative += time;
-            rowCountCumulative += rows;
-            lastUpdateTime = System.currentTimeMillis();
+        public double getExecutionTimePercentile(double fraction) {
+            return histogram.getPercentile(fraction) / 1000d;
+        }
 
+        private double mean(long cumulative) {
+            long n = count.get();
+            return n == 0 ? 0 : (double) cumulative / n;
         }
 
-        public double getExecutionTimeStandardDeviation() {
+        private double standardDeviation(long cumulative, AtomicLong squares) {
+            long n = count.get();
+            if (n == 0) {
+                return 0;
+            }
             // population standard deviation
-            return Math.sqrt(executionTimeM2 / count);
+            double mean = (double) cumulative / n;
+            double variance = Double.longBitsToDouble(squares.get()) / n - mean * mean;
+            return variance > 0 ? Math.sqrt(variance) : 0;
         }
 
-        public double getRowCountStandardDeviation() {
-            // population standard deviation
-            return Math.sqrt(rowCountM2 / count);
+        private static void min(AtomicLong x, long value) {
+            for (long v = x.get(); value < v; v = x.get()) {
+                if (x.compareAndSet(v, value)) {
+                    return;
+                }
+            }
+        }
+
+        private static void max(AtomicLong x, long value) {
+            for (long v = x.get(); value > v; v = x.get()) {
+                if (x.compareAndSet(v, value)) {
+                    return;
+                }
+            }
+        }
+
+        private static void add(AtomicLong x, double value) {
+            while (true) {
+                long v = x.get();
+                long n = Double.doubleToRawLongBits(Double.longBitsToDouble(v) + value);
+                if (x.compareAndSet(v, n)) {
+                    return;
+                }
+            }
         }
 
     }
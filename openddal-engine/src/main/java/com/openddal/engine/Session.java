@@ -19,17 +19,21 @@ import java.sql.Connection;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Random;
 
 import com.openddal.command.Command;
 import com.openddal.command.CommandInterface;
 import com.openddal.command.Parser;
 import com.openddal.command.Prepared;
+import com.openddal.command.SqlTemplate;
 import com.openddal.dbobject.User;
 import com.openddal.dbobject.index.Index;
 import com.openddal.dbobject.schema.Schema;
 import com.openddal.dbobject.table.Table;
 import com.openddal.engine.spi.Transaction;
+import com.openddal.executor.ExecutionProfile;
 import com.openddal.executor.ExecutorFactory;
 import com.openddal.executor.works.WorkerFactory;
 import com.openddal.executor.works.WorkerFactoryProxy;
@@ -40,6 +44,7 @@ import com.openddal.message.TraceSystem;
 import com.openddal.result.LocalResult;
 import com.openddal.util.New;
 import com.openddal.util.SmallLRUCache;
+import com.openddal.util.StringUtils;
 import com.openddal.value.Value;
 import com.openddal.value.ValueLong;
 import com.openddal.value.ValueNull;
@@ -73,7 +78,9 @@ public class Session implements SessionInterface {
     private HashMap<String, Table> localTempTables;
     private HashMap<String, Index> localTempTableIndexes;
 
-    private Command currentCommand;
+    private volatile Command currentCommand;
+    private volatile Command lastCommand;
+    private int commandCount;
     private boolean allowLiterals;
     private String currentSchemaName;
     private String[] schemaSearchPath;
@@ -88,11 +95,15 @@ public class Session implements SessionInterface {
     private int queryTimeout;
     private int objectId;
     private SmallLRUCache<String, Command> queryCache;
+    private long modificationMetaId;
     private ArrayList<Value> temporaryLobs;
     private boolean readOnly;
     private int transactionIsolation = Connection.TRANSACTION_READ_COMMITTED;
     private final Transaction transaction;
     private final WorkerFactoryProxy workerHolder;
+    private volatile ExecutionProfile executionProfile;
+    private final LinkedHashMap<String, String> shardVariables = New.linkedHashMap();
+    private volatile int shardVariablesVersion;
 
     public Session(Database database, User user, int id) {
         this.id = id;
@@ -303,17 +314,14 @@ public class Session implements SessionInterface {
         }
         Command command;
         if (queryCacheSize > 0) {
+            long newModificationMetaId = database.getModificationMetaId();
             if (queryCache == null) {
                 queryCache = SmallLRUCache.newInstance(queryCacheSize);
-                // modificationMetaID = database.getModificationMetaId();
+                modificationMetaId = newModificationMetaId;
+            } else if (newModificationMetaId != modificationMetaId) {
+                queryCache.clear();
+                modificationMetaId = newModificationMetaId;
             } else {
-                // ignore table structure modification
-                /*
-                 * long newModificationMetaID =
-                 * database.getModificationMetaId(); if (newModificationMetaID
-                 * != modificationMetaID) { queryCache.clear();
-                 * modificationMetaID = newModificationMetaID; }
-                 */
                 command = queryCache.get(sql);
                 if (command != null && command.canReuse()) {
                     command.reuse();
@@ -331,6 +339,41 @@ public class Session implements SessionInterface {
         return command;
     }
 
+    /**
+     * Parse and prepare a statement which is executed once. The literals of
+     * the statement are replaced by parameters first, so the statements which
+     * only differ in the literal values share the cached command.
+     *
+     * @param sql the SQL statement
+     * @return the prepared statement, with the replaced literals bound
+     */
+    public Command prepareParameterized(String sql) {
+        if (closed) {
+            throw DbException.get(ErrorCode.CONNECTION_BROKEN_1, "session closed");
+        }
+        if (queryCacheSize > 0 && database.getSettings().parameterizeLiterals
+                && database.getAllowLiterals() == Constants.ALLOW_LITERALS_ALL) {
+            SqlTemplate template = SqlTemplate.parse(sql);
+            if (template != null && !database.isRejectedTemplate(template.getSQL())) {
+                Command command = null;
+                try {
+                    command = prepareLocal(template.getSQL());
+                } catch (DbException e) {
+                    // a parameter is not allowed in place of a literal
+                    database.rejectTemplate(template.getSQL());
+                }
+                if (command != null) {
+                    if (template.bind(command)) {
+                        return command;
+                    }
+                    command.close();
+                    database.rejectTemplate(template.getSQL());
+                }
+            }
+        }
+        return prepareLocal(sql);
+    }
+
     public Database getDatabase() {
         return database;
     }
@@ -387,6 +430,9 @@ public class Session implements SessionInterface {
     @Override
     public void cancel() {
         cancelAt = System.currentTimeMillis();
+        // the executing thread may wait for the shards and not check the
+        // cancel time, so the shard statements are canceled right away
+        doCancel();
     }
 
     @Override
@@ -535,6 +581,16 @@ public class Session implements SessionInterface {
         return currentCommand;
     }
 
+    /**
+     * Get the command which is executed, or was executed last, also from the
+     * threads of the shard workers and after the command has ended.
+     *
+     * @return the command or null
+     */
+    public Command getLastCommand() {
+        return lastCommand;
+    }
+
     /**
      * Set the current command of this session. This is done just before
      * executing the statement.
@@ -542,7 +598,13 @@ public class Session implements SessionInterface {
      * @param command the command
      */
     public void setCurrentCommand(Command command) {
+        if (command != null) {
+            commandCount++;
+        }
         this.currentCommand = command;
+        if (command != null) {
+            lastCommand = command;
+        }
         if (queryTimeout > 0 && command != null) {
             long now = System.currentTimeMillis();
             currentCommandStart = now;
@@ -550,6 +612,17 @@ public class Session implements SessionInterface {
         }
     }
 
+    /**
+     * Get the number of the commands executed by this session, read after
+     * {@link #getCurrentCommand()} it tells whether the current command is
+     * still the same execution.
+     *
+     * @return the command count
+     */
+    public int getCommandCount() {
+        return commandCount;
+    }
+
     public long getCurrentCommandStart() {
         return currentCommandStart;
     }
@@ -743,6 +816,40 @@ public class Session implements SessionInterface {
         this.readOnly = readOnly;
     }
     
+    /**
+     * Set a session variable of the shards, such as time_zone. The variables
+     * are set on each shard connection before it is used by this session,
+     * and reset when it is returned to the pool, if the database setting
+     * MULTIPLEXING is enabled.
+     *
+     * @param name the variable name
+     * @param value the value as a SQL expression, for example '+08:00'
+     */
+    public void setShardVariable(String name, String value) {
+        synchronized (shardVariables) {
+            shardVariables.put(StringUtils.toLowerEnglish(name), value);
+            shardVariablesVersion++;
+        }
+    }
+
+    /**
+     * @return a copy of the session variables of the shards, by name
+     */
+    public Map<String, String> getShardVariables() {
+        // the workers of a running command call this while the command
+        // holds the session lock, so only the map is locked
+        synchronized (shardVariables) {
+            return new LinkedHashMap<String, String>(shardVariables);
+        }
+    }
+
+    /**
+     * @return a number which changes whenever a shard variable is set
+     */
+    public int getShardVariablesVersion() {
+        return shardVariablesVersion;
+    }
+
     public ExecutorFactory getExecutorFactory() {
         return database.getExecutorFactory();
     }
@@ -751,6 +858,20 @@ public class Session implements SessionInterface {
         return workerHolder;
     }
 
+    /**
+     * Get the profile the statement being analyzed records its runtime
+     * statistics in.
+     *
+     * @return the profile, or null if the statement is not analyzed
+     */
+    public ExecutionProfile getExecutionProfile() {
+        return executionProfile;
+    }
+
+    public void setExecutionProfile(ExecutionProfile executionProfile) {
+        this.executionProfile = executionProfile;
+    }
+
 
     public static class Savepoint {
         String savepointName;
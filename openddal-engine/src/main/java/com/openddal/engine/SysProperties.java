@@ -67,6 +67,14 @@ public class SysProperties {
 
     public static final int SERVER_RESULT_SET_FETCH_SIZE = Utils.getProperty("ddal.serverResultSetFetchSize", 100);
 
+    /**
+     * System property <code>ddal.serverWriteTimeout</code> (default: 60000).<br />
+     * The longest time in milliseconds the server waits for a client to read
+     * the rows written before, the statement fails and the connection is
+     * closed then.
+     */
+    public static final int SERVER_WRITE_TIMEOUT = Utils.getProperty("ddal.serverWriteTimeout", 60000);
+
     public static final int SOCKET_CONNECT_RETRY = Utils.getProperty("ddal.socketConnectRetry", 16);
 
     public static final int SOCKET_CONNECT_TIMEOUT = Utils.getProperty("ddal.socketConnectTimeout", 2000);
@@ -89,7 +97,22 @@ public class SysProperties {
     public static final int THREAD_POOL_SIZE_CORE = Utils.getProperty("ddal.threadpool.size.core", Runtime.getRuntime().availableProcessors() * 2);
     
     public static final int THREAD_POOL_SIZE_MAX = Utils.getProperty("ddal.threadpool.size.max", Runtime.getRuntime().availableProcessors() * 20);
-    
+
+    /**
+     * System property <code>ddal.virtualThreads</code> (default: false).<br />
+     * Run each shard query and each server request on its own virtual thread
+     * instead of the bounded thread pools. Ignored on JVMs without virtual
+     * threads.
+     */
+    public static final boolean VIRTUAL_THREADS = Utils.getProperty("ddal.virtualThreads", false);
+
+    /**
+     * System property <code>ddal.flightRecorderEvents</code> (default: true).<br />
+     * Emit the Java Flight Recorder events of the statement lifecycle while a
+     * recording is running. Ignored on JVMs without the Flight Recorder.
+     */
+    public static final boolean FLIGHT_RECORDER_EVENTS = Utils.getProperty("ddal.flightRecorderEvents", true);
+
     public static boolean serializeJavaObject = Utils.getProperty("ddal.serializeJavaObject", true);
 
     public static final String SERVERUSER_CONFIG_LOCATION = Utils.getProperty("ddal.serverUserConfigLocation", "users.properties");
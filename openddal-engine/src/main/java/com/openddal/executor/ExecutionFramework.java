@@ -20,18 +20,25 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
-import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
 
+import com.openddal.command.Command;
+import com.openddal.command.expression.Expression;
 import com.openddal.config.GlobalTableRule;
 import com.openddal.config.ShardedTableRule;
 import com.openddal.config.TableRule;
+import com.openddal.dbobject.index.ConditionExtractor;
+import com.openddal.dbobject.index.GlobalIndex;
 import com.openddal.dbobject.schema.Schema;
+import com.openddal.dbobject.table.Column;
 import com.openddal.dbobject.table.Table;
 import com.openddal.dbobject.table.TableFilter;
 import com.openddal.dbobject.table.TableMate;
 import com.openddal.engine.Database;
+import com.openddal.engine.FlightRecorderEvents;
 import com.openddal.engine.Session;
 import com.openddal.executor.cursor.Cursor;
 import com.openddal.executor.cursor.MergedCursor;
@@ -42,11 +49,17 @@ import com.openddal.executor.works.WorkerFactory;
 import com.openddal.message.DbException;
 import com.openddal.message.ErrorCode;
 import com.openddal.result.Row;
+import com.openddal.result.SearchRow;
 import com.openddal.route.RoutingHandler;
+import com.openddal.route.algorithm.BucketMigration;
+import com.openddal.route.algorithm.HashBucketPartitioner;
 import com.openddal.route.rule.ObjectNode;
+import com.openddal.route.rule.PartitionHints;
 import com.openddal.route.rule.RoutingResult;
 import com.openddal.util.New;
 import com.openddal.util.StringUtils;
+import com.openddal.value.Value;
+import com.openddal.value.ValueNull;
 
 /**
  * @author jorgie.li
@@ -56,7 +69,7 @@ public abstract class ExecutionFramework implements Executor {
 
     protected Session session;
     protected Database database;
-    protected ThreadPoolExecutor queryExecutor;
+    protected ExecutorService queryExecutor;
     protected RoutingHandler routingHandler;
     protected WorkerFactory queryHandlerFactory;
 
@@ -75,16 +88,65 @@ public abstract class ExecutionFramework implements Executor {
         isPrepared = true;
     }
 
+    /**
+     * While a bucket migration of the table is running the writes hold the
+     * read lock of the migration from the routing to the end of the
+     * execution. The writes which started before the migration are awaited by
+     * the migration itself.
+     */
     @Override
     public final int update(Session s) {
-        prepare(s);
-        return doUpdate();
+        HashBucketPartitioner partitioner = getHashBucketPartitioner(getUpdateTable());
+        if (partitioner == null || partitioner.getMigration() == null) {
+            prepare(s);
+            return doUpdate();
+        }
+        Lock lock = partitioner.getMigrationLock().readLock();
+        lock.lock();
+        try {
+            prepare(s);
+            return doUpdate();
+        } finally {
+            lock.unlock();
+        }
     }
 
+    /**
+     * Get the table the statement writes, to find its bucket migration.
+     *
+     * @return the table, or null
+     */
+    protected Table getUpdateTable() {
+        return null;
+    }
+
+    /**
+     * While the routing table of a bucket migration is switched the queries
+     * hold the read lock of the migration from the routing until the shard
+     * statements are executed, they see the moved rows on the source node or
+     * on the target node, never on both.
+     */
     @Override
     public final Cursor query(Session s) {
-        prepare(s);
-        return doQuery();
+        List<HashBucketPartitioner> switching = HashBucketPartitioner.getSwitching();
+        if (switching.isEmpty()) {
+            prepare(s);
+            return doQuery();
+        }
+        List<Lock> locks = New.arrayList(switching.size());
+        try {
+            for (HashBucketPartitioner partitioner : switching) {
+                Lock lock = partitioner.getMigrationLock().readLock();
+                lock.lock();
+                locks.add(lock);
+            }
+            prepare(s);
+            return doQuery();
+        } finally {
+            for (Lock lock : locks) {
+                lock.unlock();
+            }
+        }
     }
 
     @Override
@@ -107,6 +169,7 @@ public abstract class ExecutionFramework implements Executor {
 
     protected int invokeUpdateWorker(List<UpdateWorker> worker) {
         session.checkCanceled();
+        long start = System.nanoTime();
         try {
             int queryTimeout = session.getQueryTimeout();// MILLISECONDS
             List<Future<Integer>> invokeAll;
@@ -119,6 +182,7 @@ public abstract class ExecutionFramework implements Executor {
             for (Future<Integer> future : invokeAll) {
                 affectRows += future.get();
             }
+            profile(worker, start, affectRows);
             return affectRows;
         } catch (InterruptedException e) {
             throw DbException.convert(e);
@@ -131,6 +195,7 @@ public abstract class ExecutionFramework implements Executor {
 
     protected Cursor invokeQueryWorker(List<QueryWorker> worker) {
         session.checkCanceled();
+        long start = System.nanoTime();
         try {
             int queryTimeout = session.getQueryTimeout();// MILLISECONDS
             List<Future<Cursor>> invokeAll;
@@ -144,9 +209,12 @@ public abstract class ExecutionFramework implements Executor {
                 for (Future<Cursor> future : invokeAll) {
                     cursor.addCursor(future.get());
                 }
+                profile(worker, start, -1);
                 return cursor;
             } else {
-                return invokeAll.iterator().next().get();
+                Cursor cursor = invokeAll.iterator().next().get();
+                profile(worker, start, -1);
+                return cursor;
             }
         } catch (InterruptedException e) {
             throw DbException.convert(e);
@@ -157,6 +225,19 @@ public abstract class ExecutionFramework implements Executor {
         }
     }
 
+    /**
+     * Record the wall time of the workers if the statement is analyzed, the
+     * queries are measured until all shards returned their result sets.
+     */
+    private void profile(List<? extends Worker> workers, long start, int rows) {
+        ExecutionProfile profile = session.getExecutionProfile();
+        if (profile != null) {
+            String name = workers.size() == 1 ? "SINGLE_EXECUTION"
+                    : "MULTIPLE_EXECUTION " + workers.size() + " workers";
+            profile.addOperator(name, System.nanoTime() - start, rows, -1);
+        }
+    }
+
     protected String explainForWorker(List<? extends Worker> workers) {
         StringBuilder explain = new StringBuilder();
         if (workers.size() == 1) {
@@ -180,26 +261,242 @@ public abstract class ExecutionFramework implements Executor {
         return isPrepared;
     }
 
-    protected Map<ObjectNode, List<Row>> batchForRoutingNode(TableMate table, List<Row> rows) {
+    /**
+     * Get the partition hints of the current statement.
+     *
+     * @return the hints, or null if the statement has no ddal hint
+     */
+    protected PartitionHints getPartitionHints() {
+        Command c = session.getCurrentCommand();
+        return c == null ? null : c.getPartitionHints();
+    }
+
+    /**
+     * Route the sharded table by the conditions, the routing is skipped when
+     * the statement is pinned to some table nodes by the partition hints.
+     */
+    protected RoutingResult routeShardedTable(TableMate table, ConditionExtractor extractor) {
+        Object event = FlightRecorderEvents.begin(FlightRecorderEvents.ROUTE);
+        RoutingResult result = doRouteShardedTable(table, extractor);
+        FlightRecorderEvents.commit(event, session, table.getName(), result.tableNodeCount());
+        return result;
+    }
+
+    private RoutingResult doRouteShardedTable(TableMate table, ConditionExtractor extractor) {
+        PartitionHints hints = getPartitionHints();
+        if (hints != null && hints.isPinned()) {
+            return routingHandler.doRoute(table, hints);
+        }
+        RoutingResult result = routingHandler.doRoute(table, extractor.getStart(), extractor.getEnd(),
+                extractor.getInColumns());
+        if (result.isMultipleNode()) {
+            for (GlobalIndex index : table.getGlobalIndexes()) {
+                Set<Value> values = getLookupValues(index.getColumn(), extractor);
+                if (values != null) {
+                    return routeByGlobalIndex(index, values, result);
+                }
+            }
+            result = skipIdleNodes(table, result);
+        }
+        return result;
+    }
+
+    /**
+     * Get the target node of the bucket migration of the table the writes on
+     * the nodes must be mirrored to.
+     *
+     * @param table the table
+     * @param nodes the nodes the statement is executed on
+     * @return the target node, or null if the writes need no mirroring
+     */
+    protected ObjectNode getMirrorNode(TableMate table, ObjectNode[] nodes) {
+        HashBucketPartitioner partitioner = getHashBucketPartitioner(table);
+        BucketMigration m = partitioner == null ? null : partitioner.getMigration();
+        if (m == null || !m.isMirroring()) {
+            return null;
+        }
+        ObjectNode[] tableNodes = partitioner.getTableNodes();
+        ObjectNode source = tableNodes[m.getSourceNode()];
+        for (ObjectNode node : nodes) {
+            if (node.equals(source)) {
+                return tableNodes[m.getTargetNode()];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Batch the rows in the buckets being moved to the target node of the
+     * bucket migration of the table.
+     *
+     * @param table the table
+     * @param rows the rows to insert
+     * @return the rows to insert into the target node, or an empty map
+     */
+    protected Map<ObjectNode, List<Row>> batchForMirrorNode(TableMate table, List<Row> rows) {
         Map<ObjectNode, List<Row>> batches = New.hashMap();
+        HashBucketPartitioner partitioner = getHashBucketPartitioner(table);
+        BucketMigration m = partitioner == null ? null : partitioner.getMigration();
+        if (m == null || !m.isMirroring()) {
+            return batches;
+        }
+        int ruleColumn = table.getRuleColumns()[0].getColumnId();
+        List<Row> batch = New.arrayList(10);
         for (Row row : rows) {
-            RoutingResult result;
-            if (table.getTableRule().getType() == TableRule.GLOBAL_NODE_TABLE) {
-                GlobalTableRule rule = (GlobalTableRule) table.getTableRule();
-                result = rule.getBroadcastsRoutingResult();
-            } else {
-                result = routingHandler.doRoute(table, row);
+            Value v = row.getValue(ruleColumn);
+            if (v != null && v != ValueNull.INSTANCE && m.contains(partitioner.bucket(v))) {
+                batch.add(row);
             }
-            ObjectNode[] selectNodes = result.getSelectNodes();
-            for (ObjectNode objectNode : selectNodes) {
-                List<Row> batch = batches.get(objectNode);
-                if (batch == null) {
-                    batch = New.arrayList(10);
-                    batches.put(objectNode, batch);
+        }
+        if (!batch.isEmpty()) {
+            batches.put(partitioner.getTableNodes()[m.getTargetNode()], batch);
+        }
+        return batches;
+    }
+
+    /**
+     * Skip the table nodes which own no bucket, they only hold the partial
+     * copy of a bucket migration.
+     */
+    private RoutingResult skipIdleNodes(TableMate table, RoutingResult result) {
+        HashBucketPartitioner partitioner = getHashBucketPartitioner(table);
+        if (partitioner == null || !partitioner.hasIdleNodes()) {
+            return result;
+        }
+        ObjectNode[] tableNodes = partitioner.getTableNodes();
+        List<ObjectNode> nodes = New.arrayList(tableNodes.length);
+        for (ObjectNode node : result.getSelectNodes()) {
+            boolean idle = false;
+            for (int i = 0; i < tableNodes.length; i++) {
+                if (tableNodes[i].equals(node)) {
+                    idle = partitioner.isIdle(i);
+                    break;
                 }
-                batch.add(row);
             }
+            if (!idle) {
+                nodes.add(node);
+            }
+        }
+        return nodes.size() == result.getSelectNodes().length ? result : RoutingResult.fixedResult(nodes);
+    }
+
+    private static HashBucketPartitioner getHashBucketPartitioner(Table table) {
+        if (!(table instanceof TableMate)) {
+            return null;
+        }
+        TableRule rule = ((TableMate) table).getTableRule();
+        if (rule.getType() != TableRule.SHARDED_NODE_TABLE) {
+            return null;
+        }
+        Object partitioner = ((ShardedTableRule) rule).getPartitioner();
+        return partitioner instanceof HashBucketPartitioner ? (HashBucketPartitioner) partitioner : null;
+    }
+
+    /**
+     * Create the workers to insert or remove the entries of the global index.
+     *
+     * @param index the global index
+     * @param indexRows the rows of the index table
+     * @param remove true to remove the entries
+     */
+    protected List<UpdateWorker> createIndexWorkers(GlobalIndex index, List<Row> indexRows, boolean remove) {
+        Map<ObjectNode, List<Row>> batches = batchForRoutingNode(index.getIndexTable(), indexRows);
+        batches.putAll(batchForMirrorNode(index.getIndexTable(), indexRows));
+        List<UpdateWorker> workers = New.arrayList(batches.size());
+        for (Map.Entry<ObjectNode, List<Row>> item : batches.entrySet()) {
+            Row[] rows = item.getValue().toArray(new Row[item.getValue().size()]);
+            workers.add(queryHandlerFactory.createUpdateWorker(session, index, item.getKey(), remove, rows));
+        }
+        return workers;
+    }
+
+    /**
+     * Read the index entries of the table rows which match the condition.
+     *
+     * @param index the global index
+     * @param nodes the table nodes to read
+     * @param condition the condition of the statement
+     * @return the values in the order of {@link GlobalIndex#getColumns()}
+     */
+    protected List<Value[]> readIndexEntries(GlobalIndex index, ObjectNode[] nodes, Expression condition) {
+        List<QueryWorker> workers = New.arrayList(nodes.length);
+        for (ObjectNode node : nodes) {
+            workers.add(queryHandlerFactory.createQueryWorker(session, index, node, condition));
+        }
+        List<Value[]> entries = New.arrayList(10);
+        int len = index.getIndexColumns().length;
+        Cursor cursor = invokeQueryWorker(workers);
+        while (cursor.next()) {
+            Row row = cursor.get();
+            Value[] values = new Value[len];
+            for (int i = 0; i < len; i++) {
+                values[i] = row.getValue(i);
+            }
+            entries.add(values);
+        }
+        return entries;
+    }
+
+    private RoutingResult routeByGlobalIndex(GlobalIndex index, Set<Value> values, RoutingResult scanning) {
+        int indexColumn = index.getIndexColumns()[0].getColumnId();
+        List<QueryWorker> workers = New.arrayList(values.size());
+        for (Value v : values) {
+            Row lookup = index.createLookupRow(v);
+            ObjectNode indexNode = routingHandler.doRouteSingle(index.getIndexTable(), lookup);
+            workers.add(queryHandlerFactory.createQueryWorker(session, index, indexNode, lookup.getValue(indexColumn)));
+        }
+        Set<ObjectNode> nodes = New.linkedHashSet();
+        int keyCount = index.getIndexColumns().length - 1;
+        Cursor cursor = invokeQueryWorker(workers);
+        while (cursor.next()) {
+            Row row = cursor.get();
+            Value[] keys = new Value[keyCount];
+            for (int i = 0; i < keyCount; i++) {
+                keys[i] = row.getValue(i);
+            }
+            nodes.add(routingHandler.doRouteSingle(index.getTable(), index.createKeyRow(keys)));
+        }
+        if (nodes.isEmpty()) {
+            // no row has the index value, any node gives the empty result
+            return RoutingResult.fixedResult(scanning.getSelectNodes()[0]);
+        }
+        return RoutingResult.fixedResult(New.arrayList(nodes));
+    }
+
+    private static Set<Value> getLookupValues(Column column, ConditionExtractor extractor) {
+        int index = column.getColumnId();
+        SearchRow start = extractor.getStart(), end = extractor.getEnd();
+        Value v = start == null ? null : start.getValue(index);
+        if (v != null && v != ValueNull.INSTANCE && end != null && v.equals(end.getValue(index))) {
+            Set<Value> values = New.hashSet();
+            values.add(v);
+            return values;
+        }
+        Set<Value> values = extractor.getInColumns().get(column);
+        return values == null || values.isEmpty() ? null : values;
+    }
+
+    protected Map<ObjectNode, List<Row>> batchForRoutingNode(TableMate table, List<Row> rows) {
+        Map<ObjectNode, List<Row>> batches = New.hashMap();
+        if (table.getTableRule().getType() == TableRule.GLOBAL_NODE_TABLE) {
+            GlobalTableRule rule = (GlobalTableRule) table.getTableRule();
+            RoutingResult result = rule.getBroadcastsRoutingResult();
+            for (ObjectNode objectNode : result.getSelectNodes()) {
+                batches.put(objectNode, rows);
+            }
+            return batches;
+        }
+        Object event = FlightRecorderEvents.begin(FlightRecorderEvents.ROUTE);
+        for (Row row : rows) {
+            ObjectNode objectNode = routingHandler.doRouteSingle(table, row);
+            List<Row> batch = batches.get(objectNode);
+            if (batch == null) {
+                batch = New.arrayList(10);
+                batches.put(objectNode, batch);
+            }
+            batch.add(row);
         }
+        FlightRecorderEvents.commit(event, session, table.getName(), batches.size());
         return batches;
     }
 
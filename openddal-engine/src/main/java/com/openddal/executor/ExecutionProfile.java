@@ -0,0 +1,177 @@
+/*
+ * Copyright 2014-2016 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.openddal.executor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import com.openddal.util.New;
+import com.openddal.util.StringUtils;
+
+/**
+ * The runtime statistics of one statement, collected while EXPLAIN ANALYZE
+ * executes it: the operators of the local execution and the workers of the
+ * shards. The workers record from the query threads.
+ *
+ * @author jorgie.li
+ */
+public class ExecutionProfile {
+
+    private final List<Operator> operators = Collections.synchronizedList(New.<Operator>arrayList());
+    private final List<WorkerProfile> workers = Collections.synchronizedList(New.<WorkerProfile>arrayList());
+
+    /**
+     * Record an operator of the local execution.
+     *
+     * @param name the operator name, for example SORT
+     * @param nanos the wall time in nanoseconds
+     * @param rows the rows produced, -1 if unknown
+     * @param memory the memory of the result in bytes, -1 if none
+     */
+    public void addOperator(String name, long nanos, long rows, long memory) {
+        operators.add(new Operator(name, nanos, rows, memory));
+    }
+
+    /**
+     * Add a worker, the worker records its times in the returned profile.
+     *
+     * @param explain the explanation of the worker
+     * @return the profile of the worker
+     */
+    public WorkerProfile addWorker(String explain) {
+        WorkerProfile w = new WorkerProfile(explain);
+        workers.add(w);
+        return w;
+    }
+
+    /**
+     * @return the statistics, one operator or worker per line
+     */
+    public String getReport() {
+        StringBuilder buff = new StringBuilder("ANALYZE");
+        for (Operator o : copy(operators)) {
+            buff.append('\n').append(StringUtils.indent(o.toString(), 4, false));
+        }
+        for (WorkerProfile w : copy(workers)) {
+            buff.append('\n').append(StringUtils.indent(w.toString(), 4, false));
+        }
+        return buff.toString();
+    }
+
+    private static <T> List<T> copy(List<T> list) {
+        synchronized (list) {
+            return new ArrayList<T>(list);
+        }
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ENGLISH, "%.3f ms", nanos / 1000000d);
+    }
+
+    /**
+     * An operator of the local execution.
+     */
+    private static final class Operator {
+        final String name;
+        final long nanos;
+        final long rows;
+        final long memory;
+
+        Operator(String name, long nanos, long rows, long memory) {
+            this.name = name;
+            this.nanos = nanos;
+            this.rows = rows;
+            this.memory = memory;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder buff = new StringBuilder(name).append(": ").append(millis(nanos));
+            if (rows >= 0) {
+                buff.append(", ").append(rows).append(" rows");
+            }
+            if (memory >= 0) {
+                buff.append(", ").append(memory).append(" bytes");
+            }
+            return buff.toString();
+        }
+    }
+
+    /**
+     * The times of a shard worker.
+     */
+    public static final class WorkerProfile {
+        private final String explain;
+        private volatile long borrowNanos;
+        private volatile long executeNanos;
+        private volatile long firstRowNanos = -1;
+        private volatile long fetchNanos = -1;
+        private volatile long rows = -1;
+        private volatile boolean failed;
+
+        WorkerProfile(String explain) {
+            this.explain = explain;
+        }
+
+        public void borrowed(long nanos) {
+            this.borrowNanos = nanos;
+        }
+
+        public void executed(long nanos) {
+            this.executeNanos = nanos;
+        }
+
+        public void firstRow(long nanos) {
+            this.firstRowNanos = nanos;
+        }
+
+        public void fetched(long nanos, long rows) {
+            this.fetchNanos = nanos;
+            this.rows = rows;
+        }
+
+        public void updated(long rows) {
+            this.rows = rows;
+        }
+
+        public void failed() {
+            this.failed = true;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder buff = new StringBuilder(explain);
+            buff.append("\n    (wait ").append(millis(borrowNanos));
+            buff.append(", execute ").append(millis(executeNanos));
+            if (firstRowNanos >= 0) {
+                buff.append(", first row ").append(millis(firstRowNanos));
+            }
+            if (fetchNanos >= 0) {
+                buff.append(", fetch ").append(millis(fetchNanos));
+            }
+            if (rows >= 0) {
+                buff.append(", ").append(rows).append(" rows");
+            }
+            if (failed) {
+                buff.append(", failed");
+            }
+            return buff.append(')').toString();
+        }
+    }
+
+}
@@ -146,8 +146,7 @@ public class DirectLookupCursor extends ExecutionFramework implements Cursor {
                 }
                 TableMate table = getTableMate(f);
                 ConditionExtractor extractor = new ConditionExtractor(f);
-                RoutingResult r = routingHandler.doRoute(table, extractor.getStart(), extractor.getEnd(),
-                        extractor.getInColumns());
+                RoutingResult r = routeShardedTable(table, extractor);
                 result = (result == null || r.compareTo(result) < 0) ? r : result;
             }
         } else if (!fixeds.isEmpty()) {
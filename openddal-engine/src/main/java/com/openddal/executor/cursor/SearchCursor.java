@@ -159,8 +159,7 @@ public class SearchCursor extends ExecutionFramework implements Cursor {
             result = gt.getRandomRoutingResult();
             break;
         case TableRule.SHARDED_NODE_TABLE:
-            result = routingHandler.doRoute(tableMate, extractor.getStart(), extractor.getStart(),
-                    extractor.getInColumns());
+            result = routeShardedTable(tableMate, extractor);
             break;
         default:
             throw DbException.throwInternalError("table type:" + tableRule.getType());
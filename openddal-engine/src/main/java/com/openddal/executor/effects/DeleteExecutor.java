@@ -19,13 +19,18 @@ import java.util.List;
 
 import com.openddal.command.dml.Delete;
 import com.openddal.dbobject.index.ConditionExtractor;
+import com.openddal.dbobject.index.GlobalIndex;
 import com.openddal.dbobject.table.TableFilter;
+import com.openddal.dbobject.table.Table;
 import com.openddal.dbobject.table.TableMate;
 import com.openddal.executor.ExecutionFramework;
 import com.openddal.executor.works.UpdateWorker;
+import com.openddal.message.DbException;
+import com.openddal.result.Row;
 import com.openddal.route.rule.ObjectNode;
 import com.openddal.route.rule.RoutingResult;
 import com.openddal.util.New;
+import com.openddal.value.Value;
 
 /**
  * @author jorgie.li
@@ -33,6 +38,9 @@ import com.openddal.util.New;
 public class DeleteExecutor extends ExecutionFramework {
     
     private List<UpdateWorker> workers;
+    private List<UpdateWorker> mirrorWorkers;
+    private List<GlobalIndex> indexes;
+    private ObjectNode[] selectNodes;
     private boolean alwaysFalse;
     private Delete prepared;
 
@@ -43,6 +51,11 @@ public class DeleteExecutor extends ExecutionFramework {
         this.prepared = prepared;
     }
 
+    @Override
+    protected Table getUpdateTable() {
+        return prepared.getTableFilter().getTable();
+    }
+
     @Override
     public void doPrepare() {
         TableFilter tableFilter = prepared.getTableFilter();
@@ -50,14 +63,23 @@ public class DeleteExecutor extends ExecutionFramework {
         ConditionExtractor extractor = new ConditionExtractor(tableFilter);
         alwaysFalse = extractor.isAlwaysFalse();
         if(!alwaysFalse) {
-            RoutingResult rr = routingHandler.doRoute(table, 
-                    extractor.getStart(),extractor.getEnd(), extractor.getInColumns());
-            ObjectNode[] selectNodes = rr.getSelectNodes();
+            RoutingResult rr = routeShardedTable(table, extractor);
+            selectNodes = rr.getSelectNodes();
+            indexes = table.getGlobalIndexes();
+            if (!indexes.isEmpty() && prepared.getLimitExpr() != null) {
+                throw DbException.getUnsupportedException(
+                        "DELETE with LIMIT on the table " + table.getName() + " with global index");
+            }
             workers = New.arrayList(selectNodes.length);
             for (ObjectNode objectNode : selectNodes) {
                 UpdateWorker worker = queryHandlerFactory.createUpdateWorker(prepared, objectNode);
                 workers.add(worker);
             }
+            mirrorWorkers = New.arrayList(1);
+            ObjectNode mirrorNode = getMirrorNode(table, selectNodes);
+            if (mirrorNode != null) {
+                mirrorWorkers.add(queryHandlerFactory.createUpdateWorker(prepared, mirrorNode));
+            }
         }
         
     }
@@ -69,7 +91,35 @@ public class DeleteExecutor extends ExecutionFramework {
         if(this.alwaysFalse) {
             return 0;
         }
-        return invokeUpdateWorker(workers);
+        if (indexes.isEmpty()) {
+            return executeDelete();
+        }
+        List<UpdateWorker> removes = New.arrayList();
+        for (GlobalIndex index : indexes) {
+            List<Row> indexRows = New.arrayList();
+            for (Value[] entry : readIndexEntries(index, selectNodes, prepared.getCondition())) {
+                Row indexRow = index.createIndexRow(entry);
+                if (indexRow != null) {
+                    indexRows.add(indexRow);
+                }
+            }
+            if (!indexRows.isEmpty()) {
+                removes.addAll(createIndexWorkers(index, indexRows, true));
+            }
+        }
+        int affectRows = executeDelete();
+        if (!removes.isEmpty()) {
+            invokeUpdateWorker(removes);
+        }
+        return affectRows;
+    }
+
+    private int executeDelete() {
+        int affectRows = invokeUpdateWorker(workers);
+        if (!mirrorWorkers.isEmpty()) {
+            invokeUpdateWorker(mirrorWorkers);
+        }
+        return affectRows;
     }
 
 
@@ -23,7 +23,9 @@ import com.openddal.command.Prepared;
 import com.openddal.command.dml.Insert;
 import com.openddal.command.dml.Query;
 import com.openddal.command.expression.Expression;
+import com.openddal.dbobject.index.GlobalIndex;
 import com.openddal.dbobject.table.Column;
+import com.openddal.dbobject.table.Table;
 import com.openddal.dbobject.table.TableMate;
 import com.openddal.executor.ExecutionFramework;
 import com.openddal.executor.works.UpdateWorker;
@@ -47,6 +49,8 @@ public class InsertExecutor extends ExecutionFramework implements ResultTarget {
     private int affectRows;
     private List<Row> newRows = New.arrayList(10);
     private List<UpdateWorker> workers;
+    private List<UpdateWorker> indexWorkers;
+    private List<UpdateWorker> mirrorWorkers;
     private Insert prepared;
 
     /**
@@ -56,6 +60,11 @@ public class InsertExecutor extends ExecutionFramework implements ResultTarget {
         this.prepared = prepared;
     }
 
+    @Override
+    protected Table getUpdateTable() {
+        return prepared.getTable();
+    }
+
     @Override
     protected void doPrepare() {
         TableMate table = toTableMate(prepared.getTable());
@@ -71,6 +80,10 @@ public class InsertExecutor extends ExecutionFramework implements ResultTarget {
                     throw DbException.get(ErrorCode.SHARDING_COLUMNS_CANNOT_BE_MODIFIED, column.getName());
                 }
             }
+            if (!table.getGlobalIndexes().isEmpty()) {
+                throw DbException.getUnsupportedException(
+                        "ON DUPLICATE KEY UPDATE on the table " + table.getName() + " with global index");
+            }
         }
         int listSize = list.size();
         if (listSize > 0) {
@@ -107,7 +120,7 @@ public class InsertExecutor extends ExecutionFramework implements ResultTarget {
     @Override
     public int doUpdate() {
         if (workers != null) {
-            return invokeUpdateWorker(workers);
+            return executeInsert();
         } else {
             Query query = prepared.getQuery();
             if (prepared.isInsertFromSelect()) {
@@ -135,6 +148,41 @@ public class InsertExecutor extends ExecutionFramework implements ResultTarget {
             UpdateWorker worker = queryHandlerFactory.createUpdateWorker(prepared, item.getKey(), values);
             workers.add(worker);
         }
+        Map<ObjectNode, List<Row>> mirrors = batchForMirrorNode(table, rows);
+        mirrorWorkers = New.arrayList(mirrors.size());
+        for (Map.Entry<ObjectNode, List<Row>> item : mirrors.entrySet()) {
+            Row[] values = item.getValue().toArray(new Row[item.getValue().size()]);
+            mirrorWorkers.add(queryHandlerFactory.createUpdateWorker(prepared, item.getKey(), values));
+        }
+        indexWorkers = New.arrayList();
+        for (GlobalIndex index : table.getGlobalIndexes()) {
+            List<Row> indexRows = New.arrayList(rows.size());
+            for (Row row : rows) {
+                Row indexRow = index.createIndexRow(row);
+                if (indexRow != null) {
+                    indexRows.add(indexRow);
+                }
+            }
+            if (!indexRows.isEmpty()) {
+                indexWorkers.addAll(createIndexWorkers(index, indexRows, false));
+            }
+        }
+    }
+
+    /**
+     * The index entries are inserted first, an entry without the table row
+     * only costs a needless node query while a missing entry loses the row.
+     * The rows mirrored to a bucket migration target are not counted.
+     */
+    private int executeInsert() {
+        if (!indexWorkers.isEmpty()) {
+            invokeUpdateWorker(indexWorkers);
+        }
+        int rows = invokeUpdateWorker(workers);
+        if (!mirrorWorkers.isEmpty()) {
+            invokeUpdateWorker(mirrorWorkers);
+        }
+        return rows;
     }
 
     @Override
@@ -176,7 +224,7 @@ public class InsertExecutor extends ExecutionFramework implements ResultTarget {
                 return;
             }
             prepareInsert(table, newRows);
-            affectRows += invokeUpdateWorker(workers);
+            affectRows += executeInsert();
         } finally {
             newRows.clear();
         }
@@ -187,7 +235,9 @@ public class InsertExecutor extends ExecutionFramework implements ResultTarget {
     protected String doExplain() {
         TableMate table = toTableMate(prepared.getTable());
         if (workers != null) {
-            return explainForWorker(workers);
+            List<UpdateWorker> all = New.arrayList(indexWorkers);
+            all.addAll(workers);
+            return explainForWorker(all);
         } else {
             Query query = prepared.getQuery();
             String subPlan = query.explainPlan();
@@ -24,6 +24,7 @@ import com.openddal.command.dml.Merge;
 import com.openddal.command.dml.Query;
 import com.openddal.command.expression.Expression;
 import com.openddal.dbobject.table.Column;
+import com.openddal.dbobject.table.Table;
 import com.openddal.dbobject.table.TableMate;
 import com.openddal.executor.ExecutionFramework;
 import com.openddal.executor.works.UpdateWorker;
@@ -46,6 +47,7 @@ public class MergeExecutor extends ExecutionFramework{
     private int affectRows;
     private List<Row> mergeRows = New.arrayList(10);
     private List<UpdateWorker> workers;
+    private List<UpdateWorker> mirrorWorkers;
     private Merge prepared;
 
     /**
@@ -55,10 +57,20 @@ public class MergeExecutor extends ExecutionFramework{
         this.prepared = prepared;
     }
 
+    @Override
+    protected Table getUpdateTable() {
+        return prepared.getTable();
+    }
+
     @Override
     protected void doPrepare() {
         TableMate table = toTableMate(prepared.getTable());
         table.check();
+        if (!table.getGlobalIndexes().isEmpty()) {
+            // the replaced rows, and so their stale index entries, are unknown
+            throw DbException.getUnsupportedException(
+                    "MERGE on the table " + table.getName() + " with global index");
+        }
         prepared.setCurrentRowNumber(0);
         ArrayList<Expression[]> list = prepared.getList();
         Column[] columns = prepared.getColumns();
@@ -94,7 +106,7 @@ public class MergeExecutor extends ExecutionFramework{
     @Override
     public int doUpdate() {
         if (workers != null) {
-            return invokeUpdateWorker(workers);
+            return executeMerge();
         } else {
             rowNumber = 0;
             affectRows = 0;
@@ -135,6 +147,20 @@ public class MergeExecutor extends ExecutionFramework{
             UpdateWorker worker = queryHandlerFactory.createUpdateWorker(prepared, item.getKey(), values);
             workers.add(worker);
         }
+        Map<ObjectNode, List<Row>> mirrors = batchForMirrorNode(table, rows);
+        mirrorWorkers = New.arrayList(mirrors.size());
+        for (Map.Entry<ObjectNode, List<Row>> item : mirrors.entrySet()) {
+            Row[] values = item.getValue().toArray(new Row[item.getValue().size()]);
+            mirrorWorkers.add(queryHandlerFactory.createUpdateWorker(prepared, item.getKey(), values));
+        }
+    }
+
+    private int executeMerge() {
+        int rows = invokeUpdateWorker(workers);
+        if (!mirrorWorkers.isEmpty()) {
+            invokeUpdateWorker(mirrorWorkers);
+        }
+        return rows;
     }
 
 
@@ -152,7 +178,7 @@ public class MergeExecutor extends ExecutionFramework{
                 return;
             }
             prepareMerge(table, mergeRows);
-            affectRows += invokeUpdateWorker(workers);
+            affectRows += executeMerge();
         } finally {
             mergeRows.clear();
         }
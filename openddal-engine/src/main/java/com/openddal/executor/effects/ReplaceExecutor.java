@@ -24,6 +24,7 @@ import com.openddal.command.dml.Query;
 import com.openddal.command.dml.Replace;
 import com.openddal.command.expression.Expression;
 import com.openddal.dbobject.table.Column;
+import com.openddal.dbobject.table.Table;
 import com.openddal.dbobject.table.TableMate;
 import com.openddal.executor.ExecutionFramework;
 import com.openddal.executor.works.UpdateWorker;
@@ -45,6 +46,7 @@ public class ReplaceExecutor extends ExecutionFramework {
     private int affectRows;
     private List<Row> replaceRows = New.arrayList(10);
     private List<UpdateWorker> workers;
+    private List<UpdateWorker> mirrorWorkers;
     private Replace prepared;
 
     /**
@@ -54,10 +56,20 @@ public class ReplaceExecutor extends ExecutionFramework {
         this.prepared = prepared;
     }
 
+    @Override
+    protected Table getUpdateTable() {
+        return prepared.getTable();
+    }
+
     @Override
     protected void doPrepare() {
         TableMate table = toTableMate(prepared.getTable());
         table.check();
+        if (!table.getGlobalIndexes().isEmpty()) {
+            // the replaced rows, and so their stale index entries, are unknown
+            throw DbException.getUnsupportedException(
+                    "REPLACE on the table " + table.getName() + " with global index");
+        }
         prepared.setCurrentRowNumber(0);
         ArrayList<Expression[]> list = prepared.getList();
         Column[] columns = prepared.getColumns();
@@ -93,7 +105,7 @@ public class ReplaceExecutor extends ExecutionFramework {
     @Override
     public int doUpdate() {
         if (workers != null) {
-            return invokeUpdateWorker(workers);
+            return executeReplace();
         } else {
             rowNumber = 0;
             affectRows = 0;
@@ -134,6 +146,20 @@ public class ReplaceExecutor extends ExecutionFramework {
             UpdateWorker worker = queryHandlerFactory.createUpdateWorker(prepared, item.getKey(), values);
             workers.add(worker);
         }
+        Map<ObjectNode, List<Row>> mirrors = batchForMirrorNode(table, rows);
+        mirrorWorkers = New.arrayList(mirrors.size());
+        for (Map.Entry<ObjectNode, List<Row>> item : mirrors.entrySet()) {
+            Row[] values = item.getValue().toArray(new Row[item.getValue().size()]);
+            mirrorWorkers.add(queryHandlerFactory.createUpdateWorker(prepared, item.getKey(), values));
+        }
+    }
+
+    private int executeReplace() {
+        int rows = invokeUpdateWorker(workers);
+        if (!mirrorWorkers.isEmpty()) {
+            invokeUpdateWorker(mirrorWorkers);
+        }
+        return rows;
     }
 
 
@@ -151,7 +177,7 @@ public class ReplaceExecutor extends ExecutionFramework {
                 return;
             }
             prepareReplace(table, replaceRows);
-            affectRows += invokeUpdateWorker(workers);
+            affectRows += executeReplace();
         } finally {
             replaceRows.clear();
         }
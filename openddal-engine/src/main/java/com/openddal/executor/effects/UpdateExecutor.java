@@ -21,8 +21,10 @@ import java.util.Map;
 import com.openddal.command.dml.Update;
 import com.openddal.command.expression.Expression;
 import com.openddal.dbobject.index.ConditionExtractor;
+import com.openddal.dbobject.index.GlobalIndex;
 import com.openddal.dbobject.table.Column;
 import com.openddal.dbobject.table.TableFilter;
+import com.openddal.dbobject.table.Table;
 import com.openddal.dbobject.table.TableMate;
 import com.openddal.executor.ExecutionFramework;
 import com.openddal.executor.works.UpdateWorker;
@@ -40,6 +42,10 @@ import com.openddal.value.Value;
 public class UpdateExecutor extends ExecutionFramework {
 
     private List<UpdateWorker> workers;
+    private List<UpdateWorker> mirrorWorkers;
+    private List<GlobalIndex> indexes;
+    private ObjectNode[] selectNodes;
+    private Row updateRow;
     private boolean alwaysFalse;
     private Update prepared;
 
@@ -51,6 +57,11 @@ public class UpdateExecutor extends ExecutionFramework {
     }
 
     
+    @Override
+    protected Table getUpdateTable() {
+        return prepared.getTableFilter().getTable();
+    }
+
     @Override
     protected void doPrepare() {
         TableFilter tableFilter = prepared.getTableFilter();
@@ -64,7 +75,7 @@ public class UpdateExecutor extends ExecutionFramework {
                 throw DbException.get(ErrorCode.SHARDING_COLUMNS_CANNOT_BE_MODIFIED, column.getName());
             }
         }
-        Row updateRow = table.getTemplateRow();
+        updateRow = table.getTemplateRow();
         for (int i = 0, size = columns.size(); i < size; i++) {
             Column c = columns.get(i);
             Expression e = valueMap.get(c);
@@ -84,14 +95,28 @@ public class UpdateExecutor extends ExecutionFramework {
         ConditionExtractor extractor = new ConditionExtractor(tableFilter);
         alwaysFalse = extractor.isAlwaysFalse();
         if(!alwaysFalse) {
-            RoutingResult rr = routingHandler.doRoute(table, 
-                    extractor.getStart(),extractor.getEnd(), extractor.getInColumns());
-            ObjectNode[] selectNodes = rr.getSelectNodes();
+            RoutingResult rr = routeShardedTable(table, extractor);
+            selectNodes = rr.getSelectNodes();
+            indexes = New.arrayList();
+            for (GlobalIndex index : table.getGlobalIndexes()) {
+                if (valueMap.get(index.getColumn()) != null) {
+                    indexes.add(index);
+                }
+            }
+            if (!indexes.isEmpty() && prepared.getLimitExpr() != null) {
+                throw DbException.getUnsupportedException(
+                        "UPDATE with LIMIT of the global index column on the table " + table.getName());
+            }
             workers = New.arrayList(selectNodes.length);
             for (ObjectNode objectNode : selectNodes) {
                 UpdateWorker worker = queryHandlerFactory.createUpdateWorker(prepared, objectNode, updateRow);
                 workers.add(worker);
             }
+            mirrorWorkers = New.arrayList(1);
+            ObjectNode mirrorNode = getMirrorNode(table, selectNodes);
+            if (mirrorNode != null) {
+                mirrorWorkers.add(queryHandlerFactory.createUpdateWorker(prepared, mirrorNode, updateRow));
+            }
         }
         
     }
@@ -101,7 +126,55 @@ public class UpdateExecutor extends ExecutionFramework {
         if(alwaysFalse) {
            return 0; 
         }
-        return invokeUpdateWorker(workers);
+        if (indexes.isEmpty()) {
+            return executeUpdate();
+        }
+        List<UpdateWorker> inserts = New.arrayList();
+        List<UpdateWorker> removes = New.arrayList();
+        for (GlobalIndex index : indexes) {
+            Value newValue = updateRow.getValue(index.getColumn().getColumnId());
+            List<Row> newRows = New.arrayList();
+            List<Row> oldRows = New.arrayList();
+            for (Value[] entry : readIndexEntries(index, selectNodes, prepared.getCondition())) {
+                Row oldRow = index.createIndexRow(entry);
+                entry[0] = newValue;
+                Row newRow = index.createIndexRow(entry);
+                if (oldRow != null && newRow != null && oldRow.getValue(index.getIndexColumns()[0].getColumnId())
+                        .equals(newRow.getValue(index.getIndexColumns()[0].getColumnId()))) {
+                    continue;
+                }
+                if (oldRow != null) {
+                    oldRows.add(oldRow);
+                }
+                if (newRow != null) {
+                    newRows.add(newRow);
+                }
+            }
+            if (!newRows.isEmpty()) {
+                inserts.addAll(createIndexWorkers(index, newRows, false));
+            }
+            if (!oldRows.isEmpty()) {
+                removes.addAll(createIndexWorkers(index, oldRows, true));
+            }
+        }
+        // add the new entries before and remove the stale ones after the
+        // rows are updated, a lookup never misses a row in the meantime
+        if (!inserts.isEmpty()) {
+            invokeUpdateWorker(inserts);
+        }
+        int affectRows = executeUpdate();
+        if (!removes.isEmpty()) {
+            invokeUpdateWorker(removes);
+        }
+        return affectRows;
+    }
+
+    private int executeUpdate() {
+        int affectRows = invokeUpdateWorker(workers);
+        if (!mirrorWorkers.isEmpty()) {
+            invokeUpdateWorker(mirrorWorkers);
+        }
+        return affectRows;
     }
 
 
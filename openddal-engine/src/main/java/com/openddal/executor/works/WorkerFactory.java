@@ -34,10 +34,13 @@ import com.openddal.command.dml.Replace;
 import com.openddal.command.dml.Select;
 import com.openddal.command.dml.Update;
 import com.openddal.command.expression.Expression;
+import com.openddal.dbobject.index.GlobalIndex;
 import com.openddal.dbobject.table.Column;
 import com.openddal.dbobject.table.TableFilter;
+import com.openddal.engine.Session;
 import com.openddal.result.Row;
 import com.openddal.route.rule.ObjectNode;
+import com.openddal.value.Value;
 
 /**
  * @author jorgie.li
@@ -82,5 +85,12 @@ public interface WorkerFactory {
     UpdateWorker createUpdateWorker(CreateIndex createIndex, ObjectNode indexNode, ObjectNode tableNode);
 
     UpdateWorker createUpdateWorker(DropIndex dropIndex, ObjectNode indexNode, ObjectNode tableNode);
-    
+
+    QueryWorker createQueryWorker(Session session, GlobalIndex index, ObjectNode indexNode, Value value);
+
+    QueryWorker createQueryWorker(Session session, GlobalIndex index, ObjectNode tableNode, Expression condition);
+
+    UpdateWorker createUpdateWorker(Session session, GlobalIndex index, ObjectNode indexNode, boolean remove,
+            Row... rows);
+
 }
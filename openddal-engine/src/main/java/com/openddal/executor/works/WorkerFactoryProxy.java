@@ -20,11 +20,13 @@ import com.openddal.command.dml.Replace;
 import com.openddal.command.dml.Select;
 import com.openddal.command.dml.Update;
 import com.openddal.command.expression.Expression;
+import com.openddal.dbobject.index.GlobalIndex;
 import com.openddal.dbobject.table.Column;
 import com.openddal.dbobject.table.TableFilter;
 import com.openddal.engine.Session;
 import com.openddal.result.Row;
 import com.openddal.route.rule.ObjectNode;
+import com.openddal.value.Value;
 import com.openddal.util.New;
 
 /**
@@ -191,6 +193,29 @@ public class WorkerFactoryProxy implements WorkerFactory {
         return !workerHolder.isEmpty();
     }
     
+    @Override
+    public QueryWorker createQueryWorker(Session session, GlobalIndex index, ObjectNode indexNode, Value value) {
+        QueryWorker handler = target.createQueryWorker(session, index, indexNode, value);
+        handler = holdeWorker(handler);
+        return handler;
+    }
+
+    @Override
+    public QueryWorker createQueryWorker(Session session, GlobalIndex index, ObjectNode tableNode,
+            Expression condition) {
+        QueryWorker handler = target.createQueryWorker(session, index, tableNode, condition);
+        handler = holdeWorker(handler);
+        return handler;
+    }
+
+    @Override
+    public UpdateWorker createUpdateWorker(Session session, GlobalIndex index, ObjectNode indexNode, boolean remove,
+            Row... rows) {
+        UpdateWorker handler = target.createUpdateWorker(session, index, indexNode, remove, rows);
+        handler = holdeWorker(handler);
+        return handler;
+    }
+
     private synchronized <T extends Worker> T holdeWorker(T target) {
         workerHolder.add(target);
         return target;
@@ -0,0 +1,240 @@
+/*
+ * Copyright 2014-2016 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.openddal.repo;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import com.openddal.dbobject.table.TableMate;
+import com.openddal.message.DbException;
+import com.openddal.message.ErrorCode;
+import com.openddal.route.algorithm.BucketMigration;
+import com.openddal.route.algorithm.HashBucketPartitioner;
+import com.openddal.route.rule.ObjectNode;
+import com.openddal.util.JdbcUtils;
+import com.openddal.util.StatementBuilder;
+import com.openddal.util.StringUtils;
+
+/**
+ * Keeps the routing tables left by the bucket migrations in the table
+ * DDAL_BUCKET_MAP on the shard of the first node of each table. The map is
+ * written before the buckets are switched, and every proxy applies it when it
+ * loads the table, so the moved buckets never route back to their old node.
+ * <p>
+ * A row also holds the table nodes and the routing table of the
+ * configuration the migrations started from. A proxy refuses to start if the
+ * configuration changed since, the row must then be removed by hand once the
+ * configuration matches the placement of the rows.
+ * <p>
+ * The buckets of a migration whose rows may still be on the source node are
+ * kept in the PURGE column as source:from-to, for example 0:0-255, until the
+ * purge is committed. A proxy loading the table purges them again first.
+ *
+ * @author jorgie.li
+ */
+public final class BucketMapStore {
+
+    private static final String TABLE = "DDAL_BUCKET_MAP";
+
+    // the SQL state of a missing table
+    private static final String TABLE_NOT_FOUND = "42S02";
+
+    private BucketMapStore() {
+        // utility class
+    }
+
+    /**
+     * Apply the stored routing table of the table, if its buckets were ever
+     * moved.
+     *
+     * @param repo the repository
+     * @param table the table
+     * @param partitioner the partitioner of the table
+     * @return the source node, the first and the last bucket of the
+     *         migration whose purge is pending, or null
+     * @throws DbException if the map can not be read, or with the code
+     *             {@link ErrorCode#INVALID_ENGINE_CONFIG_1} if it does not
+     *             match the configuration
+     */
+    public static int[] load(JdbcRepository repo, TableMate table, HashBucketPartitioner partitioner) {
+        ObjectNode[] nodes = partitioner.getTableNodes();
+        String shardName = nodes[0].getShardName();
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        String storedNodes, storedConfig, storedBuckets, storedPurge;
+        try {
+            conn = repo.getDataSourceByShardName(shardName).getConnection();
+            stmt = conn.prepareStatement("SELECT NODES, CONFIG_BUCKETS, BUCKETS, PURGE FROM " + TABLE
+                    + " WHERE TABLE_NAME = ?");
+            stmt.setString(1, table.getName());
+            rs = stmt.executeQuery();
+            if (!rs.next()) {
+                return null;
+            }
+            storedNodes = rs.getString(1);
+            storedConfig = rs.getString(2);
+            storedBuckets = rs.getString(3);
+            storedPurge = rs.getString(4);
+        } catch (SQLException e) {
+            if (TABLE_NOT_FOUND.equals(e.getSQLState())) {
+                // no bucket was ever moved on this shard
+                return null;
+            }
+            throw DbException.convert(e);
+        } finally {
+            JdbcUtils.closeSilently(rs);
+            JdbcUtils.closeSilently(stmt);
+            JdbcUtils.closeSilently(conn);
+        }
+        if (!storedNodes.equals(encodeNodes(nodes))
+                || !storedConfig.equals(encodeBuckets(partitioner.getConfigBuckets()))) {
+            throw DbException.get(ErrorCode.INVALID_ENGINE_CONFIG_1, "the nodes or the partitions of the table "
+                    + table.getName() + " do not match the bucket map in " + shardName + "." + TABLE
+                    + " left by its bucket migrations");
+        }
+        int[] purge;
+        try {
+            partitioner.restoreBuckets(decodeBuckets(storedBuckets));
+            purge = storedPurge == null ? null : decodePurge(storedPurge, nodes.length);
+        } catch (RuntimeException e) {
+            throw DbException.get(ErrorCode.INVALID_ENGINE_CONFIG_1, e,
+                    "the bucket map of the table " + table.getName() + " in " + shardName + "." + TABLE);
+        }
+        repo.getTrace().info("Restored the bucket map of the table {0}", table.getName());
+        return purge;
+    }
+
+    /**
+     * Durably store the routing table of the table.
+     *
+     * @param repo the repository
+     * @param table the table
+     * @param partitioner the partitioner of the table
+     * @param buckets the node index of each bucket
+     * @param purge the migration whose rows may still be on its source node,
+     *            or null
+     */
+    public static void save(JdbcRepository repo, TableMate table, HashBucketPartitioner partitioner, int[] buckets,
+            BucketMigration purge) throws SQLException {
+        ObjectNode[] nodes = partitioner.getTableNodes();
+        String nodeNames = encodeNodes(nodes);
+        String configBuckets = encodeBuckets(partitioner.getConfigBuckets());
+        String purgeBuckets = purge == null ? null
+                : purge.getSourceNode() + ":" + purge.getFromBucket() + "-" + purge.getToBucket();
+        Connection conn = repo.getDataSourceByShardName(nodes[0].getShardName()).getConnection();
+        Statement create = null;
+        PreparedStatement update = null;
+        PreparedStatement insert = null;
+        try {
+            create = conn.createStatement();
+            create.executeUpdate("CREATE TABLE IF NOT EXISTS " + TABLE + "(TABLE_NAME VARCHAR(128) NOT NULL, "
+                    + "NODES TEXT NOT NULL, CONFIG_BUCKETS TEXT NOT NULL, BUCKETS TEXT NOT NULL, PURGE VARCHAR(64), "
+                    + "PRIMARY KEY(TABLE_NAME))");
+            update = conn.prepareStatement("UPDATE " + TABLE
+                    + " SET NODES = ?, CONFIG_BUCKETS = ?, BUCKETS = ?, PURGE = ? WHERE TABLE_NAME = ?");
+            update.setString(1, nodeNames);
+            update.setString(2, configBuckets);
+            update.setString(3, encodeBuckets(buckets));
+            update.setString(4, purgeBuckets);
+            update.setString(5, table.getName());
+            if (update.executeUpdate() == 0) {
+                insert = conn.prepareStatement("INSERT INTO " + TABLE
+                        + "(TABLE_NAME, NODES, CONFIG_BUCKETS, BUCKETS, PURGE) VALUES(?, ?, ?, ?, ?)");
+                insert.setString(1, table.getName());
+                insert.setString(2, nodeNames);
+                insert.setString(3, configBuckets);
+                insert.setString(4, encodeBuckets(buckets));
+                insert.setString(5, purgeBuckets);
+                insert.executeUpdate();
+            }
+        } finally {
+            JdbcUtils.closeSilently(create);
+            JdbcUtils.closeSilently(update);
+            JdbcUtils.closeSilently(insert);
+            JdbcUtils.closeSilently(conn);
+        }
+    }
+
+    private static String encodeNodes(ObjectNode[] nodes) {
+        StatementBuilder buff = new StatementBuilder();
+        for (ObjectNode node : nodes) {
+            buff.appendExceptFirst(",");
+            buff.append(node.getShardName()).append('.').append(node.getCompositeObjectName());
+        }
+        return buff.toString();
+    }
+
+    /**
+     * Encode the node index of each bucket as the runs of buckets of one node,
+     * for example 0-255:0,256-511:1.
+     */
+    private static String encodeBuckets(int[] buckets) {
+        StatementBuilder buff = new StatementBuilder();
+        int from = 0;
+        for (int i = 1; i <= buckets.length; i++) {
+            if (i == buckets.length || buckets[i] != buckets[from]) {
+                buff.appendExceptFirst(",");
+                buff.append(from).append('-').append(i - 1).append(':').append(buckets[from]);
+                from = i;
+            }
+        }
+        return buff.toString();
+    }
+
+    /**
+     * Decode the pending purge, for example 0:0-255.
+     */
+    private static int[] decodePurge(String s, int nodeCount) {
+        int colon = s.indexOf(':');
+        int dash = s.indexOf('-', colon);
+        int[] purge = { Integer.parseInt(s.substring(0, colon)), Integer.parseInt(s.substring(colon + 1, dash)),
+                Integer.parseInt(s.substring(dash + 1)) };
+        if (purge[0] < 0 || purge[0] >= nodeCount || purge[1] < 0 || purge[1] > purge[2]) {
+            throw new IllegalArgumentException("Invalid purge " + s);
+        }
+        return purge;
+    }
+
+    private static int[] decodeBuckets(String s) {
+        String[] runs = StringUtils.arraySplit(s, ',', true);
+        int[][] parsed = new int[runs.length][];
+        int next = 0;
+        for (int i = 0; i < runs.length; i++) {
+            String run = runs[i];
+            int dash = run.indexOf('-');
+            int colon = run.indexOf(':');
+            int from = Integer.parseInt(run.substring(0, dash));
+            int to = Integer.parseInt(run.substring(dash + 1, colon));
+            if (from != next || to < from) {
+                throw new IllegalArgumentException("Invalid bucket run " + run);
+            }
+            parsed[i] = new int[] { from, to, Integer.parseInt(run.substring(colon + 1)) };
+            next = to + 1;
+        }
+        int[] buckets = new int[next];
+        for (int[] run : parsed) {
+            for (int i = run[0]; i <= run[1]; i++) {
+                buckets[i] = run[2];
+            }
+        }
+        return buckets;
+    }
+
+}
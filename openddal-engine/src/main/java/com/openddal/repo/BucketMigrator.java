@@ -0,0 +1,586 @@
+/*
+ * Copyright 2014-2016 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.openddal.repo;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+
+import com.openddal.command.Command;
+import com.openddal.config.ShardedTableRule;
+import com.openddal.config.TableRule;
+import com.openddal.dbobject.table.Column;
+import com.openddal.dbobject.table.Table;
+import com.openddal.dbobject.table.TableMate;
+import com.openddal.engine.Database;
+import com.openddal.engine.Session;
+import com.openddal.message.DbException;
+import com.openddal.message.ErrorCode;
+import com.openddal.message.Trace;
+import com.openddal.route.algorithm.BucketMigration;
+import com.openddal.route.algorithm.HashBucketPartitioner;
+import com.openddal.route.rule.ObjectNode;
+import com.openddal.util.JdbcUtils;
+import com.openddal.util.New;
+import com.openddal.util.StatementBuilder;
+import com.openddal.util.Threads;
+import com.openddal.value.DataType;
+import com.openddal.value.Value;
+import com.openddal.value.ValueNull;
+
+/**
+ * Moves a bucket range of a hash bucket partitioned table to an idle table
+ * node in the background, the steps are:
+ * <ol>
+ * <li>wait for the writes which started before the migration, the later ones
+ * are mirrored to the target node</li>
+ * <li>clear the rows a failed migration of the buckets left on the target
+ * node, any other row stops the migration</li>
+ * <li>copy the rows page by page in the order of the rule column, each page
+ * under the write lock of the migration, the writes on the source node are
+ * mirrored to the target node meanwhile</li>
+ * <li>wait for the queries which started before, the later ones hold the read
+ * lock of the migration until their shard statements are executed</li>
+ * <li>under the write lock: delete the moved rows from the source node in one
+ * transaction, store the switched routing table with the pending purge in the
+ * {@link BucketMapStore}, commit and switch the buckets to the target node in
+ * the routing table</li>
+ * <li>clear the pending purge in the {@link BucketMapStore}</li>
+ * </ol>
+ * So no statement sees the moved rows on both nodes, but the statements of
+ * the table wait while the source node is purged. The rows are selected by
+ * hashing the rule column in the proxy, so the whole source node is scanned.
+ * A proxy which stopped before the purge was committed purges the rows again
+ * when it loads the table. The writes of the table through other proxies are
+ * not mirrored, they must be stopped during the migration and restarted once
+ * it is done.
+ *
+ * @author jorgie.li
+ */
+public class BucketMigrator implements Runnable {
+
+    private static final int PAGE_SIZE = 500;
+
+    // the timeout in seconds of the statements copying a page
+    private static final int LOCK_TIMEOUT = 1;
+
+    private static final int MAX_RETRY = 30;
+
+    private static final long RETRY_DELAY = 100;
+
+    private final JdbcRepository repo;
+    private final TableMate table;
+    private final HashBucketPartitioner partitioner;
+    private final BucketMigration migration;
+    private final Column ruleColumn;
+    private final ObjectNode source;
+    private final ObjectNode target;
+    private final Trace trace;
+    private Connection sourceConn;
+    private Connection targetConn;
+
+    private BucketMigrator(JdbcRepository repo, TableMate table, HashBucketPartitioner partitioner,
+            BucketMigration migration) {
+        this.repo = repo;
+        this.table = table;
+        this.partitioner = partitioner;
+        this.migration = migration;
+        this.ruleColumn = table.getRuleColumns()[0];
+        this.source = partitioner.getTableNodes()[migration.getSourceNode()];
+        this.target = partitioner.getTableNodes()[migration.getTargetNode()];
+        this.trace = repo.getTrace();
+    }
+
+    /**
+     * Start to move the buckets of the table to the target node.
+     *
+     * @param session the session
+     * @param tableName the table name
+     * @param fromBucket the first bucket
+     * @param toBucket the last bucket
+     * @param targetNode the shard name or the table name of the target node
+     * @return the migration status
+     */
+    public static String start(Session session, String tableName, int fromBucket, int toBucket, String targetNode) {
+        session.getUser().checkAdmin();
+        TableMate table = findTable(session, tableName);
+        HashBucketPartitioner partitioner = getPartitioner(table);
+        ShardedTableRule rule = (ShardedTableRule) table.getTableRule();
+        if (rule.getOwnerGroup() != null && rule.getOwnerGroup().getTableRules().size() > 1) {
+            throw DbException.get(ErrorCode.FEATURE_NOT_SUPPORTED_1,
+                    "moving the buckets of the table group of " + table.getName());
+        }
+        if (table.getRuleColumns().length != 1) {
+            throw DbException.get(ErrorCode.FEATURE_NOT_SUPPORTED_1,
+                    "moving the buckets of multiple rule columns");
+        }
+        if (!(session.getDatabase().getRepository() instanceof JdbcRepository)) {
+            throw DbException.get(ErrorCode.FEATURE_NOT_SUPPORTED_1, "moving the buckets");
+        }
+        ObjectNode[] nodes = partitioner.getTableNodes();
+        int targetIndex = -1;
+        for (int i = 0; i < nodes.length; i++) {
+            ObjectNode node = nodes[i];
+            if (targetNode.equalsIgnoreCase(node.getCompositeObjectName())
+                    || targetNode.equalsIgnoreCase(node.getShardName() + "." + node.getCompositeObjectName())
+                    || (targetNode.equalsIgnoreCase(node.getShardName()) && partitioner.isIdle(i))) {
+                targetIndex = i;
+                break;
+            }
+        }
+        if (targetIndex == -1) {
+            throw DbException.getInvalidValueException("target node", targetNode);
+        }
+        BucketMigration m;
+        try {
+            m = partitioner.beginMigration(fromBucket, toBucket, targetIndex);
+        } catch (IllegalArgumentException e) {
+            throw DbException.get(ErrorCode.GENERAL_ERROR_1, e.getMessage());
+        } catch (IllegalStateException e) {
+            throw DbException.get(ErrorCode.GENERAL_ERROR_1, e.getMessage());
+        }
+        JdbcRepository repo = (JdbcRepository) session.getDatabase().getRepository();
+        BucketMigrator migrator = new BucketMigrator(repo, table, partitioner, m);
+        Thread thread = Threads.newThreadFactory("bucket-migration-" + table.getName()).newThread(migrator);
+        thread.setDaemon(true);
+        thread.start();
+        return m.toString();
+    }
+
+    /**
+     * Get the status of the running or the last bucket migration of the
+     * table.
+     */
+    public static String status(Session session, String tableName) {
+        TableMate table = findTable(session, tableName);
+        BucketMigration m = getPartitioner(table).getLastMigration();
+        return m == null ? "no bucket migration" : m.toString();
+    }
+
+    private static TableMate findTable(Session session, String tableName) {
+        Database database = session.getDatabase();
+        Table table = database.getSchema(session.getCurrentSchemaName()).findTableOrView(session,
+                database.identifier(tableName));
+        if (!(table instanceof TableMate)) {
+            throw DbException.get(ErrorCode.TABLE_OR_VIEW_NOT_FOUND_1, tableName);
+        }
+        return (TableMate) table;
+    }
+
+    private static HashBucketPartitioner getPartitioner(TableMate table) {
+        TableRule rule = table.getTableRule();
+        if (rule.getType() == TableRule.SHARDED_NODE_TABLE) {
+            Object partitioner = ((ShardedTableRule) rule).getPartitioner();
+            if (partitioner instanceof HashBucketPartitioner) {
+                return (HashBucketPartitioner) partitioner;
+            }
+        }
+        throw DbException.get(ErrorCode.FEATURE_NOT_SUPPORTED_1,
+                "moving the buckets of the table " + table.getName() + " not partitioned by HashBucketPartitioner");
+    }
+
+    @Override
+    public void run() {
+        trace.info("Start to move {0}", migration);
+        try {
+            sourceConn = repo.getDataSourceByShardName(source.getShardName()).getConnection();
+            targetConn = repo.getDataSourceByShardName(target.getShardName()).getConnection();
+            awaitStatements();
+            clearTarget();
+            copy();
+            partitioner.beginSwitch(migration);
+            try {
+                awaitQueries();
+                purgeAndSwitch();
+            } finally {
+                partitioner.endSwitch();
+            }
+            trace.info("Switched {0}", migration);
+            try {
+                BucketMapStore.save(repo, table, partitioner, partitioner.getBuckets(), null);
+            } catch (SQLException e) {
+                // the purge is repeated when the table is loaded, it finds
+                // no rows
+                trace.error(e, "Fail to clear the pending purge of {0}", migration);
+            }
+            partitioner.endMigration(migration, null);
+            trace.info("Finished {0}", migration);
+        } catch (Throwable e) {
+            trace.error(e, "Fail to move {0}", migration);
+            partitioner.endMigration(migration, e.toString());
+        } finally {
+            JdbcUtils.closeSilently(sourceConn);
+            JdbcUtils.closeSilently(targetConn);
+        }
+    }
+
+    /**
+     * Wait for the write statements which started before the migration, they
+     * neither hold the migration lock nor mirror their writes.
+     */
+    private void awaitStatements() throws InterruptedException {
+        awaitCommands(false);
+    }
+
+    /**
+     * Wait for the statements which started before the switch began, the
+     * queries among them do not hold the migration lock.
+     */
+    private void awaitQueries() throws InterruptedException {
+        awaitCommands(true);
+    }
+
+    private void awaitCommands(boolean queries) throws InterruptedException {
+        Session[] sessions = repo.getDatabase().getSessions();
+        Command[] commands = new Command[sessions.length];
+        int[] counts = new int[sessions.length];
+        for (int i = 0; i < sessions.length; i++) {
+            commands[i] = sessions[i].getCurrentCommand();
+            counts[i] = sessions[i].getCommandCount();
+        }
+        for (int i = 0; i < sessions.length; i++) {
+            Command command = commands[i];
+            if (command == null || (command.isQuery() && !queries)) {
+                continue;
+            }
+            while (sessions[i].getCurrentCommand() == command && sessions[i].getCommandCount() == counts[i]) {
+                Thread.sleep(10);
+            }
+        }
+    }
+
+    /**
+     * Delete the rows a failed migration of the buckets left on the target
+     * node. A row of the other buckets stops the migration, the node holds
+     * rows the routing table does not know of.
+     */
+    private void clearTarget() throws SQLException {
+        Value low = null;
+        while (true) {
+            List<Value> page = readRuleValues(targetConn, target, low);
+            if (page.isEmpty()) {
+                break;
+            }
+            List<Value> moving = New.arrayList(page.size());
+            for (Value v : page) {
+                if (!isMoving(v)) {
+                    throw DbException.get(ErrorCode.GENERAL_ERROR_1, "The target node " + target
+                            + " holds rows of the buckets not moved, " + ruleColumn.getName() + "=" + v.getTraceSQL());
+                }
+                if (!moving.contains(v)) {
+                    moving.add(v);
+                }
+            }
+            deleteRows(targetConn, target, moving);
+            low = page.get(page.size() - 1);
+        }
+    }
+
+    private void copy() throws SQLException, InterruptedException {
+        Lock lock = partitioner.getMigrationLock().writeLock();
+        Value low = null;
+        while (true) {
+            List<Value> page = readRuleValues(sourceConn, source, low);
+            if (page.isEmpty()) {
+                break;
+            }
+            Value high = page.get(page.size() - 1);
+            for (int retry = 0;; retry++) {
+                lock.lock();
+                try {
+                    copyPage(low, high);
+                    break;
+                } catch (SQLException e) {
+                    if (retry >= MAX_RETRY) {
+                        throw e;
+                    }
+                    trace.debug("Retry to copy the page up to {0}: {1}", high.getTraceSQL(), e.getMessage());
+                } finally {
+                    lock.unlock();
+                }
+                // let the transaction locking the rows go on and end
+                Thread.sleep(RETRY_DELAY * (retry + 1));
+            }
+            low = high;
+        }
+    }
+
+    /**
+     * Make the target node hold exactly the moving rows of the source node
+     * with the rule value in (low, high]. The rows are locked on the source
+     * node, so the copy waits for the writes of the transactions in flight,
+     * and the page is copied in one transaction on each node with a short
+     * timeout: the migration lock must not be held while the writes wait for
+     * it to end these transactions.
+     */
+    private void copyPage(Value low, Value high) throws SQLException {
+        String range = rangeCondition(low);
+        PreparedStatement select = null;
+        PreparedStatement delete = null;
+        PreparedStatement insert = null;
+        ResultSet rs = null;
+        sourceConn.setAutoCommit(false);
+        targetConn.setAutoCommit(false);
+        try {
+            select = sourceConn.prepareStatement(
+                    "SELECT * FROM " + identifier(source.getCompositeObjectName()) + range + " FOR UPDATE");
+            select.setQueryTimeout(LOCK_TIMEOUT);
+            setRange(select, low, high);
+            rs = select.executeQuery();
+            delete = targetConn.prepareStatement(
+                    "DELETE FROM " + identifier(target.getCompositeObjectName()) + range);
+            delete.setQueryTimeout(LOCK_TIMEOUT);
+            setRange(delete, low, high);
+            delete.executeUpdate();
+            ResultSetMetaData meta = rs.getMetaData();
+            int columnCount = meta.getColumnCount();
+            int ruleIndex = rs.findColumn(ruleColumn.getName());
+            StatementBuilder sql = new StatementBuilder("INSERT INTO ");
+            sql.append(identifier(target.getCompositeObjectName())).append('(');
+            for (int i = 1; i <= columnCount; i++) {
+                sql.appendExceptFirst(", ");
+                sql.append(identifier(meta.getColumnLabel(i)));
+            }
+            sql.append(") VALUES (");
+            sql.resetCount();
+            for (int i = 1; i <= columnCount; i++) {
+                sql.appendExceptFirst(", ");
+                sql.append('?');
+            }
+            sql.append(')');
+            insert = targetConn.prepareStatement(sql.toString());
+            insert.setQueryTimeout(LOCK_TIMEOUT);
+            int rows = 0;
+            while (rs.next()) {
+                if (!isMoving(DataType.readValue(rs, ruleIndex, ruleColumn.getType()))) {
+                    continue;
+                }
+                for (int i = 1; i <= columnCount; i++) {
+                    insert.setObject(i, rs.getObject(i));
+                }
+                insert.addBatch();
+                rows++;
+            }
+            if (rows > 0) {
+                insert.executeBatch();
+            }
+            targetConn.commit();
+            sourceConn.commit();
+            migration.addCopiedRows(rows);
+        } catch (SQLException e) {
+            rollbackSilently(targetConn);
+            rollbackSilently(sourceConn);
+            throw e;
+        } finally {
+            JdbcUtils.closeSilently(rs);
+            JdbcUtils.closeSilently(select);
+            JdbcUtils.closeSilently(delete);
+            JdbcUtils.closeSilently(insert);
+            sourceConn.setAutoCommit(true);
+            targetConn.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * Purge the moved rows from the source node and switch the buckets to the
+     * target node, no statement of the table runs meanwhile. The switched
+     * routing table is stored with the pending purge before the purge is
+     * committed.
+     */
+    private void purgeAndSwitch() throws SQLException {
+        Lock lock = partitioner.getMigrationLock().writeLock();
+        lock.lock();
+        try {
+            boolean stored = false;
+            sourceConn.setAutoCommit(false);
+            try {
+                purge(sourceConn, source);
+                BucketMapStore.save(repo, table, partitioner, partitioner.getSwitchedBuckets(migration), migration);
+                stored = true;
+                sourceConn.commit();
+            } catch (SQLException e) {
+                rollbackSilently(sourceConn);
+                if (stored) {
+                    restoreBucketMap();
+                }
+                throw e;
+            } finally {
+                sourceConn.setAutoCommit(true);
+            }
+            partitioner.switchMigration(migration);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Store the routing table before the migration again, the purge failed.
+     */
+    private void restoreBucketMap() {
+        try {
+            BucketMapStore.save(repo, table, partitioner, partitioner.getBuckets(), null);
+        } catch (SQLException e) {
+            // a proxy loading the table would purge the rows of the buckets
+            // from the source node, the writes are no longer mirrored
+            trace.error(e, "Fail to restore the bucket map of {0}, the bucket map of the table {1} "
+                    + "must be fixed by hand", migration, table.getName());
+        }
+    }
+
+    /**
+     * Purge the rows of the buckets the stored routing table moved from the
+     * source node, the purge of the migration was not committed before the
+     * proxy stopped.
+     *
+     * @param repo the repository
+     * @param table the table
+     * @param partitioner the partitioner of the table, with the restored
+     *            routing table
+     * @param pending the source node, the first and the last bucket
+     */
+    public static void resumePurge(JdbcRepository repo, TableMate table, HashBucketPartitioner partitioner,
+            int[] pending) {
+        BucketMigration m = partitioner.getPendingPurge(pending[0], pending[1], pending[2]);
+        BucketMigrator migrator = new BucketMigrator(repo, table, partitioner, m);
+        Connection conn = null;
+        try {
+            conn = repo.getDataSourceByShardName(migrator.source.getShardName()).getConnection();
+            conn.setAutoCommit(false);
+            migrator.purge(conn, migrator.source);
+            conn.commit();
+            BucketMapStore.save(repo, table, partitioner, partitioner.getBuckets(), null);
+        } catch (SQLException e) {
+            if (conn != null) {
+                rollbackSilently(conn);
+            }
+            throw DbException.convert(e);
+        } finally {
+            JdbcUtils.closeSilently(conn);
+        }
+        repo.getTrace().info("Purged {0} rows of {1}", m.getPurgedRows(), m);
+    }
+
+    private void purge(Connection conn, ObjectNode node) throws SQLException {
+        Value low = null;
+        while (true) {
+            List<Value> page = readRuleValues(conn, node, low);
+            if (page.isEmpty()) {
+                break;
+            }
+            List<Value> moved = New.arrayList(page.size());
+            for (Value v : page) {
+                if (isMoving(v) && !moved.contains(v)) {
+                    moved.add(v);
+                }
+            }
+            if (!moved.isEmpty()) {
+                migration.addPurgedRows(deleteRows(conn, node, moved));
+            }
+            low = page.get(page.size() - 1);
+        }
+    }
+
+    /**
+     * Delete the rows of the node with the rule values.
+     */
+    private int deleteRows(Connection conn, ObjectNode node, List<Value> values) throws SQLException {
+        StatementBuilder sql = new StatementBuilder("DELETE FROM ");
+        sql.append(identifier(node.getCompositeObjectName()));
+        sql.append(" WHERE ").append(identifier(ruleColumn.getName())).append(" IN (");
+        for (int i = 0; i < values.size(); i++) {
+            sql.appendExceptFirst(", ");
+            sql.append('?');
+        }
+        sql.append(')');
+        PreparedStatement delete = conn.prepareStatement(sql.toString());
+        try {
+            for (int i = 0; i < values.size(); i++) {
+                values.get(i).set(delete, i + 1);
+            }
+            return delete.executeUpdate();
+        } finally {
+            JdbcUtils.closeSilently(delete);
+        }
+    }
+
+    /**
+     * Read the next page of the rule values of the node in order.
+     */
+    private List<Value> readRuleValues(Connection conn, ObjectNode node, Value low) throws SQLException {
+        String rule = identifier(ruleColumn.getName());
+        StringBuilder sql = new StringBuilder("SELECT ").append(rule);
+        sql.append(" FROM ").append(identifier(node.getCompositeObjectName()));
+        sql.append(" WHERE ").append(rule).append(" IS NOT NULL");
+        if (low != null) {
+            sql.append(" AND ").append(rule).append(" > ?");
+        }
+        sql.append(" ORDER BY ").append(rule);
+        PreparedStatement stmt = conn.prepareStatement(sql.toString());
+        ResultSet rs = null;
+        try {
+            stmt.setMaxRows(PAGE_SIZE);
+            if (low != null) {
+                low.set(stmt, 1);
+            }
+            rs = stmt.executeQuery();
+            List<Value> values = New.arrayList(PAGE_SIZE);
+            while (rs.next()) {
+                values.add(DataType.readValue(rs, 1, ruleColumn.getType()));
+            }
+            return values;
+        } finally {
+            JdbcUtils.closeSilently(rs);
+            JdbcUtils.closeSilently(stmt);
+        }
+    }
+
+    private String rangeCondition(Value low) {
+        String rule = identifier(ruleColumn.getName());
+        String range = " WHERE " + rule + " <= ?";
+        return low == null ? range : range + " AND " + rule + " > ?";
+    }
+
+    private static void setRange(PreparedStatement stmt, Value low, Value high) throws SQLException {
+        high.set(stmt, 1);
+        if (low != null) {
+            low.set(stmt, 2);
+        }
+    }
+
+    private static void rollbackSilently(Connection conn) {
+        try {
+            conn.rollback();
+        } catch (SQLException e) {
+            // the cause is thrown
+        }
+    }
+
+    private boolean isMoving(Value v) {
+        if (v == null || v == ValueNull.INSTANCE) {
+            return false;
+        }
+        return migration.contains(partitioner.bucket(ruleColumn.convert(v)));
+    }
+
+    private String identifier(String name) {
+        return repo.getSQLTranslator().identifier(name);
+    }
+
+}
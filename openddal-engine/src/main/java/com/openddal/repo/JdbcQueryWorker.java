@@ -19,12 +19,17 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.List;
 
+import com.openddal.command.Command;
+import com.openddal.engine.FlightRecorderEvents;
 import com.openddal.engine.Session;
 import com.openddal.executor.cursor.Cursor;
 import com.openddal.executor.cursor.ResultCursor;
 import com.openddal.executor.works.QueryWorker;
+import com.openddal.result.Row;
+import com.openddal.route.rule.PartitionHints;
 import com.openddal.util.JdbcUtils;
 import com.openddal.util.StatementBuilder;
 import com.openddal.value.Value;
@@ -36,11 +41,23 @@ import com.openddal.value.Value;
 public class JdbcQueryWorker extends JdbcWorker implements QueryWorker {
 
     private Connection conn;
-    private PreparedStatement stmt;
+    private volatile PreparedStatement stmt;
     private ResultSet set;
-    
+    private MeteredCursor cursor;
+
     public JdbcQueryWorker(Session session, String shardName, String sql, List<Value> params) {
         super(session, shardName, sql, params);
+        Command c = session.getCurrentCommand();
+        PartitionHints hints = c == null ? null : c.getPartitionHints();
+        this.readOnly = hints != null && hints.isReadOnly();
+    }
+
+    /**
+     * @param lockFree whether the query takes no locks, that is it is not a
+     *            SELECT ... FOR UPDATE
+     */
+    public void setLockFree(boolean lockFree) {
+        this.lockFree = lockFree;
     }
 
     @Override
@@ -54,9 +71,14 @@ public class JdbcQueryWorker extends JdbcWorker implements QueryWorker {
             if (trace.isDebugEnabled()) {
                 trace.debug("{0} Preparing: {1};", shardName, sql);
             }
+            checkCanceled();
+            Object event = FlightRecorderEvents.begin(FlightRecorderEvents.SHARD_QUERY);
             conn = borrowConnection();
+            long start = System.nanoTime();
             stmt = conn.prepareStatement(sql);
+            checkCanceled();
             applyQueryTimeout(stmt);
+            applyStreamingFetch(stmt);
             if (params != null) {
                 for (int i = 0, size = params.size(); i < size; i++) {
                     Value v = params.get(i);
@@ -67,8 +89,15 @@ public class JdbcQueryWorker extends JdbcWorker implements QueryWorker {
                 }
             }
             set = stmt.executeQuery();
-            return new ResultCursor(session, set);
+            FlightRecorderEvents.commit(event, session, shardName, -1);
+            if (stats == null && profile == null) {
+                return new ResultCursor(session, set);
+            }
+            recordExecution(System.nanoTime() - start, -1);
+            cursor = new MeteredCursor(set, start);
+            return cursor;
         } catch (SQLException e) {
+            recordFailure();
             close();
             StatementBuilder buff = new StatementBuilder();
             buff.append(sql);
@@ -88,17 +117,16 @@ public class JdbcQueryWorker extends JdbcWorker implements QueryWorker {
 
     }
 
-    public void cancel() {
-        try {
-            if (stmt == null) {
-                stmt.cancel();
-            }
-        } catch (Exception e) {
-            trace.error(e, "cancel worker error.");
-        }
+    @Override
+    protected Statement getStatement() {
+        return stmt;
     }
 
     public void close() {
+        if (cursor != null) {
+            cursor.finish();
+            cursor = null;
+        }
         JdbcUtils.closeSilently(set);
         JdbcUtils.closeSilently(stmt);
         returnConnection(conn);
@@ -107,5 +135,69 @@ public class JdbcQueryWorker extends JdbcWorker implements QueryWorker {
         conn = null;
     }
 
+    /**
+     * Records the time to the first row and the time spent fetching.
+     */
+    private class MeteredCursor extends ResultCursor {
+
+        private final long start;
+        private long fetchNanos;
+        private long rows;
+        private long bytes;
+        private Row last;
+        private boolean finished;
+
+        MeteredCursor(ResultSet rs, long start) {
+            super(session, rs);
+            this.start = start;
+        }
+
+        @Override
+        public Row get() {
+            Row row = super.get();
+            if (row != last) {
+                last = row;
+                bytes += row.getMemory();
+            }
+            return row;
+        }
+
+        @Override
+        public boolean next() {
+            long begin = System.nanoTime();
+            boolean result;
+            try {
+                result = super.next();
+            } catch (RuntimeException e) {
+                recordFailure();
+                throw e;
+            }
+            long now = System.nanoTime();
+            fetchNanos += now - begin;
+            if (!result) {
+                finish();
+            } else if (rows++ == 0) {
+                if (stats != null) {
+                    stats.firstRow(now - start);
+                }
+                if (profile != null) {
+                    profile.firstRow(now - start);
+                }
+            }
+            return result;
+        }
+
+        void finish() {
+            if (!finished) {
+                finished = true;
+                if (stats != null) {
+                    stats.fetched(fetchNanos, rows, bytes);
+                }
+                if (profile != null) {
+                    profile.fetched(fetchNanos, rows);
+                }
+            }
+        }
+    }
 
 }
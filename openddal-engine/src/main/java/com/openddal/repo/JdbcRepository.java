@@ -64,6 +64,7 @@ public abstract class JdbcRepository implements Repository, ConnectionProvider {
 
     private final HashMap<String, DataSource> shardMaping = New.hashMap();
     private final HashMap<String, DataSource> idMapping = New.hashMap();
+    private final ShardStatistics shardStatistics = new ShardStatistics(60 * 1000);
 
     private Database database;
     private String defaultShardName;
@@ -323,6 +324,13 @@ public abstract class JdbcRepository implements Repository, ConnectionProvider {
         }
     }
 
+    /**
+     * @return the execution statistics of the shards
+     */
+    public ShardStatistics getShardStatistics() {
+        return shardStatistics;
+    }
+
     public ConnectionProvider getConnectionProvider() {
         return this;
     }
@@ -358,5 +366,15 @@ public abstract class JdbcRepository implements Repository, ConnectionProvider {
 
     public abstract SQLTranslator getSQLTranslator();
 
+    /**
+     * Get the fetch size which makes the driver stream the rows of a query
+     * instead of reading the whole result.
+     *
+     * @return the fetch size, or 0 if the driver can not stream the rows
+     */
+    public int getStreamingFetchSize() {
+        return 0;
+    }
+
 
 }
@@ -18,8 +18,10 @@ package com.openddal.repo;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.List;
 
+import com.openddal.engine.FlightRecorderEvents;
 import com.openddal.engine.Session;
 import com.openddal.executor.works.UpdateWorker;
 import com.openddal.util.JdbcUtils;
@@ -33,7 +35,7 @@ import com.openddal.value.Value;
 public class JdbcUpdateWorker extends JdbcWorker implements UpdateWorker {
 
     private Connection conn = null;
-    private PreparedStatement stmt = null;
+    private volatile PreparedStatement stmt;
 
     public JdbcUpdateWorker(Session session, String shardName, String sql, List<Value> params) {
         super(session, shardName, sql, params);
@@ -50,8 +52,12 @@ public class JdbcUpdateWorker extends JdbcWorker implements UpdateWorker {
             if (trace.isDebugEnabled()) {
                 trace.debug("{0} Preparing: {1};", shardName, sql);
             }
+            checkCanceled();
+            Object event = FlightRecorderEvents.begin(FlightRecorderEvents.SHARD_UPDATE);
             conn = borrowConnection();
+            long start = System.nanoTime();
             stmt = conn.prepareStatement(sql);
+            checkCanceled();
             applyQueryTimeout(stmt);
             if (params != null) {
                 for (int i = 0, size = params.size(); i < size; i++) {
@@ -63,11 +69,14 @@ public class JdbcUpdateWorker extends JdbcWorker implements UpdateWorker {
                 }
             }
             int rows = stmt.executeUpdate();
+            FlightRecorderEvents.commit(event, session, shardName, rows);
+            recordExecution(System.nanoTime() - start, rows);
             if (trace.isDebugEnabled()) {
                 trace.debug("{0} executeUpdate: {1} affected.", shardName, rows);
             }
             return rows;
         } catch (SQLException e) {
+            recordFailure();
             StatementBuilder buff = new StatementBuilder();
             buff.append(sql);
             if (params != null && 0 < params.size()) {
@@ -85,14 +94,9 @@ public class JdbcUpdateWorker extends JdbcWorker implements UpdateWorker {
         }
     }
 
-    public void cancel() {
-        try {
-            if (stmt == null) {
-                stmt.cancel();
-            }
-        } catch (Exception e) {
-            trace.error(e, "cancel worker error.");
-        }
+    @Override
+    protected Statement getStatement() {
+        return stmt;
     }
 
     public void close() {
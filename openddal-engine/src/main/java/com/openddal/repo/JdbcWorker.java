@@ -20,7 +20,9 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.List;
 
+import com.openddal.engine.Database;
 import com.openddal.engine.Session;
+import com.openddal.executor.ExecutionProfile;
 import com.openddal.message.DbException;
 import com.openddal.message.ErrorCode;
 import com.openddal.message.Trace;
@@ -40,6 +42,11 @@ public abstract class JdbcWorker {
     protected final List<Value> params;
     protected final ConnectionProvider connProvider;
     protected final JdbcTransaction tx;
+    protected final ShardStatistics.ShardEntry stats;
+    protected final ExecutionProfile.WorkerProfile profile;
+    protected boolean readOnly;
+    protected boolean lockFree;
+    protected volatile boolean canceled;
 
 
     public JdbcWorker(Session session, String shardName, String sql, List<Value> params) {
@@ -51,8 +58,11 @@ public abstract class JdbcWorker {
         this.trace = session.getDatabase().getTrace(Trace.EXECUTOR);
         this.tx = (JdbcTransaction)session.getTransaction();
         this.connProvider = tx.getConnectionProvider();
-        
-
+        Database database = session.getDatabase();
+        this.stats = database.getSettings().shardStatistics
+                ? ((JdbcRepository) database.getRepository()).getShardStatistics().get(shardName) : null;
+        ExecutionProfile executionProfile = session.getExecutionProfile();
+        this.profile = executionProfile == null ? null : executionProfile.addWorker(explain());
     }
     
     // Create the worker directly apply for connection, performed by the
@@ -60,10 +70,93 @@ public abstract class JdbcWorker {
     // calls. HikariCP If get/close connection is not the same thread ,the
     // connection will leak.
     protected Connection borrowConnection() {
-        Options options = Options.build().shardName(shardName);
-        return connProvider.getConnection(options);
+        Options options = Options.build().shardName(shardName).readOnly(readOnly).lockFree(lockFree);
+        if (stats == null && profile == null) {
+            return connProvider.getConnection(options);
+        }
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            Connection conn = connProvider.getConnection(options);
+            success = true;
+            return conn;
+        } finally {
+            long nanos = System.nanoTime() - start;
+            if (stats != null) {
+                stats.borrowed(nanos, success);
+            }
+            if (profile != null) {
+                profile.borrowed(nanos);
+            }
+        }
+    }
+
+    /**
+     * Record the execution of the statement.
+     *
+     * @param nanos the execution time in nanoseconds
+     * @param rows the affected rows of an update, -1 for a query
+     */
+    protected void recordExecution(long nanos, int rows) {
+        if (stats != null) {
+            if (rows < 0) {
+                stats.queried(nanos);
+            } else {
+                stats.updated(nanos, rows);
+            }
+        }
+        if (profile != null) {
+            profile.executed(nanos);
+            if (rows >= 0) {
+                profile.updated(rows);
+            }
+        }
+    }
+
+    /**
+     * Record a failed statement.
+     */
+    protected void recordFailure() {
+        if (stats != null) {
+            stats.failed();
+        }
+        if (profile != null) {
+            profile.failed();
+        }
     }
     
+    /**
+     * Check if the worker was canceled before its statement was created, the
+     * statement itself is canceled by {@link #cancel()}.
+     *
+     * @throws DbException if the worker is canceled
+     */
+    protected void checkCanceled() {
+        if (canceled) {
+            throw DbException.get(ErrorCode.STATEMENT_WAS_CANCELED);
+        }
+    }
+
+    /**
+     * Cancel the statement of the worker, may be called by any thread.
+     */
+    public void cancel() {
+        canceled = true;
+        Statement stmt = getStatement();
+        try {
+            if (stmt != null) {
+                stmt.cancel();
+            }
+        } catch (Exception e) {
+            trace.error(e, "cancel worker error.");
+        }
+    }
+
+    /**
+     * @return the statement being executed, or null
+     */
+    protected abstract Statement getStatement();
+
     protected void returnConnection(Connection conn) {
         if(conn != null) {
             Options options = Options.build().shardName(shardName);
@@ -120,11 +213,28 @@ public abstract class JdbcWorker {
         return buff.toString();
     }
 
+    /**
+     * Let the driver stream the rows of the query. Only the auto commit
+     * statements stream, the workers of a transaction share the connection of
+     * a shard which can not run other statements while streaming.
+     */
+    protected void applyStreamingFetch(Statement stmt) throws SQLException {
+        Database database = session.getDatabase();
+        if (!session.getAutoCommit() || !database.getSettings().streamingFetch) {
+            return;
+        }
+        int fetchSize = ((JdbcRepository) database.getRepository()).getStreamingFetchSize();
+        if (fetchSize != 0) {
+            stmt.setFetchSize(fetchSize);
+        }
+    }
+
     protected void applyQueryTimeout(Statement stmt) throws SQLException {
         // The session timeout of a query in milliseconds
         int queryTimeout = session.getQueryTimeout();
         if (queryTimeout > 0) {
-            int seconds = queryTimeout / 1000;
+            // round up, a timeout of 0 seconds means no timeout
+            int seconds = (queryTimeout + 999) / 1000;
             trace.debug("apply {0} query time out from statement.", seconds);
             stmt.setQueryTimeout(seconds);
         }
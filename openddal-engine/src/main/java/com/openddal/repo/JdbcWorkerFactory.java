@@ -19,13 +19,16 @@ import com.openddal.command.dml.Replace;
 import com.openddal.command.dml.Select;
 import com.openddal.command.dml.Update;
 import com.openddal.command.expression.Expression;
+import com.openddal.dbobject.index.GlobalIndex;
 import com.openddal.dbobject.table.Column;
 import com.openddal.dbobject.table.TableFilter;
+import com.openddal.engine.Session;
 import com.openddal.executor.works.QueryWorker;
 import com.openddal.executor.works.UpdateWorker;
 import com.openddal.executor.works.WorkerFactory;
 import com.openddal.result.Row;
 import com.openddal.route.rule.ObjectNode;
+import com.openddal.value.Value;
 
 public class JdbcWorkerFactory implements WorkerFactory {
 
@@ -43,6 +46,7 @@ public class JdbcWorkerFactory implements WorkerFactory {
                 limit, offset);
         JdbcQueryWorker handler = new JdbcQueryWorker(select.getSession(), node.getShardName(), translated.sql,
                 translated.params);
+        handler.setLockFree(!select.isForUpdate());
         return handler;
     }
 
@@ -165,5 +169,30 @@ public class JdbcWorkerFactory implements WorkerFactory {
         return handler;
     }
 
+    @Override
+    public QueryWorker createQueryWorker(Session session, GlobalIndex index, ObjectNode indexNode, Value value) {
+        SQLTranslated translated = repo.getSQLTranslator().translate(index, indexNode, value);
+        JdbcQueryWorker handler = new JdbcQueryWorker(session, indexNode.getShardName(), translated.sql,
+                translated.params);
+        return handler;
+    }
+
+    @Override
+    public QueryWorker createQueryWorker(Session session, GlobalIndex index, ObjectNode tableNode,
+            Expression condition) {
+        SQLTranslated translated = repo.getSQLTranslator().translate(session, index, tableNode, condition);
+        JdbcQueryWorker handler = new JdbcQueryWorker(session, tableNode.getShardName(), translated.sql,
+                translated.params);
+        return handler;
+    }
+
+    @Override
+    public UpdateWorker createUpdateWorker(Session session, GlobalIndex index, ObjectNode indexNode, boolean remove,
+            Row... rows) {
+        SQLTranslated translated = repo.getSQLTranslator().translate(index, indexNode, remove, rows);
+        JdbcUpdateWorker handler = new JdbcUpdateWorker(session, indexNode.getShardName(), translated.sql,
+                translated.params);
+        return handler;
+    }
 
 }
@@ -29,6 +29,7 @@ public class Options {
     public String dbid;
     public String shardName;
     public boolean readOnly;
+    public boolean lockFree;
 
 
     public static Options build() {
@@ -63,6 +64,14 @@ public class Options {
         return this;
     }
 
+    /**
+     * @param lockFree whether the statement is a query taking no locks
+     */
+    public Options lockFree(boolean lockFree) {
+        this.lockFree = lockFree;
+        return this;
+    }
+
     /**
      * @param retry the retry to set
      */
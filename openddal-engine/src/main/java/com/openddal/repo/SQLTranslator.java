@@ -31,11 +31,14 @@ import com.openddal.command.dml.Replace;
 import com.openddal.command.dml.Select;
 import com.openddal.command.dml.Update;
 import com.openddal.command.expression.Expression;
+import com.openddal.dbobject.index.GlobalIndex;
 import com.openddal.dbobject.table.Column;
 import com.openddal.dbobject.table.TableFilter;
+import com.openddal.engine.Session;
 import com.openddal.result.Row;
 import com.openddal.route.rule.GroupObjectNode;
 import com.openddal.route.rule.ObjectNode;
+import com.openddal.value.Value;
 
 /**
  * @author jorgie.li
@@ -84,4 +87,20 @@ public interface SQLTranslator {
 
     SQLTranslated translate(Column[] searchColumns, TableFilter filter, GroupObjectNode node);
 
+    /**
+     * Translate the lookup of the rule column values by the index value.
+     */
+    SQLTranslated translate(GlobalIndex index, ObjectNode indexNode, Value value);
+
+    /**
+     * Translate the scan of the index entries of the indexed table rows
+     * matching the condition.
+     */
+    SQLTranslated translate(Session session, GlobalIndex index, ObjectNode tableNode, Expression condition);
+
+    /**
+     * Translate the insertion or removal of the index entries.
+     */
+    SQLTranslated translate(GlobalIndex index, ObjectNode indexNode, boolean remove, Row... rows);
+
 }
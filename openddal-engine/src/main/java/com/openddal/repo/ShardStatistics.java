@@ -0,0 +1,268 @@
+/*
+ * Copyright 2014-2016 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.openddal.repo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.openddal.util.Histogram;
+import com.openddal.util.New;
+
+/**
+ * The execution statistics of the shards, recorded by the {@link JdbcWorker}s.
+ * The counters are cumulative, the latency histograms roll over: they cover
+ * the current and the previous window, so a shard which recovered stops
+ * looking slow after two windows.
+ *
+ * @author jorgie.li
+ */
+public class ShardStatistics {
+
+    private static final Comparator<ShardEntry> NAME_COMPARATOR = new Comparator<ShardEntry>() {
+        @Override
+        public int compare(ShardEntry o1, ShardEntry o2) {
+            return o1.shardName.compareTo(o2.shardName);
+        }
+    };
+
+    private final ConcurrentMap<String, ShardEntry> shards = New.concurrentHashMap();
+    private final long windowNanos;
+
+    /**
+     * @param windowMillis the length of the window of the histograms
+     */
+    public ShardStatistics(long windowMillis) {
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+    }
+
+    /**
+     * Get the statistics of a shard, creating them if needed.
+     *
+     * @param shardName the shard name
+     * @return the statistics
+     */
+    public ShardEntry get(String shardName) {
+        ShardEntry entry = shards.get(shardName);
+        if (entry == null) {
+            ShardEntry e = new ShardEntry(shardName, windowNanos);
+            entry = shards.putIfAbsent(shardName, e);
+            if (entry == null) {
+                entry = e;
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * @return the statistics of the shards, ordered by the shard name
+     */
+    public List<ShardEntry> getShards() {
+        ArrayList<ShardEntry> list = new ArrayList<ShardEntry>(shards.values());
+        Collections.sort(list, NAME_COMPARATOR);
+        return list;
+    }
+
+    /**
+     * The latency histograms of one window, in microseconds.
+     */
+    private static final class Window {
+        final long end;
+        final Histogram borrowWait = new Histogram();
+        final Histogram executeTime = new Histogram();
+        final Histogram firstRowTime = new Histogram();
+        final Histogram fetchTime = new Histogram();
+
+        Window(long end) {
+            this.end = end;
+        }
+    }
+
+    /**
+     * The statistics of one shard.
+     */
+    public static final class ShardEntry {
+
+        private final String shardName;
+        private final long windowNanos;
+        private final AtomicLong queryCount = new AtomicLong();
+        private final AtomicLong updateCount = new AtomicLong();
+        private final AtomicLong borrowErrorCount = new AtomicLong();
+        private final AtomicLong errorCount = new AtomicLong();
+        private final AtomicLong rowCount = new AtomicLong();
+        private final AtomicLong byteCount = new AtomicLong();
+        private volatile Window current;
+        private volatile Window previous;
+
+        ShardEntry(String shardName, long windowNanos) {
+            this.shardName = shardName;
+            this.windowNanos = windowNanos;
+            long now = System.nanoTime();
+            this.current = new Window(now + windowNanos);
+            this.previous = new Window(now);
+        }
+
+        private Window window() {
+            Window w = current;
+            long now = System.nanoTime();
+            if (now - w.end >= 0) {
+                synchronized (this) {
+                    w = current;
+                    if (now - w.end >= 0) {
+                        // nothing was recorded during the last window
+                        previous = now - w.end >= windowNanos ? new Window(now) : w;
+                        w = current = new Window(now + windowNanos);
+                    }
+                }
+            }
+            return w;
+        }
+
+        /**
+         * Record the wait for a connection of the shard.
+         *
+         * @param nanos the wait in nanoseconds
+         * @param success false if no connection was obtained
+         */
+        public void borrowed(long nanos, boolean success) {
+            window().borrowWait.record(TimeUnit.NANOSECONDS.toMicros(nanos));
+            if (!success) {
+                borrowErrorCount.incrementAndGet();
+            }
+        }
+
+        /**
+         * Record the execution of a query, until the result set is returned.
+         *
+         * @param nanos the execution time in nanoseconds
+         */
+        public void queried(long nanos) {
+            queryCount.incrementAndGet();
+            window().executeTime.record(TimeUnit.NANOSECONDS.toMicros(nanos));
+        }
+
+        /**
+         * Record the execution of an update.
+         *
+         * @param nanos the execution time in nanoseconds
+         * @param rows the number of affected rows
+         */
+        public void updated(long nanos, int rows) {
+            updateCount.incrementAndGet();
+            rowCount.addAndGet(rows);
+            window().executeTime.record(TimeUnit.NANOSECONDS.toMicros(nanos));
+        }
+
+        /**
+         * Record the time until the first row of a query was fetched.
+         *
+         * @param nanos the time since the execution started in nanoseconds
+         */
+        public void firstRow(long nanos) {
+            window().firstRowTime.record(TimeUnit.NANOSECONDS.toMicros(nanos));
+        }
+
+        /**
+         * Record the fetching of the rows of a query.
+         *
+         * @param nanos the time spent fetching in nanoseconds
+         * @param rows the number of rows
+         * @param bytes the estimated size of the rows
+         */
+        public void fetched(long nanos, long rows, long bytes) {
+            rowCount.addAndGet(rows);
+            byteCount.addAndGet(bytes);
+            window().fetchTime.record(TimeUnit.NANOSECONDS.toMicros(nanos));
+        }
+
+        /**
+         * Record a failed statement.
+         */
+        public void failed() {
+            errorCount.incrementAndGet();
+        }
+
+        public String getShardName() {
+            return shardName;
+        }
+
+        public long getQueryCount() {
+            return queryCount.get();
+        }
+
+        public long getUpdateCount() {
+            return updateCount.get();
+        }
+
+        public long getBorrowErrorCount() {
+            return borrowErrorCount.get();
+        }
+
+        public long getErrorCount() {
+            return errorCount.get();
+        }
+
+        public long getRowCount() {
+            return rowCount.get();
+        }
+
+        public long getByteCount() {
+            return byteCount.get();
+        }
+
+        /**
+         * @param fraction the fraction, for example 0.99
+         * @return the percentile of the connection wait, in milliseconds
+         */
+        public double getBorrowWait(double fraction) {
+            Window w = window();
+            return Histogram.getPercentile(fraction, w.borrowWait, previous.borrowWait) / 1000d;
+        }
+
+        /**
+         * @param fraction the fraction, for example 0.99
+         * @return the percentile of the execution time, in milliseconds
+         */
+        public double getExecuteTime(double fraction) {
+            Window w = window();
+            return Histogram.getPercentile(fraction, w.executeTime, previous.executeTime) / 1000d;
+        }
+
+        /**
+         * @param fraction the fraction, for example 0.99
+         * @return the percentile of the time to the first row, in milliseconds
+         */
+        public double getFirstRowTime(double fraction) {
+            Window w = window();
+            return Histogram.getPercentile(fraction, w.firstRowTime, previous.firstRowTime) / 1000d;
+        }
+
+        /**
+         * @param fraction the fraction, for example 0.99
+         * @return the percentile of the fetch time, in milliseconds
+         */
+        public double getFetchTime(double fraction) {
+            Window w = window();
+            return Histogram.getPercentile(fraction, w.fetchTime, previous.fetchTime) / 1000d;
+        }
+
+    }
+
+}
@@ -2,7 +2,9 @@ package com.openddal.repo.tx;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentMap;
 
@@ -16,6 +18,7 @@ import com.openddal.repo.JdbcRepository;
 import com.openddal.repo.Options;
 import com.openddal.util.JdbcUtils;
 import com.openddal.util.New;
+import com.openddal.util.StatementBuilder;
 import com.openddal.util.StringUtils;
 
 public class ConnectionHolder implements ConnectionProvider {
@@ -24,7 +27,10 @@ public class ConnectionHolder implements ConnectionProvider {
     private final HolderStrategy holderStrategy;
     private final ConnectionProvider target;
     private final Trace trace;
+    private final boolean multiplexing;
     private ConcurrentMap<String, Connection> connectionMap;
+    // the version of the shard variables set on the held connections
+    private final ConcurrentMap<String, Integer> variablesVersions = New.concurrentHashMap();
     private final Closer closer = new Closer();
 
     public ConnectionHolder(Session session) {
@@ -35,6 +41,7 @@ public class ConnectionHolder implements ConnectionProvider {
         this.target = repository.getConnectionProvider();
         String mode = database.getSettings().transactionMode;
         this.holderStrategy = transactionMode(mode);
+        this.multiplexing = database.getSettings().multiplexing;
         connectionMap = New.concurrentHashMap();
     }
 
@@ -73,21 +80,43 @@ public class ConnectionHolder implements ConnectionProvider {
         Connection conn;
         if (session.getAutoCommit()) {
             conn = getRawConnection(options);
+        } else if (isMultiplexed(options)) {
+            conn = getRawConnectionForReadOnly(options);
         } else {
             conn = getConnectionWithStrategy(options);
         }
+        if (!multiplexing) {
+            // the session variables only follow the multiplexed connections
+            return conn;
+        }
+        String shardName = options.shardName;
+        boolean held = !session.getAutoCommit() && conn == connectionMap.get(shardName);
+        try {
+            if (!held) {
+                setShardVariables(conn, false);
+            } else {
+                Integer version = session.getShardVariablesVersion();
+                if (!version.equals(variablesVersions.put(shardName, version))) {
+                    setShardVariables(conn, false);
+                }
+            }
+        } catch (SQLException e) {
+            if (!held) {
+                release(conn, options);
+            }
+            throw DbException.convert(e);
+        }
         return conn;
     }
 
     @Override
     public void closeConnection(Connection connection, Options options) {
         if (session.getAutoCommit()) {
-            target.closeConnection(connection, options);
-            
+            release(connection, options);
         } else {
             Connection contains = connectionMap.get(options.shardName);
             if (connection != contains) {
-                target.closeConnection(connection, options);
+                release(connection, options);
             }
         }
     }
@@ -99,9 +128,69 @@ public class ConnectionHolder implements ConnectionProvider {
     public List<String> closeAndClear() {
         List<String> foreach = foreach(closer);
         connectionMap.clear();
+        variablesVersions.clear();
         return foreach;
     }
 
+    /**
+     * Whether a query of the transaction may use a connection of its own
+     * instead of the connection held by the transaction. That is the case
+     * if it takes no locks, the shard connection was not held yet and the
+     * transaction does not need a consistent snapshot.
+     */
+    private boolean isMultiplexed(Options options) {
+        if (!multiplexing || !options.lockFree || connectionMap.containsKey(options.shardName)) {
+            return false;
+        }
+        if (holderStrategy == HolderStrategy.STRICTLY && !connectionMap.isEmpty()) {
+            return false;
+        }
+        int isolation = session.getIsolation();
+        return isolation == Connection.TRANSACTION_READ_COMMITTED
+                || isolation == Connection.TRANSACTION_READ_UNCOMMITTED;
+    }
+
+    /**
+     * Set the session variables of the shards on a connection, or reset them
+     * to the defaults before the connection is returned to the pool.
+     */
+    private void setShardVariables(Connection conn, boolean reset) throws SQLException {
+        Map<String, String> variables = session.getShardVariables();
+        if (variables.isEmpty()) {
+            return;
+        }
+        StatementBuilder buff = new StatementBuilder("SET ");
+        for (Map.Entry<String, String> e : variables.entrySet()) {
+            buff.appendExceptFirst(", ");
+            buff.append(e.getKey()).append(" = ").append(reset ? "DEFAULT" : e.getValue());
+        }
+        Statement stmt = conn.createStatement();
+        try {
+            stmt.execute(buff.toString());
+        } finally {
+            JdbcUtils.closeSilently(stmt);
+        }
+    }
+
+    private void release(Connection connection, Options options) {
+        if (multiplexing) {
+            try {
+                setShardVariables(connection, true);
+            } catch (SQLException e) {
+                // the variables of this session would leak into the next one
+                if (JdbcUtils.abortSilently(connection)) {
+                    trace.error(e, "Reset {0} connection variables error, the connection is evicted",
+                            options.shardName);
+                } else {
+                    trace.error(e, "Reset {0} connection variables error, the connection is not returned to the pool",
+                            options.shardName);
+                }
+                return;
+            }
+        }
+        target.closeConnection(connection, options);
+    }
+
     /**
      * Each shard have a database connection, the worker thread may concurrently
      * use a shard connection executing SQL (such as executing ddl statement),
@@ -196,8 +285,10 @@ public class ConnectionHolder implements ConnectionProvider {
                     conn.setTransactionIsolation(session.getIsolation());
                 }
             }
-            if (conn.isReadOnly() != session.isReadOnly()) {
-                conn.setReadOnly(session.isReadOnly());
+            // the read only hint only applies to the connection of a statement
+            boolean readOnly = session.isReadOnly() || (options.readOnly && session.getAutoCommit());
+            if (conn.isReadOnly() != readOnly) {
+                conn.setReadOnly(readOnly);
             }
         } catch (Exception e) {
             throw DbException.convert(e);
@@ -239,7 +330,7 @@ public class ConnectionHolder implements ConnectionProvider {
         @Override
         public String handle(String name, Connection connection) throws SQLException {
             try {
-                target.closeConnection(connection, Options.build().shardName(name));
+                release(connection, Options.build().shardName(name));
             } catch (Exception e) {
                 trace.error(e, "Close {0} connection error", name);
                 // throw DbException.convert(e);
@@ -18,9 +18,11 @@ package com.openddal.repo.tx;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Savepoint;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicLong;
 
+import com.openddal.engine.FlightRecorderEvents;
 import com.openddal.engine.Session;
 import com.openddal.engine.spi.Transaction;
 import com.openddal.message.DbException;
@@ -77,13 +79,15 @@ public class JdbcTransaction implements Transaction {
     @Override
     public void commit() {
         checkClosed();
-        connHolder.foreach(new Callback<String>() {
+        Object event = FlightRecorderEvents.begin(FlightRecorderEvents.COMMIT);
+        List<String> shards = connHolder.foreach(new Callback<String>() {
             @Override
             public String handle(String shardName, Connection connection) throws SQLException {
                 connection.commit();
                 return shardName;
             }
         });
+        FlightRecorderEvents.commit(event, session, null, shards.size());
         connHolder.closeAndClear();
     }
 
@@ -20,6 +20,7 @@ import java.sql.SQLException;
 import java.util.ArrayList;
 
 import com.openddal.command.expression.Expression;
+import com.openddal.engine.Constants;
 import com.openddal.engine.Session;
 import com.openddal.message.DbException;
 import com.openddal.util.New;
@@ -298,6 +299,27 @@ public class LocalResult implements ResultInterface, ResultTarget {
         return rowCount;
     }
 
+    /**
+     * Estimate the memory used by the rows of this result, after
+     * {@link #done()} was called.
+     *
+     * @return the estimated size in bytes
+     */
+    public long getMemory() {
+        long memory = 0;
+        if (rows != null) {
+            for (Value[] row : rows) {
+                memory += Constants.MEMORY_OBJECT + row.length * Constants.MEMORY_POINTER;
+                for (Value v : row) {
+                    if (v != null) {
+                        memory += v.getMemory();
+                    }
+                }
+            }
+        }
+        return memory;
+    }
+
     /**
      * Set the number of rows that this result will return at the maximum.
      *
@@ -24,6 +24,8 @@ import java.util.Set;
 import com.openddal.dbobject.table.Column;
 import com.openddal.dbobject.table.TableMate;
 import com.openddal.result.SearchRow;
+import com.openddal.route.rule.ObjectNode;
+import com.openddal.route.rule.PartitionHints;
 import com.openddal.route.rule.RoutingResult;
 import com.openddal.value.Value;
 
@@ -36,6 +38,27 @@ public interface RoutingHandler {
 
     RoutingResult doRoute(TableMate table, SearchRow row);
 
+    /**
+     * The fast path of {@link #doRoute(TableMate, SearchRow)} for the sharded
+     * table, route the row to the single table node it belongs to without
+     * building the routing arguments and the routing result.
+     *
+     * @param table the sharded table
+     * @param row the row with the rule column values
+     * @return the table node of the row
+     */
+    ObjectNode doRouteSingle(TableMate table, SearchRow row);
+
     RoutingResult doRoute(TableMate table, SearchRow first, SearchRow last, Map<Column, Set<Value>> inColumns);
 
+    /**
+     * Route the table to the table nodes pinned by the partition hints
+     * instead of the conditions of the statement.
+     *
+     * @param table the table
+     * @param hints the hints pinning the table nodes
+     * @return the routing result of the table nodes matched by the hints
+     */
+    RoutingResult doRoute(TableMate table, PartitionHints hints);
+
 }
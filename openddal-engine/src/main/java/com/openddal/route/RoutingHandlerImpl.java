@@ -31,6 +31,7 @@ import com.openddal.dbobject.table.TableMate;
 import com.openddal.engine.Database;
 import com.openddal.result.SearchRow;
 import com.openddal.route.rule.ObjectNode;
+import com.openddal.route.rule.PartitionHints;
 import com.openddal.route.rule.RoutingArgument;
 import com.openddal.route.rule.RoutingCalculator;
 import com.openddal.route.rule.RoutingCalculatorImpl;
@@ -83,9 +84,43 @@ public class RoutingHandlerImpl implements RoutingHandler {
         }
     }
 
+    @Override
+    public ObjectNode doRouteSingle(TableMate table, SearchRow row) {
+        TableRule tr = table.getTableRule();
+        switch (tr.getType()) {
+        case TableRule.SHARDED_NODE_TABLE:
+            try {
+                Column[] ruleCols = table.getRuleColumns();
+                if (ruleCols.length == 1) {
+                    return routeSingleColumn((ShardedTableRule) tr, ruleCols[0], row);
+                }
+                return getRoutingResult(table, row).getSingleResult();
+            } catch (TableRoutingException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new TableRoutingException(table.getName() + " routing error.", e);
+            }
+        default:
+            throw new TableRoutingException(table.getName() + " does not support routing");
+        }
+    }
+
+    /**
+     * Route the row of a table sharded by one column straight through the
+     * partitioner, without the routing arguments.
+     */
+    private ObjectNode routeSingleColumn(ShardedTableRule tr, Column ruleCol, SearchRow row) {
+        Value v = row.getValue(ruleCol.getColumnId());
+        v = ruleCol.convert(v);
+        return trc.calculate(tr, v);
+    }
+
     private RoutingResult getRoutingResult(TableMate table, SearchRow row) {
         ShardedTableRule tr = (ShardedTableRule) table.getTableRule();
         Column[] ruleCols = table.getRuleColumns();
+        if (ruleCols.length == 1) {
+            return fixedRoutingResult(routeSingleColumn(tr, ruleCols[0], row));
+        }
         List<RoutingArgument> args = New.arrayList(ruleCols.length);
         for (Column ruleCol : ruleCols) {
             Value v = row.getValue(ruleCol.getColumnId());
@@ -112,6 +147,16 @@ public class RoutingHandlerImpl implements RoutingHandler {
         if (tr instanceof ShardedTableRule)
             try {
                 Column[] ruleCols = table.getRuleColumns();
+                if (ruleCols.length == 1 && first != null && last != null) {
+                    // point lookup of X=? skip the routing arguments
+                    int idx = ruleCols[0].getColumnId();
+                    Value startV = first.getValue(idx);
+                    Value endV = last.getValue(idx);
+                    if (startV != null && endV != null && database.compare(startV, endV) == 0) {
+                        startV = ruleCols[0].convert(startV);
+                        return fixedRoutingResult(trc.calculate((ShardedTableRule) tr, startV));
+                    }
+                }
                 List<RoutingArgument> args = New.arrayList(ruleCols.length);
                 for (Column ruleCol : ruleCols) {
                     String ruleColName = ruleCol.getName();
@@ -167,6 +212,29 @@ public class RoutingHandlerImpl implements RoutingHandler {
 
     }
 
+    @Override
+    public RoutingResult doRoute(TableMate table, PartitionHints hints) {
+        TableRule tr = table.getTableRule();
+        List<ObjectNode> selected;
+        switch (tr.getType()) {
+        case TableRule.SHARDED_NODE_TABLE:
+            selected = hints.select(((ShardedTableRule) tr).getObjectNodes());
+            break;
+        case TableRule.GLOBAL_NODE_TABLE:
+            selected = hints.select(((GlobalTableRule) tr).getBroadcasts());
+            break;
+        case TableRule.FIXED_NODE_TABLE:
+            return fixedRoutingResult(tr.getMetadataNode());
+        default:
+            throw new TableRoutingException(table.getName() + " does not support routing");
+        }
+        if (selected.isEmpty()) {
+            throw new TableRoutingException(table.getName() + " has no table node matched the hint shard="
+                    + hints.getShard() + ", node=" + hints.getNode());
+        }
+        return RoutingResult.fixedResult(selected);
+    }
+
     private RoutingResult fixedRoutingResult(ObjectNode... tableNode) {
         RoutingResult result = RoutingResult.fixedResult(tableNode);
         return result;
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2014-2016 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.openddal.route.algorithm;
+
+/**
+ * The online move of a bucket range of a {@link HashBucketPartitioner} to
+ * another table node. While the rows are copied the writes on the source node
+ * are mirrored to the target node, then the moved rows are purged from the
+ * source node and the buckets are switched to the target node at once.
+ * <p>
+ * The write statements hold the read lock of the
+ * {@link HashBucketPartitioner#getMigrationLock()} from the routing to the end
+ * of their execution, the copy of a page and the purge and switch of the
+ * routing table hold the write lock, so a page is never copied while a write
+ * which missed the mirroring is in flight. The queries hold the read lock too
+ * while the buckets are purged and switched.
+ *
+ * @author jorgie.li
+ */
+public final class BucketMigration {
+
+    public static final int COPYING = 1;
+    public static final int PURGING = 2;
+    public static final int DONE = 3;
+    public static final int FAILED = 4;
+
+    private final int fromBucket;
+    private final int toBucket;
+    private final int sourceNode;
+    private final int targetNode;
+    private volatile int state = COPYING;
+    private volatile boolean switched;
+    private volatile long copiedRows;
+    private volatile long purgedRows;
+    private volatile String error;
+
+    BucketMigration(int fromBucket, int toBucket, int sourceNode, int targetNode) {
+        this.fromBucket = fromBucket;
+        this.toBucket = toBucket;
+        this.sourceNode = sourceNode;
+        this.targetNode = targetNode;
+    }
+
+    public boolean contains(int bucket) {
+        return bucket >= fromBucket && bucket <= toBucket;
+    }
+
+    /**
+     * @return true if the writes on the source node must be mirrored to the
+     *         target node
+     */
+    public boolean isMirroring() {
+        return !switched && (state == COPYING || state == PURGING);
+    }
+
+    public int getFromBucket() {
+        return fromBucket;
+    }
+
+    public int getToBucket() {
+        return toBucket;
+    }
+
+    public int getSourceNode() {
+        return sourceNode;
+    }
+
+    public int getTargetNode() {
+        return targetNode;
+    }
+
+    public int getState() {
+        return state;
+    }
+
+    void setState(int state) {
+        this.state = state;
+    }
+
+    void setSwitched() {
+        this.switched = true;
+    }
+
+    public long getCopiedRows() {
+        return copiedRows;
+    }
+
+    public void addCopiedRows(long rows) {
+        this.copiedRows += rows;
+    }
+
+    public long getPurgedRows() {
+        return purgedRows;
+    }
+
+    public void addPurgedRows(long rows) {
+        this.purgedRows += rows;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder buff = new StringBuilder();
+        buff.append("buckets ").append(fromBucket).append('-').append(toBucket);
+        buff.append(" from node ").append(sourceNode).append(" to node ").append(targetNode).append(": ");
+        switch (state) {
+        case COPYING:
+            buff.append("COPYING, ").append(copiedRows).append(" rows copied");
+            break;
+        case PURGING:
+            buff.append("PURGING, ").append(copiedRows).append(" rows copied");
+            break;
+        case DONE:
+            buff.append("DONE, ").append(copiedRows).append(" rows moved");
+            break;
+        default:
+            buff.append("FAILED, ").append(error);
+        }
+        return buff.toString();
+    }
+
+    void fail(String error) {
+        this.error = error;
+        this.state = FAILED;
+    }
+
+}
@@ -81,10 +81,16 @@ public abstract class CommonPartitioner implements Partitioner {
 
     @Override
     public Integer[] partition(Value... values) {
+        if (values.length == 1) {
+            return new Integer[] { partition(values[0]) };
+        }
         Set<Integer> result = New.linkedHashSet();
         for (Value value : values) {
             Integer partition = partition(value);
             result.add(partition);
+            if (result.size() == tableNodes.length) {
+                break;
+            }
         }
         return result.toArray(new Integer[result.size()]);
     }
@@ -97,6 +103,53 @@ public abstract class CommonPartitioner implements Partitioner {
         return result;
     }
 
+    /**
+     * The nodes between first and last, both are clamped to the bounds of
+     * the table nodes.
+     *
+     * @param first the first node index
+     * @param last the last node index
+     * @return the nodes, empty if first is greater than last
+     */
+    protected Integer[] nodeRange(int first, int last) {
+        first = Math.max(first, 0);
+        last = Math.min(last, tableNodes.length - 1);
+        if (first > last) {
+            return new Integer[0];
+        }
+        Integer[] result = new Integer[last - first + 1];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = first + i;
+        }
+        return result;
+    }
+
+    /**
+     * The nodes between first and last of the cyclic segments, the range
+     * wraps around the last table node when first is greater than last.
+     *
+     * @param first the first node index
+     * @param last the last node index
+     * @return the nodes
+     */
+    protected Integer[] wrappedNodeRange(int first, int last) {
+        if (first <= last) {
+            return nodeRange(first, last);
+        }
+        int count = tableNodes.length;
+        first = Math.min(first, count);
+        last = Math.min(last, count - 1);
+        Integer[] result = new Integer[count - first + last + 1];
+        int idx = 0;
+        for (int i = first; i < count; i++) {
+            result[idx++] = i;
+        }
+        for (int i = 0; i <= last; i++) {
+            result[idx++] = i;
+        }
+        return result;
+    }
+
     protected List<Value> enumRange(Value firstV, Value lastV) {
         if (isNull(firstV) || isNull(lastV)) {
             return null;
@@ -15,10 +15,14 @@
  */
 package com.openddal.route.algorithm;
 
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
 import com.openddal.route.rule.ObjectNode;
 import com.openddal.util.MurmurHash;
 import com.openddal.value.Value;
-import com.openddal.value.ValueLong;
 import com.openddal.value.ValueTimestamp;
 
 /**
@@ -28,9 +32,21 @@ public class HashBucketPartitioner extends CommonPartitioner {
 
     private static final int HASH_BUCKET_SIZE = 1024;
 
+    // the partitioners purging the source node and switching the routing
+    // table of a migration, the queries hold their migration read locks
+    private static final List<HashBucketPartitioner> SWITCHING = new CopyOnWriteArrayList<HashBucketPartitioner>();
+
     private int[] count;
     private int[] length;
-    private PartitionUtil partitionUtil;
+    // the routing table of the configuration
+    private int[] configBuckets;
+    // the routing table, replaced as a whole when buckets are moved
+    private volatile int[] buckets;
+    private volatile boolean hasIdleNodes;
+    private final ReadWriteLock migrationLock = new ReentrantReadWriteLock(true);
+    private volatile BucketMigration migration;
+    private volatile BucketMigration lastMigration;
+    private boolean hashStringChars;
 
     public void setPartitionCount(String partitionCount) {
         this.count = toIntArray(partitionCount);
@@ -40,10 +56,33 @@ public class HashBucketPartitioner extends CommonPartitioner {
         this.length = toIntArray(partitionLength);
     }
 
+    /**
+     * Hash the string values by their characters. By default a string is
+     * hashed by its bytes as hex, which only works for keys made of an even
+     * number of hex digits; the setting changes the node of such keys, so it
+     * is only for the rules of new tables.
+     *
+     * @param hashStringChars whether to hash the characters of the strings
+     */
+    public void setHashStringChars(boolean hashStringChars) {
+        this.hashStringChars = hashStringChars;
+    }
+
     @Override
     public void initialize(ObjectNode[] tableNodes) {
         super.initialize(tableNodes);
-        partitionUtil = new PartitionUtil(HASH_BUCKET_SIZE, count, length);
+        PartitionUtil partitionUtil = new PartitionUtil(HASH_BUCKET_SIZE, count, length);
+        configBuckets = partitionUtil.getSegments();
+        setBuckets(configBuckets.clone());
+    }
+
+    private void setBuckets(int[] routing) {
+        buckets = routing;
+        boolean idle = false;
+        for (int i = 0; i < getTableNodes().length; i++) {
+            idle |= isIdle(i);
+        }
+        hasIdleNodes = idle;
     }
 
     @Override
@@ -52,14 +91,240 @@ public class HashBucketPartitioner extends CommonPartitioner {
         if (isNull) {
             return getDefaultNodeIndex();
         }
-        byte[] bytes = toBytes(value);
-        long hash64 = MurmurHash.hash64(bytes, bytes.length);
-        return partitionUtil.partition(hash64);
+        return buckets[bucket(value)];
+    }
+
+    /**
+     * Get the hash bucket of the value.
+     *
+     * @param value the not null value
+     * @return the bucket
+     */
+    public int bucket(Value value) {
+        return (int) (hash(value) & (HASH_BUCKET_SIZE - 1));
+    }
+
+    /**
+     * @return a copy of the node index of each bucket
+     */
+    public int[] getBuckets() {
+        return buckets.clone();
+    }
+
+    /**
+     * @return a copy of the node index of each bucket in the configuration
+     */
+    public int[] getConfigBuckets() {
+        return configBuckets.clone();
+    }
+
+    /**
+     * Replace the routing table by the one the bucket migrations left.
+     *
+     * @param routing the node index of each bucket
+     */
+    public synchronized void restoreBuckets(int[] routing) {
+        if (routing.length != HASH_BUCKET_SIZE) {
+            throw new IllegalArgumentException("Invalid bucket count " + routing.length);
+        }
+        for (int i = 0; i < routing.length; i++) {
+            if (routing[i] < 0 || routing[i] >= getTableNodes().length) {
+                throw new IllegalArgumentException("Invalid node " + routing[i] + " of the bucket " + i);
+            }
+        }
+        if (migration != null) {
+            throw new IllegalStateException("A migration is in progress: " + migration);
+        }
+        setBuckets(routing.clone());
+    }
+
+    /**
+     * The lock of the bucket migration, the write statements hold the read
+     * lock from the routing to the end of their execution while a migration
+     * is running, and so do the queries while the routing table is switched.
+     * The copy of a page and the purge and switch hold the write lock.
+     *
+     * @return the lock
+     */
+    public ReadWriteLock getMigrationLock() {
+        return migrationLock;
+    }
+
+    /**
+     * Get the partitioners which are switching the routing table of a
+     * migration. The queries hold the read locks of their migrations from the
+     * routing until the shard statements are executed, so that no query sees
+     * the moved rows on both nodes or on none.
+     *
+     * @return the partitioners, usually none
+     */
+    public static List<HashBucketPartitioner> getSwitching() {
+        return SWITCHING;
+    }
+
+    /**
+     * Start to purge the copied rows of the migration, the queries hold the
+     * read lock of the migration until {@link #endSwitch()}.
+     *
+     * @param m the migration
+     */
+    public synchronized void beginSwitch(BucketMigration m) {
+        if (m != migration || m.getState() != BucketMigration.COPYING) {
+            throw new IllegalStateException("Can not switch the migration " + m);
+        }
+        m.setState(BucketMigration.PURGING);
+        SWITCHING.add(this);
+    }
+
+    public void endSwitch() {
+        SWITCHING.remove(this);
+    }
+
+    /**
+     * @return the bucket migration in progress, or null
+     */
+    public BucketMigration getMigration() {
+        return migration;
+    }
+
+    /**
+     * @return the last started bucket migration, or null
+     */
+    public BucketMigration getLastMigration() {
+        return lastMigration;
+    }
+
+    /**
+     * @return true if a table node owns no bucket
+     */
+    public boolean hasIdleNodes() {
+        return hasIdleNodes;
+    }
+
+    /**
+     * Check if no bucket is routed to the table node, such a node holds no
+     * rows of the table but the ones being moved to it.
+     *
+     * @param nodeIndex the index of the table node
+     * @return true if the node owns no bucket
+     */
+    public boolean isIdle(int nodeIndex) {
+        int[] current = buckets;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == nodeIndex) {
+                return false;
+            }
+        }
+        return true;
     }
-    
-    
-    private byte[] toBytes(Value value) {
-        byte[] bytes;
+
+    /**
+     * Start to move the buckets from the node owning them to an idle node.
+     *
+     * @param fromBucket the first bucket
+     * @param toBucket the last bucket
+     * @param targetNode the index of the idle target node
+     * @return the migration
+     */
+    public synchronized BucketMigration beginMigration(int fromBucket, int toBucket, int targetNode) {
+        if (migration != null) {
+            throw new IllegalStateException("Another migration is in progress: " + migration);
+        }
+        if (fromBucket < 0 || toBucket >= HASH_BUCKET_SIZE || fromBucket > toBucket) {
+            throw new IllegalArgumentException(
+                    "Invalid bucket range " + fromBucket + "-" + toBucket + ", must be in 0-" + (HASH_BUCKET_SIZE - 1));
+        }
+        if (targetNode < 0 || targetNode >= getTableNodes().length) {
+            throw new IllegalArgumentException("Invalid target node " + targetNode);
+        }
+        if (!isIdle(targetNode)) {
+            throw new IllegalArgumentException("The target node " + getTableNodes()[targetNode] + " owns buckets");
+        }
+        int sourceNode = buckets[fromBucket];
+        for (int i = fromBucket; i <= toBucket; i++) {
+            if (buckets[i] != sourceNode) {
+                throw new IllegalArgumentException(
+                        "The buckets " + fromBucket + "-" + toBucket + " are not owned by one node");
+            }
+        }
+        migration = new BucketMigration(fromBucket, toBucket, sourceNode, targetNode);
+        lastMigration = migration;
+        return migration;
+    }
+
+    /**
+     * Get the routing table after the switch of the migration.
+     *
+     * @param m the migration
+     * @return the node index of each bucket
+     */
+    public synchronized int[] getSwitchedBuckets(BucketMigration m) {
+        int[] switched = buckets.clone();
+        for (int i = m.getFromBucket(); i <= m.getToBucket(); i++) {
+            switched[i] = m.getTargetNode();
+        }
+        return switched;
+    }
+
+    /**
+     * Get the migration of the buckets whose rows may still be on the source
+     * node, after the routing table was restored. Its rows must be purged
+     * before the table is used.
+     *
+     * @param sourceNode the index of the source node
+     * @param fromBucket the first bucket
+     * @param toBucket the last bucket
+     * @return the migration to purge
+     */
+    public synchronized BucketMigration getPendingPurge(int sourceNode, int fromBucket, int toBucket) {
+        if (fromBucket < 0 || toBucket >= HASH_BUCKET_SIZE || fromBucket > toBucket) {
+            throw new IllegalArgumentException("Invalid bucket range " + fromBucket + "-" + toBucket);
+        }
+        for (int i = fromBucket; i <= toBucket; i++) {
+            if (buckets[i] == sourceNode || buckets[i] != buckets[fromBucket]) {
+                throw new IllegalArgumentException(
+                        "The buckets " + fromBucket + "-" + toBucket + " are not moved from " + sourceNode);
+            }
+        }
+        BucketMigration m = new BucketMigration(fromBucket, toBucket, sourceNode, buckets[fromBucket]);
+        m.setState(BucketMigration.PURGING);
+        return m;
+    }
+
+    /**
+     * Route the moving buckets to the target node once they are purged from
+     * the source node, the caller must hold the write lock of the
+     * {@link #getMigrationLock()}.
+     */
+    public synchronized void switchMigration(BucketMigration m) {
+        if (m != migration || m.getState() != BucketMigration.PURGING) {
+            throw new IllegalStateException("Can not switch the migration " + m);
+        }
+        setBuckets(getSwitchedBuckets(m));
+        m.setSwitched();
+    }
+
+    /**
+     * Finish the migration, a failed migration before the switch leaves the
+     * routing table unchanged.
+     */
+    public synchronized void endMigration(BucketMigration m, String error) {
+        if (m != migration) {
+            return;
+        }
+        if (error == null) {
+            m.setState(BucketMigration.DONE);
+        } else {
+            m.fail(error);
+        }
+        migration = null;
+    }
+
+    /**
+     * Hash the value directly over its long data, the other types are hashed
+     * by their bytes.
+     */
+    private long hash(Value value) {
         switch (value.getType()) {
 
         case Value.BYTE:
@@ -69,27 +334,24 @@ public class HashBucketPartitioner extends CommonPartitioner {
         case Value.FLOAT:
         case Value.DECIMAL:
         case Value.DOUBLE:
-            long valueLong = value.getLong();
-            bytes = ValueLong.get(valueLong).getBytes();
-            break;
+            return MurmurHash.hash64(value.getLong());
         case Value.DATE:
         case Value.TIME:
         case Value.TIMESTAMP:
             ValueTimestamp v = (ValueTimestamp) value.convertTo(Value.TIMESTAMP);
-            long toLong = v.getTimestamp().getTime();
-            bytes = ValueLong.get(toLong).getBytes();
-            break;
+            return MurmurHash.hash64(v.getTimestamp().getTime());
         case Value.STRING:
         case Value.STRING_FIXED:
         case Value.STRING_IGNORECASE:
-            String string = value.getString();
-            bytes = string.getBytes();
+            if (hashStringChars) {
+                return MurmurHash.hash64(value.getString());
+            }
+            // by default the bytes of the hex string, the placement of the
+            // existing tables
         default:
-            bytes = value.getBytes(); 
+            byte[] bytes = value.getBytesNoCopy();
+            return MurmurHash.hash64(bytes, bytes.length);
         }
-        
-        
-        return bytes;
     }
 
 }
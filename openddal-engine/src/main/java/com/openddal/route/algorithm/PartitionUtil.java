@@ -68,6 +68,15 @@ public final class PartitionUtil {
         }
     }
 
+    /**
+     * @return a copy of the segment of each partition slot
+     */
+    public int[] getSegments() {
+        int[] copy = new int[segment.length];
+        System.arraycopy(segment, 0, copy, 0, segment.length);
+        return copy;
+    }
+
     /**
      * if x is 2^n，x % 2^n == x & (2^n - 1)
      *
@@ -79,4 +88,29 @@ public final class PartitionUtil {
         return segment[index];
     }
 
+    /**
+     * The segments of the continuous values from begin to end. The segments
+     * are contiguous in the partition, so the range is mapped to its first
+     * and last segment, the first one is greater than the last one when the
+     * range wraps around the partitionLength.
+     *
+     * @param begin the begin value
+     * @param end the end value, not less than begin
+     * @return the first and the last segment, or null if the range covers
+     *         all the segments
+     */
+    public int[] partition(long begin, long end) {
+        if (end - begin >= partitionLength - 1 || end - begin < 0) {
+            return null;
+        }
+        int beginIndex = (int) (begin & andValue);
+        int endIndex = (int) (end & andValue);
+        int first = segment[beginIndex];
+        int last = segment[endIndex];
+        if (beginIndex > endIndex && first == last) {
+            return null;
+        }
+        return new int[] { first, last };
+    }
+
 }
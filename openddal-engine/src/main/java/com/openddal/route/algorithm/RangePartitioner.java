@@ -18,7 +18,6 @@ package com.openddal.route.algorithm;
 import com.openddal.route.rule.ObjectNode;
 import com.openddal.route.rule.RuleEvaluateException;
 import com.openddal.value.Value;
-import com.openddal.value.ValueNull;
 import com.openddal.value.ValueTimestamp;
 
 /**
@@ -110,8 +109,7 @@ public class RangePartitioner extends CommonPartitioner {
 
     @Override
     public Integer[] partition(Value beginValue, Value endValue) {
-        if (beginValue == null || beginValue == ValueNull.INSTANCE
-                || endValue == null || endValue == ValueNull.INSTANCE) {
+        if (isNull(beginValue) || isNull(endValue)) {
             return allNodes();
         }
         if (beginValue.getType() != endValue.getType()) {
@@ -125,51 +123,38 @@ public class RangePartitioner extends CommonPartitioner {
             case Value.SHORT:
             case Value.INT:
             case Value.LONG:
-                vBegin = beginValue.getLong();
-                vEnd = endValue.getLong();
-                break;
             case Value.FLOAT:
             case Value.DECIMAL:
             case Value.DOUBLE:
-                double aDouble = beginValue.getDouble();
-                double bDouble = endValue.getDouble();
-                vBegin = Math.round(aDouble);
-                vEnd = Math.round(bDouble);
+                vBegin = beginValue.getLong();
+                vEnd = endValue.getLong();
                 break;
             case Value.DATE:
             case Value.TIME:
             case Value.TIMESTAMP:
-                vBegin = beginValue.getLong();
-                vEnd = endValue.getLong();
+                vBegin = ((ValueTimestamp) beginValue.convertTo(Value.TIMESTAMP)).getTimestamp().getTime();
+                vEnd = ((ValueTimestamp) endValue.convertTo(Value.TIMESTAMP)).getTimestamp().getTime();
                 break;
             case Value.STRING:
             case Value.STRING_FIXED:
             case Value.STRING_IGNORECASE:
-                String str1 = beginValue.getString();
-                String str2 = endValue.getString();
-                vBegin = hash(str1, 0, str1.length());
-                vEnd = hash(str2, 0, str2.length());
-                break;
+                // the string hash does not keep the order of the strings
+                if (beginValue.getString().equals(endValue.getString())) {
+                    return new Integer[] { partition(beginValue) };
+                }
+                return allNodes();
             default:
                 throw new RuleEvaluateException("Invalid type for " + getClass().getName());
 
         }
-        if ((vEnd - vBegin) >= chunk - 1) {
-            return allNodes();
-        } else if ((vEnd - vBegin) < 0) {
+        if (vEnd < vBegin) {
             return new Integer[0];
-        } else {
-            Integer begin = partition(beginValue);
-            Integer end = partition(endValue);
-            int max = Math.max(begin, end);
-            int min = Math.min(begin, end);
-            Integer[] re = new Integer[(max - min) + 1];
-            int idx = 0;
-            for (Integer i = min; i <= max; i++) {
-                re[idx++] = i;
-            }
-            return re;
         }
+        int[] segments = partitionUtil.partition(vBegin, vEnd);
+        if (segments == null) {
+            return allNodes();
+        }
+        return wrappedNodeRange(segments[0], segments[1]);
     }
 
 }
@@ -16,13 +16,16 @@
 package com.openddal.route.algorithm;
 
 import java.text.SimpleDateFormat;
-import java.util.Calendar;
 import java.util.Date;
+import java.util.Set;
+import java.util.TreeSet;
 
 import com.openddal.route.rule.ObjectNode;
 import com.openddal.route.rule.RuleEvaluateException;
+import com.openddal.util.DateTimeUtils;
 import com.openddal.util.StringUtils;
 import com.openddal.value.Value;
+import com.openddal.value.ValueDate;
 import com.openddal.value.ValueTimestamp;
 
 /**
@@ -41,6 +44,7 @@ public class RollingPartitioner extends CommonPartitioner {
     private long startNumber;
     private long rollingNumber;
     private int rollingType;
+    private int startYear;
 
     @Override
     public void initialize(ObjectNode[] tableNodes) {
@@ -62,6 +66,7 @@ public class RollingPartitioner extends CommonPartitioner {
             } catch (Exception e) {
                 throw new IllegalArgumentException("startBy must be number or date of yyyy-MM-dd");
             }
+            startYear = DateTimeUtils.yearFromDateValue(DateTimeUtils.dateValueFromDate(startNumber));
         }
         rollingBy = rollingBy.replaceAll("\\s", "");
         if (StringUtils.isNumber(rollingBy)) {
@@ -93,86 +98,132 @@ public class RollingPartitioner extends CommonPartitioner {
         if (isNull) {
             return getDefaultNodeIndex();
         }
+        switch (rollingType) {
+            case NUMBER_TYPE:
+                return position(getNumber(value));
+            case DAYS_TYPE:
+                return DateTimeUtils.dayFromDateValue(getDateValue(value)) - 1;
+            case MONTHS_TYPE:
+                return DateTimeUtils.monthFromDateValue(getDateValue(value)) - 1;
+            case YEARS_TYPE:
+                return yearPosition(getDateValue(value));
+            default:
+                throw new IllegalStateException("Invalid rollingType");
+        }
+    }
+
+
+    @Override
+    public Integer[] partition(Value beginValue, Value endValue) {
+        int count = getTableNodes().length;
         switch (rollingType) {
             case NUMBER_TYPE: {
-                int type = value.getType();
-                switch (type) {
-                    case Value.BYTE:
-                    case Value.SHORT:
-                    case Value.INT:
-                    case Value.LONG:
-                    case Value.FLOAT:
-                    case Value.DECIMAL:
-                    case Value.DOUBLE:
-                        long valueLong = value.getLong();
-                        int position = (int) ((valueLong - startNumber) / rollingNumber);
-                        return position;
-                    default:
-                        throw new RuleEvaluateException("Invalid type for " + getClass().getName());
-                }
+                int begin = isNull(beginValue) ? 0 : position(getNumber(beginValue));
+                int end = isNull(endValue) ? count - 1 : position(getNumber(endValue));
+                return nodeRange(begin, end);
+            }
+            case YEARS_TYPE: {
+                int begin = isNull(beginValue) ? 0 : yearPosition(getDateValue(beginValue));
+                int end = isNull(endValue) ? count - 1 : yearPosition(getDateValue(endValue));
+                return nodeRange(begin, end);
             }
             case DAYS_TYPE: {
-                Calendar calendar = Calendar.getInstance();
-                calendar.setTimeInMillis(getTime(value));
-                return calendar.get(Calendar.DAY_OF_MONTH) - 1;
+                if (isNull(beginValue) || isNull(endValue)) {
+                    return allNodes();
+                }
+                long begin = getDateValue(beginValue);
+                long end = getDateValue(endValue);
+                long beginDay = DateTimeUtils.absoluteDayFromDateValue(begin);
+                long days = DateTimeUtils.absoluteDayFromDateValue(end) - beginDay;
+                if (days < 0) {
+                    return new Integer[0];
+                }
+                if (days >= 31) {
+                    return allNodes();
+                }
+                int first = DateTimeUtils.dayFromDateValue(begin) - 1;
+                int last = DateTimeUtils.dayFromDateValue(end) - 1;
+                int months = monthIndex(end) - monthIndex(begin);
+                if (months == 0) {
+                    return nodeRange(first, last);
+                }
+                if (months == 1 && first > last) {
+                    return wrappedNodeRange(first, last);
+                }
+                // crosses a short month, such as 01-31 to 03-01, or ends on
+                // a later day of the next month
+                Set<Integer> nodes = new TreeSet<Integer>();
+                for (long day = beginDay; day <= beginDay + days; day++) {
+                    int node = DateTimeUtils.dayFromDateValue(DateTimeUtils.dateValueFromAbsoluteDay(day)) - 1;
+                    if (node < count) {
+                        nodes.add(node);
+                    }
+                }
+                return nodes.toArray(new Integer[nodes.size()]);
             }
             case MONTHS_TYPE: {
-                Calendar calendar = Calendar.getInstance();
-                calendar.setTimeInMillis(getTime(value));
-                return calendar.get(Calendar.MONTH);
-            }
-            case YEARS_TYPE: {
-                if (startNumber < 1) {
-                    throw new IllegalArgumentException("need to setting startBy date.");
+                if (isNull(beginValue) || isNull(endValue)) {
+                    return allNodes();
+                }
+                long begin = getDateValue(beginValue);
+                long end = getDateValue(endValue);
+                int first = DateTimeUtils.monthFromDateValue(begin) - 1;
+                int last = DateTimeUtils.monthFromDateValue(end) - 1;
+                long months = (DateTimeUtils.yearFromDateValue(end) - DateTimeUtils.yearFromDateValue(begin)) * 12L
+                        + last - first;
+                if (months < 0) {
+                    return new Integer[0];
+                }
+                if (months >= 12) {
+                    return allNodes();
                 }
-                Calendar start = Calendar.getInstance();
-                start.setTimeInMillis(startNumber);
-                Calendar v = Calendar.getInstance();
-                v.setTimeInMillis(getTime(value));
-                int startYear = start.get(Calendar.YEAR);
-                int year = v.get(Calendar.YEAR);
-                return Math.max(year - startYear, 0);
+                return wrappedNodeRange(first, last);
             }
             default:
                 throw new IllegalStateException("Invalid rollingType");
         }
     }
 
+    private static int monthIndex(long dateValue) {
+        return DateTimeUtils.yearFromDateValue(dateValue) * 12 + DateTimeUtils.monthFromDateValue(dateValue);
+    }
 
-    @Override
-    public Integer[] partition(Value beginValue, Value endValue) {
-        Integer begin;
-        if (beginValue == null) {
-            begin = 0;
-        } else {
-            begin = partition(beginValue);
-        }
-        Integer end;
-        if (endValue == null) {
-            end = getTableNodes().length - 1;
-        } else {
-            end = partition(endValue);
+    private int position(long number) {
+        return (int) ((number - startNumber) / rollingNumber);
+    }
+
+    private int yearPosition(long dateValue) {
+        if (startNumber < 1) {
+            throw new IllegalArgumentException("need to setting startBy date.");
         }
+        return Math.max(DateTimeUtils.yearFromDateValue(dateValue) - startYear, 0);
+    }
 
-        int max = Math.max(begin, end);
-        int min = Math.min(begin, end);
-        Integer[] re = new Integer[(max - min) + 1];
-        int idx = 0;
-        for (Integer i = min; i <= max; i++) {
-            re[idx++] = i;
+    private long getNumber(Value value) {
+        int type = value.getType();
+        switch (type) {
+            case Value.BYTE:
+            case Value.SHORT:
+            case Value.INT:
+            case Value.LONG:
+            case Value.FLOAT:
+            case Value.DECIMAL:
+            case Value.DOUBLE:
+                return value.getLong();
+            default:
+                throw new RuleEvaluateException("Invalid type for " + getClass().getName());
         }
-        return re;
     }
 
-    private long getTime(Value value) {
-        int type;
-        type = value.getType();
+    private long getDateValue(Value value) {
+        int type = value.getType();
         switch (type) {
             case Value.DATE:
+                return ((ValueDate) value).getDateValue();
             case Value.TIME:
             case Value.TIMESTAMP:
                 ValueTimestamp v = (ValueTimestamp) value.convertTo(Value.TIMESTAMP);
-                return v.getTimestamp().getTime();
+                return v.getDateValue();
             default:
                 throw new RuleEvaluateException("Invalid type for " + getClass().getName());
         }
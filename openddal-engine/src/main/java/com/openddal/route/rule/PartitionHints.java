@@ -15,27 +15,163 @@
  */
 package com.openddal.route.rule;
 
-import com.openddal.config.parser.GenericTokenParser;
-import com.openddal.config.parser.TokenHandler;
+import java.util.List;
+
+import com.openddal.message.DbException;
+import com.openddal.util.New;
+import com.openddal.util.StringUtils;
 
 /**
+ * The partition hints of a SQL statement, written in a comment as
+ * <code>/*+ ddal(shard=shard0, node=orders_01, readonly=true) *&#47;</code>.
+ * <ul>
+ * <li>shard: the statement only touches the table nodes of this shard</li>
+ * <li>node: the statement only touches this table node, matched by the
+ * qualified name or the suffix of the table node</li>
+ * <li>readonly: the query may be executed on the read only data source</li>
+ * </ul>
+ *
  * @author jorgie.li
  */
 public class PartitionHints {
 
+    private static final String HINT_START = "/*+";
+    private static final String HINT_END = "*/";
+    private static final String HINT_NAME = "ddal";
+
+    private String shard;
+    private String node;
+    private boolean readOnly;
+
+    public String getShard() {
+        return shard;
+    }
+
+    public String getNode() {
+        return node;
+    }
+
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    /**
+     * Check if the hints pin the statement to some table nodes.
+     *
+     * @return true if the routing of the statement could be skipped
+     */
+    public boolean isPinned() {
+        return shard != null || node != null;
+    }
 
+    /**
+     * Select the table nodes matched by the hints.
+     *
+     * @param nodes the table nodes
+     * @return the matched table nodes, empty if none matched
+     */
+    public List<ObjectNode> select(ObjectNode... nodes) {
+        List<ObjectNode> selected = New.arrayList(nodes.length);
+        for (ObjectNode objectNode : nodes) {
+            if (shard != null && !shard.equalsIgnoreCase(objectNode.getShardName())) {
+                continue;
+            }
+            if (node != null && !node.equalsIgnoreCase(objectNode.getQualifiedObjectName())
+                    && !node.equalsIgnoreCase(objectNode.getSuffix())) {
+                continue;
+            }
+            selected.add(objectNode);
+        }
+        return selected;
+    }
+
+    /**
+     * Parse the partition hints of the SQL statement.
+     *
+     * @param sql the SQL statement
+     * @return the hints, or null if the statement has no ddal hint
+     */
     public static PartitionHints parse(String sql) {
-        /* ddal()*/
-        GenericTokenParser parser = new GenericTokenParser("/*", "*/", new TokenHandler() {
+        if (sql == null || sql.indexOf(HINT_START) < 0) {
+            return null;
+        }
+        PartitionHints hints = new PartitionHints();
+        boolean found = false;
+        int len = sql.length();
+        for (int i = 0; i < len; i++) {
+            char c = sql.charAt(i);
+            char next = i + 1 < len ? sql.charAt(i + 1) : 0;
+            if (c == '\'' || c == '"' || c == '`') {
+                // the hint syntax in a literal or a quoted name is no hint
+                i = skipQuoted(sql, i, c);
+            } else if (c == '#' || c == '-' && next == '-') {
+                int end = sql.indexOf('\n', i);
+                i = end < 0 ? len : end;
+            } else if (c == '/' && next == '*') {
+                int end = sql.indexOf(HINT_END, i + 2);
+                if (end < 0) {
+                    break;
+                }
+                if (sql.startsWith(HINT_START, i) && hints.parseHint(sql.substring(i + 3, end).trim())) {
+                    found = true;
+                }
+                i = end + 1;
+            }
+        }
+        return found ? hints : null;
+    }
 
-            @Override
-            public String handleToken(String content) {
-                // TODO Auto-generated method stub
-                return null;
+    /**
+     * Skip a quoted literal or name, quotes are escaped by a backslash or
+     * by doubling them.
+     *
+     * @return the index of the closing quote
+     */
+    private static int skipQuoted(String sql, int start, char quote) {
+        int len = sql.length();
+        for (int i = start + 1; i < len; i++) {
+            char c = sql.charAt(i);
+            if (c == '\\' && quote != '`') {
+                i++;
+            } else if (c == quote) {
+                if (i + 1 < len && sql.charAt(i + 1) == quote) {
+                    i++;
+                } else {
+                    return i;
+                }
+            }
+        }
+        return len;
+    }
+
+    private boolean parseHint(String content) {
+        if (!StringUtils.startsWithIgnoreCase(content, HINT_NAME)) {
+            return false;
+        }
+        int open = content.indexOf('(', HINT_NAME.length());
+        int close = content.lastIndexOf(')');
+        if (open < 0 || close < open || content.substring(HINT_NAME.length(), open).trim().length() > 0) {
+            return false;
+        }
+        String[] items = StringUtils.arraySplit(content.substring(open + 1, close), ',', true);
+        for (String item : items) {
+            int eq = item.indexOf('=');
+            if (eq < 0) {
+                throw DbException.getInvalidValueException("ddal hint", item);
+            }
+            String key = item.substring(0, eq).trim();
+            String value = StringUtils.trim(item.substring(eq + 1).trim(), true, true, "'");
+            if ("shard".equalsIgnoreCase(key)) {
+                shard = value;
+            } else if ("node".equalsIgnoreCase(key)) {
+                node = value;
+            } else if ("readonly".equalsIgnoreCase(key)) {
+                readOnly = Boolean.parseBoolean(value);
+            } else {
+                throw DbException.getInvalidValueException("ddal hint", key);
             }
-        });
-        parser.parse(sql);
-        return null;
+        }
+        return true;
     }
 
 }
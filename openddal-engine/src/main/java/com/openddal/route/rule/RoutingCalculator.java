@@ -21,6 +21,7 @@ package com.openddal.route.rule;
 import java.util.List;
 
 import com.openddal.config.ShardedTableRule;
+import com.openddal.value.Value;
 
 /**
  * @author jorgie.li
@@ -31,4 +32,6 @@ public interface RoutingCalculator {
 
     RoutingResult calculate(ShardedTableRule tableRule, List<RoutingArgument> arguments);
 
+    ObjectNode calculate(ShardedTableRule tableRule, Value value);
+
 }
@@ -90,6 +90,21 @@ public class RoutingCalculatorImpl implements RoutingCalculator {
 
     }
 
+    @Override
+    public ObjectNode calculate(ShardedTableRule tableRouter, Value value) {
+        ObjectNode[] partition = tableRouter.getObjectNodes();
+        Object partitioner = tableRouter.getPartitioner();
+        if (!(partitioner instanceof Partitioner)) {
+            String name = partitioner.getClass().getName();
+            throw new RuleEvaluateException("Algorithm " + name + " not type of " + Partitioner.class.getName());
+        }
+        Integer position = ((Partitioner) partitioner).partition(value);
+        if (position == null || position < 0 || position >= partition.length) {
+            checkReturnValue(tableRouter, position);
+        }
+        return partition[position];
+    }
+
     /**
      * @param tableRouter
      * @param positions
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2014-2016 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.openddal.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock free log-linear histogram of non negative values, typically
+ * latencies in microseconds. The buckets are linear below 4 and split each
+ * power of two in 4 above, so the relative error stays below 25%.
+ *
+ * @author jorgie.li
+ */
+public final class Histogram {
+
+    /**
+     * The number of buckets per power of two.
+     */
+    private static final int SUB_BUCKETS = 4;
+
+    /**
+     * The buckets, up to 2^40.
+     */
+    static final int BUCKETS = 40 * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+    /**
+     * Record a value.
+     *
+     * @param value the value
+     */
+    public void record(long value) {
+        buckets.incrementAndGet(getBucket(value));
+    }
+
+    /**
+     * Get the value below which the given fraction of the recorded values
+     * are, at the precision of the bucket.
+     *
+     * @param fraction the fraction, for example 0.99
+     * @return the exclusive upper limit of the bucket, 0 if empty
+     */
+    public long getPercentile(double fraction) {
+        return getPercentile(fraction, this);
+    }
+
+    /**
+     * Get the percentile of the values recorded by several histograms.
+     *
+     * @param fraction the fraction, for example 0.99
+     * @param histograms the histograms
+     * @return the exclusive upper limit of the bucket, 0 if empty
+     */
+    public static long getPercentile(double fraction, Histogram... histograms) {
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (Histogram h : histograms) {
+            for (int i = 0; i < BUCKETS; i++) {
+                long c = h.buckets.get(i);
+                counts[i] += c;
+                total += c;
+            }
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(total * fraction);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return getBucketLimit(i);
+            }
+        }
+        return getBucketLimit(BUCKETS - 1);
+    }
+
+    static int getBucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return value < 0 ? 0 : (int) value;
+        }
+        int power = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (power - 2)) & (SUB_BUCKETS - 1);
+        return Math.min((power - 1) * SUB_BUCKETS + sub, BUCKETS - 1);
+    }
+
+    static long getBucketLimit(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket + 1;
+        }
+        int power = bucket / SUB_BUCKETS + 1;
+        int sub = bucket % SUB_BUCKETS;
+        return (long) (SUB_BUCKETS + sub + 1) << (power - 2);
+    }
+
+}
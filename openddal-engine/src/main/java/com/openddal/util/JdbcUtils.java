@@ -21,6 +21,7 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.ObjectStreamClass;
+import java.lang.reflect.Method;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.ResultSet;
@@ -29,6 +30,7 @@ import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Properties;
+import java.util.concurrent.Executor;
 
 import javax.naming.Context;
 import javax.sql.DataSource;
@@ -219,6 +221,34 @@ public class JdbcUtils {
         }
     }
 
+    /**
+     * Abort a connection without throwing an exception, so that a pool
+     * discards it instead of handing it out again. Aborting needs JDBC 4.1;
+     * if the connection can not be aborted it is left to the pool, which
+     * reclaims it as abandoned, but it is not returned.
+     *
+     * @param conn the connection or null
+     * @return whether the connection was aborted
+     */
+    public static boolean abortSilently(Connection conn) {
+        if (conn == null) {
+            return false;
+        }
+        try {
+            Method abort = Connection.class.getMethod("abort", Executor.class);
+            abort.invoke(conn, new Executor() {
+                @Override
+                public void execute(Runnable command) {
+                    command.run();
+                }
+            });
+            return true;
+        } catch (Throwable e) {
+            // ignore, Java 6 or a JDBC 4.0 driver or pool
+            return false;
+        }
+    }
+
     /**
      * Close a result set without throwing an exception.
      *
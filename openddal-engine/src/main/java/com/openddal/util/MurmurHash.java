@@ -196,8 +196,95 @@ public final class MurmurHash {
      * @return 64 bit hash of the given string
      */
     public static long hash64(final String text) {
-        final byte[] bytes = text.getBytes();
-        return hash64(bytes, bytes.length);
+        final int length = text.length();
+        for (int i = 0; i < length; i++) {
+            if (text.charAt(i) >= 0x80) {
+                final byte[] bytes = text.getBytes();
+                return hash64(bytes, bytes.length);
+            }
+        }
+        return hash64Ascii(text, length, 0xe17a1465);
+    }
+
+    /**
+     * Generates 64 bit hash from a long value, the result is the same as
+     * hashing the 8 bytes of the value in big-endian order, but without
+     * allocating the byte array.
+     *
+     * @param value long value to hash
+     * @return 64 bit hash of the given value
+     */
+    public static long hash64(final long value) {
+        final long m = 0xc6a4a7935bd1e995L;
+        final int r = 47;
+
+        long h = (0xe17a1465 & 0xffffffffl) ^ (8 * m);
+
+        long k = Long.reverseBytes(value);
+        k *= m;
+        k ^= k >>> r;
+        k *= m;
+
+        h ^= k;
+        h *= m;
+
+        h ^= h >>> r;
+        h *= m;
+        h ^= h >>> r;
+
+        return h;
+    }
+
+    /**
+     * Same as {@link #hash64(byte[], int, int)} over a string which only
+     * contains 7-bit characters, each character is taken as one byte.
+     */
+    private static long hash64Ascii(final String text, int length, int seed) {
+        final long m = 0xc6a4a7935bd1e995L;
+        final int r = 47;
+
+        long h = (seed & 0xffffffffl) ^ (length * m);
+
+        int length8 = length / 8;
+
+        for (int i = 0; i < length8; i++) {
+            final int i8 = i * 8;
+            long k = ((long) text.charAt(i8 + 0)) + (((long) text.charAt(i8 + 1)) << 8)
+                    + (((long) text.charAt(i8 + 2)) << 16) + (((long) text.charAt(i8 + 3)) << 24)
+                    + (((long) text.charAt(i8 + 4)) << 32) + (((long) text.charAt(i8 + 5)) << 40)
+                    + (((long) text.charAt(i8 + 6)) << 48) + (((long) text.charAt(i8 + 7)) << 56);
+
+            k *= m;
+            k ^= k >>> r;
+            k *= m;
+
+            h ^= k;
+            h *= m;
+        }
+
+        switch (length % 8) {
+            case 7:
+                h ^= (long) text.charAt((length & ~7) + 6) << 48;
+            case 6:
+                h ^= (long) text.charAt((length & ~7) + 5) << 40;
+            case 5:
+                h ^= (long) text.charAt((length & ~7) + 4) << 32;
+            case 4:
+                h ^= (long) text.charAt((length & ~7) + 3) << 24;
+            case 3:
+                h ^= (long) text.charAt((length & ~7) + 2) << 16;
+            case 2:
+                h ^= (long) text.charAt((length & ~7) + 1) << 8;
+            case 1:
+                h ^= (long) text.charAt(length & ~7);
+                h *= m;
+        }
+
+        h ^= h >>> r;
+        h *= m;
+        h ^= h >>> r;
+
+        return h;
     }
 
     /**
@@ -1,6 +1,7 @@
 package com.openddal.util;
 
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -59,6 +60,30 @@ public class Threads {
     public static ThreadFactory newThreadFactory(String namePrefix) {
         return new CustomThreadFactory(namePrefix);
     }
+
+    /**
+     * Create an executor which starts a new virtual thread for each task.
+     * The virtual thread API is looked up by reflection, so this class still
+     * loads on the JVMs without it.
+     *
+     * @param namePrefix the prefix of the thread names
+     * @return the executor, or null if the JVM does not support virtual threads
+     */
+    public static ExecutorService newVirtualThreadExecutor(String namePrefix) {
+        try {
+            // Thread.ofVirtual().name(namePrefix + "-", 1).factory()
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Class<?> virtualClass = Class.forName("java.lang.Thread$Builder$OfVirtual");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = virtualClass.getMethod("name", String.class, long.class).invoke(builder, namePrefix + "-", 1L);
+            ThreadFactory factory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+            return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                    .invoke(null, factory);
+        } catch (Exception e) {
+            // older JVM, or virtual threads are a disabled preview feature
+            return null;
+        }
+    }
     
     
     private static final class CustomThreadFactory implements ThreadFactory {
@@ -0,0 +1,245 @@
+/*
+ * Copyright 2014-2016 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.openddal.jfr;
+
+import com.openddal.engine.FlightRecorderEvents;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.FlightRecorderListener;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import jdk.jfr.StackTrace;
+
+/**
+ * The Flight Recorder events, loaded by {@link FlightRecorderEvents} when
+ * this module is on the class path and the jdk.jfr module is present.
+ */
+public final class JfrEvents implements FlightRecorderEvents.Recorder, FlightRecorderListener {
+
+    /**
+     * Whether a recording is running, maintained by the listener so that no
+     * event is allocated otherwise.
+     */
+    private volatile boolean recording;
+
+    @Override
+    public boolean register() {
+        if (!FlightRecorder.isAvailable()) {
+            return false;
+        }
+        // calls recorderInitialized if the recorder is already initialized
+        FlightRecorder.addListener(this);
+        return true;
+    }
+
+    @Override
+    public boolean isRecording() {
+        return recording;
+    }
+
+    @Override
+    public Object begin(int type) {
+        StatementEvent event;
+        switch (type) {
+        case FlightRecorderEvents.PARSE:
+            event = new ParseEvent();
+            break;
+        case FlightRecorderEvents.ROUTE:
+            event = new RouteEvent();
+            break;
+        case FlightRecorderEvents.SHARD_QUERY:
+            event = new ShardQueryEvent();
+            break;
+        case FlightRecorderEvents.SHARD_UPDATE:
+            event = new ShardUpdateEvent();
+            break;
+        case FlightRecorderEvents.MERGE:
+            event = new MergeEvent();
+            break;
+        case FlightRecorderEvents.COMMIT:
+            event = new CommitEvent();
+            break;
+        case FlightRecorderEvents.PROTOCOL_WRITE:
+            event = new ProtocolWriteEvent();
+            break;
+        default:
+            throw new IllegalArgumentException("type=" + type);
+        }
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void commit(Object e, int sessionId, String digest, String detail, long count) {
+        StatementEvent event = (StatementEvent) e;
+        event.end();
+        if (event.shouldCommit()) {
+            event.sessionId = sessionId;
+            event.digest = digest;
+            event.set(detail, count);
+            event.commit();
+        }
+    }
+
+    @Override
+    public void recorderInitialized(FlightRecorder recorder) {
+        update(recorder);
+    }
+
+    @Override
+    public void recordingStateChanged(Recording r) {
+        update(FlightRecorder.getFlightRecorder());
+    }
+
+    private void update(FlightRecorder recorder) {
+        boolean running = false;
+        for (Recording r : recorder.getRecordings()) {
+            if (r.getState() == RecordingState.RUNNING) {
+                running = true;
+                break;
+            }
+        }
+        recording = running;
+    }
+
+    /**
+     * The fields common to the events of a statement.
+     */
+    @Category("OpenDDAL")
+    @StackTrace(false)
+    abstract static class StatementEvent extends Event {
+
+        @Label("Session Id")
+        int sessionId;
+
+        @Label("Digest")
+        String digest;
+
+        abstract void set(String detail, long count);
+    }
+
+    @Name("com.openddal.Parse")
+    @Label("Parse")
+    static class ParseEvent extends StatementEvent {
+
+        @Override
+        void set(String detail, long count) {
+            // the digest is the statement
+        }
+    }
+
+    @Name("com.openddal.Route")
+    @Label("Route")
+    static class RouteEvent extends StatementEvent {
+
+        @Label("Table")
+        String table;
+
+        @Label("Nodes")
+        int nodes;
+
+        @Override
+        void set(String detail, long count) {
+            table = detail;
+            nodes = (int) count;
+        }
+    }
+
+    @Name("com.openddal.ShardQuery")
+    @Label("Shard Query")
+    static class ShardQueryEvent extends StatementEvent {
+
+        @Label("Shard")
+        String shard;
+
+        @Override
+        void set(String detail, long count) {
+            shard = detail;
+        }
+    }
+
+    @Name("com.openddal.ShardUpdate")
+    @Label("Shard Update")
+    static class ShardUpdateEvent extends StatementEvent {
+
+        @Label("Shard")
+        String shard;
+
+        @Label("Rows")
+        long rows;
+
+        @Override
+        void set(String detail, long count) {
+            shard = detail;
+            rows = count;
+        }
+    }
+
+    @Name("com.openddal.Merge")
+    @Label("Merge")
+    static class MergeEvent extends StatementEvent {
+
+        @Label("Operator")
+        String operator;
+
+        @Label("Rows")
+        long rows;
+
+        @Override
+        void set(String detail, long count) {
+            operator = detail;
+            rows = count;
+        }
+    }
+
+    @Name("com.openddal.Commit")
+    @Label("Commit")
+    static class CommitEvent extends StatementEvent {
+
+        @Label("Shards")
+        int shards;
+
+        @Override
+        void set(String detail, long count) {
+            shards = (int) count;
+        }
+    }
+
+    @Name("com.openddal.ProtocolWrite")
+    @Label("Protocol Write")
+    static class ProtocolWriteEvent extends StatementEvent {
+
+        @Label("Protocol")
+        String protocol;
+
+        @Label("Rows")
+        long rows;
+
+        @Override
+        void set(String detail, long count) {
+            protocol = detail;
+            rows = count;
+        }
+    }
+
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2014-2016 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.openddal.jfr;
+
+import java.io.File;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import com.openddal.engine.FlightRecorderEvents;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+public class FlightRecorderEventsTestCase {
+
+    @Test
+    public void testRecording() throws Exception {
+        Assume.assumeTrue(isAvailable());
+        Assert.assertFalse(FlightRecorderEvents.isRecording());
+        Assert.assertNull(FlightRecorderEvents.begin(FlightRecorderEvents.ROUTE));
+        // no-op without a recording
+        FlightRecorderEvents.commit(null, 1, "select ?", null, 0);
+
+        File file = File.createTempFile("openddal", ".jfr");
+        file.deleteOnExit();
+        Recording recording = new Recording();
+        try {
+            recording.enable("com.openddal.Route");
+            recording.enable("com.openddal.ShardUpdate");
+            recording.start();
+            Assert.assertTrue(FlightRecorderEvents.isRecording());
+            Object event = FlightRecorderEvents.begin(FlightRecorderEvents.ROUTE);
+            Assert.assertNotNull(event);
+            FlightRecorderEvents.commit(event, 7, "select * from orders where id = ?", "orders", 4);
+            event = FlightRecorderEvents.begin(FlightRecorderEvents.SHARD_UPDATE);
+            FlightRecorderEvents.commit(event, 7, "delete from orders where id = ?", "shard1", 3);
+            recording.stop();
+            recording.dump(file.toPath());
+        } finally {
+            recording.close();
+        }
+        Assert.assertFalse(FlightRecorderEvents.isRecording());
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file.toPath());
+        Assert.assertEquals(2, events.size());
+        RecordedEvent route = find(events, "com.openddal.Route");
+        Assert.assertEquals(7, route.getInt("sessionId"));
+        Assert.assertEquals("select * from orders where id = ?", route.getString("digest"));
+        Assert.assertEquals("orders", route.getString("table"));
+        Assert.assertEquals(4, route.getInt("nodes"));
+        RecordedEvent update = find(events, "com.openddal.ShardUpdate");
+        Assert.assertEquals("shard1", update.getString("shard"));
+        Assert.assertEquals(3, update.getLong("rows"));
+    }
+
+    private static RecordedEvent find(List<RecordedEvent> events, String name) {
+        for (RecordedEvent e : events) {
+            if (name.equals(e.getEventType().getName())) {
+                return e;
+            }
+        }
+        throw new AssertionError(name + " not recorded");
+    }
+
+    private static boolean isAvailable() {
+        try {
+            Class.forName("jdk.jfr.FlightRecorder");
+            return jdk.jfr.FlightRecorder.isAvailable();
+        } catch (Throwable e) {
+            return false;
+        }
+    }
+
+}
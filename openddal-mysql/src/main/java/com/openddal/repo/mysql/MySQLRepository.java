@@ -33,6 +33,14 @@ public class MySQLRepository extends JdbcRepository {
         return "MYSQL_JDBC_REPOSITORY";
     }
 
+    /**
+     * Connector/J streams the rows one by one with this fetch size.
+     */
+    @Override
+    public int getStreamingFetchSize() {
+        return Integer.MIN_VALUE;
+    }
+
 
 
 }
@@ -22,10 +22,12 @@ import com.openddal.command.dml.Replace;
 import com.openddal.command.dml.Select;
 import com.openddal.command.dml.Update;
 import com.openddal.command.expression.Expression;
+import com.openddal.dbobject.index.GlobalIndex;
 import com.openddal.dbobject.table.Column;
 import com.openddal.dbobject.table.IndexColumn;
 import com.openddal.dbobject.table.TableFilter;
 import com.openddal.engine.Database;
+import com.openddal.engine.Session;
 import com.openddal.message.DbException;
 import com.openddal.message.ErrorCode;
 import com.openddal.repo.SQLTranslated;
@@ -667,12 +669,10 @@ public class MySQLTranslator implements SQLTranslator {
         sql.append("DELETE FROM ");
         sql.append(identifier(forTable));
         if (condition != null) {
-            condition.getPreparedSQL(prepared.getSession(), params);
-            sql.append(" WHERE ").append(StringUtils.unEnclose(condition.getSQL()));
+            sql.append(" WHERE ").append(StringUtils.unEnclose(condition.getPreparedSQL(prepared.getSession(), params)));
         }
         if (limitExpr != null) {
-            limitExpr.getPreparedSQL(prepared.getSession(), params);
-            sql.append(" LIMIT ").append(StringUtils.unEnclose(limitExpr.getSQL()));
+            sql.append(" LIMIT ").append(StringUtils.unEnclose(limitExpr.getPreparedSQL(prepared.getSession(), params)));
         }
         return SQLTranslated.build().sql(sql.toString()).sqlParams(params);
 
@@ -780,9 +780,8 @@ public class MySQLTranslator implements SQLTranslator {
             Column c = columns.get(i);
             sql.appendExceptFirst(", ");
             sql.append(c.getSQL()).append(" = ");
-
-            Value v = row.getValue(i);
-            sql.appendExceptFirst(", ");
+            // the row holds the values by column id
+            Value v = row.getValue(c.getColumnId());
             if (v == null) {
                 sql.append("DEFAULT");
             } else if (isNull(v)) {
@@ -793,12 +792,10 @@ public class MySQLTranslator implements SQLTranslator {
             }
         }
         if (condition != null) {
-            condition.getPreparedSQL(prepared.getSession(), params);
-            sql.append(" WHERE ").append(StringUtils.unEnclose(condition.getSQL()));
+            sql.append(" WHERE ").append(StringUtils.unEnclose(condition.getPreparedSQL(prepared.getSession(), params)));
         }
         if (limitExpr != null) {
-            limitExpr.getPreparedSQL(prepared.getSession(), params);
-            sql.append(" LIMIT ").append(StringUtils.unEnclose(limitExpr.getSQL()));
+            sql.append(" LIMIT ").append(StringUtils.unEnclose(limitExpr.getPreparedSQL(prepared.getSession(), params)));
         }
         return SQLTranslated.build().sql(sql.toString()).sqlParams(params);
     }
@@ -849,4 +846,67 @@ public class MySQLTranslator implements SQLTranslator {
     
     }
 
+    @Override
+    public SQLTranslated translate(GlobalIndex index, ObjectNode indexNode, Value value) {
+        List<Value> params = New.arrayList(1);
+        Column[] columns = index.getIndexColumns();
+        StatementBuilder sql = new StatementBuilder("SELECT");
+        for (int i = 1; i < columns.length; i++) {
+            sql.appendExceptFirst(",");
+            sql.append(' ').append(identifier(columns[i].getName()));
+        }
+        sql.append(" FROM ").append(identifier(indexNode.getCompositeObjectName()));
+        sql.append(" WHERE ").append(identifier(columns[0].getName())).append(" = ?");
+        params.add(value);
+        return SQLTranslated.build().sql(sql.toString()).sqlParams(params);
+    }
+
+    @Override
+    public SQLTranslated translate(Session session, GlobalIndex index, ObjectNode tableNode, Expression condition) {
+        List<Value> params = New.arrayList(10);
+        StatementBuilder sql = new StatementBuilder("SELECT");
+        for (Column c : index.getColumns()) {
+            sql.appendExceptFirst(",");
+            sql.append(' ').append(identifier(c.getName()));
+        }
+        sql.append(" FROM ").append(identifier(tableNode.getCompositeObjectName()));
+        if (condition != null) {
+            sql.append(" WHERE ").append(StringUtils.unEnclose(condition.getPreparedSQL(session, params)));
+        }
+        return SQLTranslated.build().sql(sql.toString()).sqlParams(params);
+    }
+
+    @Override
+    public SQLTranslated translate(GlobalIndex index, ObjectNode indexNode, boolean remove, Row... rows) {
+        ArrayList<Value> params = New.arrayList();
+        Column[] columns = index.getIndexColumns();
+        String forTable = identifier(indexNode.getCompositeObjectName());
+        StatementBuilder sql = new StatementBuilder(128);
+        if (remove) {
+            sql.append("DELETE FROM ").append(forTable).append(" WHERE ");
+            for (int i = 0; i < rows.length; i++) {
+                if (i > 0) {
+                    sql.append(" OR ");
+                }
+                sql.append('(');
+                sql.resetCount();
+                for (Column c : columns) {
+                    sql.appendExceptFirst(" AND ");
+                    sql.append(identifier(c.getName())).append(" = ?");
+                    params.add(rows[i].getValue(c.getColumnId()));
+                }
+                sql.append(')');
+            }
+        } else {
+            sql.append("INSERT INTO ").append(forTable).append('(');
+            for (Column c : columns) {
+                sql.appendExceptFirst(", ");
+                sql.append(identifier(c.getName()));
+            }
+            sql.append(") VALUES ");
+            appendValues(params, sql, columns, rows);
+        }
+        return SQLTranslated.build().sql(sql.toString()).sqlParams(params);
+    }
+
 }
@@ -20,7 +20,7 @@ import java.lang.management.ThreadMXBean;
 import java.util.Collection;
 import java.util.Map;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -30,10 +30,12 @@ import org.slf4j.LoggerFactory;
 import com.openddal.engine.Engine;
 import com.openddal.engine.SessionFactoryBuilder;
 import com.openddal.engine.SysProperties;
+import com.openddal.server.core.AdmissionControl;
 import com.openddal.server.core.QueryDispatcher;
 import com.openddal.server.core.ServerSession;
 import com.openddal.server.mysql.auth.Privilege;
 import com.openddal.server.mysql.auth.PrivilegeDefault;
+import com.openddal.server.util.AccessLogger;
 import com.openddal.util.ExtendableThreadPoolExecutor;
 import com.openddal.util.ExtendableThreadPoolExecutor.TaskQueue;
 import com.openddal.util.New;
@@ -45,6 +47,11 @@ import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollMode;
+import io.netty.channel.epoll.EpollServerSocketChannel;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.util.concurrent.DefaultThreadFactory;
@@ -62,8 +69,11 @@ public abstract class NettyServer {
     private ServerArgs args;
     private EventLoopGroup bossGroup;
     private EventLoopGroup workerGroup;
-    private ThreadPoolExecutor userExecutor;
+    private ExecutorService userExecutor;
+    private AdmissionControl admissionControl;
+    private AccessLogger accessLogger;
     private ChannelFuture f;
+    private boolean reusePort;
     private Engine engine;
     private Privilege privilege = PrivilegeDefault.getPrivilege();
     private ConcurrentMap<Long, ServerSession> sessions = New.concurrentHashMap();
@@ -74,14 +84,26 @@ public abstract class NettyServer {
         this.args = args;
     }
 
+    public ServerArgs getArgs() {
+        return args;
+    }
+
     public Engine getEngine() {
         return engine;
     }
 
-    public ThreadPoolExecutor getUserExecutor() {
+    public ExecutorService getUserExecutor() {
         return userExecutor;
     }
 
+    public AdmissionControl getAdmissionControl() {
+        return admissionControl;
+    }
+
+    public AccessLogger getAccessLogger() {
+        return accessLogger;
+    }
+
     public Privilege getPrivilege() {
         return privilege;
     }
@@ -121,6 +143,10 @@ public abstract class NettyServer {
         status.put("Threads_created", String.valueOf(threadBean.getTotalStartedThreadCount()));
         status.put("Threads_connected", String.valueOf(sessions.size()));
         status.put("User_threads_executor", getUserExecutor().toString());
+        status.put("Requests_rejected", String.valueOf(admissionControl.getRejectedCount()));
+        status.put("Requests_overloaded", admissionControl.isOverloaded() ? "ON" : "OFF");
+        status.put("Access_log_written", String.valueOf(accessLogger.getWrittenCount()));
+        status.put("Access_log_dropped", String.valueOf(accessLogger.getDroppedCount()));
         
         return status;
     }
@@ -157,6 +183,12 @@ public abstract class NettyServer {
         try {
             // start server
             f = b.bind(args.port).sync();
+            if (reusePort) {
+                // the kernel balances the connections among the sockets
+                for (int i = 1; i < args.bossThreads; i++) {
+                    b.bind(args.port).sync();
+                }
+            }
             LOGGER.info("{} server started and listening on {}", getServerName(), args.port);
             // register shutown hook
             Runtime.getRuntime().addShutdownHook(new ShutdownThread());
@@ -183,20 +215,43 @@ public abstract class NettyServer {
         workerGroup.shutdownGracefully();
         int timeoutMills = args.shutdownTimeoutMills;
         Threads.shutdownGracefully(userExecutor, timeoutMills, timeoutMills, TimeUnit.SECONDS);
+        accessLogger.stop();
         LOGGER.info("{} server stoped", getServerName());
     }
 
     private ServerBootstrap configServer() {
-        bossGroup = new NioEventLoopGroup(args.bossThreads, new DefaultThreadFactory("NettyBossGroup", true));
-        workerGroup = new NioEventLoopGroup(args.workerThreads, new DefaultThreadFactory("NettyWorkerGroup", true));
+        boolean epoll = args.epoll && createEpollGroups();
+        reusePort = args.reusePort && epoll;
+        if (args.reusePort && !epoll) {
+            LOGGER.warn("SO_REUSEPORT needs the native epoll transport, binding a single socket");
+        }
+        if (!epoll) {
+            bossGroup = new NioEventLoopGroup(args.bossThreads, new DefaultThreadFactory("NettyBossGroup", true));
+            workerGroup = new NioEventLoopGroup(args.workerThreads,
+                    new DefaultThreadFactory("NettyWorkerGroup", true));
+        }
         userExecutor = createUserThreadExecutor();
+        admissionControl = new AdmissionControl(args.queueTargetMills, args.queueIntervalMills);
+        if (AccessLogger.FORMAT_CAPTURE.equals(args.accessLogFormat) && args.accessLogFile == null) {
+            LOGGER.warn("the workload capture needs an access log file, logging the commands as text");
+        }
+        accessLogger = new AccessLogger(args.accessLogFile, args.accessLogFormat, args.accessLogSampling,
+                args.accessLogBufferSize);
+        accessLogger.start();
 
         ServerBootstrap b = new ServerBootstrap();
-        b.group(bossGroup, workerGroup).channel(NioServerSocketChannel.class)
+        b.group(bossGroup, workerGroup).channel(epoll ? EpollServerSocketChannel.class : NioServerSocketChannel.class)
                 .childOption(ChannelOption.SO_REUSEADDR, true).childOption(ChannelOption.SO_KEEPALIVE, true)
                 .childOption(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
                 .childOption(ChannelOption.TCP_NODELAY, true);
 
+        if (epoll) {
+            b.childOption(EpollChannelOption.EPOLL_MODE, EpollMode.EDGE_TRIGGERED);
+            if (reusePort) {
+                b.option(EpollChannelOption.SO_REUSEPORT, true);
+            }
+        }
+
         if (args.socketTimeoutMills > 0) {
             b.childOption(ChannelOption.SO_TIMEOUT, args.socketTimeoutMills);
         }
@@ -214,7 +269,36 @@ public abstract class NettyServer {
         return b;
     }
 
-    private ThreadPoolExecutor createUserThreadExecutor() {
+    private boolean createEpollGroups() {
+        if (!Epoll.isAvailable()) {
+            LOGGER.warn("native epoll transport is not available, using NIO", Epoll.unavailabilityCause());
+            return false;
+        }
+        try {
+            bossGroup = new EpollEventLoopGroup(args.bossThreads, new DefaultThreadFactory("NettyBossGroup", true));
+            workerGroup = new EpollEventLoopGroup(args.workerThreads,
+                    new DefaultThreadFactory("NettyWorkerGroup", true));
+            LOGGER.info("{} server uses the native epoll transport", getServerName());
+            return true;
+        } catch (Throwable e) {
+            // the native library loads, but the JVM may not allow the native memory access it needs
+            LOGGER.warn("native epoll transport can't be used, using NIO", e);
+            if (bossGroup != null) {
+                bossGroup.shutdownGracefully();
+            }
+            return false;
+        }
+    }
+
+    private ExecutorService createUserThreadExecutor() {
+        if (args.virtualThreads || SysProperties.VIRTUAL_THREADS) {
+            ExecutorService executor = Threads.newVirtualThreadExecutor("request-processor");
+            if (executor != null) {
+                LOGGER.info("{} server handles requests in virtual threads", getServerName());
+                return executor;
+            }
+            LOGGER.warn("virtual threads are not supported by this JVM, using the request thread pool");
+        }
         TaskQueue queue = new TaskQueue(SysProperties.THREAD_QUEUE_SIZE);
         int poolCoreSize = SysProperties.THREAD_POOL_SIZE_CORE;
         int poolMaxSize = SysProperties.THREAD_POOL_SIZE_MAX;
@@ -15,6 +15,7 @@
  */
 package com.openddal.server;
 
+import com.openddal.server.util.AccessLogger;
 import com.openddal.util.StringUtils;
 
 public class ServerArgs {
@@ -32,6 +33,21 @@ public class ServerArgs {
 	public int socketTimeoutMills = -1;
 	public int shutdownTimeoutMills = 10000;
 
+	public boolean virtualThreads;
+
+	public boolean epoll;
+	public boolean reusePort;
+
+	public int compressThreshold = 1024;
+
+	public int queueTargetMills = 5;
+	public int queueIntervalMills = 100;
+
+	public String accessLogFile;
+	public String accessLogFormat = AccessLogger.FORMAT_TEXT;
+	public int accessLogSampling = 1;
+	public int accessLogBufferSize = 8192;
+
 	public int sendBuff = -1;
 	public int recvBuff = -1;
 
@@ -83,6 +99,56 @@ public class ServerArgs {
 		return this;
 	}
 
+	public ServerArgs virtualThreads(boolean virtualThreads) {
+		this.virtualThreads = virtualThreads;
+		return this;
+	}
+
+	public ServerArgs epoll(boolean epoll) {
+		this.epoll = epoll;
+		return this;
+	}
+
+	public ServerArgs reusePort(boolean reusePort) {
+		this.reusePort = reusePort;
+		return this;
+	}
+
+	public ServerArgs compressThreshold(int compressThreshold) {
+		this.compressThreshold = compressThreshold;
+		return this;
+	}
+
+	public ServerArgs queueTargetMills(int queueTargetMills) {
+		this.queueTargetMills = queueTargetMills;
+		return this;
+	}
+
+	public ServerArgs queueIntervalMills(int queueIntervalMills) {
+		this.queueIntervalMills = queueIntervalMills;
+		return this;
+	}
+
+	public ServerArgs accessLogFile(String accessLogFile) {
+		this.accessLogFile = accessLogFile;
+		return this;
+	}
+
+	public ServerArgs accessLogFormat(String accessLogFormat) {
+		this.accessLogFormat = accessLogFormat;
+		return this;
+	}
+
+	public ServerArgs accessLogSampling(int accessLogSampling) {
+		this.accessLogSampling = accessLogSampling;
+		return this;
+	}
+
+	public ServerArgs accessLogBufferSize(int accessLogBufferSize) {
+		this.accessLogBufferSize = accessLogBufferSize;
+		return this;
+	}
+
 	public ServerArgs sendBuff(int sendBuff) {
 		this.sendBuff = sendBuff;
 		return this;
@@ -16,6 +16,7 @@
 package com.openddal.server;
 
 import com.openddal.server.mysql.MySQLServer;
+import com.openddal.server.util.AccessLogger;
 
 /**
  * @author jorgie.li
@@ -79,6 +80,53 @@ public class ServerLauncher {
                     } else {
                         usage("-workerThreads should be positive integer");
                     }
+                } else if ("-virtualThreads".equals(key)) {
+                    serverArgs.virtualThreads(Boolean.valueOf(value));
+                    // the engine runs the shard queries on virtual threads too
+                    System.setProperty("ddal.virtualThreads", value);
+                } else if ("-epoll".equals(key)) {
+                    serverArgs.epoll(Boolean.valueOf(value));
+                } else if ("-reusePort".equals(key)) {
+                    serverArgs.reusePort(Boolean.valueOf(value));
+                } else if ("-compressThreshold".equals(key)) {
+                    if (value.matches("([0-9]*)")) {
+                        serverArgs.compressThreshold(Integer.parseInt(value));
+                    } else {
+                        usage("-compressThreshold should be positive integer");
+                    }
+                } else if ("-queueTargetMills".equals(key)) {
+                    if (value.matches("([0-9]*)")) {
+                        serverArgs.queueTargetMills(Integer.parseInt(value));
+                    } else {
+                        usage("-queueTargetMills should be positive integer");
+                    }
+                } else if ("-queueIntervalMills".equals(key)) {
+                    if (value.matches("([0-9]*)")) {
+                        serverArgs.queueIntervalMills(Integer.parseInt(value));
+                    } else {
+                        usage("-queueIntervalMills should be positive integer");
+                    }
+                } else if ("-accessLogFile".equals(key)) {
+                    serverArgs.accessLogFile(value);
+                } else if ("-accessLogFormat".equals(key)) {
+                    if (AccessLogger.FORMAT_TEXT.equals(value) || AccessLogger.FORMAT_BINARY.equals(value)
+                            || AccessLogger.FORMAT_CAPTURE.equals(value)) {
+                        serverArgs.accessLogFormat(value);
+                    } else {
+                        usage("-accessLogFormat should be text, binary or capture");
+                    }
+                } else if ("-accessLogSampling".equals(key)) {
+                    if (value.matches("([0-9]*)")) {
+                        serverArgs.accessLogSampling(Integer.parseInt(value));
+                    } else {
+                        usage("-accessLogSampling should be positive integer");
+                    }
+                } else if ("-accessLogBufferSize".equals(key)) {
+                    if (value.matches("([0-9]*)")) {
+                        serverArgs.accessLogBufferSize(Integer.parseInt(value));
+                    } else {
+                        usage("-accessLogBufferSize should be positive integer");
+                    }
                 } else if ("-protocol".equals(key)) {
                     serverArgs.protocol(value);
                 } else if ("-configFile".equals(key)) {
@@ -109,6 +157,16 @@ public class ServerLauncher {
         System.out.println("\t" + "-bossThreads: Integer, set the netty bossThreads size.");
         System.out.println("\t" + "-maxThreads: Integer, set the netty workerThreads size.");
         System.out.println("\t" + "-userThreads: Integer, set size of the user thread pool that handle client request.");
+        System.out.println("\t" + "-virtualThreads: Boolean, handle each client request in a virtual thread if the JVM supports it.");
+        System.out.println("\t" + "-epoll: Boolean, use the native epoll transport on Linux, NIO if it is not available.");
+        System.out.println("\t" + "-reusePort: Boolean, with epoll bind one listening socket per boss thread using SO_REUSEPORT.");
+        System.out.println("\t" + "-compressThreshold: Integer, the min packet length compressed for the clients using compression.");
+        System.out.println("\t" + "-queueTargetMills: Integer, reject the requests queued longer once the queue is standing, 0 disables it.");
+        System.out.println("\t" + "-queueIntervalMills: Integer, the interval the queue wait of the requests is observed.");
+        System.out.println("\t" + "-accessLogFile: the file the access log is written to, the AccessLogger of logback by default.");
+        System.out.println("\t" + "-accessLogFormat: text, binary or capture, the format of the access log file, capture records the workload to replay.");
+        System.out.println("\t" + "-accessLogSampling: Integer, log one of that many successful commands.");
+        System.out.println("\t" + "-accessLogBufferSize: Integer, the access log entries buffered before they are dropped.");
         System.out.println("\t" + "-socketTimeoutMills: Integer, set the socket timeout in milliseconds.");
         System.out.println("\t" + "-shutdownTimeoutMills: Integer, set thread pool shutdown socket timeout in milliseconds.");
         System.out.println("\t" + "-sendBuff: Integer, the tcp option sendBuff");
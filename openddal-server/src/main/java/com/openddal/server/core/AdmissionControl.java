@@ -0,0 +1,138 @@
+/*
+ * Copyright 2014-2016 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.openddal.server.core;
+
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.openddal.util.New;
+
+/**
+ * Decides whether a queued request is still worth executing, following the
+ * CoDel variant of "Fail at Scale": while the shortest queue wait of the
+ * last interval stays below the target, requests may wait up to one
+ * interval; once even the shortest wait exceeds the target the queue is
+ * standing, and the requests which waited longer than the target are
+ * rejected so the queue drains instead of serving clients which already
+ * gave up.
+ * <p>
+ * It also limits the number of requests a user executes concurrently.
+ *
+ * @author jorgie.li
+ */
+public final class AdmissionControl {
+
+    private final long targetNanos;
+    private final long intervalNanos;
+    private final ConcurrentMap<String, AtomicInteger> activeQueries = New.concurrentHashMap();
+    private final AtomicLong rejected = new AtomicLong();
+    private long intervalEnd;
+    private long minDelay = Long.MAX_VALUE;
+    private volatile boolean overloaded;
+
+    /**
+     * @param targetMillis the acceptable queue wait, 0 to disable shedding
+     * @param intervalMillis the interval the queue wait is observed
+     */
+    public AdmissionControl(int targetMillis, int intervalMillis) {
+        this.targetNanos = TimeUnit.MILLISECONDS.toNanos(targetMillis);
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+        this.intervalEnd = System.nanoTime() + intervalNanos;
+    }
+
+    /**
+     * Record the queue wait of a request which is about to be executed.
+     *
+     * @param queuedNanos the System.nanoTime() when the request was queued
+     * @return false if the request is to be rejected
+     */
+    public boolean admit(long queuedNanos) {
+        if (targetNanos <= 0) {
+            return true;
+        }
+        long now = System.nanoTime();
+        long delay = now - queuedNanos;
+        synchronized (this) {
+            if (delay < minDelay) {
+                minDelay = delay;
+            }
+            if (now - intervalEnd >= 0) {
+                overloaded = minDelay > targetNanos;
+                minDelay = Long.MAX_VALUE;
+                intervalEnd = now + intervalNanos;
+            }
+        }
+        if (delay > (overloaded ? targetNanos : intervalNanos)) {
+            rejected.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Start a request of the user, {@link #release(String)} must be called
+     * when it ends if the request was accepted.
+     *
+     * @param user the user name
+     * @param maxActiveQueries the quota of the user, 0 for no limit
+     * @return false if the user already executes the max requests
+     */
+    public boolean acquire(String user, int maxActiveQueries) {
+        AtomicInteger active = activeQueries.get(user);
+        if (active == null) {
+            AtomicInteger a = new AtomicInteger();
+            active = activeQueries.putIfAbsent(user, a);
+            if (active == null) {
+                active = a;
+            }
+        }
+        if (active.incrementAndGet() > maxActiveQueries && maxActiveQueries > 0) {
+            active.decrementAndGet();
+            rejected.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * End a request accepted by {@link #acquire(String, int)}.
+     *
+     * @param user the user name
+     */
+    public void release(String user) {
+        AtomicInteger active = activeQueries.get(user);
+        if (active != null) {
+            active.decrementAndGet();
+        }
+    }
+
+    /**
+     * @return whether the queue is standing
+     */
+    public boolean isOverloaded() {
+        return overloaded;
+    }
+
+    /**
+     * @return the number of rejected requests
+     */
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+}
@@ -2,6 +2,7 @@
 package com.openddal.server.core;
 
 import com.openddal.result.ResultInterface;
+import com.openddal.result.ResultTarget;
 
 /**
  * @author jorgie.li
@@ -17,6 +18,7 @@ public class QueryResult {
     private String message;
     private long insertId;
     private ResultInterface result;
+    private RowSource rows;
 
     public QueryResult(int affectedRows) {
         this.type = UPDATE_RESULT;
@@ -28,6 +30,35 @@ public class QueryResult {
         this.result = result;
     }
 
+    /**
+     * Create a query result whose rows are written to the client as they are
+     * read.
+     *
+     * @param meta the result without rows, describes the columns
+     * @param rows the source of the rows
+     */
+    public QueryResult(ResultInterface meta, RowSource rows) {
+        this.type = SELECT_RESULT;
+        this.result = meta;
+        this.rows = rows;
+    }
+
+    /**
+     * @return true if the rows are read from the {@link RowSource}
+     */
+    public boolean isStreaming() {
+        return rows != null;
+    }
+
+    /**
+     * Execute the streaming query, writing the rows to the target.
+     *
+     * @param target the target of the rows
+     */
+    public void writeRows(ResultTarget target) {
+        rows.writeRows(target);
+    }
+
     public boolean isQuery() {
         return type == SELECT_RESULT;
     }
@@ -69,4 +100,18 @@ public class QueryResult {
             result.close();
         }
     }
+
+    /**
+     * The rows of a streaming query result.
+     */
+    public interface RowSource {
+
+        /**
+         * Execute the query, writing the rows to the target.
+         *
+         * @param target the target of the rows
+         */
+        void writeRows(ResultTarget target);
+
+    }
 }
@@ -15,14 +15,17 @@
  */
 package com.openddal.server.core;
 
+import java.nio.charset.Charset;
 import java.util.Map;
 import java.util.Properties;
 
+import com.openddal.command.Command;
 import com.openddal.engine.Session;
 import com.openddal.server.NettyServer;
 import com.openddal.server.ServerException;
 import com.openddal.server.util.CharsetUtil;
 import com.openddal.util.New;
+import com.openddal.value.Value;
 
 import io.netty.channel.Channel;
 import io.netty.util.AttributeKey;
@@ -40,7 +43,9 @@ public class ServerSession implements AutoCloseable {
     private Channel channel;
     private Map<String, Object> attachments = New.hashMap();
     private String charset;
+    private Charset javaCharset = CharsetUtil.getJavaCharset(null);
     private int charsetIndex;
+    private long capabilityFlags;
     private String username;
     private String password;
     private String schema;
@@ -48,6 +53,8 @@ public class ServerSession implements AutoCloseable {
     private final long uptime;
     private Session dbSession;
     private QueryDispatcher dispatcher;
+    private final Map<Long, ServerStatement> statements = New.hashMap();
+    private long lastStatementId;
 
 
     public ServerSession(NettyServer server) {
@@ -120,8 +127,15 @@ public class ServerSession implements AutoCloseable {
     }
 
     public void close() {
+        synchronized (dbSession) {
+            for (ServerStatement stmt : statements.values()) {
+                stmt.close();
+            }
+            statements.clear();
+        }
         dbSession.close();
         server.removeSession(threadId);
+        server.getAccessLogger().disconnected(this);
         if (channel != null && channel.isOpen()) {
             channel.attr(CHANNEL_SESSION_KEY).remove();
             channel.close();
@@ -132,6 +146,7 @@ public class ServerSession implements AutoCloseable {
         String charset = CharsetUtil.getDbCharset(ci);
         if (charset != null) {
             this.charset = CharsetUtil.getCharset(ci);
+            this.javaCharset = CharsetUtil.getJavaCharset(this.charset);
             this.charsetIndex = ci;
             return true;
         } else {
@@ -143,6 +158,7 @@ public class ServerSession implements AutoCloseable {
         int ci = CharsetUtil.getDBIndex(charset);
         if (ci > 0) {
             this.charset = CharsetUtil.getCharset(ci);
+            this.javaCharset = CharsetUtil.getJavaCharset(this.charset);
             this.charsetIndex = ci;
             return true;
         } else {
@@ -151,10 +167,28 @@ public class ServerSession implements AutoCloseable {
     
     }
 
+    /**
+     * @return the java charset of the client text
+     */
+    public Charset getJavaCharset() {
+        return javaCharset;
+    }
+
     public int getCharsetIndex() {
         return this.charsetIndex;
     }
 
+    /**
+     * @param capabilityFlags the capabilities the client negotiated
+     */
+    public void setCapabilityFlags(long capabilityFlags) {
+        this.capabilityFlags = capabilityFlags;
+    }
+
+    public boolean hasCapabilityFlag(long flag) {
+        return (capabilityFlags & flag) == flag;
+    }
+
     public void setUser(String username) {
         this.username = username;
     }
@@ -191,9 +225,75 @@ public class ServerSession implements AutoCloseable {
         return threadId;
     }
     
+    public QueryDispatcher getDispatcher() {
+        return dispatcher;
+    }
+
     public QueryResult executeQuery(String query) throws ServerException {
         QueryProcessor processor = dispatcher.dispatch(query);
         QueryResult result = processor.process(query);
         return result;
     }
+
+    /**
+     * Parse a statement of COM_STMT_PREPARE, it stays open until closed by
+     * {@link #closeStatement(long)} or the session is closed.
+     *
+     * @param sql the statement
+     * @return the prepared statement
+     */
+    public ServerStatement prepareStatement(String sql) throws ServerException {
+        try {
+            synchronized (dbSession) {
+                Command command = dbSession.prepareLocal(sql);
+                ServerStatement stmt = new ServerStatement(++lastStatementId, sql, dbSession, command);
+                statements.put(stmt.getId(), stmt);
+                return stmt;
+            }
+        } catch (Throwable e) {
+            throw ServerException.convert(e);
+        }
+    }
+
+    /**
+     * @param id the statement id
+     * @return the prepared statement, or null if there is none with this id
+     */
+    public ServerStatement getStatement(long id) {
+        synchronized (dbSession) {
+            return statements.get(id);
+        }
+    }
+
+    public void closeStatement(long id) {
+        synchronized (dbSession) {
+            ServerStatement stmt = statements.remove(id);
+            if (stmt != null) {
+                stmt.close();
+            }
+        }
+    }
+
+    /**
+     * Execute a prepared statement, the rows of a query are read from the
+     * returned result while they are written.
+     *
+     * @param stmt the statement
+     * @param params the parameter values
+     * @return the result
+     */
+    public QueryResult executeStatement(ServerStatement stmt, Value[] params) throws ServerException {
+        try {
+            synchronized (dbSession) {
+                Command command = stmt.getCommand();
+                stmt.bind(params);
+                if (command.isQuery()) {
+                    return new QueryResult(command.getMetaData(), stmt);
+                }
+                return new QueryResult(command.executeUpdate());
+            }
+        } catch (Throwable e) {
+            throw ServerException.convert(e);
+        }
+    }
 }
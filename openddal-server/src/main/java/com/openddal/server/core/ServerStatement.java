@@ -0,0 +1,148 @@
+/*
+ * Copyright 2014-2016 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.openddal.server.core;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Map;
+
+import com.openddal.command.Command;
+import com.openddal.command.expression.ParameterInterface;
+import com.openddal.engine.Session;
+import com.openddal.result.ResultTarget;
+import com.openddal.util.New;
+import com.openddal.value.Value;
+
+/**
+ * A statement prepared by COM_STMT_PREPARE. The parsed command is kept until
+ * the statement is closed, so each execution only binds the parameters.
+ *
+ * @author jorgie.li
+ */
+public class ServerStatement implements QueryResult.RowSource {
+
+    private final long id;
+    private final String sql;
+    private final Session dbSession;
+    private final Command command;
+    private final int parameterCount;
+    private int[] parameterTypes;
+    private Map<Integer, ByteArrayOutputStream> longData;
+
+    ServerStatement(long id, String sql, Session dbSession, Command command) {
+        this.id = id;
+        this.sql = sql;
+        this.dbSession = dbSession;
+        this.command = command;
+        this.parameterCount = command.getParameters().size();
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    public Command getCommand() {
+        return command;
+    }
+
+    public int getParameterCount() {
+        return parameterCount;
+    }
+
+    /**
+     * @return the parameter types sent by the last execution which bound
+     *         them, or null
+     */
+    public int[] getParameterTypes() {
+        return parameterTypes;
+    }
+
+    public void setParameterTypes(int[] parameterTypes) {
+        this.parameterTypes = parameterTypes;
+    }
+
+    /**
+     * Append a chunk of COM_STMT_SEND_LONG_DATA to a parameter.
+     *
+     * @param index the parameter index
+     * @param data the packet
+     * @param offset the offset of the chunk
+     * @param length the length of the chunk
+     */
+    public void appendLongData(int index, byte[] data, int offset, int length) {
+        if (longData == null) {
+            longData = New.hashMap();
+        }
+        ByteArrayOutputStream out = longData.get(index);
+        if (out == null) {
+            out = new ByteArrayOutputStream();
+            longData.put(index, out);
+        }
+        out.write(data, offset, length);
+    }
+
+    /**
+     * @return the long data of each parameter, null entries for the
+     *         parameters without, or null if no long data was sent
+     */
+    public byte[][] getLongData() {
+        if (longData == null) {
+            return null;
+        }
+        byte[][] data = new byte[parameterCount][];
+        for (Map.Entry<Integer, ByteArrayOutputStream> e : longData.entrySet()) {
+            if (e.getKey() < parameterCount) {
+                data[e.getKey()] = e.getValue().toByteArray();
+            }
+        }
+        return data;
+    }
+
+    /**
+     * Drop the long data, done after each execution and by COM_STMT_RESET.
+     */
+    public void reset() {
+        longData = null;
+    }
+
+    /**
+     * Set the parameter values of the next execution.
+     *
+     * @param values the values
+     */
+    public void bind(Value[] values) {
+        ArrayList<? extends ParameterInterface> params = command.getParameters();
+        for (int i = 0; i < parameterCount; i++) {
+            params.get(i).setValue(values[i], true);
+        }
+    }
+
+    @Override
+    public void writeRows(ResultTarget target) {
+        synchronized (dbSession) {
+            command.executeQuery(0, target);
+        }
+    }
+
+    void close() {
+        command.close();
+    }
+
+}
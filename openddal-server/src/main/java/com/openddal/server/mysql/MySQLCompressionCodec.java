@@ -0,0 +1,172 @@
+/*
+ * Copyright 2014-2016 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.openddal.server.mysql;
+
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageCodec;
+import io.netty.handler.codec.CorruptedFrameException;
+
+/**
+ * The compressed MySQL protocol, added in front of the pipeline when the
+ * client negotiated CLIENT_COMPRESS. Each compressed packet has a 7 bytes
+ * header: the length of the compressed payload, the compressed sequence id
+ * and the length of the payload before compression, which is 0 if the
+ * payload was sent as is. The payload holds one or more MySQL packets.
+ * <p>
+ * The payloads shorter than the threshold, or which do not shrink, are sent
+ * uncompressed.
+ *
+ * @author jorgie.li
+ *
+ */
+public class MySQLCompressionCodec extends ByteToMessageCodec<ByteBuf> {
+
+    private static final int HEADER_LENGTH = 7;
+
+    /**
+     * The max payload of a compressed packet.
+     */
+    private static final int MAX_PAYLOAD = 0xFFFFFF;
+
+    private final int threshold;
+    private final Deflater deflater = new Deflater();
+    private final Inflater inflater = new Inflater();
+    private byte[] input = new byte[0];
+    private byte[] output = new byte[0];
+    private int sequenceId;
+
+    /**
+     * @param threshold the min payload length to compress
+     */
+    public MySQLCompressionCodec(int threshold) {
+        this.threshold = threshold;
+    }
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
+        int start = in.readerIndex();
+        if (in.writerIndex() - start < HEADER_LENGTH) {
+            return;
+        }
+        int length = readLength(in, start);
+        if (in.writerIndex() - start - HEADER_LENGTH < length) {
+            return;
+        }
+        // the server continues the compressed sequence of the command
+        sequenceId = in.getUnsignedByte(start + 3);
+        int uncompressedLength = readLength(in, start + 4);
+        in.skipBytes(HEADER_LENGTH);
+        if (uncompressedLength == 0) {
+            out.add(in.readSlice(length).retain());
+            return;
+        }
+        byte[] data = ensureCapacity(input, length);
+        input = data;
+        in.readBytes(data, 0, length);
+        ByteBuf payload = ctx.alloc().heapBuffer(uncompressedLength);
+        try {
+            inflater.reset();
+            inflater.setInput(data, 0, length);
+            int n = inflater.inflate(payload.array(), payload.arrayOffset(), uncompressedLength);
+            if (n != uncompressedLength || !inflater.finished()) {
+                throw new CorruptedFrameException("Compressed packet length mismatch " + n + " " + uncompressedLength);
+            }
+            payload.writerIndex(n);
+        } catch (DataFormatException e) {
+            payload.release();
+            throw new CorruptedFrameException(e);
+        } catch (RuntimeException e) {
+            payload.release();
+            throw e;
+        }
+        out.add(payload);
+    }
+
+    @Override
+    protected void encode(ChannelHandlerContext ctx, ByteBuf msg, ByteBuf out) throws Exception {
+        while (msg.isReadable()) {
+            int length = Math.min(msg.readableBytes(), MAX_PAYLOAD);
+            int compressedLength = length < threshold ? 0 : deflate(msg, length);
+            if (compressedLength > 0 && compressedLength < length) {
+                writeHeader(out, compressedLength, length);
+                out.writeBytes(output, 0, compressedLength);
+                msg.skipBytes(length);
+            } else {
+                writeHeader(out, length, 0);
+                out.writeBytes(msg, length);
+            }
+        }
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        super.handlerRemoved(ctx);
+        deflater.end();
+        inflater.end();
+    }
+
+    /**
+     * Compress the next bytes of the buffer into the output array.
+     *
+     * @return the compressed length, or 0 if it is not shorter
+     */
+    private int deflate(ByteBuf msg, int length) {
+        byte[] data;
+        int offset;
+        if (msg.hasArray()) {
+            data = msg.array();
+            offset = msg.arrayOffset() + msg.readerIndex();
+        } else {
+            data = ensureCapacity(input, length);
+            input = data;
+            offset = 0;
+            msg.getBytes(msg.readerIndex(), data, 0, length);
+        }
+        output = ensureCapacity(output, length);
+        deflater.reset();
+        deflater.setInput(data, offset, length);
+        deflater.finish();
+        int n = deflater.deflate(output, 0, length);
+        return deflater.finished() ? n : 0;
+    }
+
+    private void writeHeader(ByteBuf out, int length, int uncompressedLength) {
+        writeLength(out, length);
+        out.writeByte(++sequenceId);
+        writeLength(out, uncompressedLength);
+    }
+
+    private static byte[] ensureCapacity(byte[] array, int length) {
+        return array.length >= length ? array : new byte[length];
+    }
+
+    private static int readLength(ByteBuf in, int index) {
+        return in.getUnsignedByte(index) | in.getUnsignedByte(index + 1) << 8 | in.getUnsignedByte(index + 2) << 16;
+    }
+
+    private static void writeLength(ByteBuf out, int length) {
+        out.writeByte(length);
+        out.writeByte(length >>> 8);
+        out.writeByte(length >>> 16);
+    }
+
+}
@@ -17,13 +17,16 @@ package com.openddal.server.mysql;
 
 import java.util.List;
 
-import com.openddal.server.mysql.proto.Packet;
-
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.ByteToMessageDecoder;
 
 /**
+ * Splits the frames of the MySQL packets. A frame is passed on as a slice of
+ * the cumulated input, unless its payload is split into packets of the max
+ * size, then the payloads are reassembled into one frame whose header holds
+ * the sequence id of the last packet.
+ *
  * @author jorgie.li
  *
  */
@@ -31,47 +34,51 @@ public class MySQLServerDecoder extends ByteToMessageDecoder {
 
     private static final int FRAME_LENGTH_FIELD_LENGTH = 4;
 
+    /**
+     * The max payload of a packet, larger payloads are split.
+     */
+    private static final int MAX_PAYLOAD = 0xFFFFFF;
+
     @Override
     protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
-        // Make sure if the length field was received.
-        if (in.readableBytes() < FRAME_LENGTH_FIELD_LENGTH) {
-            // The length field was not received yet - return.
-            // This method will be invoked again when more packets are
-            // received and appended to the buffer.
-            return;
+        int start = in.readerIndex();
+        int index = start;
+        int payloadLength = 0;
+        int packets = 0;
+        while (true) {
+            // Make sure the length field and the whole packet were received,
+            // this method is invoked again when more bytes are received.
+            if (in.writerIndex() - index < FRAME_LENGTH_FIELD_LENGTH) {
+                return;
+            }
+            int length = readLength(in, index);
+            if (in.writerIndex() - index - FRAME_LENGTH_FIELD_LENGTH < length) {
+                return;
+            }
+            index += FRAME_LENGTH_FIELD_LENGTH + length;
+            payloadLength += length;
+            packets++;
+            if (length < MAX_PAYLOAD) {
+                break;
+            }
         }
-        // The length field is in the buffer.
-        // Mark the current buffer position before reading the length field
-        // because the whole frame might not be in the buffer yet.
-        // We will reset the buffer position to the marked position if
-        // there's not enough bytes in the buffer.
-        in.markReaderIndex();
-        
-        int frameLength = readLength(in);// in.readInt();
-        // Make sure if there's enough bytes in the buffer.
-        if (in.readableBytes() < frameLength) {
-            // The whole bytes were not received yet - return.
-            // This method will be invoked again when more packets are
-            // received and appended to the buffer.
-            // Reset to the marked position to read the length field again
-            // next time.
-            in.resetReaderIndex();
+        if (packets == 1) {
+            out.add(in.readSlice(index - start).retain());
             return;
         }
-        // There's enough bytes in the buffer. Read it.
-        ByteBuf frame = in.resetReaderIndex().readSlice(frameLength + 4).retain();
-        // Successfully decoded a frame. Add the decoded frame.
+        ByteBuf frame = ctx.alloc().buffer(FRAME_LENGTH_FIELD_LENGTH + payloadLength);
+        frame.writeMedium(MAX_PAYLOAD);
+        frame.writeByte(0);
+        while (in.readerIndex() < index) {
+            int length = readLength(in, in.readerIndex());
+            frame.setByte(3, in.getByte(in.readerIndex() + 3));
+            in.skipBytes(FRAME_LENGTH_FIELD_LENGTH);
+            frame.writeBytes(in, length);
+        }
         out.add(frame);
     }
 
-    /**
-     * @param in
-     * @return
-     */
-    private int readLength(ByteBuf in) {
-        byte[] lens = new byte[4];
-        in.readBytes(lens);
-        int size = Packet.getSize(lens);
-        return size;
+    private static int readLength(ByteBuf in, int index) {
+        return in.getUnsignedByte(index) | in.getUnsignedByte(index + 1) << 8 | in.getUnsignedByte(index + 2) << 16;
     }
 }
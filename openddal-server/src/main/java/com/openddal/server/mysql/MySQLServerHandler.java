@@ -19,19 +19,29 @@ import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.sql.SQLException;
 import java.util.List;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.openddal.command.Command;
+import com.openddal.engine.FlightRecorderEvents;
 import com.openddal.message.JdbcSQLException;
 import com.openddal.result.ResultInterface;
 import com.openddal.server.NettyServer;
 import com.openddal.server.ServerException;
+import com.openddal.server.core.AdmissionControl;
+import com.openddal.server.core.QueryProcessor;
 import com.openddal.server.core.QueryResult;
 import com.openddal.server.core.ServerSession;
+import com.openddal.server.core.ServerStatement;
 import com.openddal.server.mysql.auth.Privilege;
-import com.openddal.server.mysql.proto.ColumnDefinition;
+import com.openddal.server.mysql.pcs.SelectProcessor;
+import com.openddal.server.mysql.proto.BufferProto;
 import com.openddal.server.mysql.proto.ComFieldlist;
 import com.openddal.server.mysql.proto.ComInitdb;
 import com.openddal.server.mysql.proto.ComPing;
@@ -43,8 +53,11 @@ import com.openddal.server.mysql.proto.ComStatistics;
 import com.openddal.server.mysql.proto.ComStmtClose;
 import com.openddal.server.mysql.proto.ComStmtExecute;
 import com.openddal.server.mysql.proto.ComStmtPrepare;
+import com.openddal.server.mysql.proto.ComStmtPrepareOk;
 import com.openddal.server.mysql.proto.ComStmtReset;
 import com.openddal.server.mysql.proto.ComStmtSendLongData;
+import com.openddal.server.mysql.proto.ColumnDefinition;
+import com.openddal.server.mysql.proto.EOF;
 import com.openddal.server.mysql.proto.ERR;
 import com.openddal.server.mysql.proto.Flags;
 import com.openddal.server.mysql.proto.Handshake;
@@ -52,16 +65,18 @@ import com.openddal.server.mysql.proto.HandshakeResponse;
 import com.openddal.server.mysql.proto.OK;
 import com.openddal.server.mysql.proto.Packet;
 import com.openddal.server.mysql.proto.Resultset;
-import com.openddal.server.mysql.proto.ResultsetRow;
 import com.openddal.server.util.AccessLogger;
 import com.openddal.server.util.CharsetUtil;
 import com.openddal.server.util.ErrorCode;
+import com.openddal.server.util.ParseUtil;
 import com.openddal.server.util.ResultColumn;
 import com.openddal.server.util.StringUtil;
 import com.openddal.util.StringUtils;
 import com.openddal.value.Value;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
 
@@ -72,17 +87,23 @@ import io.netty.channel.ChannelInboundHandlerAdapter;
 public class MySQLServerHandler extends ChannelInboundHandlerAdapter {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(MySQLServerHandler.class);
-    private static final AccessLogger ACCESSLOGGER = new AccessLogger();
+    private static final int MAX_LOCAL_QUERY_LENGTH = 512;
 
     private long sequenceId;
-    private ThreadPoolExecutor userExecutor;
+    private ExecutorService userExecutor;
     private NettyServer server;
     private ServerSession session;
+    private final AccessLogger accessLogger;
+    // the commands of the session are executed one at a time in the order
+    // they were received, the running flag is set while a task drains them
+    private final Queue<HandleTask> mailbox = new ConcurrentLinkedQueue<HandleTask>();
+    private final AtomicBoolean running = new AtomicBoolean();
 
     public MySQLServerHandler(NettyServer server) {
         this.server = server;
         this.userExecutor = server.getUserExecutor();
         this.session = new ServerSession(server);
+        this.accessLogger = server.getAccessLogger();
     }
 
     @Override
@@ -100,7 +121,7 @@ public class MySQLServerHandler extends ChannelInboundHandlerAdapter {
         handshake.authPluginDataLength = 21;
         handshake.authPluginName = Flags.MYSQL_NATIVE_PASSWORD;
         handshake.capabilityFlags = Flags.CLIENT_BASIC_FLAGS;
-        handshake.removeCapabilityFlag(Flags.CLIENT_COMPRESS);
+        handshake.setCapabilityFlag(Flags.CLIENT_COMPRESS);
         handshake.removeCapabilityFlag(Flags.CLIENT_SSL);
         handshake.removeCapabilityFlag(Flags.CLIENT_LOCAL_FILES);
         session.setCharsetIndex((int) handshake.characterSet);
@@ -112,7 +133,100 @@ public class MySQLServerHandler extends ChannelInboundHandlerAdapter {
     @Override
     public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
         ByteBuf buf = (ByteBuf) msg;
-        userExecutor.execute(new HandleTask(ctx, buf));
+        if (mailbox.isEmpty() && !running.get() && handleInline(ctx, buf)) {
+            return;
+        }
+        mailbox.add(new HandleTask(ctx, buf));
+        if (running.compareAndSet(false, true)) {
+            try {
+                userExecutor.execute(new MailboxTask());
+            } catch (RuntimeException e) {
+                running.set(false);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Handle the cheap commands which never block in the event loop, only
+     * called when no command of the session is queued or running.
+     *
+     * @return false if the command is to be executed in the user threads
+     */
+    private boolean handleInline(ChannelHandlerContext ctx, ByteBuf buf) {
+        if (ServerSession.get(ctx.channel()) != session) {
+            return false;
+        }
+        switch (BufferProto.getType(buf)) {
+        case Flags.COM_PING:
+        case Flags.COM_INIT_DB:
+        case Flags.COM_QUIT:
+            new HandleTask(ctx, buf).run();
+            return true;
+        case Flags.COM_QUERY:
+            return isLocalQueryCandidate(buf) && localQuery(ctx, buf);
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * A short SELECT with a variable or a function call may be answered by
+     * the server itself, such as SELECT @@tx_isolation or SELECT USER().
+     */
+    private static boolean isLocalQueryCandidate(ByteBuf buf) {
+        int start = buf.readerIndex() + 5;
+        int end = buf.writerIndex();
+        if (end - start > MAX_LOCAL_QUERY_LENGTH) {
+            return false;
+        }
+        while (start < end && Character.isWhitespace(buf.getByte(start))) {
+            start++;
+        }
+        String keyword = "select";
+        if (end - start <= keyword.length()) {
+            return false;
+        }
+        for (int i = 0; i < keyword.length(); i++) {
+            if (Character.toLowerCase(buf.getByte(start + i)) != keyword.charAt(i)) {
+                return false;
+            }
+        }
+        for (int i = start + keyword.length(); i < end; i++) {
+            byte b = buf.getByte(i);
+            if (b == '@' || b == '(' && i + 1 < end && buf.getByte(i + 1) == ')') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean localQuery(ChannelHandlerContext ctx, ByteBuf buf) {
+        ComQuery request = ComQuery.loadFromPacket(buf, session.getJavaCharset());
+        QueryResult result;
+        try {
+            QueryProcessor processor = session.getDispatcher().dispatch(request.query);
+            if (!(processor instanceof SelectProcessor)) {
+                return false;
+            }
+            result = ((SelectProcessor) processor).localProcess(request.query);
+        } catch (RuntimeException e) {
+            // the user thread executes it again and reports the error
+            return false;
+        }
+        if (result == null) {
+            return false;
+        }
+        try {
+            accessLogger.begin(session);
+            this.sequenceId = request.sequenceId;
+            accessLogger.seqId(this.sequenceId).command(request).statement(request.query, null);
+            sendQueryResult(ctx, result);
+        } finally {
+            buf.release();
+            accessLogger.log();
+        }
+        return true;
     }
 
     @Override
@@ -133,11 +247,9 @@ public class MySQLServerHandler extends ChannelInboundHandlerAdapter {
         Privilege privilege = server.getPrivilege();
         HandshakeResponse authReply = null;
         try {
-            byte[] packet = new byte[buf.readableBytes()];
-            buf.readBytes(packet);
-            authReply = HandshakeResponse.loadFromPacket(packet);
+            authReply = HandshakeResponse.loadFromPacket(toArray(buf));
             this.sequenceId = authReply.sequenceId;
-            ACCESSLOGGER.seqId(this.sequenceId).command(authReply.toString());
+            accessLogger.seqId(this.sequenceId).command(authReply);
             if (!authReply.hasCapabilityFlag(Flags.CLIENT_PROTOCOL_41)) {
                 sendError(ctx, ErrorCode.ER_NOT_SUPPORTED_AUTH_MODE, "We do not support Protocols under 4.1");
                 return;
@@ -160,10 +272,15 @@ public class MySQLServerHandler extends ChannelInboundHandlerAdapter {
             session.setUser(authReply.username);
             session.setSchema(authReply.schema);
             session.setPassword(authReply.authResponse);
+            session.setCapabilityFlags(authReply.capabilityFlags);
             session.bind(ctx.channel());
+            accessLogger.connected();
             session.setAttachment("remoteAddress", ctx.channel().remoteAddress().toString());
             session.setAttachment("localAddress", ctx.channel().localAddress().toString());
-            success(ctx);
+            ChannelFuture future = success(ctx);
+            if (authReply.hasCapabilityFlag(Flags.CLIENT_COMPRESS)) {
+                enableCompression(future);
+            }
         } catch (Exception e) {
             String errMsg = authReply == null ? e.getMessage()
                     : "Access denied for user '" + authReply.username + "' to database '" + authReply.schema + "'";
@@ -174,63 +291,61 @@ public class MySQLServerHandler extends ChannelInboundHandlerAdapter {
 
 
     private void despatchCommand(ChannelHandlerContext ctx, ByteBuf buf) throws Exception {
-        byte[] data = new byte[buf.readableBytes()];
-        buf.readBytes(data);
-        this.sequenceId = Packet.getSequenceId(data);
+        this.sequenceId = BufferProto.getSequenceId(buf);
         Packet packet = null;
 
-        byte type = Packet.getType(data);
+        byte type = BufferProto.getType(buf);
         switch (type) {
         case Flags.COM_INIT_DB:
-            packet = ComInitdb.loadFromPacket(data);
+            packet = ComInitdb.loadFromPacket(buf);
             init(ctx, (ComInitdb) packet);
             break;
         case Flags.COM_QUERY:
-            packet = ComQuery.loadFromPacket(data);
+            packet = ComQuery.loadFromPacket(buf, session.getJavaCharset());
             query(ctx, (ComQuery) packet);
             break;
         case Flags.COM_PING:
-            packet = ComPing.loadFromPacket(data);
+            packet = ComPing.loadFromPacket(buf);
             ping(ctx, (ComPing) packet);
             break;
         case Flags.COM_QUIT:
-            packet = ComQuit.loadFromPacket(data);
+            packet = ComQuit.loadFromPacket(buf);
             close(ctx, (ComQuit) packet);
             break;
         case Flags.COM_PROCESS_KILL:
-            packet = ComProcesskill.loadFromPacket(data);
+            packet = ComProcesskill.loadFromPacket(toArray(buf));
             processKill(ctx, (ComProcesskill) packet);
             break;
         case Flags.COM_STMT_PREPARE:
-            packet = ComStmtPrepare.loadFromPacket(data);
+            packet = ComStmtPrepare.loadFromPacket(buf, session.getJavaCharset());
             stmtPrepare(ctx, (ComStmtPrepare) packet);
             break;
         case Flags.COM_STMT_SEND_LONG_DATA:
-            packet = ComStmtSendLongData.loadFromPacket(data);
+            packet = ComStmtSendLongData.loadFromPacket(toArray(buf));
             stmtPrepareLongData(ctx, (ComStmtSendLongData) packet);
             break;
         case Flags.COM_STMT_EXECUTE:
-            packet = ComStmtExecute.loadFromPacket(data);
+            packet = ComStmtExecute.loadFromPacket(toArray(buf));
             stmtExecute(ctx, (ComStmtExecute) packet);
             break;
         case Flags.COM_STMT_CLOSE:
-            packet = ComStmtClose.loadFromPacket(data);
+            packet = ComStmtClose.loadFromPacket(buf);
             stmtClose(ctx, (ComStmtClose) packet);
             break;
         case Flags.COM_SHUTDOWN:
-            packet = ComShutdown.loadFromPacket(data);
+            packet = ComShutdown.loadFromPacket(toArray(buf));
             shutdown(ctx, (ComShutdown) packet);
             break;
         case Flags.COM_STMT_RESET:
-            packet = ComStmtReset.loadFromPacket(data);
+            packet = ComStmtReset.loadFromPacket(toArray(buf));
             stmtReset(ctx, (ComStmtReset) packet);
             break;
         case Flags.COM_FIELD_LIST:
-            packet = ComFieldlist.loadFromPacket(data);
+            packet = ComFieldlist.loadFromPacket(toArray(buf));
             fieldList(ctx, (ComFieldlist) packet);
             break;
         case Flags.COM_STATISTICS:
-            packet = ComStatistics.loadFromPacket(data);
+            packet = ComStatistics.loadFromPacket(toArray(buf));
             statistics(ctx, (ComStatistics) packet);
             break;
         default:
@@ -240,7 +355,7 @@ public class MySQLServerHandler extends ChannelInboundHandlerAdapter {
 
 
     private void shutdown(ChannelHandlerContext ctx, ComShutdown request) {
-        ACCESSLOGGER.seqId(this.sequenceId).command(request.toString());
+        accessLogger.seqId(this.sequenceId).command(request);
         ctx.channel().close();
         ctx.channel().parent().close();
         server.stop();
@@ -248,91 +363,203 @@ public class MySQLServerHandler extends ChannelInboundHandlerAdapter {
     }
 
     private void ping(ChannelHandlerContext ctx, ComPing request) {
-        ACCESSLOGGER.seqId(this.sequenceId).command(request.toString());
+        accessLogger.seqId(this.sequenceId).command(request);
         success(ctx);
     }
 
     private void init(ChannelHandlerContext ctx, ComInitdb request) {
-        ACCESSLOGGER.seqId(this.sequenceId).command(request.toString());
+        accessLogger.seqId(this.sequenceId).command(request).initDb(request.schema);
         session.setSchema(request.schema);
         success(ctx);
     }
 
     private void query(ChannelHandlerContext ctx, ComQuery request) {
-        ACCESSLOGGER.seqId(this.sequenceId).command(request.toString());
+        accessLogger.seqId(this.sequenceId).command(request).statement(request.query, null);
         String query = request.query;
         if (StringUtils.isNullOrEmpty(query)) {
             sendError(ctx, ErrorCode.ER_NOT_ALLOWED_COMMAND, "Empty SQL");
             return;
         }
-        QueryResult result = session.executeQuery(query);
-        if(result.isQuery()) {
-            sendQueryResult(ctx, result);
-        } else {
-            sendUpdateResult(ctx, result);
+        if (query.indexOf(';') < 0 || !session.hasCapabilityFlag(Flags.CLIENT_MULTI_STATEMENTS)) {
+            sendResult(ctx, session.executeQuery(query), 0);
+            return;
+        }
+        List<String> statements = ParseUtil.splitStatements(query);
+        if (statements.isEmpty()) {
+            sendError(ctx, ErrorCode.ER_NOT_ALLOWED_COMMAND, "Empty SQL");
+            return;
         }
+        // the statements are executed in order, the first error is the last
+        // result of the response
+        for (int i = 0; i < statements.size(); i++) {
+            int statusFlags = i < statements.size() - 1 ? Flags.SERVER_MORE_RESULTS_EXISTS : 0;
+            if (!sendResult(ctx, session.executeQuery(statements.get(i)), statusFlags)) {
+                return;
+            }
+        }
+    }
+
+    private boolean sendResult(ChannelHandlerContext ctx, QueryResult result, int statusFlags) {
+        if (result.isQuery()) {
+            return sendQueryResult(ctx, result, false, statusFlags);
+        }
+        sendUpdateResult(ctx, result, statusFlags);
+        return true;
     }
 
     private void close(ChannelHandlerContext ctx, ComQuit request) {
-        ACCESSLOGGER.seqId(this.sequenceId).command(request.toString());
+        accessLogger.seqId(this.sequenceId).command(request);
         success(ctx);
     }
 
     private void stmtPrepare(ChannelHandlerContext ctx, ComStmtPrepare request) {
-        ACCESSLOGGER.seqId(this.sequenceId).command(request.toString());
-        sendError(ctx, ErrorCode.ER_UNKNOWN_COM_ERROR, "Prepare command unsupported.");
+        accessLogger.seqId(this.sequenceId).command(request);
+        if (StringUtils.isNullOrEmpty(request.query)) {
+            sendError(ctx, ErrorCode.ER_NOT_ALLOWED_COMMAND, "Empty SQL");
+            return;
+        }
+        ServerStatement stmt = session.prepareStatement(request.query);
+        Command command = stmt.getCommand();
+        ResultInterface meta = command.isQuery() ? command.getMetaData() : null;
+        int columnCount = meta == null ? 0 : meta.getVisibleColumnCount();
+        ByteBuf out = ctx.alloc().buffer();
+        ComStmtPrepareOk ok = new ComStmtPrepareOk();
+        ok.sequenceId = nextSequenceId();
+        ok.statementId = stmt.getId();
+        ok.columnsNumber = columnCount;
+        ok.parametersNumber = stmt.getParameterCount();
+        out.writeBytes(ok.toPacket());
+        if (stmt.getParameterCount() > 0) {
+            for (int i = 0; i < stmt.getParameterCount(); i++) {
+                ColumnDefinition param = new ColumnDefinition();
+                param.sequenceId = nextSequenceId();
+                param.catalog = "def";
+                param.name = "?";
+                param.type = Flags.MYSQL_TYPE_VAR_STRING;
+                out.writeBytes(param.toPacket());
+            }
+            writeEOF(out);
+        }
+        if (columnCount > 0) {
+            for (int i = 0; i < columnCount; i++) {
+                ColumnDefinition column = ResultColumn.getColumn(meta, i);
+                column.sequenceId = nextSequenceId();
+                out.writeBytes(column.toPacket());
+            }
+            writeEOF(out);
+        }
+        ctx.writeAndFlush(out);
     }
 
     private void stmtPrepareLongData(ChannelHandlerContext ctx, ComStmtSendLongData request) {
-        ACCESSLOGGER.seqId(this.sequenceId).command(request.toString());
-        sendError(ctx, ErrorCode.ER_UNKNOWN_COM_ERROR, "Prepare command unsupported.");
+        accessLogger.seqId(this.sequenceId).command(request);
+        // no response, an unknown statement is reported by the execution
+        ServerStatement stmt = session.getStatement(request.statementId);
+        if (stmt != null) {
+            int offset = ComStmtSendLongData.CHUNK_OFFSET;
+            stmt.appendLongData((int) request.paramId, request.data, offset, request.data.length - offset);
+        }
     }
 
     private void stmtExecute(ChannelHandlerContext ctx, ComStmtExecute request) throws Exception {
-        ACCESSLOGGER.seqId(this.sequenceId).command(request.toString());
-        sendError(ctx, ErrorCode.ER_UNKNOWN_COM_ERROR, "Prepare command unsupported.");
+        accessLogger.seqId(this.sequenceId).command(request);
+        ServerStatement stmt = session.getStatement(request.statementId);
+        if (stmt == null) {
+            sendError(ctx, ErrorCode.ER_UNKNOWN_STMT_HANDLER,
+                    "Unknown prepared statement handler (" + request.statementId + ") given to mysqld_stmt_execute");
+            return;
+        }
+        Value[] params;
+        try {
+            params = request.readParameters(stmt.getParameterCount(), stmt.getParameterTypes(), stmt.getLongData());
+            stmt.setParameterTypes(request.parameterTypes);
+        } finally {
+            stmt.reset();
+        }
+        accessLogger.statement(stmt.getSql(), params);
+        QueryResult result = session.executeStatement(stmt, params);
+        if (result.isQuery()) {
+            sendQueryResult(ctx, result, true, 0);
+        } else {
+            sendUpdateResult(ctx, result);
+        }
     }
 
     private void stmtClose(ChannelHandlerContext ctx, ComStmtClose request) {
-        ACCESSLOGGER.seqId(this.sequenceId).command(request.toString());
-        sendError(ctx, ErrorCode.ER_UNKNOWN_COM_ERROR, "Prepare command unsupported.");
+        accessLogger.seqId(this.sequenceId).command(request);
+        // no response
+        session.closeStatement(request.statementId);
     }
 
     private void processKill(ChannelHandlerContext ctx, ComProcesskill request) {
-        ACCESSLOGGER.seqId(this.sequenceId).command(request.toString());
+        accessLogger.seqId(this.sequenceId).command(request);
         ServerSession s = server.getSession(request.connectionId);
         if (s != null) {
+            // stop the running statement first, close waits for it
+            if (s.getDbSession() != null) {
+                s.getDbSession().cancel();
+            }
             s.close();
         }
         success(ctx);
     }
     
     private void stmtReset(ChannelHandlerContext ctx, ComStmtReset request) {
-        ACCESSLOGGER.seqId(this.sequenceId).command(request.toString());
-        sendError(ctx, ErrorCode.ER_UNKNOWN_COM_ERROR, "ComStmtReset command unsupported.");
+        accessLogger.seqId(this.sequenceId).command(request);
+        ServerStatement stmt = session.getStatement(request.statementId);
+        if (stmt == null) {
+            sendError(ctx, ErrorCode.ER_UNKNOWN_STMT_HANDLER,
+                    "Unknown prepared statement handler (" + request.statementId + ") given to mysqld_stmt_reset");
+            return;
+        }
+        stmt.reset();
+        success(ctx);
     }
     
     private void statistics(ChannelHandlerContext ctx, ComStatistics request) {
-        ACCESSLOGGER.seqId(this.sequenceId).command(request.toString());
+        accessLogger.seqId(this.sequenceId).command(request);
         sendError(ctx, ErrorCode.ER_UNKNOWN_COM_ERROR, "ComStatistics command unsupported.");
     }
 
     private void fieldList(ChannelHandlerContext ctx, ComFieldlist request) {
-        ACCESSLOGGER.seqId(this.sequenceId).command(request.toString());
+        accessLogger.seqId(this.sequenceId).command(request);
         sendError(ctx, ErrorCode.ER_UNKNOWN_COM_ERROR, "ComFieldlist command unsupported.");
     }
 
+    private static byte[] toArray(ByteBuf buf) {
+        byte[] data = new byte[buf.readableBytes()];
+        buf.getBytes(buf.readerIndex(), data);
+        return data;
+    }
+
     private long nextSequenceId() {
         return ++sequenceId;
     }
 
-    private void success(ChannelHandlerContext ctx) {
+    private ChannelFuture success(ChannelHandlerContext ctx) {
         ByteBuf out = ctx.alloc().buffer();
         OK ok = new OK();
         ok.sequenceId = nextSequenceId();
         ok.setStatusFlag(Flags.SERVER_STATUS_AUTOCOMMIT);
         out.writeBytes(ok.toPacket());
-        ctx.writeAndFlush(out);
+        return ctx.writeAndFlush(out);
+    }
+
+    /**
+     * The packets after the authentication OK packet are compressed, the
+     * codec is added once the OK packet is written, before the client can
+     * send the next command.
+     */
+    private void enableCompression(ChannelFuture future) {
+        final int threshold = server.getArgs().compressThreshold;
+        future.addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture f) throws Exception {
+                if (f.isSuccess()) {
+                    f.channel().pipeline().addFirst(new MySQLCompressionCodec(threshold));
+                }
+            }
+        });
     }
 
     private void sendError(ChannelHandlerContext ctx, int errno, String msg) {
@@ -343,7 +570,7 @@ public class MySQLServerHandler extends ChannelInboundHandlerAdapter {
         err.errorMessage = msg;
         out.writeBytes(err.toPacket());
         ctx.writeAndFlush(out);
-        ACCESSLOGGER.markError(errno, msg);
+        accessLogger.markError(errno, msg);
     }
 
     private void sendError(ChannelHandlerContext ctx, Throwable t) {
@@ -358,56 +585,66 @@ public class MySQLServerHandler extends ChannelInboundHandlerAdapter {
         err.errorMessage = message;
         out.writeBytes(err.toPacket());
         ctx.writeAndFlush(out);
-        ACCESSLOGGER.markError((int)err.errorCode, err.errorMessage);
+        accessLogger.markError((int)err.errorCode, err.errorMessage);
     }
 
     private void sendUpdateResult(ChannelHandlerContext ctx, QueryResult rs) {
+        sendUpdateResult(ctx, rs, 0);
+    }
+
+    private void sendUpdateResult(ChannelHandlerContext ctx, QueryResult rs, int statusFlags) {
         ByteBuf out = ctx.alloc().buffer();
         OK ok = new OK();
         ok.sequenceId = nextSequenceId();
         ok.affectedRows = rs.getUpdateResult();
-        ok.setStatusFlag(Flags.SERVER_STATUS_AUTOCOMMIT);
+        ok.setStatusFlag(Flags.SERVER_STATUS_AUTOCOMMIT | statusFlags);
         out.writeBytes(ok.toPacket());
         ctx.writeAndFlush(out);
     }
     
 
+    private void writeEOF(ByteBuf out) {
+        EOF eof = new EOF();
+        eof.sequenceId = nextSequenceId();
+        out.writeBytes(eof.toPacket());
+    }
+
     private void sendQueryResult(ChannelHandlerContext ctx, QueryResult rs) {
-        Resultset resultset = new Resultset();
-        ByteBuf out = ctx.alloc().buffer();
+        sendQueryResult(ctx, rs, false, 0);
+    }
+
+    /**
+     * @return false if an ERR packet ended the result
+     */
+    private boolean sendQueryResult(ChannelHandlerContext ctx, QueryResult rs, boolean binary, int statusFlags) {
+        Resultset.characterSet = session.getCharsetIndex();
+        ResultsetWriter writer = new ResultsetWriter(ctx, nextSequenceId(), binary);
+        writer.setStatusFlags(statusFlags);
+        writer.setSession(session.getDbSession());
+        Object event = FlightRecorderEvents.begin(FlightRecorderEvents.PROTOCOL_WRITE);
         try {
-            resultset.sequenceId = nextSequenceId();
-            Resultset.characterSet = session.getCharsetIndex();
-            
-            ResultInterface result = rs.getQueryResult();
-            int columnCount = result.getVisibleColumnCount();
-            for (int i = 0; i < columnCount; i++) {
-                ColumnDefinition columnPacket = ResultColumn.getColumn(result, i);
-                resultset.addColumn(columnPacket);
-            }
-            while (result.next()) {
-                ResultsetRow rowPacket = new ResultsetRow();
-                Value[] v = result.currentRow();
-                for (int i = 0; i < columnCount; i++) {
-                    Value value = v[i];
-                    rowPacket.data.add(value.getString());
-                }
-                resultset.addRow(rowPacket);
+            if (rs.isStreaming()) {
+                writer.writeHeader(rs.getQueryResult());
+                rs.writeRows(writer);
+                this.sequenceId = writer.finish();
+            } else {
+                this.sequenceId = writer.write(rs.getQueryResult());
             }
-            List<byte[]> packets = resultset.toPackets();
-            for (byte[] bs : packets) {
-                out.writeBytes(bs);
+            if (event != null && session.getDbSession() != null) {
+                FlightRecorderEvents.commit(event, session.getDbSession(), binary ? "binary" : "text",
+                        writer.getRowCount());
             }
         } catch (Exception e) {
+            SQLException se = ServerException.toSQLException(e);
             ERR err = new ERR();
-            err.sequenceId = resultset.sequenceId++;
-            err.errorCode = ErrorCode.ER_UNKNOWN_ERROR;
-            err.errorMessage = "write resultset error:" + e.getMessage();
-            out.writeBytes(err.toPacket());
-        } finally {
-            ctx.writeAndFlush(out);
+            err.errorCode = se instanceof JdbcSQLException ? ErrorCode.ER_ERROR_WHEN_EXECUTING_COMMAND
+                    : se.getErrorCode();
+            err.errorMessage = se.getMessage();
+            this.sequenceId = writer.writeError(err);
+            accessLogger.markError((int) err.errorCode, err.errorMessage);
+            return false;
         }
-
+        return true;
     }
 
     
@@ -417,6 +654,8 @@ public class MySQLServerHandler extends ChannelInboundHandlerAdapter {
     private class HandleTask implements Runnable {
         private final ChannelHandlerContext ctx;
         private final ByteBuf buf;
+        // when the task was queued in the user executor, 0 if it was not
+        private long queuedNanos;
 
         private HandleTask(ChannelHandlerContext ctx, ByteBuf buf) {
             this.ctx = ctx;
@@ -426,11 +665,17 @@ public class MySQLServerHandler extends ChannelInboundHandlerAdapter {
         @Override
         public void run() {
             try {
-                ACCESSLOGGER.begin(session);
+                accessLogger.begin(session);
                 if (ServerSession.get(ctx.channel()) != session) {
                     authenticate(ctx, buf);
-                } else {
+                } else if (!isSheddable(buf)) {
                     despatchCommand(ctx, buf);
+                } else if (admit(ctx, buf, queuedNanos)) {
+                    try {
+                        despatchCommand(ctx, buf);
+                    } finally {
+                        server.getAdmissionControl().release(session.getUser());
+                    }
                 }
             } catch (Throwable e) {
                 Throwable t = ServerException.toSQLException(e);
@@ -438,7 +683,82 @@ public class MySQLServerHandler extends ChannelInboundHandlerAdapter {
                 sendError(ctx, t);
             } finally {
                 buf.release();
-                ACCESSLOGGER.log();
+                accessLogger.log();
+            }
+        }
+
+    }
+
+    /**
+     * The commands which expect a response may be rejected under overload.
+     */
+    private static boolean isSheddable(ByteBuf buf) {
+        switch (BufferProto.getType(buf)) {
+        case Flags.COM_QUERY:
+        case Flags.COM_STMT_PREPARE:
+        case Flags.COM_STMT_EXECUTE:
+        case Flags.COM_FIELD_LIST:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * Check the queue wait and the quota of the user, the command is
+     * answered with an error if it is rejected.
+     *
+     * @return true if the command is accepted, then the user quota must be
+     *         released when it ends
+     */
+    private boolean admit(ChannelHandlerContext ctx, ByteBuf buf, long queuedNanos) {
+        AdmissionControl admission = server.getAdmissionControl();
+        if (queuedNanos != 0 && !admission.admit(queuedNanos)) {
+            this.sequenceId = BufferProto.getSequenceId(buf);
+            long waited = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - queuedNanos);
+            sendError(ctx, ErrorCode.ER_CON_COUNT_ERROR,
+                    "Server is overloaded, the request waited " + waited + "ms in the queue");
+            return false;
+        }
+        String user = session.getUser();
+        int maxActiveQueries = server.getPrivilege().maxActiveQueries(user);
+        if (!admission.acquire(user, maxActiveQueries)) {
+            this.sequenceId = BufferProto.getSequenceId(buf);
+            sendError(ctx, ErrorCode.ER_TOO_MANY_USER_CONNECTIONS,
+                    "User '" + user + "' already has more than " + maxActiveQueries + " active queries");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Drain the mailbox of the session in a user thread, so a pipelined
+     * command never runs before or concurrently with the one ahead of it.
+     */
+    private class MailboxTask implements Runnable {
+        private final long queuedNanos = System.nanoTime();
+
+        @Override
+        public void run() {
+            // only the first command waited in the executor queue, the
+            // others waited for the commands of the session before them
+            boolean first = true;
+            for (;;) {
+                HandleTask task = mailbox.poll();
+                if (task != null && first) {
+                    task.queuedNanos = queuedNanos;
+                    first = false;
+                }
+                if (task == null) {
+                    running.set(false);
+                    // a command queued after the poll is drained by this task
+                    // unless the event loop has submitted a new one
+                    if (mailbox.isEmpty() || !running.compareAndSet(false, true)) {
+                        return;
+                    }
+                    continue;
+                }
+                task.run();
             }
         }
 
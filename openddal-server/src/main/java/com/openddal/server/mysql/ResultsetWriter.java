@@ -0,0 +1,517 @@
+/*
+ * Copyright 2014-2016 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.openddal.server.mysql;
+
+import java.util.concurrent.TimeUnit;
+
+import com.openddal.engine.Session;
+import com.openddal.engine.SysProperties;
+import com.openddal.message.DbException;
+import com.openddal.message.ErrorCode;
+import com.openddal.result.ResultInterface;
+import com.openddal.result.ResultTarget;
+import com.openddal.server.ServerException;
+import com.openddal.server.mysql.proto.ColCountPacket;
+import com.openddal.server.mysql.proto.ColumnDefinition;
+import com.openddal.server.mysql.proto.EOF;
+import com.openddal.server.mysql.proto.ERR;
+import com.openddal.server.mysql.proto.Flags;
+import com.openddal.server.mysql.proto.Proto;
+import com.openddal.server.util.ResultColumn;
+import com.openddal.util.DateTimeUtils;
+import com.openddal.value.Value;
+import com.openddal.value.ValueDate;
+import com.openddal.value.ValueNull;
+import com.openddal.value.ValueTime;
+import com.openddal.value.ValueTimestamp;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+
+/**
+ * Streams a result set to the client in the text protocol, or in the binary
+ * protocol for the execution of a prepared statement. The rows are
+ * encoded from the values straight into pooled buffers which are flushed in
+ * chunks, the writer waits for the flushed chunks to drain while the channel
+ * is not writable, so a large result never piles up in the heap.
+ * <p>
+ * As a {@link ResultTarget} the writer receives the rows of a query while it
+ * runs, {@link #writeHeader(ResultInterface)} must be called before and
+ * {@link #finish()} after the rows.
+ *
+ * @author jorgie.li
+ */
+public class ResultsetWriter implements ResultTarget {
+
+    /**
+     * The buffered bytes which trigger a flush.
+     */
+    static final int CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * The max payload of a packet, larger payloads are split.
+     */
+    static final int MAX_PAYLOAD = 0xFFFFFF;
+
+    private static final int NULL_VALUE = 0xFB;
+
+    private static final long NANOS_PER_SECOND = 1000000000L;
+
+    // how often a write waiting for the client checks the cancel of the
+    // statement
+    private static final long CANCEL_CHECK_MILLIS = 100;
+
+    private final ChannelHandlerContext ctx;
+    private final long firstSequenceId;
+    private final boolean binary;
+    private long sequenceId;
+    private ByteBuf out;
+    private boolean flushed;
+    private int columnCount;
+    private int[] columnTypes;
+    private int rowCount;
+    private int statusFlags;
+    private Session session;
+
+    /**
+     * @param ctx the channel context
+     * @param sequenceId the sequence id of the first packet
+     */
+    public ResultsetWriter(ChannelHandlerContext ctx, long sequenceId) {
+        this(ctx, sequenceId, false);
+    }
+
+    /**
+     * @param ctx the channel context
+     * @param sequenceId the sequence id of the first packet
+     * @param binary whether the rows are written in the binary protocol
+     */
+    public ResultsetWriter(ChannelHandlerContext ctx, long sequenceId, boolean binary) {
+        this.ctx = ctx;
+        this.firstSequenceId = sequenceId;
+        this.sequenceId = sequenceId;
+        this.binary = binary;
+    }
+
+    /**
+     * @param session the session of the statement, the wait for a slow
+     *            client stops when its statement is canceled
+     */
+    public void setSession(Session session) {
+        this.session = session;
+    }
+
+    /**
+     * @param statusFlags the server status of the EOF packet after the rows
+     */
+    public void setStatusFlags(int statusFlags) {
+        this.statusFlags = statusFlags;
+    }
+
+    /**
+     * Write the column definitions, the rows and the EOF packets.
+     *
+     * @param result the result
+     * @return the sequence id of the last packet written
+     */
+    public long write(ResultInterface result) {
+        writeHeader(result);
+        while (result.next()) {
+            addRow(result.currentRow());
+        }
+        return finish();
+    }
+
+    /**
+     * Write the column count, the column definitions and the EOF packet.
+     *
+     * @param meta the result which describes the columns
+     */
+    public void writeHeader(ResultInterface meta) {
+        out = ctx.alloc().buffer();
+        columnCount = meta.getVisibleColumnCount();
+        ColCountPacket colCount = new ColCountPacket();
+        colCount.sequenceId = sequenceId++;
+        colCount.colCount = columnCount;
+        out.writeBytes(colCount.toPacket());
+        columnTypes = new int[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            ColumnDefinition column = ResultColumn.getColumn(meta, i);
+            column.sequenceId = sequenceId++;
+            columnTypes[i] = (int) (column.type & 0xFF);
+            out.writeBytes(column.toPacket());
+        }
+        writeEOF(0);
+    }
+
+    @Override
+    public void addRow(Value[] values) {
+        if (binary) {
+            sequenceId = writeBinaryRow(out, values, columnTypes, sequenceId);
+        } else {
+            sequenceId = writeRow(out, values, columnCount, sequenceId);
+        }
+        rowCount++;
+        if (out.writerIndex() >= CHUNK_SIZE) {
+            flush();
+            if (!ctx.channel().isActive()) {
+                // stop the query, nobody reads the rows
+                throw DbException.get(ErrorCode.CONNECTION_BROKEN_1, String.valueOf(ctx.channel().remoteAddress()));
+            }
+            out = ctx.alloc().buffer();
+        }
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Write the EOF packet after the rows.
+     *
+     * @return the sequence id of the last packet written
+     */
+    public long finish() {
+        writeEOF(statusFlags);
+        flush();
+        return sequenceId - 1;
+    }
+
+    /**
+     * Write the ERR packet, must be called if the result fails. If no packet
+     * has been flushed the buffered packets are dropped and the ERR packet is
+     * the response, otherwise it ends the rows written so far.
+     *
+     * @param err the ERR packet, its sequence id is assigned here
+     * @return the sequence id of the ERR packet
+     */
+    public long writeError(ERR err) {
+        ByteBuf buf = out;
+        out = null;
+        if (buf == null) {
+            buf = ctx.alloc().buffer();
+        } else if (!flushed) {
+            buf.clear();
+            sequenceId = firstSequenceId;
+        }
+        err.sequenceId = sequenceId;
+        buf.writeBytes(err.toPacket());
+        ctx.writeAndFlush(buf);
+        return err.sequenceId;
+    }
+
+    private void writeEOF(int statusFlags) {
+        EOF eof = new EOF();
+        eof.sequenceId = sequenceId++;
+        eof.statusFlags = statusFlags;
+        out.writeBytes(eof.toPacket());
+    }
+
+    private void flush() {
+        ByteBuf buf = out;
+        out = null;
+        flushed = true;
+        ChannelFuture future = ctx.writeAndFlush(buf);
+        if (!ctx.channel().isWritable() && !ctx.executor().inEventLoop()) {
+            // the chunks before are written once this one is
+            awaitWritten(future);
+        }
+    }
+
+    /**
+     * Wait for the client to read the chunk, until the statement is canceled
+     * or the write timeout. The connection is closed on the timeout, the
+     * client is in the middle of the rows.
+     */
+    private void awaitWritten(ChannelFuture future) {
+        long deadline = System.currentTimeMillis() + SysProperties.SERVER_WRITE_TIMEOUT;
+        try {
+            while (!future.await(CANCEL_CHECK_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (session != null) {
+                    session.checkCanceled();
+                }
+                if (System.currentTimeMillis() >= deadline) {
+                    ctx.close();
+                    throw ServerException.get(com.openddal.server.util.ErrorCode.ER_NET_WRITE_INTERRUPTED,
+                            "Got timeout writing communication packets");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw DbException.convert(e);
+        }
+    }
+
+    /**
+     * Encode a text protocol row packet.
+     *
+     * @param buf the target buffer
+     * @param row the values
+     * @param columnCount the visible column count
+     * @param sequenceId the sequence id of the packet
+     * @return the sequence id of the next packet
+     */
+    public static long writeRow(ByteBuf buf, Value[] row, int columnCount, long sequenceId) {
+        int start = buf.writerIndex();
+        buf.writeMedium(0);
+        buf.writeByte((int) sequenceId);
+        for (int i = 0; i < columnCount; i++) {
+            writeValue(buf, row[i]);
+        }
+        return endPacket(buf, start, sequenceId);
+    }
+
+    /**
+     * Encode a binary protocol row packet, the values are encoded as the
+     * types of the column definitions.
+     *
+     * @param buf the target buffer
+     * @param row the values
+     * @param types the types of the column definitions
+     * @param sequenceId the sequence id of the packet
+     * @return the sequence id of the next packet
+     */
+    public static long writeBinaryRow(ByteBuf buf, Value[] row, int[] types, long sequenceId) {
+        int start = buf.writerIndex();
+        buf.writeMedium(0);
+        buf.writeByte((int) sequenceId);
+        buf.writeByte(0);
+        // the null bitmap starts at bit 2
+        int nullBitmap = buf.writerIndex();
+        buf.writeZero((types.length + 9) / 8);
+        for (int i = 0; i < types.length; i++) {
+            Value v = row[i];
+            if (v == null || v == ValueNull.INSTANCE) {
+                int bit = i + 2;
+                int index = nullBitmap + bit / 8;
+                buf.setByte(index, buf.getByte(index) | (1 << (bit % 8)));
+            } else {
+                writeBinaryValue(buf, v, types[i]);
+            }
+        }
+        return endPacket(buf, start, sequenceId);
+    }
+
+    private static long endPacket(ByteBuf buf, int start, long sequenceId) {
+        int length = buf.writerIndex() - start - 4;
+        if (length < MAX_PAYLOAD) {
+            setLength(buf, start, length);
+            return sequenceId + 1;
+        }
+        ByteBuf payload = buf.copy(start + 4, length);
+        try {
+            buf.writerIndex(start);
+            return writeSplit(buf, payload, sequenceId);
+        } finally {
+            payload.release();
+        }
+    }
+
+    private static void writeValue(ByteBuf buf, Value v) {
+        if (v == null || v == ValueNull.INSTANCE) {
+            buf.writeByte(NULL_VALUE);
+            return;
+        }
+        switch (v.getType()) {
+        case Value.BYTE:
+        case Value.SHORT:
+        case Value.INT:
+        case Value.LONG: {
+            long x = v.getLong();
+            if (x != Long.MIN_VALUE) {
+                int lengthIndex = buf.writerIndex();
+                buf.writeByte(0);
+                writeDigits(buf, x);
+                buf.setByte(lengthIndex, buf.writerIndex() - lengthIndex - 1);
+                return;
+            }
+            break;
+        }
+        default:
+            break;
+        }
+        String s = v.getString();
+        if (s.length() * 3 < 251) {
+            // the UTF-8 form is shorter than 251 bytes, a one byte length
+            int lengthIndex = buf.writerIndex();
+            buf.writeByte(0);
+            int written = ByteBufUtil.writeUtf8(buf, s);
+            buf.setByte(lengthIndex, written);
+        } else {
+            byte[] bytes = s.getBytes(Proto.CHARSET);
+            writeLength(buf, bytes.length);
+            buf.writeBytes(bytes);
+        }
+    }
+
+    private static void writeBinaryValue(ByteBuf buf, Value v, int type) {
+        switch (type) {
+        case Flags.MYSQL_TYPE_TINY:
+            buf.writeByte(v.getInt());
+            return;
+        case Flags.MYSQL_TYPE_SHORT:
+        case Flags.MYSQL_TYPE_YEAR:
+            buf.writeShort(Short.reverseBytes((short) v.getInt()));
+            return;
+        case Flags.MYSQL_TYPE_LONG:
+        case Flags.MYSQL_TYPE_INT24:
+            buf.writeInt(Integer.reverseBytes(v.getInt()));
+            return;
+        case Flags.MYSQL_TYPE_LONGLONG:
+            buf.writeLong(Long.reverseBytes(v.getLong()));
+            return;
+        case Flags.MYSQL_TYPE_FLOAT:
+            buf.writeInt(Integer.reverseBytes(Float.floatToIntBits(v.getFloat())));
+            return;
+        case Flags.MYSQL_TYPE_DOUBLE:
+            buf.writeLong(Long.reverseBytes(Double.doubleToLongBits(v.getDouble())));
+            return;
+        case Flags.MYSQL_TYPE_DATE: {
+            long dateValue = ((ValueDate) v.convertTo(Value.DATE)).getDateValue();
+            writeDateTime(buf, dateValue, 0, false);
+            return;
+        }
+        case Flags.MYSQL_TYPE_DATETIME:
+        case Flags.MYSQL_TYPE_TIMESTAMP: {
+            ValueTimestamp ts = (ValueTimestamp) v.convertTo(Value.TIMESTAMP);
+            writeDateTime(buf, ts.getDateValue(), ts.getTimeNanos(), true);
+            return;
+        }
+        case Flags.MYSQL_TYPE_TIME:
+            writeTime(buf, ((ValueTime) v.convertTo(Value.TIME)).getNanos());
+            return;
+        case Flags.MYSQL_TYPE_TINY_BLOB:
+        case Flags.MYSQL_TYPE_MEDIUM_BLOB:
+        case Flags.MYSQL_TYPE_LONG_BLOB:
+        case Flags.MYSQL_TYPE_BLOB:
+        case Flags.MYSQL_TYPE_GEOMETRY:
+            if (v.getType() == Value.BYTES || v.getType() == Value.BLOB) {
+                byte[] bytes = v.getBytesNoCopy();
+                writeLength(buf, bytes.length);
+                buf.writeBytes(bytes);
+                return;
+            }
+            break;
+        default:
+            break;
+        }
+        writeValue(buf, v);
+    }
+
+    private static void writeDateTime(ByteBuf buf, long dateValue, long nanos, boolean withTime) {
+        int lengthIndex = buf.writerIndex();
+        buf.writeByte(4);
+        buf.writeShort(Short.reverseBytes((short) DateTimeUtils.yearFromDateValue(dateValue)));
+        buf.writeByte(DateTimeUtils.monthFromDateValue(dateValue));
+        buf.writeByte(DateTimeUtils.dayFromDateValue(dateValue));
+        if (withTime && nanos != 0) {
+            long seconds = nanos / NANOS_PER_SECOND;
+            int micros = (int) (nanos % NANOS_PER_SECOND / 1000);
+            buf.writeByte((int) (seconds / 3600));
+            buf.writeByte((int) (seconds / 60 % 60));
+            buf.writeByte((int) (seconds % 60));
+            if (micros != 0) {
+                buf.writeInt(Integer.reverseBytes(micros));
+            }
+            buf.setByte(lengthIndex, buf.writerIndex() - lengthIndex - 1);
+        }
+    }
+
+    private static void writeTime(ByteBuf buf, long nanos) {
+        if (nanos == 0) {
+            buf.writeByte(0);
+            return;
+        }
+        boolean negative = nanos < 0;
+        if (negative) {
+            nanos = -nanos;
+        }
+        long seconds = nanos / NANOS_PER_SECOND;
+        int micros = (int) (nanos % NANOS_PER_SECOND / 1000);
+        buf.writeByte(micros == 0 ? 8 : 12);
+        buf.writeByte(negative ? 1 : 0);
+        buf.writeInt(Integer.reverseBytes((int) (seconds / 86400)));
+        buf.writeByte((int) (seconds / 3600 % 24));
+        buf.writeByte((int) (seconds / 60 % 60));
+        buf.writeByte((int) (seconds % 60));
+        if (micros != 0) {
+            buf.writeInt(Integer.reverseBytes(micros));
+        }
+    }
+
+    private static void writeDigits(ByteBuf buf, long x) {
+        if (x < 0) {
+            buf.writeByte('-');
+            x = -x;
+        }
+        long divisor = 1;
+        while (divisor <= x / 10) {
+            divisor *= 10;
+        }
+        while (divisor > 0) {
+            buf.writeByte((int) ('0' + x / divisor % 10));
+            divisor /= 10;
+        }
+    }
+
+    private static void writeLength(ByteBuf buf, long length) {
+        if (length < 251) {
+            buf.writeByte((int) length);
+        } else if (length < 65536) {
+            buf.writeByte(0xFC);
+            buf.writeByte((int) length);
+            buf.writeByte((int) (length >> 8));
+        } else if (length < 16777216) {
+            buf.writeByte(0xFD);
+            buf.writeByte((int) length);
+            buf.writeByte((int) (length >> 8));
+            buf.writeByte((int) (length >> 16));
+        } else {
+            buf.writeByte(0xFE);
+            for (int i = 0; i < 8; i++) {
+                buf.writeByte((int) (length >> (i * 8)));
+            }
+        }
+    }
+
+    private static void setLength(ByteBuf buf, int index, int length) {
+        buf.setByte(index, length);
+        buf.setByte(index + 1, length >> 8);
+        buf.setByte(index + 2, length >> 16);
+    }
+
+    /**
+     * Write the payload as packets of the max size followed by a shorter,
+     * possibly empty one.
+     */
+    private static long writeSplit(ByteBuf buf, ByteBuf payload, long sequenceId) {
+        while (true) {
+            int length = Math.min(payload.readableBytes(), MAX_PAYLOAD);
+            int start = buf.writerIndex();
+            buf.writeMedium(0);
+            buf.writeByte((int) sequenceId++);
+            buf.writeBytes(payload, length);
+            setLength(buf, start, length);
+            if (length < MAX_PAYLOAD) {
+                return sequenceId;
+            }
+        }
+    }
+
+}
@@ -12,4 +12,9 @@ public interface Privilege {
     String password(String user);
     
     boolean checkPassword(String user, String password, String salt);
+
+    /**
+     * @return the max requests the user executes concurrently, 0 for no limit
+     */
+    int maxActiveQueries(String user);
 }
\ No newline at end of file
@@ -36,6 +36,10 @@ public class PrivilegeDefault implements Privilege {
         public boolean checkPassword(String user, String password, String salt) {
             return true;
         }
+        @Override
+        public int maxActiveQueries(String user) {
+            return 0;
+        }
     };
 
 
@@ -83,6 +87,20 @@ public class PrivilegeDefault implements Privilege {
         return false;
     }
     
+    @Override
+    public int maxActiveQueries(String user) {
+        String property = prop.getProperty(user + ".maxActiveQueries");
+        if (StringUtil.isEmpty(property)) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(property.trim());
+        } catch (NumberFormatException e) {
+            logger.info("invalid maxActiveQueries of user " + user, e);
+            return 0;
+        }
+    }
+
     public static Privilege getPrivilege() {
         String path = SysProperties.SERVERUSER_CONFIG_LOCATION;
         InputStream source = Utils.getResourceAsStream(path);
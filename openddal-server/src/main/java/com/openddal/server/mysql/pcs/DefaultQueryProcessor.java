@@ -1,8 +1,10 @@
 package com.openddal.server.mysql.pcs;
 
 import com.openddal.command.Command;
+import com.openddal.command.CommandInterface;
 import com.openddal.engine.Session;
 import com.openddal.result.ResultInterface;
+import com.openddal.result.ResultTarget;
 import com.openddal.server.ServerException;
 import com.openddal.server.core.QueryProcessor;
 import com.openddal.server.core.QueryResult;
@@ -27,10 +29,14 @@ public class DefaultQueryProcessor implements QueryProcessor {
         QueryResult result;
         Session dbSession = session.getDbSession();
         Command command = null;
+        boolean streaming = false;
         try {
             synchronized (dbSession) {
-                command = dbSession.prepareLocal(query);
-                if (command.isQuery()) {
+                command = dbSession.prepareParameterized(query);
+                if (command.isQuery() && command.getCommandType() == CommandInterface.SELECT) {
+                    result = new QueryResult(command.getMetaData(), new CommandRows(dbSession, command));
+                    streaming = true;
+                } else if (command.isQuery()) {
                     ResultInterface resultSet = command.executeQuery(0, false);
                     result = new QueryResult(resultSet);
                 } else {
@@ -42,10 +48,38 @@ public class DefaultQueryProcessor implements QueryProcessor {
         } catch (Throwable e) {
             throw ServerException.convert(e);
         } finally {
-            if (command != null) {
+            if (command != null && !streaming) {
                 command.close();
             }
         }
     }
 
+    /**
+     * Executes the select when the rows are written, the rows are passed on
+     * from the shard cursors as they are read unless the query has to
+     * buffer them for sorting, grouping or distinct.
+     */
+    private static class CommandRows implements QueryResult.RowSource {
+
+        private final Session dbSession;
+        private final Command command;
+
+        CommandRows(Session dbSession, Command command) {
+            this.dbSession = dbSession;
+            this.command = command;
+        }
+
+        @Override
+        public void writeRows(ResultTarget target) {
+            try {
+                synchronized (dbSession) {
+                    command.executeQuery(0, target);
+                }
+            } finally {
+                command.close();
+            }
+        }
+
+    }
+
 }
@@ -47,7 +47,10 @@ public final class KillProcessor implements QueryProcessor {
                         ss.close();
                         break;
                     case QUERY:
-                        session.cancel();
+                        // an idle session would cancel its next statement
+                        if (session.getCurrentCommand() != null) {
+                            session.cancel();
+                        }
                         break;
                     default:
                         ServerException.get(ErrorCode.ER_ERROR_WHEN_EXECUTING_COMMAND, "error kill type.");
@@ -1,10 +1,14 @@
 package com.openddal.server.mysql.pcs;
 
 import java.sql.Connection;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import com.alibaba.druid.sql.SQLUtils;
 import com.alibaba.druid.sql.ast.SQLStatement;
+import com.alibaba.druid.sql.ast.expr.SQLPropertyExpr;
 import com.alibaba.druid.sql.ast.expr.SQLVariantRefExpr;
 import com.alibaba.druid.sql.ast.statement.SQLAssignItem;
 import com.alibaba.druid.sql.ast.statement.SQLSetStatement;
@@ -20,11 +24,20 @@ import com.openddal.server.core.QueryResult;
 import com.openddal.server.core.ServerSession;
 import com.openddal.server.util.ErrorCode;
 import com.openddal.server.util.StringUtil;
+import com.openddal.util.StringUtils;
 /**
  * @author jorgie.li
  */
 public final class SetProcessor implements QueryProcessor {
 
+    /**
+     * The session variables which are set on the shard connections of the
+     * session, the other variables are ignored.
+     */
+    private static final Set<String> SHARD_VARIABLES = new HashSet<String>(Arrays.asList("time_zone", "sql_mode",
+            "group_concat_max_len", "div_precision_increment", "lc_time_names", "innodb_lock_wait_timeout",
+            "max_execution_time", "sql_safe_updates", "sql_select_limit"));
+
     private DefaultQueryProcessor target;
 
     public SetProcessor(DefaultQueryProcessor target) {
@@ -63,10 +76,19 @@ public final class SetProcessor implements QueryProcessor {
                 List<SQLAssignItem> items = s.getItems();
                 boolean isGlobal = false;
                 for (int i = 0; i < items.size(); i++) {
-                    SQLAssignItem item = items.get(0);
-                    SQLVariantRefExpr varRef = (SQLVariantRefExpr) item.getTarget();
-                    isGlobal = i == 0 ? varRef.isGlobal() : isGlobal;
-                    String key = varRef.getName();
+                    SQLAssignItem item = items.get(i);
+                    String key;
+                    if (item.getTarget() instanceof SQLPropertyExpr) {
+                        // @@session.name or @@global.name
+                        SQLPropertyExpr prop = (SQLPropertyExpr) item.getTarget();
+                        isGlobal = "@@global".equalsIgnoreCase(prop.getOwner().toString());
+                        key = prop.getName();
+                    } else {
+                        SQLVariantRefExpr varRef = (SQLVariantRefExpr) item.getTarget();
+                        isGlobal = i == 0 ? varRef.isGlobal() : isGlobal;
+                        key = varRef.getName();
+                    }
+                    key = StringUtils.toLowerEnglish(key).replaceFirst("^@@", "");
                     String value = SQLUtils.toMySqlString(item.getValue());
                     if ("autocommit".equalsIgnoreCase(key)) {
                         setAutocommit(value);
@@ -74,6 +96,8 @@ public final class SetProcessor implements QueryProcessor {
                         setIsolation(value);
                     } else if ("tx_read_only".equalsIgnoreCase(key)) {
                         setReadOnly(value);
+                    } else if (!isGlobal && SHARD_VARIABLES.contains(key)) {
+                        target.getSession().getDbSession().setShardVariable(key, value);
                     } else {
                         result.setWarnings((short) 1);
                         result.setMessage(query + " ignored.");
@@ -7,6 +7,7 @@ import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.regex.Pattern;
 
 import com.alibaba.druid.sql.SQLUtils;
 import com.alibaba.druid.sql.ast.SQLExpr;
@@ -51,6 +52,11 @@ import com.openddal.util.New;
  */
 public final class ShowProcessor implements QueryProcessor {
 
+    private static final Pattern SHOW_QUERY_STATISTICS = Pattern.compile("\\s*SHOW\\s+QUERY\\s+STATISTICS\\s*;?\\s*",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern SHOW_SHARD_STATUS = Pattern.compile("\\s*SHOW\\s+SHARD\\s+STATUS\\s*;?\\s*",
+            Pattern.CASE_INSENSITIVE);
+
     private DefaultQueryProcessor target;
 
     public ShowProcessor(DefaultQueryProcessor target) {
@@ -59,6 +65,12 @@ public final class ShowProcessor implements QueryProcessor {
 
     @Override
     public QueryResult process(String query) {
+        if (SHOW_QUERY_STATISTICS.matcher(query).matches()) {
+            return target.process("SELECT * FROM INFORMATION_SCHEMA.QUERY_STATISTICS");
+        }
+        if (SHOW_SHARD_STATUS.matcher(query).matches()) {
+            return target.process("SELECT * FROM INFORMATION_SCHEMA.SHARD_STATISTICS");
+        }
         List<SQLStatement> stmts = SQLUtils.parseStatements(query, JdbcConstants.MYSQL);
         for (SQLStatement stmt : stmts) {
             if (stmt instanceof MySqlShowDatabasesStatement) {
@@ -0,0 +1,122 @@
+package com.openddal.server.mysql.proto;
+
+import java.nio.charset.Charset;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * The {@link Proto} reader over a frame buffer, the fields are decoded from
+ * the buffer in place, the buffer indexes are not changed.
+ */
+public class BufferProto {
+
+    public final ByteBuf buf;
+    public int offset = 0;
+
+    public BufferProto(ByteBuf buf) {
+        this(buf, 0);
+    }
+
+    public BufferProto(ByteBuf buf, int offset) {
+        this.buf = buf;
+        this.offset = buf.readerIndex() + offset;
+    }
+
+    public boolean has_remaining_data() {
+        return buf.writerIndex() - this.offset > 0;
+    }
+
+    public long get_fixed_int(int size) {
+        if (buf.writerIndex() < size + this.offset) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = size - 1; i >= 0; i--) {
+            value = (value << 8) | buf.getUnsignedByte(this.offset + i);
+        }
+        this.offset += size;
+        return value;
+    }
+
+    public void get_filler(int size) {
+        this.offset += size;
+    }
+
+    public long get_lenenc_int() {
+        int first = buf.getUnsignedByte(this.offset);
+        if (first < 251) {
+            this.offset += 1;
+            return first;
+        }
+        this.offset += 1;
+        switch (first) {
+        case 252:
+            return get_fixed_int(2);
+        case 253:
+            return get_fixed_int(3);
+        case 254:
+            return get_fixed_int(8);
+        default:
+            return -1;
+        }
+    }
+
+    public String get_fixed_str(int len) {
+        return get_fixed_str(len, Proto.CHARSET);
+    }
+
+    public String get_fixed_str(int len, Charset charset) {
+        int end = Math.min(this.offset + len, buf.writerIndex());
+        String str = buf.toString(this.offset, end - this.offset, charset);
+        this.offset = end;
+        return str;
+    }
+
+    public String get_null_str() {
+        return get_null_str(Proto.CHARSET);
+    }
+
+    public String get_null_str(Charset charset) {
+        int len = buf.bytesBefore(this.offset, buf.writerIndex() - this.offset, (byte) 0);
+        if (len < 0) {
+            return get_eop_str(charset);
+        }
+        String str = this.get_fixed_str(len, charset);
+        this.offset += 1;
+        return str;
+    }
+
+    public String get_eop_str() {
+        return get_eop_str(Proto.CHARSET);
+    }
+
+    public String get_eop_str(Charset charset) {
+        return this.get_fixed_str(buf.writerIndex() - this.offset, charset);
+    }
+
+    public String get_lenenc_str() {
+        return get_lenenc_str(Proto.CHARSET);
+    }
+
+    public String get_lenenc_str(Charset charset) {
+        int len = (int) this.get_lenenc_int();
+        return this.get_fixed_str(len, charset);
+    }
+
+    /**
+     * @param frame the frame buffer
+     * @return the sequence id of the frame
+     */
+    public static long getSequenceId(ByteBuf frame) {
+        return frame.getUnsignedByte(frame.readerIndex() + 3);
+    }
+
+    /**
+     * @param frame the frame buffer
+     * @return the command or the header byte of the payload
+     */
+    public static byte getType(ByteBuf frame) {
+        return frame.getByte(frame.readerIndex() + 4);
+    }
+
+}
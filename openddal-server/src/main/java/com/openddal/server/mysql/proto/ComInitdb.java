@@ -2,6 +2,8 @@ package com.openddal.server.mysql.proto;
 
 import java.util.ArrayList;
 
+import io.netty.buffer.ByteBuf;
+
 public class ComInitdb extends Packet {
     public String schema = "";
     
@@ -25,6 +27,17 @@ public class ComInitdb extends Packet {
         return obj;
     }
 
+    public static ComInitdb loadFromPacket(ByteBuf buf) {
+        ComInitdb obj = new ComInitdb();
+        BufferProto proto = new BufferProto(buf, 3);
+
+        obj.sequenceId = proto.get_fixed_int(1);
+        proto.get_filler(1);
+        obj.schema = proto.get_eop_str();
+
+        return obj;
+    }
+
     @Override
     public String toString() {
         return "COM_INIT_DB[schema=" + schema + "]";
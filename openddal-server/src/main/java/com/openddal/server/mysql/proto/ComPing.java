@@ -2,6 +2,8 @@ package com.openddal.server.mysql.proto;
 
 import java.util.ArrayList;
 
+import io.netty.buffer.ByteBuf;
+
 public class ComPing extends Packet {
     
     public ArrayList<byte[]> getPayload() {
@@ -21,6 +23,12 @@ public class ComPing extends Packet {
         return obj;
     }
 
+    public static ComPing loadFromPacket(ByteBuf buf) {
+        ComPing obj = new ComPing();
+        obj.sequenceId = BufferProto.getSequenceId(buf);
+        return obj;
+    }
+
     @Override
     public String toString() {
         return "COM_PING";
@@ -1,7 +1,10 @@
 package com.openddal.server.mysql.proto;
 
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 
+import io.netty.buffer.ByteBuf;
+
 public class ComQuery extends Packet {
     public String query = "";
     
@@ -25,6 +28,21 @@ public class ComQuery extends Packet {
         return obj;
     }
 
+    /**
+     * @param buf the frame buffer
+     * @param charset the charset of the query
+     */
+    public static ComQuery loadFromPacket(ByteBuf buf, Charset charset) {
+        ComQuery obj = new ComQuery();
+        BufferProto proto = new BufferProto(buf, 3);
+
+        obj.sequenceId = proto.get_fixed_int(1);
+        proto.get_filler(1);
+        obj.query = proto.get_eop_str(charset);
+
+        return obj;
+    }
+
     @Override
     public String toString() {
         return "COM_QUERY[query=" + query + "]";
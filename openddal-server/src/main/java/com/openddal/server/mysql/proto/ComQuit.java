@@ -2,6 +2,8 @@ package com.openddal.server.mysql.proto;
 
 import java.util.ArrayList;
 
+import io.netty.buffer.ByteBuf;
+
 public class ComQuit extends Packet {
     
     public ArrayList<byte[]> getPayload() {
@@ -22,6 +24,12 @@ public class ComQuit extends Packet {
         return obj;
     }
 
+    public static ComQuit loadFromPacket(ByteBuf buf) {
+        ComQuit obj = new ComQuit();
+        obj.sequenceId = BufferProto.getSequenceId(buf);
+        return obj;
+    }
+
     @Override
     public String toString() {
         return "COM_QUIT";
@@ -2,8 +2,11 @@ package com.openddal.server.mysql.proto;
 
 import java.util.ArrayList;
 
+import io.netty.buffer.ByteBuf;
+
 public class ComStmtClose extends Packet {
     public byte[] data;
+    public long statementId;
     
     public ArrayList<byte[]> getPayload() {
         ArrayList<byte[]> payload = new ArrayList<byte[]>();
@@ -23,6 +26,18 @@ public class ComStmtClose extends Packet {
         obj.data = new byte[size];
         
         System.arraycopy(packet, proto.offset, obj.data, 0, size);
+        obj.statementId = new Proto(obj.data, 1).get_fixed_int(4);
+
+        return obj;
+    }
+
+    public static ComStmtClose loadFromPacket(ByteBuf buf) {
+        ComStmtClose obj = new ComStmtClose();
+        BufferProto proto = new BufferProto(buf, 3);
+
+        obj.sequenceId = proto.get_fixed_int(1);
+        proto.get_filler(1);
+        obj.statementId = proto.get_fixed_int(4);
 
         return obj;
     }
@@ -1,35 +1,251 @@
 package com.openddal.server.mysql.proto;
 
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.util.ArrayList;
 
+import com.openddal.server.ServerException;
+import com.openddal.server.util.ErrorCode;
+import com.openddal.util.DateTimeUtils;
+import com.openddal.value.Value;
+import com.openddal.value.ValueBytes;
+import com.openddal.value.ValueDate;
+import com.openddal.value.ValueDecimal;
+import com.openddal.value.ValueDouble;
+import com.openddal.value.ValueFloat;
+import com.openddal.value.ValueInt;
+import com.openddal.value.ValueLong;
+import com.openddal.value.ValueNull;
+import com.openddal.value.ValueString;
+import com.openddal.value.ValueTime;
+import com.openddal.value.ValueTimestamp;
+
 public class ComStmtExecute extends Packet {
+
+    /**
+     * The flag of a parameter type which marks an unsigned integer.
+     */
+    public static final int UNSIGNED_FLAG = 0x8000;
+
     public byte[] data;
-    
+    public long statementId;
+    public long flags;
+    public long iterationCount;
+    /**
+     * The type of each parameter, the type byte and the flag byte.
+     */
+    public int[] parameterTypes;
+
+    private static final int PARAMETERS_OFFSET = 10;
+
     public ArrayList<byte[]> getPayload() {
         ArrayList<byte[]> payload = new ArrayList<byte[]>();
-        
+
         payload.add(this.data);
-        
+
         return payload;
     }
-    
+
     public static ComStmtExecute loadFromPacket(byte[] packet) {
         ComStmtExecute obj = new ComStmtExecute();
         Proto proto = new Proto(packet, 3);
-        
+
         obj.sequenceId = proto.get_fixed_int(1);
-        
+
         int size = packet.length - proto.offset;
         obj.data = new byte[size];
-        
+
         System.arraycopy(packet, proto.offset, obj.data, 0, size);
 
+        proto = new Proto(obj.data, 1);
+        obj.statementId = proto.get_fixed_int(4);
+        obj.flags = proto.get_fixed_int(1);
+        obj.iterationCount = proto.get_fixed_int(4);
         return obj;
     }
 
+    /**
+     * Decode the parameter values. The types are only sent if they changed
+     * since the last execution, otherwise the types of the last execution
+     * apply, they are kept in {@link #parameterTypes}.
+     *
+     * @param count the parameter count of the statement
+     * @param boundTypes the types of the last execution, or null
+     * @param longData the values sent by COM_STMT_SEND_LONG_DATA, or null
+     * @return the values
+     */
+    public Value[] readParameters(int count, int[] boundTypes, byte[][] longData) {
+        Value[] values = new Value[count];
+        if (count == 0) {
+            return values;
+        }
+        int nullBitmap = PARAMETERS_OFFSET;
+        int pos = nullBitmap + (count + 7) / 8;
+        if (data[pos++] == 1) {
+            parameterTypes = new int[count];
+            for (int i = 0; i < count; i++, pos += 2) {
+                parameterTypes[i] = (data[pos] & 0xFF) | ((data[pos + 1] & 0xFF) << 8);
+            }
+        } else if (boundTypes != null) {
+            parameterTypes = boundTypes;
+        } else {
+            throw ServerException.get(ErrorCode.ER_WRONG_ARGUMENTS, "Parameter types not bound");
+        }
+        for (int i = 0; i < count; i++) {
+            int type = parameterTypes[i];
+            if (longData != null && longData[i] != null) {
+                values[i] = toValue(type, longData[i], 0, longData[i].length);
+            } else if ((data[nullBitmap + i / 8] & (1 << (i % 8))) != 0) {
+                values[i] = ValueNull.INSTANCE;
+            } else {
+                pos = readValue(type, pos, values, i);
+            }
+        }
+        return values;
+    }
+
+    private int readValue(int type, int pos, Value[] values, int index) {
+        boolean unsigned = (type & UNSIGNED_FLAG) != 0;
+        Value v;
+        switch (type & 0xFF) {
+        case Flags.MYSQL_TYPE_NULL:
+            v = ValueNull.INSTANCE;
+            break;
+        case Flags.MYSQL_TYPE_TINY:
+            v = ValueInt.get(unsigned ? data[pos] & 0xFF : data[pos]);
+            pos += 1;
+            break;
+        case Flags.MYSQL_TYPE_SHORT:
+        case Flags.MYSQL_TYPE_YEAR: {
+            int x = (int) readInt(pos, 2);
+            v = ValueInt.get(unsigned ? x : (short) x);
+            pos += 2;
+            break;
+        }
+        case Flags.MYSQL_TYPE_LONG:
+        case Flags.MYSQL_TYPE_INT24: {
+            long x = readInt(pos, 4);
+            v = unsigned ? ValueLong.get(x) : ValueInt.get((int) x);
+            pos += 4;
+            break;
+        }
+        case Flags.MYSQL_TYPE_LONGLONG: {
+            long x = readInt(pos, 8);
+            if (unsigned && x < 0) {
+                v = ValueDecimal.get(new BigDecimal(BigInteger.valueOf(x).add(BigInteger.ONE.shiftLeft(64))));
+            } else {
+                v = ValueLong.get(x);
+            }
+            pos += 8;
+            break;
+        }
+        case Flags.MYSQL_TYPE_FLOAT:
+            v = ValueFloat.get(Float.intBitsToFloat((int) readInt(pos, 4)));
+            pos += 4;
+            break;
+        case Flags.MYSQL_TYPE_DOUBLE:
+            v = ValueDouble.get(Double.longBitsToDouble(readInt(pos, 8)));
+            pos += 8;
+            break;
+        case Flags.MYSQL_TYPE_DATE:
+        case Flags.MYSQL_TYPE_DATETIME:
+        case Flags.MYSQL_TYPE_TIMESTAMP: {
+            int length = data[pos++] & 0xFF;
+            v = readTimestamp(type & 0xFF, pos, length);
+            pos += length;
+            break;
+        }
+        case Flags.MYSQL_TYPE_TIME: {
+            int length = data[pos++] & 0xFF;
+            v = readTime(pos, length);
+            pos += length;
+            break;
+        }
+        default: {
+            int first = data[pos++] & 0xFF;
+            int size = first == 0xFC ? 2 : first == 0xFD ? 3 : first == 0xFE ? 8 : 0;
+            int length = size == 0 ? first : (int) readInt(pos, size);
+            pos += size;
+            v = toValue(type, data, pos, length);
+            pos += length;
+        }
+        }
+        values[index] = v;
+        return pos;
+    }
+
+    private static Value toValue(int type, byte[] bytes, int offset, int length) {
+        switch (type & 0xFF) {
+        case Flags.MYSQL_TYPE_TINY_BLOB:
+        case Flags.MYSQL_TYPE_MEDIUM_BLOB:
+        case Flags.MYSQL_TYPE_LONG_BLOB:
+        case Flags.MYSQL_TYPE_BLOB:
+        case Flags.MYSQL_TYPE_GEOMETRY:
+        case Flags.MYSQL_TYPE_BIT: {
+            byte[] b = new byte[length];
+            System.arraycopy(bytes, offset, b, 0, length);
+            return ValueBytes.getNoCopy(b);
+        }
+        case Flags.MYSQL_TYPE_DECIMAL:
+        case Flags.MYSQL_TYPE_NEWDECIMAL:
+            return ValueDecimal.get(new BigDecimal(new String(bytes, offset, length, Proto.CHARSET)));
+        default:
+            return ValueString.get(new String(bytes, offset, length, Proto.CHARSET));
+        }
+    }
+
+    private Value readTimestamp(int type, int pos, int length) {
+        int year = 0, month = 0, day = 0, hour = 0, minute = 0, second = 0;
+        long micros = 0;
+        if (length >= 4) {
+            year = (int) readInt(pos, 2);
+            month = data[pos + 2];
+            day = data[pos + 3];
+        }
+        if (length >= 7) {
+            hour = data[pos + 4];
+            minute = data[pos + 5];
+            second = data[pos + 6];
+        }
+        if (length >= 11) {
+            micros = readInt(pos + 7, 4);
+        }
+        long dateValue = DateTimeUtils.dateValue(year, month, day);
+        if (type == Flags.MYSQL_TYPE_DATE) {
+            return ValueDate.fromDateValue(dateValue);
+        }
+        long nanos = ((hour * 60L + minute) * 60 + second) * 1000000000L + micros * 1000;
+        return ValueTimestamp.fromDateValueAndNanos(dateValue, nanos);
+    }
+
+    private Value readTime(int pos, int length) {
+        long nanos = 0;
+        if (length >= 8) {
+            boolean negative = data[pos] == 1;
+            long days = readInt(pos + 1, 4);
+            long seconds = ((days * 24 + data[pos + 5]) * 60 + data[pos + 6]) * 60 + data[pos + 7];
+            nanos = seconds * 1000000000L;
+            if (length >= 12) {
+                nanos += readInt(pos + 8, 4) * 1000;
+            }
+            if (negative) {
+                nanos = -nanos;
+            }
+        }
+        return ValueTime.fromNanos(nanos);
+    }
+
+    private long readInt(int pos, int size) {
+        long x = 0;
+        for (int i = size - 1; i >= 0; i--) {
+            x = (x << 8) | (data[pos + i] & 0xFF);
+        }
+        return x;
+    }
+
     @Override
     public String toString() {
         return "COM_STMT_EXECUTE";
     }
-    
+
 }
@@ -4,6 +4,7 @@ import java.util.ArrayList;
 
 public class ComStmtReset extends Packet {
     public byte[] data;
+    public long statementId;
     
     public ArrayList<byte[]> getPayload() {
         ArrayList<byte[]> payload = new ArrayList<byte[]>();
@@ -23,6 +24,7 @@ public class ComStmtReset extends Packet {
         obj.data = new byte[size];
         
         System.arraycopy(packet, proto.offset, obj.data, 0, size);
+        obj.statementId = new Proto(obj.data, 1).get_fixed_int(4);
 
         return obj;
     }
@@ -4,6 +4,13 @@ import java.util.ArrayList;
 
 public class ComStmtSendLongData extends Packet {
     public byte[] data;
+    public long statementId;
+    public long paramId;
+
+    /**
+     * The offset of the chunk in {@link #data}.
+     */
+    public static final int CHUNK_OFFSET = 7;
     
     public ArrayList<byte[]> getPayload() {
         ArrayList<byte[]> payload = new ArrayList<byte[]>();
@@ -23,6 +30,9 @@ public class ComStmtSendLongData extends Packet {
         obj.data = new byte[size];
         
         System.arraycopy(packet, proto.offset, obj.data, 0, size);
+        proto = new Proto(obj.data, 1);
+        obj.statementId = proto.get_fixed_int(4);
+        obj.paramId = proto.get_fixed_int(2);
 
         return obj;
     }
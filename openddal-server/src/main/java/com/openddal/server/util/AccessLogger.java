@@ -1,117 +1,540 @@
 package com.openddal.server.util;
 
-import java.io.Serializable;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.openddal.server.core.ServerSession;
+import com.openddal.value.Value;
 
-import io.netty.util.internal.InternalThreadLocalMap;
-
+/**
+ * Records one entry per command. The request thread only copies the entry
+ * into a slot of a bounded lock free ring buffer, a writer thread formats the
+ * entries and writes them in batches, either to the AccessLogger of logback,
+ * to a text file or to a compact binary file. When the buffer is full the
+ * entry is dropped and counted instead of blocking the request.
+ * <p>
+ * The capture format records the connections and the statements with their
+ * parameters instead, see {@link WorkloadCapture}, to replay the workload.
+ */
 public final class AccessLogger {
-    
+
+    public static final String FORMAT_TEXT = "text";
+    public static final String FORMAT_BINARY = "binary";
+    public static final String FORMAT_CAPTURE = "capture";
+
     private static final Logger accessLogger = LoggerFactory.getLogger("AccessLogger");
-    
-    
+    private static final Logger LOGGER = LoggerFactory.getLogger(AccessLogger.class);
+    private static final int BATCH_SIZE = 512;
+    private static final int MAX_COMMAND_LENGTH = 8192;
+
     private static ThreadLocal<TraceData> holder = new ThreadLocal<TraceData>() {
         @Override
         protected TraceData initialValue() {
             return new TraceData();
         }
     };
-    
-    
-    
+
+    private final boolean enabled;
+    private final boolean capture;
+    private final int sampling;
+    private final TraceData[] ring;
+    // the slot i is free for the position p if sequences[i] == p, and
+    // holds the entry of the position p if sequences[i] == p + 1
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final long baseMillis = System.currentTimeMillis();
+    private final long baseNanos = System.nanoTime();
+    private final Sink sink;
+    private long head;
+    private volatile boolean running;
+    private Thread writer;
+
+    /**
+     * Create a logger writing to the AccessLogger of logback.
+     */
+    public AccessLogger() {
+        this(null, FORMAT_TEXT, 1, 8192);
+    }
+
+    /**
+     * @param file the file to write, null to use the AccessLogger of logback
+     * @param format {@link #FORMAT_TEXT}, {@link #FORMAT_BINARY} or
+     *            {@link #FORMAT_CAPTURE} which requires a file
+     * @param sampling log one of that many successful commands, a capture is
+     *            never sampled
+     * @param bufferSize the entries buffered, rounded up to a power of two
+     */
+    public AccessLogger(String file, String format, int sampling, int bufferSize) {
+        this.enabled = file != null || accessLogger.isInfoEnabled();
+        this.capture = file != null && FORMAT_CAPTURE.equals(format);
+        this.sampling = capture ? 1 : Math.max(1, sampling);
+        int size = Integer.highestOneBit(Math.max(2, bufferSize) - 1) << 1;
+        this.ring = new TraceData[size];
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            ring[i] = new TraceData();
+            sequences.set(i, i);
+        }
+        this.mask = size - 1;
+        if (!enabled) {
+            this.sink = null;
+        } else if (file == null) {
+            this.sink = new LoggerSink();
+        } else {
+            try {
+                if (capture) {
+                    this.sink = new CaptureSink(file);
+                } else {
+                    this.sink = FORMAT_BINARY.equals(format) ? new BinarySink(file) : new TextSink(file);
+                }
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Can't open the access log " + file, e);
+            }
+        }
+    }
+
+    /**
+     * Start the writer thread.
+     */
+    public void start() {
+        if (!enabled || running) {
+            return;
+        }
+        running = true;
+        writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (running) {
+                    if (drain() == 0) {
+                        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+                    }
+                }
+                while (drain() > 0) {
+                    // write what is left
+                }
+                sink.close();
+            }
+        }, "access-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Stop the writer thread after it wrote the buffered entries.
+     */
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
     public AccessLogger begin(ServerSession s) {
-        if (accessLogger.isInfoEnabled()) {
+        if (enabled) {
             TraceData data = holder.get();
-            data.start = System.currentTimeMillis();
+            data.start = System.nanoTime();
             data.command = null;
             data.errorCode = 0;
             data.seqId = 0;
-            data.end = 0;
             data.errorMsg = null;
+            data.event = 0;
+            data.sql = null;
+            data.params = null;
             data.s = s;
         }
         return this;
     }
-    
-    
-    
+
     public AccessLogger seqId(long seqId) {
-        if (accessLogger.isInfoEnabled()) {
+        if (enabled) {
             TraceData data = holder.get();
             data.seqId = seqId;
         }
         return this;
     }
-    
-    public AccessLogger command(String command) {
-        if (accessLogger.isInfoEnabled()) {
+
+    /**
+     * @param command the command, formatted by the writer thread
+     */
+    public AccessLogger command(Object command) {
+        if (enabled) {
             TraceData data = holder.get();
             data.command = command;
         }
         return this;
     }
-    
+
+    /**
+     * Capture the authenticated connection, with the user and the schema of
+     * the session.
+     */
+    public AccessLogger connected() {
+        if (capture) {
+            holder.get().event = WorkloadCapture.EVENT_CONNECT;
+        }
+        return this;
+    }
+
+    /**
+     * Capture the change of the default schema.
+     */
+    public AccessLogger initDb(String schema) {
+        if (capture) {
+            TraceData data = holder.get();
+            data.event = WorkloadCapture.EVENT_INIT_DB;
+            data.sql = schema;
+        }
+        return this;
+    }
+
+    /**
+     * Capture the statement to replay.
+     *
+     * @param sql the SQL statement
+     * @param params the parameters of a prepared statement, null for a query
+     */
+    public AccessLogger statement(String sql, Value[] params) {
+        if (capture) {
+            TraceData data = holder.get();
+            data.event = WorkloadCapture.EVENT_STATEMENT;
+            data.sql = sql;
+            data.params = params;
+        }
+        return this;
+    }
+
+    /**
+     * Capture the end of the connection, which may be closed by another
+     * connection, so the entry of the current command is not used.
+     */
+    public void disconnected(ServerSession s) {
+        if (!capture) {
+            return;
+        }
+        TraceData data = new TraceData();
+        data.start = System.nanoTime();
+        data.event = WorkloadCapture.EVENT_DISCONNECT;
+        data.s = s;
+        enqueue(data, data.start);
+    }
+
     public void markError(int errorCode, String errorMsg) {
-        if (accessLogger.isInfoEnabled()) {
+        if (enabled) {
             TraceData data = holder.get();
             data.errorCode = errorCode;
             data.errorMsg = errorMsg;
         }
     }
-    
+
     public void log() {
-        if (accessLogger.isInfoEnabled()) {
-            try {
-                TraceData data = holder.get().end();
-                StringBuilder logMsg = InternalThreadLocalMap.get().stringBuilder();//down gc time
-                logMsg.append("conId:").append(data.s.getThreadId()).append(" ")
-                        .append(" seqId:").append(data.seqId).append(" ").append(data.s.getAttachment("remoteAddress"))
-                        .append(" ").append(data.s.getAttachment("localAddress")).append(" ").append("command:")
-                        .append(data.command).append(" ").append(data.costTime()).append(" ms");
-                if (data.errorMsg != null) {
-                    logMsg.append(" ErrorCode: ").append(data.errorCode).append(". ").append(data.errorMsg);
+        if (!enabled) {
+            return;
+        }
+        TraceData data = holder.get();
+        if (data.s == null) {
+            return;
+        }
+        long end = System.nanoTime();
+        // the errors are never sampled out
+        if (data.errorMsg == null && sampling > 1 && ++data.sampled % sampling != 0) {
+            data.s = null;
+            return;
+        }
+        enqueue(data, end);
+    }
+
+    private void enqueue(TraceData data, long end) {
+        long pos = tail.get();
+        while (true) {
+            long seq = sequences.get((int) pos & mask);
+            if (seq == pos) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    break;
                 }
-                accessLogger.info(logMsg.toString());
-            } finally {
-                // down gc time
-                // holder.remove(); 
+                pos = tail.get();
+            } else if (seq < pos) {
+                dropped.incrementAndGet();
+                data.s = null;
+                return;
+            } else {
+                pos = tail.get();
             }
         }
+        int i = (int) pos & mask;
+        TraceData slot = ring[i];
+        slot.start = data.start;
+        slot.cost = end - data.start;
+        slot.connId = data.s.getThreadId();
+        slot.seqId = data.seqId;
+        slot.remoteAddress = data.s.getAttachment("remoteAddress");
+        slot.localAddress = data.s.getAttachment("localAddress");
+        slot.command = data.command;
+        slot.errorCode = data.errorCode;
+        slot.errorMsg = data.errorMsg;
+        slot.event = data.event;
+        if (data.event == WorkloadCapture.EVENT_CONNECT) {
+            slot.user = data.s.getUser();
+            slot.schema = data.s.getSchema();
+        }
+        slot.sql = data.sql;
+        slot.params = data.params;
+        sequences.set(i, pos + 1);
+        data.s = null;
     }
-    
 
+    /**
+     * @return the number of entries dropped because the buffer was full
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
 
-    
-    
-    private static class TraceData implements Serializable {
+    /**
+     * @return the number of entries written
+     */
+    public long getWrittenCount() {
+        return written.get();
+    }
 
-        private static final long serialVersionUID = 1L;
+    /**
+     * Write a batch of the buffered entries, called by the writer thread only.
+     *
+     * @return the number of entries written
+     */
+    int drain() {
+        int count = 0;
+        try {
+            for (; count < BATCH_SIZE; count++) {
+                int i = (int) head & mask;
+                if (sequences.get(i) != head + 1) {
+                    break;
+                }
+                TraceData slot = ring[i];
+                sink.write(slot, baseMillis * 1000 + TimeUnit.NANOSECONDS.toMicros(slot.start - baseNanos));
+                slot.command = null;
+                slot.errorMsg = null;
+                slot.user = null;
+                slot.schema = null;
+                slot.sql = null;
+                slot.params = null;
+                sequences.set(i, head + mask + 1);
+                head++;
+            }
+            if (count > 0) {
+                sink.flush();
+                written.addAndGet(count);
+            }
+        } catch (Exception e) {
+            LOGGER.warn("write access log error", e);
+        }
+        return count;
+    }
 
+    private static String format(TraceData data) {
+        StringBuilder logMsg = new StringBuilder(128);
+        logMsg.append("conId:").append(data.connId).append(" ")
+                .append(" seqId:").append(data.seqId).append(" ").append(data.remoteAddress)
+                .append(" ").append(data.localAddress).append(" ").append("command:")
+                .append(data.command).append(" ").append(data.cost).append(" ns");
+        if (data.errorMsg != null) {
+            logMsg.append(" ErrorCode: ").append(data.errorCode).append(". ").append(data.errorMsg);
+        }
+        return logMsg.toString();
+    }
+
+    private static String truncate(Object o) {
+        String s = o == null ? "" : o.toString();
+        return s.length() > MAX_COMMAND_LENGTH ? s.substring(0, MAX_COMMAND_LENGTH) : s;
+    }
+
+    private static class TraceData {
         private long start;
-        private long end;
+        private long cost;
+        private long connId;
         private long seqId;
-        private String command;
+        private Object remoteAddress;
+        private Object localAddress;
+        private Object command;
         private int errorCode;
         private String errorMsg;
+        // the captured event, 0 if the command is not captured
+        private byte event;
+        private String user;
+        private String schema;
+        private String sql;
+        private Value[] params;
+        // only used by the entries of the request threads
         private ServerSession s;
+        private long sampled;
+    }
+
+    /**
+     * Where the writer thread writes the entries.
+     */
+    private interface Sink {
+        void write(TraceData data, long startMicros) throws IOException;
+
+        void flush() throws IOException;
+
+        void close();
+    }
+
+    private static final class LoggerSink implements Sink {
+        @Override
+        public void write(TraceData data, long startMicros) {
+            accessLogger.info(format(data));
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static final class TextSink implements Sink {
+        private final Writer out;
+        private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
 
+        TextSink(String file) throws IOException {
+            out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), "UTF-8"), 64 * 1024);
+        }
 
-        public TraceData end() {
-            end = System.currentTimeMillis();
-            return this;
+        @Override
+        public void write(TraceData data, long startMicros) throws IOException {
+            out.write(dateFormat.format(new Date(startMicros / 1000)));
+            out.write(' ');
+            out.write(format(data));
+            out.write('\n');
         }
-        
-        public long costTime() {
-            if (end == 0) {
-                throw new IllegalStateException("no end");
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() {
+            try {
+                out.close();
+            } catch (IOException e) {
+                LOGGER.warn("close access log error", e);
             }
-            return end - start;
         }
     }
 
+    /**
+     * Each entry is written as: start time millis (long), cost nanos (long),
+     * connection id (long), sequence id (long), error code (int), then the
+     * command, remote address, local address and error message as modified
+     * UTF-8 strings, the empty string for null.
+     */
+    private static final class BinarySink implements Sink {
+        private final DataOutputStream out;
+
+        BinarySink(String file) throws IOException {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true), 64 * 1024));
+        }
+
+        @Override
+        public void write(TraceData data, long startMicros) throws IOException {
+            out.writeLong(startMicros / 1000);
+            out.writeLong(data.cost);
+            out.writeLong(data.connId);
+            out.writeLong(data.seqId);
+            out.writeInt(data.errorCode);
+            out.writeUTF(truncate(data.command));
+            out.writeUTF(truncate(data.remoteAddress));
+            out.writeUTF(truncate(data.localAddress));
+            out.writeUTF(truncate(data.errorMsg));
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() {
+            try {
+                out.close();
+            } catch (IOException e) {
+                LOGGER.warn("close access log error", e);
+            }
+        }
+    }
+
+    /**
+     * Writes the captured events only, see {@link WorkloadCapture}. The file
+     * is replaced, a capture covers one run of the server.
+     */
+    private static final class CaptureSink implements Sink {
+        private final DataOutputStream out;
+
+        CaptureSink(String file) throws IOException {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, false), 64 * 1024));
+            WorkloadCapture.writeHeader(out);
+        }
+
+        @Override
+        public void write(TraceData data, long startMicros) throws IOException {
+            switch (data.event) {
+            case WorkloadCapture.EVENT_CONNECT:
+                WorkloadCapture.writeConnect(out, startMicros, data.connId, data.user, data.schema);
+                break;
+            case WorkloadCapture.EVENT_INIT_DB:
+                WorkloadCapture.writeInitDb(out, startMicros, data.cost, data.connId, data.sql);
+                break;
+            case WorkloadCapture.EVENT_STATEMENT:
+                WorkloadCapture.writeStatement(out, startMicros, data.cost, data.connId, data.errorCode, data.sql,
+                        data.params);
+                break;
+            case WorkloadCapture.EVENT_DISCONNECT:
+                WorkloadCapture.writeDisconnect(out, startMicros, data.connId);
+                break;
+            default:
+                // not replayed, like COM_PING or COM_STMT_PREPARE
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() {
+            try {
+                out.close();
+            } catch (IOException e) {
+                LOGGER.warn("close access log error", e);
+            }
+        }
+    }
 
 }
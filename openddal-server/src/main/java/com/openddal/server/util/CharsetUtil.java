@@ -1,5 +1,6 @@
 package com.openddal.server.util;
 
+import java.nio.charset.Charset;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -11,6 +12,8 @@ public class CharsetUtil {
     private static final String[] INDEX_TO_DB_CHARSET = new String[99];
     private static final Map<String, Integer> CHARSET_TO_INDEX = new HashMap<String, Integer>();
     private static final Map<String, Integer> DB_CHARSET_TO_INDEX = new HashMap<String, Integer>();
+    private static final Map<String, String> CHARSET_TO_JAVA = new HashMap<String, String>();
+    private static final Charset DEFAULT_JAVA_CHARSET = Charset.forName("UTF-8");
 
     public static final String UTF8_MB4 = "utf8mb4";
     public static final String UTF8 = "utf8";
@@ -223,6 +226,42 @@ public class CharsetUtil {
         DB_CHARSET_TO_INDEX.put("iso-8859-1", 14);
         DB_CHARSET_TO_INDEX.put("iso_8859_1", 14);
         DB_CHARSET_TO_INDEX.put("utf-8", 33);
+
+        CHARSET_TO_JAVA.put("utf8", "UTF-8");
+        CHARSET_TO_JAVA.put("utf8mb4", "UTF-8");
+        CHARSET_TO_JAVA.put("latin1", "windows-1252");
+        CHARSET_TO_JAVA.put("binary", "ISO-8859-1");
+        CHARSET_TO_JAVA.put("ascii", "US-ASCII");
+        CHARSET_TO_JAVA.put("gbk", "GBK");
+        CHARSET_TO_JAVA.put("gb2312", "GB2312");
+        CHARSET_TO_JAVA.put("big5", "Big5");
+        CHARSET_TO_JAVA.put("sjis", "Shift_JIS");
+        CHARSET_TO_JAVA.put("ujis", "EUC-JP");
+        CHARSET_TO_JAVA.put("euckr", "EUC-KR");
+        CHARSET_TO_JAVA.put("ucs2", "UTF-16BE");
+        CHARSET_TO_JAVA.put("utf16", "UTF-16");
+        CHARSET_TO_JAVA.put("utf32", "UTF-32");
+    }
+
+    /**
+     * Get the java charset of a MySQL charset.
+     *
+     * @param charset the MySQL charset name
+     * @return the java charset, UTF-8 if the charset is unknown
+     */
+    public static final Charset getJavaCharset(String charset) {
+        if (charset == null) {
+            return DEFAULT_JAVA_CHARSET;
+        }
+        String name = CHARSET_TO_JAVA.get(charset.toLowerCase());
+        if (name == null) {
+            name = charset;
+        }
+        try {
+            return Charset.forName(name);
+        } catch (IllegalArgumentException e) {
+            return DEFAULT_JAVA_CHARSET;
+        }
     }
 
     public static final String getCharset(int index) {
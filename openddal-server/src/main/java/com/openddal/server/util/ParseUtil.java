@@ -1,5 +1,8 @@
 package com.openddal.server.util;
 
+import java.util.List;
+
+import com.openddal.util.New;
 
 /**
  * @author xianmao.hexm 2011-5-9 下午02:40:29
@@ -182,6 +185,77 @@ public final class ParseUtil {
         return offset;
     }
 
+    /**
+     * Split the semicolon separated statements of a multi-statement query.
+     * The semicolons in the quoted strings, the quoted identifiers and the
+     * comments do not separate statements, the empty statements are skipped.
+     *
+     * @param sql the query
+     * @return the statements
+     */
+    public static List<String> splitStatements(String sql) {
+        List<String> list = New.arrayList();
+        int len = sql.length();
+        int start = 0;
+        for (int i = 0; i < len; i++) {
+            char c = sql.charAt(i);
+            switch (c) {
+            case '\'':
+            case '"':
+            case '`':
+                for (i++; i < len; i++) {
+                    char x = sql.charAt(i);
+                    if (x == '\\' && c != '`') {
+                        i++;
+                    } else if (x == c) {
+                        if (i + 1 < len && sql.charAt(i + 1) == c) {
+                            i++;
+                        } else {
+                            break;
+                        }
+                    }
+                }
+                break;
+            case '#':
+                i = skipLine(sql, i);
+                break;
+            case '-':
+                if (i + 2 < len && sql.charAt(i + 1) == '-' && Character.isWhitespace(sql.charAt(i + 2))) {
+                    i = skipLine(sql, i);
+                }
+                break;
+            case '/':
+                if (i + 1 < len && sql.charAt(i + 1) == '*') {
+                    int end = sql.indexOf("*/", i + 2);
+                    i = end < 0 ? len : end + 1;
+                }
+                break;
+            case ';':
+                addStatement(list, sql.substring(start, i));
+                start = i + 1;
+                break;
+            default:
+                break;
+            }
+        }
+        if (start < len) {
+            addStatement(list, sql.substring(start));
+        }
+        return list;
+    }
+
+    private static int skipLine(String sql, int offset) {
+        int end = sql.indexOf('\n', offset);
+        return end < 0 ? sql.length() : end;
+    }
+
+    private static void addStatement(List<String> list, String statement) {
+        statement = statement.trim();
+        if (statement.length() > 0) {
+            list.add(statement);
+        }
+    }
+
     public static int move(String stmt, int offset, int length) {
         int i = offset;
         for (; i < stmt.length(); ++i) {
@@ -0,0 +1,210 @@
+package com.openddal.server.util;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+import com.openddal.value.Value;
+
+/**
+ * The records of a workload capture, written by the access log with the
+ * {@link AccessLogger#FORMAT_CAPTURE} format and read by the replay tool.
+ * <p>
+ * The file starts with the magic number and the version, followed by the
+ * records. Each record is: the event (byte), the start time in microseconds
+ * since the epoch (long), the execution time in nanoseconds (long), the
+ * connection id (long), then by event:
+ * <ul>
+ * <li>{@link #EVENT_CONNECT}: the user and the schema</li>
+ * <li>{@link #EVENT_INIT_DB}: the schema</li>
+ * <li>{@link #EVENT_STATEMENT}: the error code (int), the SQL, the number of
+ * parameters (int, -1 for a plain query), then for each parameter the kind
+ * (byte, {@link #PARAM_NULL}, {@link #PARAM_STRING} or {@link #PARAM_BYTES})
+ * and the value</li>
+ * <li>{@link #EVENT_DISCONNECT}: nothing</li>
+ * </ul>
+ * The strings are written as the length (int, -1 for null) and the UTF-8
+ * bytes, as the statements are not limited to 64 KB.
+ */
+public final class WorkloadCapture {
+
+    public static final int MAGIC = 0x4444434c;
+    public static final int VERSION = 1;
+
+    public static final byte EVENT_CONNECT = 'C';
+    public static final byte EVENT_INIT_DB = 'I';
+    public static final byte EVENT_STATEMENT = 'S';
+    public static final byte EVENT_DISCONNECT = 'D';
+
+    public static final byte PARAM_NULL = 0;
+    public static final byte PARAM_STRING = 1;
+    public static final byte PARAM_BYTES = 2;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private WorkloadCapture() {
+        // utility class
+    }
+
+    /**
+     * One captured event of a connection.
+     */
+    public static final class Record {
+        public byte event;
+        public long startMicros;
+        public long costNanos;
+        public long connId;
+        public String user;
+        public String schema;
+        public int errorCode;
+        public String sql;
+        /**
+         * The parameters of a prepared statement, a String or a byte[] or
+         * null each, null for a plain query.
+         */
+        public Object[] params;
+    }
+
+    public static void writeHeader(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+    }
+
+    public static void readHeader(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a workload capture file");
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported workload capture version " + version);
+        }
+    }
+
+    public static void writeConnect(DataOutputStream out, long startMicros, long connId, String user, String schema)
+            throws IOException {
+        writeEvent(out, EVENT_CONNECT, startMicros, 0, connId);
+        writeString(out, user);
+        writeString(out, schema);
+    }
+
+    public static void writeInitDb(DataOutputStream out, long startMicros, long costNanos, long connId,
+            String schema) throws IOException {
+        writeEvent(out, EVENT_INIT_DB, startMicros, costNanos, connId);
+        writeString(out, schema);
+    }
+
+    public static void writeStatement(DataOutputStream out, long startMicros, long costNanos, long connId,
+            int errorCode, String sql, Value[] params) throws IOException {
+        writeEvent(out, EVENT_STATEMENT, startMicros, costNanos, connId);
+        out.writeInt(errorCode);
+        writeString(out, sql);
+        if (params == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(params.length);
+        for (Value v : params) {
+            if (v == null || v.getType() == Value.NULL) {
+                out.writeByte(PARAM_NULL);
+            } else if (v.getType() == Value.BYTES) {
+                byte[] b = v.getBytesNoCopy();
+                out.writeByte(PARAM_BYTES);
+                out.writeInt(b.length);
+                out.write(b);
+            } else {
+                out.writeByte(PARAM_STRING);
+                writeString(out, v.getString());
+            }
+        }
+    }
+
+    public static void writeDisconnect(DataOutputStream out, long startMicros, long connId) throws IOException {
+        writeEvent(out, EVENT_DISCONNECT, startMicros, 0, connId);
+    }
+
+    /**
+     * Read the next record.
+     *
+     * @param in the stream, after the header
+     * @return the record, null at the end of the stream
+     */
+    public static Record read(DataInputStream in) throws IOException {
+        int event = in.read();
+        if (event < 0) {
+            return null;
+        }
+        try {
+            Record r = new Record();
+            r.event = (byte) event;
+            r.startMicros = in.readLong();
+            r.costNanos = in.readLong();
+            r.connId = in.readLong();
+            switch (r.event) {
+            case EVENT_CONNECT:
+                r.user = readString(in);
+                r.schema = readString(in);
+                break;
+            case EVENT_INIT_DB:
+                r.schema = readString(in);
+                break;
+            case EVENT_STATEMENT:
+                r.errorCode = in.readInt();
+                r.sql = readString(in);
+                int count = in.readInt();
+                if (count >= 0) {
+                    r.params = new Object[count];
+                    for (int i = 0; i < count; i++) {
+                        byte kind = in.readByte();
+                        if (kind == PARAM_STRING) {
+                            r.params[i] = readString(in);
+                        } else if (kind == PARAM_BYTES) {
+                            byte[] b = new byte[in.readInt()];
+                            in.readFully(b);
+                            r.params[i] = b;
+                        }
+                    }
+                }
+                break;
+            case EVENT_DISCONNECT:
+                break;
+            default:
+                throw new IOException("Unknown workload capture event " + event);
+            }
+            return r;
+        } catch (EOFException e) {
+            // the last record of a capture which was not stopped cleanly
+            return null;
+        }
+    }
+
+    private static void writeEvent(DataOutputStream out, byte event, long startMicros, long costNanos, long connId)
+            throws IOException {
+        out.writeByte(event);
+        out.writeLong(startMicros);
+        out.writeLong(costNanos);
+        out.writeLong(connId);
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] b = s.getBytes(UTF8);
+        out.writeInt(b.length);
+        out.write(b);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int len = in.readInt();
+        if (len < 0) {
+            return null;
+        }
+        byte[] b = new byte[len];
+        in.readFully(b);
+        return new String(b, UTF8);
+    }
+
+}
@@ -0,0 +1,86 @@
+package com.openddal.server.mysql.proto.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import com.openddal.server.mysql.ResultsetWriter;
+import com.openddal.server.mysql.proto.ComStmtExecute;
+import com.openddal.server.mysql.proto.Flags;
+import com.openddal.util.DateTimeUtils;
+import com.openddal.value.Value;
+import com.openddal.value.ValueInt;
+import com.openddal.value.ValueLong;
+import com.openddal.value.ValueNull;
+import com.openddal.value.ValueString;
+import com.openddal.value.ValueTimestamp;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+public class BinaryProtocolTest {
+    @Test
+    public void testExecuteParameters() {
+        byte[] packet = ProtoTest.packet_string_to_bytes(
+                "1b 00 00 00 17 01 00 00 00 00 01 00 00 00 02 01 08 00 fd 00 fd 00 "
+                + "2a 00 00 00 00 00 00 00 02 61 62");
+        ComStmtExecute execute = ComStmtExecute.loadFromPacket(packet);
+        assertEquals(1, execute.statementId);
+        assertEquals(1, execute.iterationCount);
+        Value[] values = execute.readParameters(3, null, null);
+        assertEquals(ValueLong.get(42), values[0]);
+        assertEquals(ValueNull.INSTANCE, values[1]);
+        assertEquals(ValueString.get("ab"), values[2]);
+        assertEquals(Flags.MYSQL_TYPE_VAR_STRING, execute.parameterTypes[2]);
+    }
+
+    @Test
+    public void testBoundTypes() {
+        byte[] packet = ProtoTest.packet_string_to_bytes(
+                "17 00 00 00 17 01 00 00 00 00 01 00 00 00 00 00 0b e0 07 0a 13 0c 22 38 20 a1 07 00");
+        ComStmtExecute execute = ComStmtExecute.loadFromPacket(packet);
+        Value[] values = execute.readParameters(1, new int[] { Flags.MYSQL_TYPE_DATETIME }, null);
+        long dateValue = DateTimeUtils.dateValue(2016, 10, 19);
+        long nanos = ((12 * 60L + 34) * 60 + 56) * 1000000000L + 500000000L;
+        assertEquals(ValueTimestamp.fromDateValueAndNanos(dateValue, nanos), values[0]);
+    }
+
+    @Test
+    public void testLongData() {
+        byte[] packet = ProtoTest.packet_string_to_bytes(
+                "0e 00 00 00 17 01 00 00 00 00 01 00 00 00 00 01 fc 00");
+        ComStmtExecute execute = ComStmtExecute.loadFromPacket(packet);
+        Value[] values = execute.readParameters(1, null, new byte[][] { "马云".getBytes() });
+        assertEquals(Flags.MYSQL_TYPE_BLOB, execute.parameterTypes[0]);
+        assertArrayEquals("马云".getBytes(), values[0].getBytes());
+    }
+
+    @Test
+    public void testRow() {
+        Value[] row = new Value[] { ValueInt.get(1), ValueNull.INSTANCE, ValueString.get("a") };
+        int[] types = new int[] { Flags.MYSQL_TYPE_LONG, Flags.MYSQL_TYPE_VAR_STRING, Flags.MYSQL_TYPE_VAR_STRING };
+        assertArrayEquals(ProtoTest.packet_string_to_bytes("08 00 00 01 00 08 01 00 00 00 01 61"),
+                encode(row, types, 1));
+    }
+
+    @Test
+    public void testTemporalRow() {
+        long dateValue = DateTimeUtils.dateValue(2016, 10, 19);
+        long nanos = ((12 * 60L + 34) * 60 + 56) * 1000000000L;
+        Value[] row = new Value[] { ValueTimestamp.fromDateValueAndNanos(dateValue, nanos),
+                ValueTimestamp.fromDateValueAndNanos(dateValue, 0) };
+        int[] types = new int[] { Flags.MYSQL_TYPE_TIMESTAMP, Flags.MYSQL_TYPE_DATE };
+        assertArrayEquals(ProtoTest.packet_string_to_bytes(
+                "0f 00 00 02 00 00 07 e0 07 0a 13 0c 22 38 04 e0 07 0a 13"), encode(row, types, 2));
+    }
+
+    private static byte[] encode(Value[] row, int[] types, long sequenceId) {
+        ByteBuf buf = Unpooled.buffer();
+        assertEquals(sequenceId + 1, ResultsetWriter.writeBinaryRow(buf, row, types, sequenceId));
+        byte[] packet = new byte[buf.readableBytes()];
+        buf.readBytes(packet);
+        buf.release();
+        return packet;
+    }
+}
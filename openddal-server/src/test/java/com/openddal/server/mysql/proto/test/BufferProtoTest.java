@@ -0,0 +1,71 @@
+package com.openddal.server.mysql.proto.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.nio.charset.Charset;
+
+import org.junit.Test;
+
+import com.openddal.server.mysql.MySQLServerDecoder;
+import com.openddal.server.mysql.proto.BufferProto;
+import com.openddal.server.mysql.proto.ComQuery;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+public class BufferProtoTest {
+    @Test
+    public void testFields() {
+        ByteBuf buf = Unpooled.wrappedBuffer(ProtoTest.packet_string_to_bytes(
+                "ff 01 00 fc 10 27 fe 01 02 03 04 05 06 07 08 61 62 00 02 63 64 65"));
+        BufferProto proto = new BufferProto(buf, 1);
+        assertEquals(1, proto.get_fixed_int(2));
+        assertEquals(10000, proto.get_lenenc_int());
+        assertEquals(0x0807060504030201L, proto.get_lenenc_int());
+        assertEquals("ab", proto.get_null_str());
+        assertEquals("cd", proto.get_lenenc_str());
+        assertEquals("e", proto.get_eop_str());
+        assertFalse(proto.has_remaining_data());
+        assertEquals(0, buf.readerIndex());
+    }
+
+    @Test
+    public void testQueryCharset() {
+        Charset gbk = Charset.forName("GBK");
+        byte[] text = "select '马云'".getBytes(gbk);
+        ByteBuf buf = Unpooled.buffer();
+        buf.writeMedium(0).writeByte(0).writeByte(3).writeBytes(text);
+        ComQuery query = ComQuery.loadFromPacket(buf, gbk);
+        assertEquals("select '马云'", query.query);
+    }
+
+    @Test
+    public void testDecoder() {
+        EmbeddedChannel channel = new EmbeddedChannel(new MySQLServerDecoder());
+        channel.writeInbound(Unpooled.wrappedBuffer(ProtoTest.packet_string_to_bytes("01 00 00 00 0e")));
+        ByteBuf frame = (ByteBuf) channel.readInbound();
+        assertEquals(5, frame.readableBytes());
+        assertEquals(0x0e, BufferProto.getType(frame));
+        frame.release();
+        assertNull(channel.readInbound());
+
+        byte[] head = new byte[0xFFFFFF + 4];
+        head[0] = head[1] = head[2] = (byte) 0xFF;
+        head[4] = 0x03;
+        head[head.length - 1] = 'x';
+        channel.writeInbound(Unpooled.wrappedBuffer(head));
+        assertNull(channel.readInbound());
+        channel.writeInbound(Unpooled.wrappedBuffer(ProtoTest.packet_string_to_bytes("02 00 00 01 79 7a")));
+        frame = (ByteBuf) channel.readInbound();
+        assertEquals(4 + 0xFFFFFF + 2, frame.readableBytes());
+        assertEquals(1, BufferProto.getSequenceId(frame));
+        assertEquals(0x03, BufferProto.getType(frame));
+        assertEquals('x', frame.getByte(3 + 0xFFFFFF));
+        assertEquals('z', frame.getByte(frame.writerIndex() - 1));
+        frame.release();
+        channel.finish();
+    }
+}
@@ -0,0 +1,68 @@
+package com.openddal.server.mysql.proto.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.openddal.server.mysql.MySQLCompressionCodec;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+public class CompressionCodecTest {
+    @Test
+    public void testUncompressed() {
+        EmbeddedChannel channel = new EmbeddedChannel(new MySQLCompressionCodec(1024));
+        channel.writeInbound(Unpooled.wrappedBuffer(ProtoTest.packet_string_to_bytes(
+                "05 00 00 00 00 00 00 01 00 00 00 0e")));
+        assertArrayEquals(ProtoTest.packet_string_to_bytes("01 00 00 00 0e"), read((ByteBuf) channel.readInbound()));
+
+        channel.writeOutbound(Unpooled.wrappedBuffer(ProtoTest.packet_string_to_bytes("07 00 00 01 00 00 00 02 00 00 00")));
+        assertArrayEquals(ProtoTest.packet_string_to_bytes(
+                "0b 00 00 01 00 00 00 07 00 00 01 00 00 00 02 00 00 00"), read((ByteBuf) channel.readOutbound()));
+        channel.finish();
+    }
+
+    @Test
+    public void testCompressed() {
+        byte[] row = new byte[4096];
+        Arrays.fill(row, (byte) 'a');
+        row[0] = (byte) 0xFC;
+        row[1] = 0x0C;
+        row[2] = 0;
+        row[3] = 2;
+
+        EmbeddedChannel server = new EmbeddedChannel(new MySQLCompressionCodec(1024));
+        server.writeInbound(Unpooled.wrappedBuffer(ProtoTest.packet_string_to_bytes(
+                "05 00 00 03 00 00 00 01 00 00 00 0e")));
+        read((ByteBuf) server.readInbound());
+        server.writeOutbound(Unpooled.wrappedBuffer(row));
+        ByteBuf compressed = (ByteBuf) server.readOutbound();
+        assertTrue(compressed.readableBytes() < row.length);
+        assertEquals(4, compressed.getUnsignedByte(3));
+        // the uncompressed length 4096 in little endian
+        assertEquals(0x00, compressed.getUnsignedByte(4));
+        assertEquals(0x10, compressed.getUnsignedByte(5));
+        assertEquals(0x00, compressed.getUnsignedByte(6));
+
+        EmbeddedChannel client = new EmbeddedChannel(new MySQLCompressionCodec(1024));
+        client.writeInbound(compressed);
+        assertArrayEquals(row, read((ByteBuf) client.readInbound()));
+        assertNull(client.readInbound());
+        server.finish();
+        client.finish();
+    }
+
+    private static byte[] read(ByteBuf buf) {
+        byte[] bytes = new byte[buf.readableBytes()];
+        buf.readBytes(bytes);
+        buf.release();
+        return bytes;
+    }
+}
@@ -0,0 +1,23 @@
+package com.openddal.server.mysql.proto.test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.openddal.server.util.ParseUtil;
+
+public class MultiStatementTest {
+    @Test
+    public void testSplit() {
+        assertEquals(Arrays.asList("insert into t values (1, 'a;b')", "update t set `x;y` = \"c\\\";\" where id = 1",
+                "select 1"),
+                ParseUtil.splitStatements(
+                        "insert into t values (1, 'a;b'); update t set `x;y` = \"c\\\";\" where id = 1;select 1;"));
+        assertEquals(Arrays.asList("select /* a; b */ 1", "select 2 -- c;", "select 3"),
+                ParseUtil.splitStatements("select /* a; b */ 1; select 2 -- c;\n; ;select 3"));
+        assertEquals(Arrays.asList("select 'it''s;'", "select 4-1"),
+                ParseUtil.splitStatements("select 'it''s;';select 4-1"));
+    }
+}
@@ -0,0 +1,52 @@
+package com.openddal.server.mysql.proto.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import com.openddal.server.mysql.ResultsetWriter;
+import com.openddal.server.mysql.proto.ResultsetRow;
+import com.openddal.value.Value;
+import com.openddal.value.ValueInt;
+import com.openddal.value.ValueLong;
+import com.openddal.value.ValueNull;
+import com.openddal.value.ValueString;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+public class ResultsetWriterTest {
+    @Test
+    public void testRow() {
+        StringBuilder longText = new StringBuilder();
+        for (int i = 0; i < 300; i++) {
+            longText.append("ddal-");
+        }
+        Value[] row = new Value[] {
+            ValueInt.get(-42), ValueLong.get(Long.MAX_VALUE), ValueLong.get(Long.MIN_VALUE),
+            ValueInt.get(0), ValueString.get("马云-ddal"), ValueString.get(longText.toString())
+        };
+        ResultsetRow expected = new ResultsetRow();
+        expected.sequenceId = 5;
+        for (Value v : row) {
+            expected.addData(v.getString());
+        }
+        assertArrayEquals(expected.toPacket(), encode(row, 5));
+    }
+
+    @Test
+    public void testNull() {
+        byte[] packet = encode(new Value[] { ValueNull.INSTANCE, ValueString.get("a") }, 3);
+        assertArrayEquals(ProtoTest.packet_string_to_bytes("03 00 00 03 fb 01 61"), packet);
+    }
+
+    private static byte[] encode(Value[] row, long sequenceId) {
+        ByteBuf buf = Unpooled.buffer();
+        assertEquals(sequenceId + 1, ResultsetWriter.writeRow(buf, row, row.length, sequenceId));
+        byte[] packet = new byte[buf.readableBytes()];
+        buf.readBytes(packet);
+        buf.release();
+        return packet;
+    }
+}
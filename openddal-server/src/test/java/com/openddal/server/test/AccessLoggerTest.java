@@ -0,0 +1,144 @@
+package com.openddal.server.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+
+import org.junit.Test;
+
+import com.openddal.server.ServerArgs;
+import com.openddal.server.core.ServerSession;
+import com.openddal.server.mysql.MySQLServer;
+import com.openddal.server.util.AccessLogger;
+import com.openddal.server.util.WorkloadCapture;
+import com.openddal.server.util.WorkloadCapture.Record;
+import com.openddal.value.Value;
+import com.openddal.value.ValueBytes;
+import com.openddal.value.ValueInt;
+import com.openddal.value.ValueNull;
+
+public class AccessLoggerTest {
+
+    @Test
+    public void testBinaryLog() throws Exception {
+        File file = File.createTempFile("access", ".log");
+        file.deleteOnExit();
+        ServerSession session = new ServerSession(new MySQLServer(new ServerArgs()));
+        session.setAttachment("remoteAddress", "/127.0.0.1:5000");
+        AccessLogger logger = new AccessLogger(file.getPath(), AccessLogger.FORMAT_BINARY, 2, 16);
+        logger.start();
+        for (int i = 0; i < 4; i++) {
+            logger.begin(session).seqId(i).command("select " + i);
+            logger.log();
+        }
+        logger.begin(session).seqId(9).command("select x");
+        logger.markError(1054, "Unknown column 'x'");
+        logger.log();
+        logger.stop();
+        assertEquals(3, logger.getWrittenCount());
+
+        DataInputStream in = new DataInputStream(new FileInputStream(file));
+        try {
+            // one of two successful commands is sampled
+            assertEquals("select 1", readEntry(in, session, 1));
+            assertEquals("select 3", readEntry(in, session, 3));
+            assertEquals("select x", readEntry(in, session, 9));
+            assertEquals(-1, in.read());
+        } finally {
+            in.close();
+        }
+    }
+
+    @Test
+    public void testDropWhenFull() throws Exception {
+        File file = File.createTempFile("access", ".log");
+        file.deleteOnExit();
+        ServerSession session = new ServerSession(new MySQLServer(new ServerArgs()));
+        AccessLogger logger = new AccessLogger(file.getPath(), AccessLogger.FORMAT_TEXT, 1, 4);
+        // the writer is not started, nothing frees the slots
+        for (int i = 0; i < 6; i++) {
+            logger.begin(session).command("ping");
+            logger.log();
+        }
+        assertEquals(2, logger.getDroppedCount());
+    }
+
+    @Test
+    public void testCapture() throws Exception {
+        File file = File.createTempFile("capture", ".bin");
+        file.deleteOnExit();
+        ServerSession session = new ServerSession(new MySQLServer(new ServerArgs()));
+        session.setUser("root");
+        session.setSchema("shop");
+        // the capture is never sampled
+        AccessLogger logger = new AccessLogger(file.getPath(), AccessLogger.FORMAT_CAPTURE, 10, 16);
+        logger.start();
+        logger.begin(session).seqId(1).command("auth").connected();
+        logger.log();
+        logger.begin(session).command("ping");
+        logger.log();
+        logger.begin(session).command("init db").initDb("test");
+        logger.log();
+        logger.begin(session).command("query").statement("select x", null);
+        logger.markError(1054, "Unknown column 'x'");
+        logger.log();
+        Value[] params = { ValueInt.get(1), ValueNull.INSTANCE, ValueBytes.get(new byte[] { 1, 2 }) };
+        logger.begin(session).command("execute").statement("insert into t values(?, ?, ?)", params);
+        logger.log();
+        logger.disconnected(session);
+        logger.stop();
+
+        DataInputStream in = new DataInputStream(new FileInputStream(file));
+        try {
+            WorkloadCapture.readHeader(in);
+            Record r = WorkloadCapture.read(in);
+            assertEquals(WorkloadCapture.EVENT_CONNECT, r.event);
+            assertEquals(session.getThreadId(), r.connId);
+            assertEquals("root", r.user);
+            assertEquals("shop", r.schema);
+            long start = r.startMicros;
+            assertTrue(start > 0);
+            r = WorkloadCapture.read(in);
+            assertEquals(WorkloadCapture.EVENT_INIT_DB, r.event);
+            assertEquals("test", r.schema);
+            r = WorkloadCapture.read(in);
+            assertEquals(WorkloadCapture.EVENT_STATEMENT, r.event);
+            assertEquals("select x", r.sql);
+            assertEquals(1054, r.errorCode);
+            assertNull(r.params);
+            r = WorkloadCapture.read(in);
+            assertEquals("insert into t values(?, ?, ?)", r.sql);
+            assertEquals(0, r.errorCode);
+            assertEquals(3, r.params.length);
+            assertEquals("1", r.params[0]);
+            assertNull(r.params[1]);
+            assertArrayEquals(new byte[] { 1, 2 }, (byte[]) r.params[2]);
+            r = WorkloadCapture.read(in);
+            assertEquals(WorkloadCapture.EVENT_DISCONNECT, r.event);
+            assertTrue(r.startMicros >= start);
+            assertNull(WorkloadCapture.read(in));
+        } finally {
+            in.close();
+        }
+    }
+
+    private static String readEntry(DataInputStream in, ServerSession session, long seqId) throws Exception {
+        assertTrue(in.readLong() > 0);
+        assertTrue(in.readLong() >= 0);
+        assertEquals(session.getThreadId(), in.readLong());
+        assertEquals(seqId, in.readLong());
+        int errorCode = in.readInt();
+        String command = in.readUTF();
+        assertEquals("/127.0.0.1:5000", in.readUTF());
+        in.readUTF();
+        String errorMsg = in.readUTF();
+        assertEquals(seqId == 9 ? 1054 : 0, errorCode);
+        assertEquals(seqId == 9 ? "Unknown column 'x'" : "", errorMsg);
+        return command;
+    }
+}
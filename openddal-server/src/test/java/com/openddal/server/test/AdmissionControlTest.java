@@ -0,0 +1,44 @@
+package com.openddal.server.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.openddal.server.core.AdmissionControl;
+
+public class AdmissionControlTest {
+
+    @Test
+    public void testStandingQueue() throws Exception {
+        AdmissionControl admission = new AdmissionControl(5, 50);
+        assertTrue(admission.admit(ago(10)));
+        assertFalse(admission.admit(ago(100)));
+        assertFalse(admission.isOverloaded());
+        Thread.sleep(60);
+        // even the shortest wait of the interval was above the target
+        assertFalse(admission.admit(ago(10)));
+        assertTrue(admission.isOverloaded());
+        assertTrue(admission.admit(ago(0)));
+        assertEquals(2, admission.getRejectedCount());
+    }
+
+    @Test
+    public void testUserQuota() {
+        AdmissionControl admission = new AdmissionControl(0, 0);
+        assertTrue(admission.admit(ago(1000)));
+        assertTrue(admission.acquire("app01", 2));
+        assertTrue(admission.acquire("app01", 2));
+        assertFalse(admission.acquire("app01", 2));
+        assertTrue(admission.acquire("root", 0));
+        admission.release("app01");
+        assertTrue(admission.acquire("app01", 2));
+    }
+
+    private static long ago(long millis) {
+        return System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+}
@@ -0,0 +1,473 @@
+/*
+ * Copyright 2014-2016 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.openddal.test.replay;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import com.openddal.server.util.WorkloadCapture;
+import com.openddal.server.util.WorkloadCapture.Record;
+import com.openddal.util.New;
+
+/**
+ * Replays a workload captured by the server with the capture format of the
+ * access log. Each captured connection is replayed by its own thread and
+ * each statement is started at its captured time, so the replay has the
+ * concurrency and the pacing of the capture, faster or slower with the
+ * speed. The target is any JDBC URL, usually a server of the new build in
+ * front of local H2 or MySQL shards, for example:
+ *
+ * <pre>
+ * java com.openddal.test.replay.WorkloadReplay -file capture.bin
+ *     -url jdbc:mysql://localhost:6100/ -user root -password root -speed 2
+ * </pre>
+ *
+ * The passwords are not captured, all the connections use the password of
+ * the arguments, and the user of the arguments if there is one. A query of
+ * several statements is sent as one, the target must allow it, like
+ * Connector/J with allowMultiQueries=true.
+ */
+public class WorkloadReplay {
+
+    private final String url;
+    private final Properties info;
+    private final double speed;
+
+    /**
+     * @param url the JDBC URL of the target
+     * @param info the connection properties, the user is the captured user
+     *            if it is not set
+     * @param speed the speed relative to the capture, 2 replays it twice as
+     *            fast
+     */
+    public WorkloadReplay(String url, Properties info, double speed) {
+        if (speed <= 0) {
+            throw new IllegalArgumentException("speed should be positive");
+        }
+        this.url = url;
+        this.info = info;
+        this.speed = speed;
+    }
+
+    /**
+     * Replay the capture and wait for all the connections to finish.
+     *
+     * @param file the capture file
+     * @return the report
+     */
+    public Report replay(String file) throws IOException, InterruptedException {
+        Map<Long, List<Record>> connections = New.linkedHashMap();
+        long captureStart = Long.MAX_VALUE;
+        long captureEnd = Long.MIN_VALUE;
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 64 * 1024));
+        try {
+            WorkloadCapture.readHeader(in);
+            for (Record r; (r = WorkloadCapture.read(in)) != null;) {
+                List<Record> records = connections.get(r.connId);
+                if (records == null) {
+                    records = New.arrayList();
+                    connections.put(r.connId, records);
+                }
+                records.add(r);
+                captureStart = Math.min(captureStart, r.startMicros);
+                captureEnd = Math.max(captureEnd, r.startMicros);
+            }
+        } finally {
+            in.close();
+        }
+        Report report = new Report();
+        report.connections = connections.size();
+        if (connections.isEmpty()) {
+            return report;
+        }
+        report.captureMillis = (captureEnd - captureStart) / 1000;
+        long replayStart = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+        List<Replayer> replayers = New.arrayList(connections.size());
+        for (List<Record> records : connections.values()) {
+            Replayer r = new Replayer(records, captureStart, replayStart, report);
+            r.setName("replay-" + records.get(0).connId);
+            r.setDaemon(true);
+            replayers.add(r);
+            r.start();
+        }
+        for (Replayer r : replayers) {
+            r.join();
+        }
+        report.replayMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - replayStart);
+        int count = 0;
+        for (Replayer r : replayers) {
+            count += r.latencyCount;
+        }
+        long[] latencies = new long[count];
+        long[] captured = new long[count];
+        int pos = 0;
+        for (Replayer r : replayers) {
+            System.arraycopy(r.latencies, 0, latencies, pos, r.latencyCount);
+            System.arraycopy(r.captured, 0, captured, pos, r.latencyCount);
+            pos += r.latencyCount;
+        }
+        Arrays.sort(latencies);
+        Arrays.sort(captured);
+        report.latencies = latencies;
+        report.capturedLatencies = captured;
+        return report;
+    }
+
+    /**
+     * Replays the records of one captured connection.
+     */
+    private class Replayer extends Thread {
+        private final List<Record> records;
+        private final long captureStart;
+        private final long replayStart;
+        private final Report report;
+        private final Map<String, PreparedStatement> prepared = New.hashMap();
+        private Connection conn;
+        private long[] latencies = new long[64];
+        private long[] captured = new long[64];
+        private int latencyCount;
+
+        Replayer(List<Record> records, long captureStart, long replayStart, Report report) {
+            this.records = records;
+            this.captureStart = captureStart;
+            this.replayStart = replayStart;
+            this.report = report;
+        }
+
+        @Override
+        public void run() {
+            try {
+                for (Record r : records) {
+                    long due = replayStart + (long) ((r.startMicros - captureStart) * 1000 / speed);
+                    long wait = due - System.nanoTime();
+                    if (wait < 0) {
+                        report.lagged(-wait / 1000);
+                    }
+                    while (wait > 0) {
+                        LockSupport.parkNanos(wait);
+                        wait = due - System.nanoTime();
+                    }
+                    replay(r);
+                }
+            } catch (SQLException e) {
+                report.connectErrors.incrementAndGet();
+                report.lastError = e.toString();
+            } finally {
+                close();
+            }
+        }
+
+        private void replay(Record r) throws SQLException {
+            switch (r.event) {
+            case WorkloadCapture.EVENT_CONNECT:
+                close();
+                connect(r.user);
+                setCatalog(r.schema);
+                break;
+            case WorkloadCapture.EVENT_INIT_DB:
+                connect(null);
+                setCatalog(r.schema);
+                break;
+            case WorkloadCapture.EVENT_STATEMENT:
+                connect(null);
+                execute(r);
+                break;
+            case WorkloadCapture.EVENT_DISCONNECT:
+                close();
+                break;
+            default:
+                break;
+            }
+        }
+
+        private void connect(String user) throws SQLException {
+            if (conn != null) {
+                return;
+            }
+            Properties prop = new Properties();
+            prop.putAll(info);
+            if (user != null && !prop.containsKey("user")) {
+                prop.setProperty("user", user);
+            }
+            conn = DriverManager.getConnection(url, prop);
+        }
+
+        private void setCatalog(String schema) throws SQLException {
+            if (schema != null && schema.length() > 0) {
+                conn.setCatalog(schema);
+            }
+        }
+
+        private void execute(Record r) {
+            long start = System.nanoTime();
+            try {
+                if (r.params == null) {
+                    Statement stat = conn.createStatement();
+                    try {
+                        consume(stat, stat.execute(r.sql));
+                    } finally {
+                        stat.close();
+                    }
+                } else {
+                    PreparedStatement prep = prepared.get(r.sql);
+                    if (prep == null) {
+                        prep = conn.prepareStatement(r.sql);
+                        prepared.put(r.sql, prep);
+                    }
+                    for (int i = 0; i < r.params.length; i++) {
+                        Object p = r.params[i];
+                        if (p == null) {
+                            prep.setNull(i + 1, Types.VARCHAR);
+                        } else if (p instanceof byte[]) {
+                            prep.setBytes(i + 1, (byte[]) p);
+                        } else {
+                            prep.setString(i + 1, (String) p);
+                        }
+                    }
+                    consume(prep, prep.execute());
+                }
+            } catch (SQLException e) {
+                report.errors.incrementAndGet();
+                if (r.errorCode == 0) {
+                    report.unexpectedErrors.incrementAndGet();
+                    report.lastError = e.toString();
+                }
+            }
+            record(System.nanoTime() - start, r.costNanos);
+        }
+
+        private void consume(Statement stat, boolean isResultSet) throws SQLException {
+            while (true) {
+                if (isResultSet) {
+                    ResultSet rs = stat.getResultSet();
+                    try {
+                        while (rs.next()) {
+                            // read the rows like the client did
+                        }
+                    } finally {
+                        rs.close();
+                    }
+                } else if (stat.getUpdateCount() == -1) {
+                    return;
+                }
+                isResultSet = stat.getMoreResults();
+            }
+        }
+
+        private void record(long latency, long capturedLatency) {
+            if (latencyCount == latencies.length) {
+                latencies = Arrays.copyOf(latencies, latencyCount * 2);
+                captured = Arrays.copyOf(captured, latencyCount * 2);
+            }
+            latencies[latencyCount] = latency;
+            captured[latencyCount++] = capturedLatency;
+            report.statements.incrementAndGet();
+        }
+
+        private void close() {
+            if (conn == null) {
+                return;
+            }
+            try {
+                for (PreparedStatement prep : prepared.values()) {
+                    prep.close();
+                }
+                conn.close();
+            } catch (SQLException e) {
+                // ignore
+            }
+            prepared.clear();
+            conn = null;
+        }
+    }
+
+    /**
+     * The throughput and the latencies of the replay, next to the latencies
+     * of the capture.
+     */
+    public static class Report {
+        private final AtomicLong statements = new AtomicLong();
+        private final AtomicLong errors = new AtomicLong();
+        private final AtomicLong unexpectedErrors = new AtomicLong();
+        private final AtomicLong connectErrors = new AtomicLong();
+        private final AtomicLong maxLagMicros = new AtomicLong();
+        private volatile String lastError;
+        private int connections;
+        private long captureMillis;
+        private long replayMillis;
+        private long[] latencies = new long[0];
+        private long[] capturedLatencies = new long[0];
+
+        void lagged(long micros) {
+            while (true) {
+                long max = maxLagMicros.get();
+                if (micros <= max || maxLagMicros.compareAndSet(max, micros)) {
+                    return;
+                }
+            }
+        }
+
+        public long getStatementCount() {
+            return statements.get();
+        }
+
+        /**
+         * @return the failed statements, including the statements which
+         *         failed in the capture too
+         */
+        public long getErrorCount() {
+            return errors.get();
+        }
+
+        /**
+         * @return the failed statements which succeeded in the capture
+         */
+        public long getUnexpectedErrorCount() {
+            return unexpectedErrors.get();
+        }
+
+        public long getConnectErrorCount() {
+            return connectErrors.get();
+        }
+
+        public int getConnectionCount() {
+            return connections;
+        }
+
+        /**
+         * @return how much the replay was behind the pacing of the capture at
+         *         most, in microseconds
+         */
+        public long getMaxLagMicros() {
+            return maxLagMicros.get();
+        }
+
+        public long getReplayMillis() {
+            return replayMillis;
+        }
+
+        /**
+         * @return the statements per second
+         */
+        public double getThroughput() {
+            return replayMillis == 0 ? 0 : statements.get() * 1000.0 / replayMillis;
+        }
+
+        /**
+         * @param percentile the percentile, between 0 and 100
+         * @return the replayed latency in nanoseconds
+         */
+        public long getLatency(double percentile) {
+            return percentile(latencies, percentile);
+        }
+
+        /**
+         * @param percentile the percentile, between 0 and 100
+         * @return the captured latency in nanoseconds
+         */
+        public long getCapturedLatency(double percentile) {
+            return percentile(capturedLatencies, percentile);
+        }
+
+        private static long percentile(long[] sorted, double percentile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int i = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+            return sorted[Math.min(sorted.length - 1, Math.max(0, i))];
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder buff = new StringBuilder();
+            buff.append("connections: ").append(connections).append('\n');
+            buff.append("statements: ").append(statements.get()).append(", errors: ").append(errors.get())
+                    .append(", unexpected errors: ").append(unexpectedErrors.get()).append(", connect errors: ")
+                    .append(connectErrors.get()).append('\n');
+            buff.append("capture: ").append(captureMillis).append(" ms, replay: ").append(replayMillis)
+                    .append(" ms, max lag: ").append(maxLagMicros.get() / 1000).append(" ms\n");
+            buff.append(String.format("throughput: %.1f statements/s%n", getThroughput()));
+            buff.append(String.format("%-10s %12s %12s%n", "latency", "replay (us)", "capture (us)"));
+            double[] percentiles = { 50, 90, 99, 99.9, 100 };
+            String[] names = { "p50", "p90", "p99", "p99.9", "max" };
+            for (int i = 0; i < percentiles.length; i++) {
+                buff.append(String.format("%-10s %12d %12d%n", names[i], getLatency(percentiles[i]) / 1000,
+                        getCapturedLatency(percentiles[i]) / 1000));
+            }
+            if (lastError != null) {
+                buff.append("last error: ").append(lastError).append('\n');
+            }
+            return buff.toString();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        String file = null;
+        String url = null;
+        double speed = 1;
+        Properties info = new Properties();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String key = args[i];
+            String value = args[i + 1];
+            if ("-file".equals(key)) {
+                file = value;
+            } else if ("-url".equals(key)) {
+                url = value;
+            } else if ("-user".equals(key)) {
+                info.setProperty("user", value);
+            } else if ("-password".equals(key)) {
+                info.setProperty("password", value);
+            } else if ("-speed".equals(key)) {
+                speed = Double.parseDouble(value);
+            } else {
+                usage("Unknown option " + key);
+            }
+        }
+        if (file == null || url == null) {
+            usage("-file and -url are required");
+        }
+        Report report = new WorkloadReplay(url, info, speed).replay(file);
+        System.out.print(report);
+    }
+
+    private static void usage(String message) {
+        System.out.println(message);
+        System.out.println("Usage: java " + WorkloadReplay.class.getName() + " <options>");
+        System.out.println("\t" + "-file: the workload captured with -accessLogFormat capture.");
+        System.out.println("\t" + "-url: the JDBC URL of the server or the database to replay it on.");
+        System.out.println("\t" + "-user: the user of all the connections, the captured user by default.");
+        System.out.println("\t" + "-password: the password of all the connections.");
+        System.out.println("\t" + "-speed: Double, the speed relative to the capture, 1 by default.");
+        System.exit(1);
+    }
+
+}
@@ -19,11 +19,20 @@
 package com.openddal.test.explain;
 
 import java.sql.Connection;
+import java.sql.DriverManager;
 import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.Properties;
+import java.util.regex.Pattern;
 
+import org.junit.Assert;
 import org.junit.Test;
 
+import com.openddal.engine.Session;
+import com.openddal.engine.SessionFactory;
+import com.openddal.engine.SessionFactoryBuilder;
+import com.openddal.result.ResultInterface;
 import com.openddal.test.BaseTestCase;
 import com.openddal.util.JdbcUtils;
 
@@ -32,6 +41,8 @@ import com.openddal.util.JdbcUtils;
  */
 public class ExplainTestCase extends BaseTestCase {
 
+    private static final int ORDERS = 100;
+    private static final String MILLIS = "\\d+\\.\\d{3} ms";
 
     @Test
     public void tesetCreateTableExplain() throws Exception {
@@ -89,4 +100,74 @@ public class ExplainTestCase extends BaseTestCase {
         }
     }
 
+    @Test
+    public void testSelectExplainAnalyze() throws Exception {
+        Session session = createOrders();
+        try {
+            String sql = "SELECT customer_id, count(*) FROM orders GROUP BY customer_id ORDER BY 2 DESC";
+            String plan = query(session, "EXPLAIN " + sql);
+            Assert.assertFalse(plan, plan.contains("ANALYZE"));
+            Assert.assertFalse(plan, plan.contains(" rows"));
+
+            plan = query(session, "EXPLAIN ANALYZE " + sql);
+            String[] parts = plan.split("\nANALYZE\n");
+            Assert.assertEquals(plan, 2, parts.length);
+            String report = parts[1];
+            assertLine(report, "    MULTIPLE_EXECUTION 2 workers: " + MILLIS);
+            assertLine(report, "    DIRECT_LOOKUP GROUP: " + MILLIS + ", 10 rows");
+            assertLine(report, "    SORT: " + MILLIS + ", 10 rows, [1-9]\\d* bytes");
+            assertLine(report, "    TOTAL: " + MILLIS + ", 10 rows");
+            // the shards group their own orders, the proxy merges the groups
+            for (int i = 0; i < 2; i++) {
+                assertLine(report, "    execute on shard" + i + ": SELECT .* GROUP BY CUSTOMER_ID .*\n"
+                        + "        \\(wait " + MILLIS + ", execute " + MILLIS + ", first row " + MILLIS
+                        + ", fetch " + MILLIS + ", [1-9]\\d* rows\\)");
+            }
+        } finally {
+            session.close();
+            session.getDatabase().close();
+        }
+    }
+
+    /**
+     * Create the orders of 10 customers on two in-process H2 shards.
+     */
+    private static Session createOrders() throws SQLException {
+        for (int i = 0; i < 2; i++) {
+            Connection conn = DriverManager.getConnection(
+                    "jdbc:h2:mem:ea_shard" + i + ";MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", "");
+            try {
+                Statement stat = conn.createStatement();
+                stat.execute("DROP TABLE IF EXISTS DDAL_BUCKET_MAP");
+                stat.execute("DROP TABLE IF EXISTS orders_01");
+                stat.execute("CREATE TABLE orders_01(order_id BIGINT PRIMARY KEY, customer_id INT)");
+                stat.close();
+            } finally {
+                conn.close();
+            }
+        }
+        SessionFactory factory = SessionFactoryBuilder.newBuilder().fromXml("config/explain-analyze.xml").build();
+        Session session = (Session) factory.createSession(new Properties());
+        StringBuilder sql = new StringBuilder("INSERT INTO orders VALUES");
+        for (int id = 1; id <= ORDERS; id++) {
+            sql.append(id == 1 ? "" : ",").append('(').append(id).append(", ").append(id % 10).append(')');
+        }
+        session.prepareLocal(sql.toString()).executeUpdate();
+        return session;
+    }
+
+    private static void assertLine(String report, String regex) {
+        Assert.assertTrue(report, Pattern.compile("^" + regex + "$", Pattern.MULTILINE).matcher(report).find());
+    }
+
+    private static String query(Session session, String sql) {
+        ResultInterface rs = session.prepareLocal(sql).executeQuery(0, false);
+        StringBuilder buff = new StringBuilder();
+        while (rs.next()) {
+            buff.append(rs.currentRow()[0].getString()).append('\n');
+        }
+        rs.close();
+        return buff.toString();
+    }
+
 }
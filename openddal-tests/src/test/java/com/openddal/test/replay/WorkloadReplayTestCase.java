@@ -0,0 +1,95 @@
+/*
+ * Copyright 2014-2016 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.openddal.test.replay;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.util.Properties;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.openddal.server.util.WorkloadCapture;
+import com.openddal.value.Value;
+import com.openddal.value.ValueInt;
+import com.openddal.value.ValueNull;
+import com.openddal.value.ValueString;
+
+public class WorkloadReplayTestCase {
+
+    private static final String URL = "jdbc:h2:mem:replay;DB_CLOSE_DELAY=-1";
+
+    @Test
+    public void testReplay() throws Exception {
+        File file = File.createTempFile("capture", ".bin");
+        file.deleteOnExit();
+        long t = System.currentTimeMillis() * 1000;
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        try {
+            WorkloadCapture.writeHeader(out);
+            WorkloadCapture.writeConnect(out, t, 1, "sa", null);
+            WorkloadCapture.writeStatement(out, t + 1000, 500000, 1, 0,
+                    "CREATE TABLE orders(id INT PRIMARY KEY, note VARCHAR(20))", null);
+            WorkloadCapture.writeConnect(out, t + 2000, 2, "sa", null);
+            WorkloadCapture.writeStatement(out, t + 3000, 200000, 2, 1146, "SELECT * FROM missing", null);
+            for (int i = 0; i < 10; i++) {
+                Value[] params = { ValueInt.get(i), i % 2 == 0 ? ValueString.get("n" + i) : ValueNull.INSTANCE };
+                WorkloadCapture.writeStatement(out, t + 5000 + i * 1000, 100000, 1, 0,
+                        "INSERT INTO orders VALUES(?, ?)", params);
+            }
+            WorkloadCapture.writeStatement(out, t + 20000, 100000, 2, 0, "SELECT COUNT(*) FROM DUAL", null);
+            WorkloadCapture.writeDisconnect(out, t + 21000, 2);
+            WorkloadCapture.writeStatement(out, t + 22000, 100000, 1, 0,
+                    "SELECT * FROM orders WHERE note IS NOT NULL", null);
+            WorkloadCapture.writeDisconnect(out, t + 23000, 1);
+        } finally {
+            out.close();
+        }
+
+        Properties info = new Properties();
+        info.setProperty("password", "");
+        WorkloadReplay.Report report = new WorkloadReplay(URL, info, 1).replay(file.getPath());
+        Assert.assertEquals(2, report.getConnectionCount());
+        Assert.assertEquals(14, report.getStatementCount());
+        // the error of the capture is replayed
+        Assert.assertEquals(1, report.getErrorCount());
+        Assert.assertEquals(0, report.getUnexpectedErrorCount());
+        Assert.assertEquals(0, report.getConnectErrorCount());
+        Assert.assertTrue(report.getLatency(50) > 0);
+        Assert.assertTrue(report.getLatency(100) >= report.getLatency(99));
+        Assert.assertEquals(500000, report.getCapturedLatency(100));
+        Assert.assertEquals(100000, report.getCapturedLatency(50));
+        // the pacing of the capture is kept
+        Assert.assertTrue(report.getReplayMillis() >= 22);
+
+        Connection conn = DriverManager.getConnection(URL, "sa", "");
+        try {
+            ResultSet rs = conn.createStatement().executeQuery("SELECT COUNT(*), COUNT(note) FROM orders");
+            rs.next();
+            Assert.assertEquals(10, rs.getInt(1));
+            Assert.assertEquals(5, rs.getInt(2));
+            conn.createStatement().execute("DROP TABLE orders");
+        } finally {
+            conn.close();
+        }
+    }
+
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2014-2016 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.openddal.test.repo;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.openddal.repo.ShardStatistics;
+import com.openddal.repo.ShardStatistics.ShardEntry;
+
+public class ShardStatisticsTestCase {
+
+    @Test
+    public void testCounters() {
+        ShardStatistics statistics = new ShardStatistics(60000);
+        ShardEntry shard1 = statistics.get("shard1");
+        Assert.assertSame(shard1, statistics.get("shard1"));
+        shard1.borrowed(TimeUnit.MILLISECONDS.toNanos(2), true);
+        shard1.queried(TimeUnit.MILLISECONDS.toNanos(10));
+        shard1.firstRow(TimeUnit.MILLISECONDS.toNanos(12));
+        shard1.fetched(TimeUnit.MILLISECONDS.toNanos(30), 100, 4096);
+        shard1.updated(TimeUnit.MILLISECONDS.toNanos(5), 3);
+        shard1.failed();
+        statistics.get("shard0").borrowed(TimeUnit.SECONDS.toNanos(1), false);
+
+        List<ShardEntry> shards = statistics.getShards();
+        Assert.assertEquals(2, shards.size());
+        Assert.assertEquals("shard0", shards.get(0).getShardName());
+        Assert.assertEquals(1, shards.get(0).getBorrowErrorCount());
+        Assert.assertEquals(1, shard1.getQueryCount());
+        Assert.assertEquals(1, shard1.getUpdateCount());
+        Assert.assertEquals(1, shard1.getErrorCount());
+        Assert.assertEquals(103, shard1.getRowCount());
+        Assert.assertEquals(4096, shard1.getByteCount());
+        assertBetween(10, 12.5, shard1.getExecuteTime(0.99));
+        assertBetween(30, 37.5, shard1.getFetchTime(0.5));
+    }
+
+    @Test
+    public void testRollingWindow() throws Exception {
+        ShardStatistics statistics = new ShardStatistics(20);
+        ShardEntry shard = statistics.get("shard0");
+        shard.queried(TimeUnit.SECONDS.toNanos(1));
+        Thread.sleep(30);
+        // the previous window is still reported
+        shard.queried(TimeUnit.MILLISECONDS.toNanos(1));
+        assertBetween(1000, 1250, shard.getExecuteTime(1));
+        Thread.sleep(60);
+        Assert.assertEquals(0, shard.getExecuteTime(1), 0);
+        Assert.assertEquals(2, shard.getQueryCount());
+    }
+
+    private static void assertBetween(double min, double max, double value) {
+        Assert.assertTrue(value + " not in [" + min + ", " + max + "]", value >= min && value <= max);
+    }
+
+}
@@ -0,0 +1,382 @@
+/*
+ * Copyright 2014-2016 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.openddal.test.route;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.openddal.engine.Session;
+import com.openddal.engine.SessionFactory;
+import com.openddal.engine.SessionFactoryBuilder;
+import com.openddal.message.DbException;
+import com.openddal.message.ErrorCode;
+import com.openddal.result.ResultInterface;
+import com.openddal.route.algorithm.HashBucketPartitioner;
+import com.openddal.util.New;
+import com.openddal.value.ValueLong;
+
+/**
+ * The move of the buckets 0-255 of orders from shard0 to the idle node of
+ * shard2 on three in-process H2 shards, while the rows are written.
+ */
+public class BucketMigrationTestCase {
+
+    private static final int SHARDS = 3;
+    private static final int ROWS = 2000;
+
+    private final HashBucketPartitioner partitioner = new HashBucketPartitioner();
+    private SessionFactory factory;
+    private Session session;
+
+    @Before
+    public void setUp() throws SQLException {
+        for (int i = 0; i < SHARDS; i++) {
+            Connection conn = getShardConnection(i);
+            try {
+                Statement stat = conn.createStatement();
+                stat.execute("DROP TABLE IF EXISTS DDAL_BUCKET_MAP");
+                stat.execute("DROP TABLE IF EXISTS orders_01");
+                stat.execute("CREATE TABLE orders_01(id BIGINT PRIMARY KEY, amount INT)");
+                stat.close();
+            } finally {
+                conn.close();
+            }
+        }
+        factory = SessionFactoryBuilder.newBuilder().fromXml("config/bucket-migration.xml").build();
+        session = (Session) factory.createSession(new Properties());
+        for (int id = 1; id <= ROWS; id += 100) {
+            StringBuilder sql = new StringBuilder("INSERT INTO orders VALUES");
+            for (int i = id; i < id + 100; i++) {
+                sql.append(i == id ? "" : ",").append('(').append(i).append(", 0)");
+            }
+            update(session, sql.toString());
+        }
+    }
+
+    @After
+    public void tearDown() {
+        close(session);
+    }
+
+    @Test
+    public void testMoveWhileWriting() throws Exception {
+        Writer[] writers = { new Writer(1, false), new Writer(2, true) };
+        for (Writer w : writers) {
+            w.start();
+        }
+        Thread.sleep(100);
+        String status = moveBuckets();
+        Thread.sleep(100);
+        for (Writer w : writers) {
+            w.stop = true;
+            w.join();
+            if (w.error != null) {
+                throw new AssertionError(w.error);
+            }
+        }
+        Assert.assertTrue(status, status.contains(": DONE"));
+
+        Map<Long, Integer> expected = New.hashMap();
+        for (Writer w : writers) {
+            expected.putAll(w.rows);
+        }
+        Assert.assertEquals(expected, readRows(session));
+        Map<Long, Integer> shard0 = readShardRows(0);
+        Map<Long, Integer> shard2 = readShardRows(2);
+        Assert.assertFalse(shard2.isEmpty());
+        for (Long id : shard0.keySet()) {
+            Assert.assertTrue("not purged " + id, bucket(id) > 255);
+        }
+        for (Long id : shard2.keySet()) {
+            Assert.assertTrue("not moved " + id, bucket(id) <= 255);
+        }
+
+        // another proxy routes the moved buckets to shard2 too
+        Long moved = shard2.keySet().iterator().next();
+        SessionFactory other = SessionFactoryBuilder.newBuilder().fromXml("config/bucket-migration.xml").build();
+        Session otherSession = (Session) other.createSession(new Properties());
+        try {
+            Assert.assertEquals(expected, readRows(otherSession));
+            String plan = query(otherSession, "EXPLAIN SELECT amount FROM orders WHERE id = " + moved);
+            Assert.assertTrue(plan, plan.contains("shard2"));
+            Assert.assertEquals(1, update(otherSession, "UPDATE orders SET amount = -1 WHERE id = " + moved));
+            Assert.assertEquals(Integer.valueOf(-1), readShardRows(2).get(moved));
+        } finally {
+            close(otherSession);
+        }
+    }
+
+    @Test
+    public void testCountWhileMoving() throws Exception {
+        Counter counter = new Counter();
+        counter.start();
+        Thread.sleep(50);
+        String status = moveBuckets();
+        Thread.sleep(50);
+        counter.stop = true;
+        counter.join();
+        if (counter.error != null) {
+            throw new AssertionError(counter.error);
+        }
+        Assert.assertTrue(status, status.contains(": DONE"));
+        Assert.assertTrue(counter.counts > 0);
+        Assert.assertEquals(ROWS, readRows(session).size());
+    }
+
+    @Test
+    public void testResumePurge() throws Exception {
+        String status = moveBuckets();
+        Assert.assertTrue(status, status.contains(": DONE"));
+        Map<Long, Integer> expected = readRows(session);
+        // the proxy stopped after the switched map was stored, before the
+        // purge of shard0 was committed
+        Map<Long, Integer> moved = readShardRows(2);
+        Connection conn = getShardConnection(0);
+        try {
+            Statement stat = conn.createStatement();
+            for (Map.Entry<Long, Integer> e : moved.entrySet()) {
+                stat.executeUpdate("INSERT INTO orders_01 VALUES(" + e.getKey() + ", " + e.getValue() + ")");
+            }
+            stat.executeUpdate("UPDATE DDAL_BUCKET_MAP SET PURGE = '0:0-255'");
+            stat.close();
+        } finally {
+            conn.close();
+        }
+        SessionFactory other = SessionFactoryBuilder.newBuilder().fromXml("config/bucket-migration.xml").build();
+        Session otherSession = (Session) other.createSession(new Properties());
+        try {
+            Assert.assertEquals(expected, readRows(otherSession));
+            Assert.assertEquals(String.valueOf(ROWS), query(otherSession, "SELECT COUNT(*) FROM orders").trim());
+        } finally {
+            close(otherSession);
+        }
+        for (Long id : readShardRows(0).keySet()) {
+            Assert.assertTrue("not purged " + id, bucket(id) > 255);
+        }
+        Assert.assertEquals(moved, readShardRows(2));
+        conn = getShardConnection(0);
+        try {
+            ResultSet rs = conn.createStatement().executeQuery("SELECT PURGE FROM DDAL_BUCKET_MAP");
+            Assert.assertTrue(rs.next());
+            Assert.assertNull(rs.getString(1));
+        } finally {
+            conn.close();
+        }
+    }
+
+    @Test
+    public void testConfigChanged() throws Exception {
+        String status = moveBuckets();
+        Assert.assertTrue(status, status.contains(": DONE"));
+        Connection conn = getShardConnection(0);
+        try {
+            conn.createStatement().executeUpdate("UPDATE DDAL_BUCKET_MAP SET CONFIG_BUCKETS = '0-1023:0'");
+        } finally {
+            conn.close();
+        }
+        try {
+            SessionFactoryBuilder.newBuilder().fromXml("config/bucket-migration.xml").build();
+            Assert.fail("the bucket map does not match the configuration");
+        } catch (DbException e) {
+            Assert.assertEquals(ErrorCode.INVALID_ENGINE_CONFIG_1, e.getErrorCode());
+        }
+    }
+
+    @Test
+    public void testTargetNotEmpty() throws Exception {
+        // a row of a bucket not moved, for example moved there before
+        long other = 1;
+        while (bucket(other) <= 255) {
+            other++;
+        }
+        Connection conn = getShardConnection(2);
+        try {
+            conn.createStatement().executeUpdate("INSERT INTO orders_01 VALUES(" + other + ", 7)");
+        } finally {
+            conn.close();
+        }
+        String status = moveBuckets();
+        Assert.assertTrue(status, status.contains(": FAILED"));
+        Assert.assertEquals(Integer.valueOf(7), readShardRows(2).get(other));
+        Assert.assertEquals(ROWS, readRows(session).size());
+    }
+
+    private String moveBuckets() throws InterruptedException {
+        query(session, "SELECT MOVE_BUCKETS('orders', 0, 255, 'shard2')");
+        long timeout = System.currentTimeMillis() + 60000;
+        while (true) {
+            String status = query(session, "SELECT BUCKET_MIGRATION('orders')");
+            if (status.contains(": DONE") || status.contains(": FAILED")
+                    || System.currentTimeMillis() > timeout) {
+                return status;
+            }
+            Thread.sleep(20);
+        }
+    }
+
+    private int bucket(long id) {
+        return partitioner.bucket(ValueLong.get(id));
+    }
+
+    private static int update(Session session, String sql) {
+        return session.prepareLocal(sql).executeUpdate();
+    }
+
+    private static String query(Session session, String sql) {
+        ResultInterface rs = session.prepareLocal(sql).executeQuery(0, false);
+        StringBuilder buff = new StringBuilder();
+        while (rs.next()) {
+            buff.append(rs.currentRow()[0].getString()).append('\n');
+        }
+        rs.close();
+        return buff.toString();
+    }
+
+    private static Map<Long, Integer> readRows(Session session) {
+        ResultInterface rs = session.prepareLocal("SELECT id, amount FROM orders").executeQuery(0, false);
+        Map<Long, Integer> rows = New.hashMap();
+        while (rs.next()) {
+            Long id = rs.currentRow()[0].getLong();
+            Assert.assertNull("duplicate row " + id, rows.put(id, rs.currentRow()[1].getInt()));
+        }
+        rs.close();
+        return rows;
+    }
+
+    private static Map<Long, Integer> readShardRows(int shard) throws SQLException {
+        Map<Long, Integer> rows = New.hashMap();
+        Connection conn = getShardConnection(shard);
+        try {
+            ResultSet rs = conn.createStatement().executeQuery("SELECT id, amount FROM orders_01");
+            while (rs.next()) {
+                rows.put(rs.getLong(1), rs.getInt(2));
+            }
+        } finally {
+            conn.close();
+        }
+        return rows;
+    }
+
+    private static void close(Session session) {
+        session.close();
+        session.getDatabase().close();
+    }
+
+    private static Connection getShardConnection(int shard) throws SQLException {
+        return DriverManager.getConnection("jdbc:h2:mem:bm_shard" + shard + ";MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", "");
+    }
+
+    /**
+     * Counts the rows of the table, the count never changes as no row is
+     * written.
+     */
+    private class Counter extends Thread {
+
+        private volatile boolean stop;
+        private int counts;
+        private Throwable error;
+
+        @Override
+        public void run() {
+            Session s = (Session) factory.createSession(new Properties());
+            try {
+                while (!stop) {
+                    Assert.assertEquals(String.valueOf(ROWS), query(s, "SELECT COUNT(*) FROM orders").trim());
+                    counts++;
+                }
+            } catch (Throwable e) {
+                error = e;
+            } finally {
+                s.close();
+            }
+        }
+    }
+
+    /**
+     * Inserts, updates and deletes its own rows, in transactions of three
+     * statements or one by one, and keeps the rows it expects.
+     */
+    private class Writer extends Thread {
+
+        private final int number;
+        private final boolean transactions;
+        private final Map<Long, Integer> rows = New.hashMap();
+        private volatile boolean stop;
+        private Throwable error;
+
+        Writer(int number, boolean transactions) {
+            this.number = number;
+            this.transactions = transactions;
+            for (long id = number; id <= ROWS; id += 2) {
+                rows.put(id, 0);
+            }
+        }
+
+        @Override
+        public void run() {
+            Session s = (Session) factory.createSession(new Properties());
+            Random random = new Random(number);
+            long nextId = number * 100000L;
+            try {
+                while (!stop) {
+                    Map<Long, Integer> changes = New.hashMap();
+                    s.setAutoCommit(!transactions);
+                    update(s, "INSERT INTO orders VALUES(" + nextId + ", 1)");
+                    changes.put(nextId++, 1);
+                    long id = number + 2 * random.nextInt(ROWS / 2);
+                    Integer amount = rows.get(id);
+                    int newAmount = amount == null ? 1 : amount + 1;
+                    // the proxy evaluates the new values itself
+                    update(s, "UPDATE orders SET amount = " + newAmount + " WHERE id = " + id);
+                    if (amount != null) {
+                        changes.put(id, newAmount);
+                    }
+                    id = number + 2 * random.nextInt(ROWS / 2);
+                    if (random.nextInt(5) == 0 && !changes.containsKey(id)) {
+                        update(s, "DELETE FROM orders WHERE id = " + id);
+                        changes.put(id, null);
+                    }
+                    if (transactions) {
+                        s.commit();
+                    }
+                    for (Map.Entry<Long, Integer> e : changes.entrySet()) {
+                        if (e.getValue() == null) {
+                            rows.remove(e.getKey());
+                        } else {
+                            rows.put(e.getKey(), e.getValue());
+                        }
+                    }
+                }
+            } catch (Throwable e) {
+                error = e;
+            } finally {
+                s.close();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2014-2016 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.openddal.test.route;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.openddal.message.DbException;
+import com.openddal.route.algorithm.BucketMigration;
+import com.openddal.route.algorithm.HashBucketPartitioner;
+import com.openddal.route.algorithm.PartitionUtil;
+import com.openddal.route.rule.ObjectNode;
+import com.openddal.util.MurmurHash;
+import com.openddal.util.StringUtils;
+import com.openddal.value.ValueInt;
+import com.openddal.value.ValueLong;
+import com.openddal.value.ValueString;
+
+/**
+ * The primitive hashing of the routing fast path must place every value on
+ * the same node as the byte array hashing did.
+ */
+public class HashBucketPartitionerTestCase {
+
+    @Test
+    public void testHashLongCompatible() {
+        Random random = new Random(1);
+        for (int i = 0; i < 10000; i++) {
+            long v = i < 100 ? i - 50 : random.nextLong();
+            byte[] bytes = ValueLong.get(v).getBytes();
+            Assert.assertEquals(MurmurHash.hash64(bytes, bytes.length), MurmurHash.hash64(v));
+        }
+    }
+
+    @Test
+    public void testHashStringCompatible() {
+        Random random = new Random(1);
+        for (int i = 0; i < 1000; i++) {
+            char[] chars = new char[i % 37];
+            for (int j = 0; j < chars.length; j++) {
+                chars[j] = (char) (' ' + random.nextInt(95));
+            }
+            String s = new String(chars);
+            byte[] bytes = s.getBytes();
+            Assert.assertEquals(MurmurHash.hash64(bytes, bytes.length), MurmurHash.hash64(s));
+        }
+        String s = "马云-ddal";
+        byte[] bytes = s.getBytes();
+        Assert.assertEquals(MurmurHash.hash64(bytes, bytes.length), MurmurHash.hash64(s));
+    }
+
+    @Test
+    public void testPartition() {
+        ObjectNode[] nodes = new ObjectNode[8];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = new ObjectNode("shard" + i, "customers");
+        }
+        HashBucketPartitioner partitioner = new HashBucketPartitioner();
+        partitioner.setPartitionCount("8");
+        partitioner.setPartitionLength("128");
+        partitioner.initialize(nodes);
+        PartitionUtil util = new PartitionUtil(1024, new int[] { 8 }, new int[] { 128 });
+        for (int i = 0; i < 1000; i++) {
+            byte[] bytes = ValueLong.get(i).getBytes();
+            int expected = util.partition(MurmurHash.hash64(bytes, bytes.length));
+            Assert.assertEquals(expected, partitioner.partition(ValueInt.get(i)).intValue());
+            Assert.assertEquals(expected, partitioner.partition(ValueLong.get(i)).intValue());
+            // the strings are hashed by the bytes of the hex digits
+            String s = StringUtils.convertBytesToHex(bytes);
+            bytes = StringUtils.convertHexToBytes(s);
+            expected = util.partition(MurmurHash.hash64(bytes, bytes.length));
+            Assert.assertEquals(expected, partitioner.partition(ValueString.get(s)).intValue());
+        }
+        try {
+            partitioner.partition(ValueString.get("customer-1"));
+            Assert.fail("not a hex string");
+        } catch (DbException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testPartitionStringChars() {
+        ObjectNode[] nodes = new ObjectNode[8];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = new ObjectNode("shard" + i, "customers");
+        }
+        HashBucketPartitioner partitioner = new HashBucketPartitioner();
+        partitioner.setPartitionCount("8");
+        partitioner.setPartitionLength("128");
+        partitioner.setHashStringChars(true);
+        partitioner.initialize(nodes);
+        PartitionUtil util = new PartitionUtil(1024, new int[] { 8 }, new int[] { 128 });
+        for (int i = 0; i < 1000; i++) {
+            String s = "customer-" + i;
+            byte[] bytes = s.getBytes();
+            int expected = util.partition(MurmurHash.hash64(bytes, bytes.length));
+            Assert.assertEquals(expected, partitioner.partition(ValueString.get(s)).intValue());
+        }
+    }
+
+    @Test
+    public void testMigration() {
+        ObjectNode[] nodes = new ObjectNode[9];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = new ObjectNode("shard" + i, "customers");
+        }
+        HashBucketPartitioner partitioner = new HashBucketPartitioner();
+        partitioner.setPartitionCount("8");
+        partitioner.setPartitionLength("128");
+        partitioner.initialize(nodes);
+        Assert.assertTrue(partitioner.isIdle(8));
+        Assert.assertFalse(partitioner.isIdle(0));
+        try {
+            partitioner.beginMigration(0, 255, 8);
+            Assert.fail("the buckets are owned by two nodes");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            partitioner.beginMigration(0, 63, 1);
+            Assert.fail("the target node owns buckets");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+
+        BucketMigration m = partitioner.beginMigration(0, 63, 8);
+        Assert.assertEquals(0, m.getSourceNode());
+        Assert.assertTrue(m.isMirroring());
+        try {
+            partitioner.beginMigration(64, 127, 8);
+            Assert.fail("another migration is in progress");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        int[] before = new int[1000];
+        for (int i = 0; i < before.length; i++) {
+            before[i] = partitioner.partition(ValueLong.get(i));
+        }
+        try {
+            partitioner.switchMigration(m);
+            Assert.fail("the buckets are not purged from the source node");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        partitioner.beginSwitch(m);
+        Assert.assertEquals(BucketMigration.PURGING, m.getState());
+        Assert.assertTrue(m.isMirroring());
+        Assert.assertTrue(HashBucketPartitioner.getSwitching().contains(partitioner));
+        partitioner.switchMigration(m);
+        partitioner.endSwitch();
+        Assert.assertTrue(HashBucketPartitioner.getSwitching().isEmpty());
+        Assert.assertFalse(m.isMirroring());
+        Assert.assertFalse(partitioner.isIdle(8));
+        for (int i = 0; i < before.length; i++) {
+            ValueLong v = ValueLong.get(i);
+            int expected = m.contains(partitioner.bucket(v)) ? 8 : before[i];
+            Assert.assertEquals(expected, partitioner.partition(v).intValue());
+        }
+        partitioner.endMigration(m, null);
+        Assert.assertEquals(BucketMigration.DONE, m.getState());
+        Assert.assertNull(partitioner.getMigration());
+        Assert.assertSame(m, partitioner.getLastMigration());
+    }
+
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2014-2016 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.openddal.test.route;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.openddal.route.rule.ObjectNode;
+import com.openddal.route.rule.PartitionHints;
+
+public class PartitionHintsTestCase {
+
+    @Test
+    public void testParse() {
+        Assert.assertNull(PartitionHints.parse("select * from orders where order_id = 1"));
+        Assert.assertNull(PartitionHints.parse("select /* ddal(shard=shard0) */ * from orders"));
+        Assert.assertNull(PartitionHints.parse("select /*+ index(orders) */ * from orders"));
+
+        PartitionHints hints = PartitionHints
+                .parse("select /*+ ddal(shard=shard1, node='orders_02', readonly=true) */ * from orders");
+        Assert.assertEquals("shard1", hints.getShard());
+        Assert.assertEquals("orders_02", hints.getNode());
+        Assert.assertTrue(hints.isReadOnly());
+        Assert.assertTrue(hints.isPinned());
+
+        hints = PartitionHints.parse("/*+DDAL(readonly=true)*/ select * from orders");
+        Assert.assertTrue(hints.isReadOnly());
+        Assert.assertFalse(hints.isPinned());
+    }
+
+    @Test
+    public void testParseQuoted() {
+        Assert.assertNull(PartitionHints.parse("insert into notes values(1, '/*+ ddal(shard=shard0) */')"));
+        Assert.assertNull(PartitionHints.parse("insert into notes values(1, 'it''s /*+ ddal(x=1) */')"));
+        Assert.assertNull(PartitionHints.parse("insert into notes values(1, 'it\\'s /*+ ddal(x=1) */')"));
+        Assert.assertNull(PartitionHints.parse("select \"/*+ ddal(shard=shard0) */\" from dual"));
+        Assert.assertNull(PartitionHints.parse("select 1 -- /*+ ddal(shard=shard0) */"));
+
+        PartitionHints hints = PartitionHints
+                .parse("insert /*+ ddal(shard=shard2) */ into notes values(1, '/*+ ddal(shard=shard0) */')");
+        Assert.assertEquals("shard2", hints.getShard());
+        hints = PartitionHints.parse("update notes set note = 'a''b' /*+ ddal(node=notes_01) */ where id = 1");
+        Assert.assertEquals("notes_01", hints.getNode());
+    }
+
+    @Test
+    public void testSelect() {
+        ObjectNode[] nodes = new ObjectNode[8];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = new ObjectNode("shard" + (i / 2), "orders", "_0" + (i % 2 + 1));
+        }
+        List<ObjectNode> selected = PartitionHints.parse("/*+ ddal(shard=shard1) */").select(nodes);
+        Assert.assertEquals(2, selected.size());
+        Assert.assertEquals("shard1", selected.get(0).getShardName());
+
+        selected = PartitionHints.parse("/*+ ddal(shard=shard1, node=orders_02) */").select(nodes);
+        Assert.assertEquals(1, selected.size());
+        Assert.assertEquals(nodes[3], selected.get(0));
+
+        selected = PartitionHints.parse("/*+ ddal(node=_01) */").select(nodes);
+        Assert.assertEquals(4, selected.size());
+    }
+
+}
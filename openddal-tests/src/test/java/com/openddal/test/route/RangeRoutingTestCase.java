@@ -0,0 +1,122 @@
+/*
+ * Copyright 2014-2016 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.openddal.test.route;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.openddal.route.algorithm.CommonPartitioner;
+import com.openddal.route.algorithm.RangePartitioner;
+import com.openddal.route.algorithm.RollingPartitioner;
+import com.openddal.route.rule.ObjectNode;
+import com.openddal.value.Value;
+import com.openddal.value.ValueDate;
+import com.openddal.value.ValueLong;
+
+/**
+ * The range routing must return exactly the nodes the values of the range
+ * are partitioned to.
+ */
+public class RangeRoutingTestCase {
+
+    @Test
+    public void testRangePartitioner() {
+        RangePartitioner partitioner = new RangePartitioner();
+        partitioner.setPartitionCount("4");
+        partitioner.setPartitionLength("256");
+        partitioner.initialize(nodes(4));
+        assertRange(partitioner, 1, 100);
+        assertRange(partitioner, 200, 600);
+        assertRange(partitioner, 1000, 1100);
+        assertRange(partitioner, 1500, 2100);
+        Assert.assertEquals(4, partitioner.partition(ValueLong.get(1), ValueLong.get(1000000)).length);
+        Assert.assertEquals(0, partitioner.partition(ValueLong.get(10), ValueLong.get(1)).length);
+    }
+
+    @Test
+    public void testRollingPartitionerByNumber() {
+        RollingPartitioner partitioner = new RollingPartitioner();
+        partitioner.setStartBy("0");
+        partitioner.setRollingBy("1000000");
+        partitioner.initialize(nodes(8));
+        assertRange(partitioner, 1, 1000000);
+        assertRange(partitioner, 2500000, 4000000);
+        Assert.assertEquals(Arrays.asList(7),
+                Arrays.asList(partitioner.partition(ValueLong.get(7000000), ValueLong.get(90000000))));
+    }
+
+    @Test
+    public void testRollingPartitionerByDate() {
+        RollingPartitioner partitioner = new RollingPartitioner();
+        partitioner.setRollingBy("day");
+        partitioner.initialize(nodes(31));
+        assertDateRange(partitioner, "2016-01-03", "2016-01-09");
+        assertDateRange(partitioner, "2016-01-28", "2016-02-02");
+        assertDateRange(partitioner, "2016-03-20", "2016-04-02");
+        // crosses February, two month boundaries in less than 31 days
+        assertDateRange(partitioner, "2016-01-31", "2016-03-01");
+        assertDateRange(partitioner, "2015-01-31", "2015-03-01");
+        assertDateRange(partitioner, "2016-02-28", "2016-04-01");
+        assertDateRange(partitioner, "2016-02-01", "2016-03-01");
+        Assert.assertEquals(31, partitioner.partition(date("2016-01-01"), date("2016-03-01")).length);
+
+        partitioner = new RollingPartitioner();
+        partitioner.setRollingBy("month");
+        partitioner.initialize(nodes(12));
+        assertDateRange(partitioner, "2016-01-03", "2016-02-09");
+        assertDateRange(partitioner, "2016-11-28", "2017-02-02");
+        Assert.assertEquals(12, partitioner.partition(date("2016-01-01"), date("2017-01-01")).length);
+    }
+
+    private static void assertRange(CommonPartitioner partitioner, long begin, long end) {
+        Set<Integer> expected = new TreeSet<Integer>();
+        for (long i = begin; i <= end; i++) {
+            expected.add(partitioner.partition(ValueLong.get(i)));
+        }
+        Integer[] actual = partitioner.partition(ValueLong.get(begin), ValueLong.get(end));
+        Assert.assertEquals(expected, new TreeSet<Integer>(Arrays.asList(actual)));
+    }
+
+    private static void assertDateRange(CommonPartitioner partitioner, String begin, String end) {
+        Set<Integer> expected = new TreeSet<Integer>();
+        Value beginValue = date(begin);
+        Value endValue = date(end);
+        long time = beginValue.getDate().getTime();
+        while (time <= endValue.getDate().getTime()) {
+            expected.add(partitioner.partition(ValueDate.get(new java.sql.Date(time))));
+            time += 24 * 60 * 60 * 1000L;
+        }
+        Integer[] actual = partitioner.partition(beginValue, endValue);
+        Assert.assertEquals(expected, new TreeSet<Integer>(Arrays.asList(actual)));
+    }
+
+    private static Value date(String s) {
+        return ValueDate.parse(s);
+    }
+
+    private static ObjectNode[] nodes(int count) {
+        ObjectNode[] nodes = new ObjectNode[count];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = new ObjectNode("shard" + i, "orders", "_" + i);
+        }
+        return nodes;
+    }
+
+}
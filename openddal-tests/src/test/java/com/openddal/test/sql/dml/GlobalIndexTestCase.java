@@ -0,0 +1,279 @@
+/*
+ * Copyright 2014-2016 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.openddal.test.sql.dml;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.openddal.engine.Session;
+import com.openddal.engine.SessionFactory;
+import com.openddal.engine.SessionFactoryBuilder;
+import com.openddal.message.DbException;
+import com.openddal.message.ErrorCode;
+import com.openddal.result.ResultInterface;
+import com.openddal.util.New;
+
+/**
+ * The global index of customers(email) on four in-process H2 shards: the
+ * index entries written by INSERT, UPDATE and DELETE, and the routing of the
+ * lookups by the index column.
+ */
+public class GlobalIndexTestCase {
+
+    private static final int SHARDS = 4;
+
+    private static SessionFactory factory;
+    private Session session;
+
+    @BeforeClass
+    public static void createShards() throws SQLException {
+        for (int i = 0; i < SHARDS; i++) {
+            Connection conn = getShardConnection(i);
+            try {
+                Statement stat = conn.createStatement();
+                stat.execute("DROP TABLE IF EXISTS customers_01");
+                stat.execute("CREATE TABLE customers_01(id BIGINT PRIMARY KEY, email VARCHAR(64), name VARCHAR(64))");
+                stat.execute("DROP TABLE IF EXISTS customers_email_idx_01");
+                stat.execute("CREATE TABLE customers_email_idx_01(email VARCHAR(64), id BIGINT, "
+                        + "PRIMARY KEY(email, id))");
+                stat.close();
+            } finally {
+                conn.close();
+            }
+        }
+        factory = SessionFactoryBuilder.newBuilder().fromXml("config/global-index.xml").build();
+    }
+
+    @AfterClass
+    public static void close() {
+        Session session = (Session) factory.createSession(new Properties());
+        session.close();
+        session.getDatabase().close();
+    }
+
+    @Before
+    public void setUp() throws SQLException {
+        for (int i = 0; i < SHARDS; i++) {
+            Connection conn = getShardConnection(i);
+            try {
+                Statement stat = conn.createStatement();
+                stat.execute("DELETE FROM customers_01");
+                stat.execute("DELETE FROM customers_email_idx_01");
+                stat.close();
+            } finally {
+                conn.close();
+            }
+        }
+        session = (Session) factory.createSession(new Properties());
+        for (int id = 1; id <= 20; id++) {
+            update("INSERT INTO customers VALUES(" + id + ", 'c" + id + "@openddal.com', 'name" + id + "')");
+        }
+        update("INSERT INTO customers VALUES(21, NULL, 'no email')");
+    }
+
+    @Test
+    public void testInsert() throws SQLException {
+        Map<String, Long> entries = readIndexEntries();
+        // no entry for the null email
+        Assert.assertEquals(20, entries.size());
+        for (long id = 1; id <= 20; id++) {
+            Assert.assertEquals(Long.valueOf(id), entries.get("c" + id + "@openddal.com"));
+        }
+        update("INSERT INTO customers VALUES(22, 'c22@openddal.com', 'a'), (23, 'c23@openddal.com', 'b')");
+        entries = readIndexEntries();
+        Assert.assertEquals(Long.valueOf(22), entries.get("c22@openddal.com"));
+        Assert.assertEquals(Long.valueOf(23), entries.get("c23@openddal.com"));
+    }
+
+    @Test
+    public void testLookup() {
+        String sql = "SELECT id, name FROM customers WHERE email = 'c7@openddal.com'";
+        List<String> rows = query(sql);
+        Assert.assertEquals(1, rows.size());
+        Assert.assertEquals("7,name7", rows.get(0));
+        // one index query and one node query instead of the four nodes
+        Assert.assertEquals(1, countNodes(explain(sql)));
+
+        sql = "SELECT id FROM customers WHERE email IN('c3@openddal.com', 'c12@openddal.com') ORDER BY id";
+        rows = query(sql);
+        Assert.assertEquals(2, rows.size());
+        Assert.assertEquals("3", rows.get(0));
+        Assert.assertEquals("12", rows.get(1));
+        Assert.assertTrue(countNodes(explain(sql)) <= 2);
+
+        // a scan is not routed by the index
+        Assert.assertEquals(SHARDS, countNodes(explain("SELECT id FROM customers WHERE email LIKE 'c1%'")));
+    }
+
+    @Test
+    public void testLookupNotFound() {
+        String sql = "SELECT id FROM customers WHERE email = 'nobody@openddal.com'";
+        Assert.assertEquals(0, query(sql).size());
+        Assert.assertEquals(1, countNodes(explain(sql)));
+        Assert.assertEquals(0, update("UPDATE customers SET name = 'x' WHERE email = 'nobody@openddal.com'"));
+        Assert.assertEquals(0, update("DELETE FROM customers WHERE email = 'nobody@openddal.com'"));
+    }
+
+    @Test
+    public void testUpdate() throws SQLException {
+        Assert.assertEquals(1, update("UPDATE customers SET email = 'new5@openddal.com' WHERE id = 5"));
+        Map<String, Long> entries = readIndexEntries();
+        Assert.assertNull(entries.get("c5@openddal.com"));
+        Assert.assertEquals(Long.valueOf(5), entries.get("new5@openddal.com"));
+        Assert.assertEquals(0, query("SELECT id FROM customers WHERE email = 'c5@openddal.com'").size());
+        Assert.assertEquals("5", query("SELECT id FROM customers WHERE email = 'new5@openddal.com'").get(0));
+
+        // by the index column itself, and to null
+        Assert.assertEquals(1, update("UPDATE customers SET email = NULL WHERE email = 'c6@openddal.com'"));
+        entries = readIndexEntries();
+        Assert.assertNull(entries.get("c6@openddal.com"));
+        Assert.assertEquals(19, entries.size());
+
+        // the entries are kept when the index column is not updated
+        Assert.assertEquals(20, update("UPDATE customers SET name = 'renamed' WHERE id <= 20"));
+        Assert.assertEquals(entries, readIndexEntries());
+    }
+
+    @Test
+    public void testUpdateShardingKey() throws SQLException {
+        Map<String, Long> entries = readIndexEntries();
+        try {
+            update("UPDATE customers SET id = 100 WHERE email = 'c8@openddal.com'");
+            Assert.fail("the sharding key can not be updated");
+        } catch (DbException e) {
+            Assert.assertEquals(ErrorCode.SHARDING_COLUMNS_CANNOT_BE_MODIFIED, e.getErrorCode());
+        }
+        try {
+            update("UPDATE customers SET id = 100, email = 'c100@openddal.com' WHERE id = 8");
+            Assert.fail("the sharding key can not be updated");
+        } catch (DbException e) {
+            Assert.assertEquals(ErrorCode.SHARDING_COLUMNS_CANNOT_BE_MODIFIED, e.getErrorCode());
+        }
+        Assert.assertEquals(entries, readIndexEntries());
+        Assert.assertEquals("8", query("SELECT id FROM customers WHERE email = 'c8@openddal.com'").get(0));
+    }
+
+    @Test
+    public void testDelete() throws SQLException {
+        Assert.assertEquals(1, update("DELETE FROM customers WHERE id = 9"));
+        Assert.assertEquals(2, update("DELETE FROM customers WHERE email IN('c10@openddal.com', 'c11@openddal.com')"));
+        Map<String, Long> entries = readIndexEntries();
+        Assert.assertEquals(17, entries.size());
+        Assert.assertNull(entries.get("c9@openddal.com"));
+        Assert.assertNull(entries.get("c10@openddal.com"));
+        Assert.assertNull(entries.get("c11@openddal.com"));
+        Assert.assertEquals(0, query("SELECT id FROM customers WHERE email = 'c9@openddal.com'").size());
+    }
+
+    @Test
+    public void testRejected() throws SQLException {
+        assertUnsupported("REPLACE INTO customers VALUES(1, 'other@openddal.com', 'x')");
+        assertUnsupported("MERGE INTO customers KEY(id) VALUES(1, 'other@openddal.com', 'x')");
+        assertUnsupported("INSERT INTO customers VALUES(1, 'other@openddal.com', 'x') "
+                + "ON DUPLICATE KEY UPDATE email = 'other@openddal.com'");
+        assertUnsupported("DELETE FROM customers WHERE name = 'name1' LIMIT 1");
+        Assert.assertEquals(Long.valueOf(1), readIndexEntries().get("c1@openddal.com"));
+    }
+
+    private void assertUnsupported(String sql) {
+        try {
+            update(sql);
+            Assert.fail(sql);
+        } catch (DbException e) {
+            Assert.assertEquals(sql, ErrorCode.FEATURE_NOT_SUPPORTED_1, e.getErrorCode());
+        }
+    }
+
+    private int update(String sql) {
+        return session.prepareLocal(sql).executeUpdate();
+    }
+
+    private List<String> query(String sql) {
+        ResultInterface rs = session.prepareLocal(sql).executeQuery(0, false);
+        List<String> rows = New.arrayList();
+        while (rs.next()) {
+            StringBuilder buff = new StringBuilder();
+            for (int i = 0; i < rs.getVisibleColumnCount(); i++) {
+                if (i > 0) {
+                    buff.append(',');
+                }
+                buff.append(rs.currentRow()[i].getString());
+            }
+            rows.add(buff.toString());
+        }
+        rs.close();
+        return rows;
+    }
+
+    private String explain(String sql) {
+        StringBuilder buff = new StringBuilder();
+        for (String row : query("EXPLAIN " + sql)) {
+            buff.append(row).append('\n');
+        }
+        return buff.toString();
+    }
+
+    /**
+     * Count the customers table nodes the plan executes on.
+     */
+    private static int countNodes(String plan) {
+        int count = 0;
+        for (String line : plan.split("\n")) {
+            if (line.contains("execute on ") && line.contains("CUSTOMERS_01")) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Read the index entries of all the shards.
+     *
+     * @return the customer id by email
+     */
+    private static Map<String, Long> readIndexEntries() throws SQLException {
+        Map<String, Long> entries = New.hashMap();
+        for (int i = 0; i < SHARDS; i++) {
+            Connection conn = getShardConnection(i);
+            try {
+                ResultSet rs = conn.createStatement().executeQuery("SELECT email, id FROM customers_email_idx_01");
+                while (rs.next()) {
+                    Assert.assertNull("duplicate entry", entries.put(rs.getString(1), rs.getLong(2)));
+                }
+            } finally {
+                conn.close();
+            }
+        }
+        return entries;
+    }
+
+    private static Connection getShardConnection(int shard) throws SQLException {
+        return DriverManager.getConnection("jdbc:h2:mem:gi_shard" + shard + ";MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", "");
+    }
+
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2014-2016 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.openddal.test.sql.dml;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.openddal.engine.QueryStatisticsData;
+import com.openddal.engine.QueryStatisticsData.QueryEntry;
+
+public class QueryStatisticsTestCase {
+
+    @Test
+    public void testDigest() {
+        Assert.assertEquals("select * from orders where order_id = ? and name like ?",
+                QueryStatisticsData.getDigest("select  *\n from orders where order_id = 10 and name like 'it''s%'"));
+        Assert.assertEquals("select * from t1 where id in (...) and x > ?",
+                QueryStatisticsData.getDigest("select * from t1 /* hint */ where id in (1, 2,3) and x > 1.5e-3"));
+        Assert.assertEquals("insert into t (a, b) values (...)",
+                QueryStatisticsData.getDigest("insert into t (a, b) values (1, 'x'), (2, \"y\")"));
+        Assert.assertEquals("select `col 1` from t where a = ?",
+                QueryStatisticsData.getDigest("select `col 1` from t where a = ?"));
+    }
+
+    @Test
+    public void testPercentiles() {
+        QueryStatisticsData data = new QueryStatisticsData(10);
+        for (int i = 1; i <= 1000; i++) {
+            data.update("select ?", TimeUnit.MILLISECONDS.toNanos(i), 1);
+        }
+        List<QueryEntry> queries = data.getQueries();
+        Assert.assertEquals(1, queries.size());
+        QueryEntry entry = queries.get(0);
+        Assert.assertEquals(1000, entry.getCount());
+        Assert.assertEquals(1, entry.getExecutionTimeMin());
+        Assert.assertEquals(1000, entry.getExecutionTimeMax());
+        Assert.assertEquals(500.5, entry.getExecutionTimeMean(), 0.001);
+        // the buckets are at most 25% wide
+        assertBetween(500, 625, entry.getExecutionTimePercentile(0.5));
+        assertBetween(990, 1250, entry.getExecutionTimePercentile(0.99));
+        Assert.assertEquals(1000, entry.getRowCountCumulative());
+    }
+
+    @Test
+    public void testEviction() {
+        QueryStatisticsData data = new QueryStatisticsData(3);
+        for (int i = 0; i < 10; i++) {
+            data.update("select " + i, 1000, 1);
+        }
+        Assert.assertTrue(data.getQueries().size() <= 3);
+    }
+
+    private static void assertBetween(double min, double max, double value) {
+        Assert.assertTrue(value + " not in [" + min + ", " + max + "]", value >= min && value <= max);
+    }
+
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2014-2016 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.openddal.test.sql.dml;
+
+import java.math.BigDecimal;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.openddal.command.SqlTemplate;
+import com.openddal.value.Value;
+import com.openddal.value.ValueDecimal;
+import com.openddal.value.ValueInt;
+import com.openddal.value.ValueLong;
+import com.openddal.value.ValueString;
+
+public class SqlTemplateTestCase {
+
+    @Test
+    public void testComparisons() {
+        SqlTemplate t = SqlTemplate.parse("select a, 1 from orders where order_id = 10 and name like 'it''s%'");
+        Assert.assertEquals("select a, 1 from orders where order_id = ? and name like ?", t.getSQL());
+        assertLiterals(t, ValueInt.get(10), ValueString.get("it's%"));
+
+        t = SqlTemplate.parse("SELECT * FROM orders WHERE order_id>=-5 AND order_id BETWEEN 1.5 AND 9999999999");
+        Assert.assertEquals("SELECT * FROM orders WHERE order_id>=? AND order_id BETWEEN ? AND ?", t.getSQL());
+        assertLiterals(t, ValueInt.get(-5), ValueDecimal.get(new BigDecimal("1.5")), ValueLong.get(9999999999L));
+
+        t = SqlTemplate.parse("select * from orders where order_id in (1, 2, 3) and status = 'A' limit 10");
+        Assert.assertEquals("select * from orders where order_id in (?, ?, ?) and status = ? limit 10", t.getSQL());
+    }
+
+    @Test
+    public void testModifications() {
+        SqlTemplate t = SqlTemplate.parse("insert into orders (order_id, name) values (1, 'a'), (2, now())");
+        Assert.assertEquals("insert into orders (order_id, name) values (?, ?), (?, now())", t.getSQL());
+        assertLiterals(t, ValueInt.get(1), ValueString.get("a"), ValueInt.get(2));
+
+        t = SqlTemplate.parse("update orders set amount = amount + 1, name = 'b' where order_id = 3");
+        Assert.assertEquals("update orders set amount = amount + 1, name = ? where order_id = ?", t.getSQL());
+    }
+
+    @Test
+    public void testNotParameterized() {
+        Assert.assertNull(SqlTemplate.parse("select * from orders"));
+        Assert.assertNull(SqlTemplate.parse("select * from orders where order_id = ?"));
+        Assert.assertNull(SqlTemplate.parse("select /*+ ddal(shard=shard0) */ * from orders where order_id = 1"));
+        Assert.assertNull(SqlTemplate.parse("select * from orders where name = 'a\\'b'"));
+        Assert.assertNull(SqlTemplate.parse("select * from orders where data = X'FF'"));
+        Assert.assertNull(SqlTemplate.parse("set autocommit = 1"));
+        Assert.assertNull(SqlTemplate.parse("select (select max(a) from t where b = 1) from orders"));
+    }
+
+    private static void assertLiterals(SqlTemplate t, Value... expected) {
+        Assert.assertArrayEquals(expected, t.getLiterals());
+    }
+
+}